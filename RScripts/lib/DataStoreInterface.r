@@ -29,12 +29,13 @@ SPADATASTORECONSTANTS = list(filebenchprefix = "filebench", ffsbprefix = "ffsb",
   filebenchindependentvarsfilesettable = "filebenchIndependentVarsFileset",
   filebenchindependentvarsthreadtable = "filebenchIndependentVarsThread",
   filebenchindependentvarsthreadoperationtable = "filebenchIndependentVarsThreadOperation",
-  dependentvarstable = "DependentVars", dependentvarvaluestable = "DependentVarsValues");
+  dependentvarstable = "DependentVars", dependentvarvaluestable = "DependentVarsValues",
+  dependentvarsummarytable = "DependentVarsSummary");
 
 # Constants used in the results
 SPAMETRICCONSTANTS = list("responseTime" = 0, "throughput" = 1, "operations" = 2, 
   "requestSize" = 3, "access" = 4, "requestMix" = 5, "filesetSize" = 6, "filesize" = 7, 
-  "threads" = 8,  "opsPerFile" = 9, "queueDepth" = 10, "mergesPerSec" = 11, "serviceTime" = 12, "cpuUtilUser" = 13, "cpuUtilNice" = 14, "cpuUtilSystem" = 15 , "cpuIowait" = 16, "cpuSteal" = 17, "cpuIdle" = 18);
+  "threads" = 8,  "opsPerFile" = 9, "queueDepth" = 10, "mergesPerSec" = 11, "serviceTime" = 12, "cpuUtilUser" = 13, "cpuUtilNice" = 14, "cpuUtilSystem" = 15 , "cpuIowait" = 16, "cpuSteal" = 17, "cpuIdle" = 18, "clockError" = 19, "convergenceTime" = 20);
 
 # Constants used in the results
 SPATYPECONSTANTS = list("mean" = 0, "stdDev" = 1, "absolute" = 2, "pattern" = 3, 
@@ -120,6 +121,45 @@ getDependentVars <- function(db, runId, benchmarkprefix, metric=NULL, type=NULL)
   return(result);
 }
 
+getSummaries <- function(db, runId, benchmarkprefix, metric=NULL) {
+# Loads the summaries of the single values of a benchmark run which were
+# computed while the results were stored: count, mean, min, median, 95th and
+# 99th percentile and max per operation, metric and source. The percentiles
+# have a relative error of at most 1%. This is much faster than loading all
+# single values using getDependentVars.
+# Args:
+#   db: The sqlite database which contains the run.
+#   runId: The runid for which the summaries should be returned.
+#   benchmarkprefix: The benchmark identifier
+#   metric: Specific result metric (optional)
+#
+# Returns:
+#   A 'data.table' containing one row per operation, metric and source.
+
+  query = paste("SELECT runId, operation, opMetric, source, sampleCount, meanValue, minValue, p50, p95, p99, maxValue",
+                " FROM ", benchmarkprefix, SPADATASTORECONSTANTS$dependentvarsummarytable,
+                " JOIN ", benchmarkprefix, SPADATASTORECONSTANTS$dependentvarstable,
+                " USING (","dvId",")",
+                " WHERE ",
+                "runId=",runId,
+                sep="");
+
+  if(!is.null(metric)) {
+    query = paste(query, " AND ", "opMetric=", metric, sep="");
+  }
+
+  query = paste(query,";",sep="");
+
+  result = execQuery(db, query);
+
+# Insert speaking name of metric
+  metricValues = result$opMetric;
+  result = result[, opMetric:=as.character(opMetric)];
+  result$opMetric = names(SPAMETRICCONSTANTS)[metricValues+1];
+
+  return(result);
+}
+
 # The following function are a convenient shortcuts for the above function
 # They simply set certain constant values and call the more general function
 # The function are also hierarchical meaning that they are reused to only set one constant per function
@@ -271,8 +311,9 @@ getFilebenchVars <- function(db, runId, metric=NULL, type=NULL) {
 
 getFFSBRunIds<-function(db) {
   # Returns the runIds of all FFSB runs which are saved in the database. The
-  # function only returns those calls which have at least one dependent variable
-  # and which have their independent variable stored in the database. Although
+  # function only returns those calls which are completed (runs which are
+  # still streamed into the database are not), have at least one dependent
+  # variable and which have their independent variable stored in the database. Although
   # the later condition should be true for every run, some databases might be
   # damanged and not contain the independent variables.
   # 
@@ -292,6 +333,7 @@ getFFSBRunIds<-function(db) {
 #                "benchmarkId=\"FFSBenchmarkDriver\");")
   
   query = paste("SELECT runId FROM ", SPADATASTORECONSTANTS$runstable, " WHERE",
+                " runCompleted=1 AND",
                 " (SELECT runId FROM ", SPADATASTORECONSTANTS$ffsbindependentvarstable, 
                 " WHERE runId=", SPADATASTORECONSTANTS$runstable,".runId LIMIT 1) IS NOT NULL AND",
                 " (SELECT dvId FROM ", SPADATASTORECONSTANTS$ffsbprefix, 
@@ -304,7 +346,8 @@ getFFSBRunIds<-function(db) {
 
 getFilebenchRunIds<-function(db) {
 # Returns the runIds of all Filebench runs which are saved in the database. The
-# function only returns those calls which have at least one dependent variable
+# function only returns those calls which are completed (runs which are still
+# streamed into the database are not), have at least one dependent variable
 # and which have their independent variable stored in the database. Although
 # the later condition should be true for every run, some databases might be
 # damanged and not contain the independent variables.
@@ -317,6 +360,7 @@ getFilebenchRunIds<-function(db) {
 #   above.
   
   query = paste("SELECT runId FROM ", SPADATASTORECONSTANTS$runstable, " WHERE",
+                " runCompleted=1 AND",
                 " (SELECT runId FROM ", SPADATASTORECONSTANTS$filebenchindependentvarstable, 
                 " WHERE runId=", SPADATASTORECONSTANTS$runstable,".runId LIMIT 1) IS NOT NULL AND",
                 " (SELECT dvId FROM ", SPADATASTORECONSTANTS$filebenchprefix, 
@@ -385,4 +429,87 @@ getAllFilebenchVars<-function(db, metric=NULL, type=NULL) {
   
   # Remove unnecessary columns before returning
   return(removeNAColumns(result[, runId.1 := NULL][, runId.2 := NULL]))
-}
\ No newline at end of file
+}
+
+readColumnarExport<-function(file) {
+  # Reads a file written by the 'export' script of the harness (the class
+  # DataStoreExport). The file contains the dependent values in a binary
+  # columnar format, thus reading it is much faster than executing the queries
+  # above through the sqlite3 command line and parsing the CSV output.
+  #
+  # Args:
+  #   file: The path of the export file
+  #
+  # Returns:
+  #   A 'data.table' with one column per exported column. Text columns (e.g.
+  #   the operation or the metric) are returned as factors.
+
+  con = file(file, "rb");
+  on.exit(close(con));
+
+  readInt = function(n=1) {
+    return(readBin(con, "integer", n=n, size=4, endian="big"));
+  }
+  readString = function() {
+    len = readInt();
+    if (len == 0) {
+      return("");
+    }
+    return(rawToChar(readBin(con, "raw", n=len)));
+  }
+
+  if (rawToChar(readBin(con, "raw", n=4)) != "SBHC") {
+    stop(paste("File", file, "is not a columnar export"));
+  }
+  version = readInt();
+  if (version != 1) {
+    stop(paste("Unsupported version", version, "of the columnar export"));
+  }
+
+  # Column types: 0 = integer, 1 = double, 2 = factor
+  columnCount = readInt();
+  types = integer(columnCount);
+  columnNames = character(columnCount);
+  for (i in 1:columnCount) {
+    types[i] = readInt();
+    columnNames[i] = readString();
+  }
+
+  # The values are read block by block and concatenated at the end
+  levels = rep(list(character(0)), columnCount);
+  blocks = rep(list(list()), columnCount);
+  repeat {
+    rows = readInt();
+    if (length(rows) == 0 || rows == 0) {
+      break;
+    }
+    for (i in 1:columnCount) {
+      if (types[i] == 1) {
+        values = readBin(con, "double", n=rows, size=8, endian="big");
+      } else {
+        if (types[i] == 2) {
+          newLevels = readInt();
+          if (newLevels > 0) {
+            levels[[i]] = c(levels[[i]], sapply(1:newLevels, function(l) readString()));
+          }
+        }
+        values = readInt(rows);
+      }
+      blocks[[i]][[length(blocks[[i]]) + 1]] = values;
+    }
+  }
+
+  columns = list();
+  for (i in 1:columnCount) {
+    values = unlist(blocks[[i]]);
+    if (is.null(values)) {
+      values = if (types[i] == 1) numeric(0) else integer(0);
+    }
+    if (types[i] == 2) {
+      values = structure(values, levels=levels[[i]], class="factor");
+    }
+    columns[[columnNames[i]]] = values;
+  }
+
+  return(do.call(data.table, columns));
+}
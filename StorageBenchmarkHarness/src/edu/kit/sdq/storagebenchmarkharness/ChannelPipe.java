@@ -0,0 +1,203 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A pipe between the thread of a JSch session, which writes the data received
+ * for a channel, and the thread reading it. Unlike the pipes of JSch the
+ * buffer grows instead of blocking the writer (blocking would stall all
+ * channels of the session) and the writer does not need to stay alive.
+ *
+ * JSch closes the writing side when the channel is closed, this is reported
+ * to a callback and used to detect the termination of a remote process
+ * without polling.
+ *
+ * The time of the first write is kept, i.e. when the first data of the
+ * channel arrived, independent of when the reader reads it.
+ */
+final class ChannelPipe
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final Runnable onClose;
+
+	// Guarded by this
+	private byte[] buffer = new byte[INITIAL_CAPACITY];
+	private int start = 0;
+	private int end = 0;
+	private boolean closed = false;
+	// System.nanoTime() of the first and the last write, 0 if none yet
+	private long firstWriteNanos = 0;
+	private long lastWriteNanos = 0;
+
+	private final InputStream in = new InputStream()
+	{
+		@Override
+		public int read() throws IOException
+		{
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (len == 0)
+			{
+				return 0;
+			}
+			synchronized (ChannelPipe.this)
+			{
+				while (start == end && !closed)
+				{
+					try
+					{
+						ChannelPipe.this.wait();
+					} catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while waiting for data");
+					}
+				}
+				if (start == end)
+				{
+					return -1;
+				}
+				int n = Math.min(len, end - start);
+				System.arraycopy(buffer, start, b, off, n);
+				start += n;
+				return n;
+			}
+		}
+
+		@Override
+		public int available()
+		{
+			synchronized (ChannelPipe.this)
+			{
+				return end - start;
+			}
+		}
+	};
+
+	private final OutputStream out = new OutputStream()
+	{
+		@Override
+		public void write(int b) throws IOException
+		{
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			synchronized (ChannelPipe.this)
+			{
+				if (closed)
+				{
+					throw new IOException("Pipe closed");
+				}
+				if (len == 0)
+				{
+					return;
+				}
+				lastWriteNanos = System.nanoTime();
+				if (firstWriteNanos == 0)
+				{
+					firstWriteNanos = lastWriteNanos;
+				}
+				ensureCapacity(len);
+				System.arraycopy(b, off, buffer, end, len);
+				end += len;
+				ChannelPipe.this.notifyAll();
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			synchronized (ChannelPipe.this)
+			{
+				if (closed)
+				{
+					return;
+				}
+				closed = true;
+				ChannelPipe.this.notifyAll();
+			}
+			if (onClose != null)
+			{
+				onClose.run();
+			}
+		}
+	};
+
+	ChannelPipe()
+	{
+		this(null);
+	}
+
+	/**
+	 * @param onClose
+	 *            Called once when the writing side is closed, may be null
+	 */
+	ChannelPipe(Runnable onClose)
+	{
+		this.onClose = onClose;
+	}
+
+	/**
+	 * @return The side read by the user of the channel
+	 */
+	InputStream getInputStream()
+	{
+		return in;
+	}
+
+	/**
+	 * @return The side written by JSch
+	 */
+	OutputStream getOutputStream()
+	{
+		return out;
+	}
+
+	/**
+	 * @return {@code System.nanoTime()} when the first data was written, 0 if
+	 *         nothing was written yet
+	 */
+	synchronized long getFirstWriteNanos()
+	{
+		return firstWriteNanos;
+	}
+
+	/**
+	 * Forgets the first write, e.g. after the reader consumed a header which
+	 * is not part of the output. If data is still buffered, it is taken as
+	 * written at the last write.
+	 */
+	synchronized void resetFirstWrite()
+	{
+		firstWriteNanos = start < end ? lastWriteNanos : 0;
+	}
+
+	private void ensureCapacity(int len)
+	{
+		if (end + len <= buffer.length)
+		{
+			return;
+		}
+		int size = end - start;
+		byte[] target = buffer;
+		if (size + len > buffer.length)
+		{
+			target = new byte[Math.max(buffer.length * 2, size + len)];
+		}
+		System.arraycopy(buffer, start, target, 0, size);
+		buffer = target;
+		start = 0;
+		end = size;
+	}
+}
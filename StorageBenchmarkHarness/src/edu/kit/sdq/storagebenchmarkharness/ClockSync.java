@@ -0,0 +1,303 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Estimates the offset and the drift of the clock of a SUT relative to the
+ * controller timeline from NTP-style round trips: the controller notes when a
+ * probe is sent and when the reply arrives, the SUT replies with its clock.
+ * The clock of the SUT is assumed to be read in the middle of the round trip,
+ * thus the error of an exchange is at most half of its round trip time.
+ *
+ * Only the exchanges with a round trip close to the shortest one are used, a
+ * long round trip is usually caused by queueing on either side. If these
+ * exchanges span at least {@link #MIN_DRIFT_SPAN}, the drift is estimated by a
+ * least squares fit of the offsets, otherwise the offset of the shortest
+ * round trip is used.
+ *
+ * The controller timeline is the wall clock of the controller in microseconds
+ * since the epoch, read once and continued by {@code System.nanoTime()}, thus
+ * it has a high resolution and does not jump when the wall clock is adjusted.
+ *
+ * This class is thread-safe.
+ */
+public final class ClockSync
+{
+	/**
+	 * The scale of timestamps on the controller timeline: seconds with six
+	 * decimal places, see {@code SampleBuffer}
+	 */
+	public static final int TIMELINE_SCALE = 6;
+
+	/** The minimum time span in us of the exchanges to estimate the drift */
+	public static final long MIN_DRIFT_SPAN = 10000000;
+
+	// Exchanges whose round trip exceeds the shortest by more than this
+	// factor and slack in us are not used
+	private static final double RTT_FACTOR = 2;
+	private static final long RTT_SLACK = 200;
+
+	// The anchor of the controller timeline
+	private static final long BASE_NANOS = System.nanoTime();
+	private static final long BASE_MICROS = System.currentTimeMillis() * 1000;
+
+	// Probes waiting for their reply: sequence number to send time
+	private final ConcurrentMap<Integer, Long> pending = Maps.newConcurrentMap();
+
+	// Guarded by this
+	private int nextSequence = 0;
+	private final List<long[]> exchanges = Lists.newArrayList();
+	private Estimate estimate;
+
+	/**
+	 * @return The current time on the controller timeline in us
+	 */
+	public static long nowMicros()
+	{
+		return toTimelineMicros(System.nanoTime());
+	}
+
+	/**
+	 * @return The time on the controller timeline in us of a value of
+	 *         {@code System.nanoTime()}
+	 */
+	public static long toTimelineMicros(long nanoTime)
+	{
+		return BASE_MICROS + (nanoTime - BASE_NANOS) / 1000;
+	}
+
+	/**
+	 * Notes that a probe is sent now.
+	 *
+	 * @return The sequence number of the probe, between 0 and 65535
+	 */
+	public int startExchange()
+	{
+		int sequence;
+		synchronized (this)
+		{
+			sequence = nextSequence;
+			nextSequence = (nextSequence + 1) & 0xffff;
+		}
+		pending.put(sequence, System.nanoTime());
+		return sequence;
+	}
+
+	/**
+	 * Adds the reply to a probe. Replies to unknown probes are ignored.
+	 *
+	 * @param sequence
+	 *            The sequence number of the probe
+	 * @param remoteMicros
+	 *            The clock of the SUT in us when it replied
+	 * @param receiveNanos
+	 *            {@code System.nanoTime()} when the reply was received
+	 */
+	public void finishExchange(int sequence, long remoteMicros, long receiveNanos)
+	{
+		Long sendNanos = pending.remove(sequence);
+		if (sendNanos != null)
+		{
+			addExchange(toTimelineMicros(sendNanos), remoteMicros, toTimelineMicros(receiveNanos));
+		}
+	}
+
+	/**
+	 * Adds a round trip.
+	 *
+	 * @param sendMicros
+	 *            The time on the controller timeline the probe was sent
+	 * @param remoteMicros
+	 *            The clock of the SUT when it replied
+	 * @param receiveMicros
+	 *            The time on the controller timeline the reply was received
+	 */
+	public synchronized void addExchange(long sendMicros, long remoteMicros, long receiveMicros)
+	{
+		exchanges.add(new long[] { sendMicros, remoteMicros, receiveMicros });
+		estimate = null;
+	}
+
+	/**
+	 * @return The number of round trips
+	 */
+	public synchronized int getExchangeCount()
+	{
+		return exchanges.size();
+	}
+
+	/**
+	 * @return True if there is at least one round trip, otherwise times of
+	 *         the SUT can not be converted
+	 */
+	public synchronized boolean isSynchronized()
+	{
+		return !exchanges.isEmpty();
+	}
+
+	/**
+	 * Converts a time of the clock of the SUT to the controller timeline.
+	 *
+	 * @throws IllegalStateException
+	 *             If there is no round trip yet
+	 */
+	public long toTimeline(long remoteMicros)
+	{
+		Estimate e = getEstimate();
+		return remoteMicros + e.offset + Math.round(e.drift * (remoteMicros - e.remoteReference));
+	}
+
+	/**
+	 * @return The estimated offset in us which is added to the clock of the
+	 *         SUT at the last round trip
+	 */
+	public long getOffset()
+	{
+		Estimate e = getEstimate();
+		return e.offset + Math.round(e.drift * (e.remoteLast - e.remoteReference));
+	}
+
+	/**
+	 * @return The estimated drift of the clock of the SUT relative to the
+	 *         controller, e.g. 1e-6 if the controller advances 1 us per
+	 *         second more than the SUT
+	 */
+	public double getDrift()
+	{
+		return getEstimate().drift;
+	}
+
+	/**
+	 * @return The bound of the error in us of converted times: half of the
+	 *         shortest round trip plus the largest deviation of a used
+	 *         exchange from the estimate
+	 */
+	public long getErrorBound()
+	{
+		return getEstimate().error;
+	}
+
+	private synchronized Estimate getEstimate()
+	{
+		if (exchanges.isEmpty())
+		{
+			throw new IllegalStateException("No round trip to the SUT");
+		}
+		if (estimate == null)
+		{
+			estimate = estimate(exchanges);
+		}
+		return estimate;
+	}
+
+	private static Estimate estimate(List<long[]> exchanges)
+	{
+		long[] best = null;
+		for (long[] exchange : exchanges)
+		{
+			if (best == null || rtt(exchange) < rtt(best))
+			{
+				best = exchange;
+			}
+		}
+		long limit = Math.max((long) (rtt(best) * RTT_FACTOR), rtt(best) + RTT_SLACK);
+
+		List<long[]> used = Lists.newArrayList();
+		long first = Long.MAX_VALUE;
+		long last = Long.MIN_VALUE;
+		for (long[] exchange : exchanges)
+		{
+			if (rtt(exchange) <= limit)
+			{
+				used.add(exchange);
+				first = Math.min(first, exchange[1]);
+				last = Math.max(last, exchange[1]);
+			}
+		}
+
+		// Offsets relative to that of the best exchange, thus the doubles
+		// keep the precision of the large times
+		long reference = best[1];
+		long offset = offset(best);
+		double drift = 0;
+		double intercept = 0;
+		if (used.size() > 1 && last - first >= MIN_DRIFT_SPAN)
+		{
+			double sumX = 0;
+			double sumY = 0;
+			for (long[] exchange : used)
+			{
+				sumX += exchange[1] - reference;
+				sumY += offset(exchange) - offset;
+			}
+			double meanX = sumX / used.size();
+			double meanY = sumY / used.size();
+			double sxy = 0;
+			double sxx = 0;
+			for (long[] exchange : used)
+			{
+				double x = exchange[1] - reference - meanX;
+				sxy += x * (offset(exchange) - offset - meanY);
+				sxx += x * x;
+			}
+			drift = sxy / sxx;
+			intercept = meanY - drift * meanX;
+		}
+
+		double deviation = 0;
+		for (long[] exchange : used)
+		{
+			double fitted = intercept + drift * (exchange[1] - reference);
+			deviation = Math.max(deviation, Math.abs(offset(exchange) - offset - fitted));
+		}
+		return new Estimate(reference, last, offset + Math.round(intercept), drift, rtt(best) / 2 + (long) Math.ceil(deviation));
+	}
+
+	private static long rtt(long[] exchange)
+	{
+		return exchange[2] - exchange[0];
+	}
+
+	private static long offset(long[] exchange)
+	{
+		// The SUT is assumed to reply in the middle of the round trip
+		return exchange[0] + rtt(exchange) / 2 - exchange[1];
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		if (exchanges.isEmpty())
+		{
+			return "ClockSync [exchanges=0]";
+		}
+		Estimate e = getEstimate();
+		return "ClockSync [exchanges=" + exchanges.size() + ", offset=" + e.offset + ", drift=" + e.drift + ", error=" + e.error + "]";
+	}
+
+	/**
+	 * The estimated mapping from the clock of the SUT to the controller
+	 * timeline: {@code timeline = remote + offset + drift * (remote - remoteReference)}.
+	 */
+	private static final class Estimate
+	{
+		private final long remoteReference;
+		private final long remoteLast;
+		private final long offset;
+		private final double drift;
+		private final long error;
+
+		private Estimate(long remoteReference, long remoteLast, long offset, double drift, long error)
+		{
+			this.remoteReference = remoteReference;
+			this.remoteLast = remoteLast;
+			this.offset = offset;
+			this.drift = drift;
+			this.error = error;
+		}
+	}
+}
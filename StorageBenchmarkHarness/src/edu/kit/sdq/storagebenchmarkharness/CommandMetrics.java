@@ -0,0 +1,267 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import edu.kit.sdq.storagebenchmarkharness.util.ConcurrentHistogram;
+
+/**
+ * Metrics of the commands executed by the remote connections: the latency of
+ * opening the channel (or starting the process), the time to the first byte
+ * of output, the total duration and the bytes transferred. The metrics are
+ * kept per kind of command, which is the caller (driver and phase) and the
+ * executable, e.g. 'FFSBenchmarkDriver.prepare sudo mkfs.ext4'.
+ *
+ * The caller is set per thread by the {@code BenchmarkController} with
+ * {@link #setContext(CommandMetrics, String)}. Every command is counted in the
+ * campaign metrics and in the metrics of the context of the thread which
+ * started it, e.g. those of the current experiment.
+ *
+ * The histograms do not lock, thus recording does not serialize the
+ * connections. Times are in microseconds.
+ */
+public final class CommandMetrics
+{
+	private static final CommandMetrics CAMPAIGN = new CommandMetrics();
+
+	private static final ThreadLocal<Object[]> CONTEXT = new ThreadLocal<Object[]>();
+
+	private static final String NO_CALLER = "unknown";
+
+	private static final String ROW_FORMAT = "%-60s %8s %12s %10s %10s %10s %10s %15s %10s%n";
+
+	private final ConcurrentMap<String, Kind> kinds = Maps.newConcurrentMap();
+
+	/**
+	 * @return The metrics of all commands since the start of the harness
+	 */
+	public static CommandMetrics getCampaign()
+	{
+		return CAMPAIGN;
+	}
+
+	/**
+	 * Sets the caller of the commands started by the current thread.
+	 *
+	 * @param metrics
+	 *            The metrics which count the commands in addition to the
+	 *            campaign metrics, may be null
+	 * @param caller
+	 *            The caller, e.g. the driver class and the phase
+	 */
+	public static void setContext(CommandMetrics metrics, String caller)
+	{
+		CONTEXT.set(new Object[] { metrics, caller });
+	}
+
+	/**
+	 * Removes the caller of the commands started by the current thread.
+	 */
+	public static void clearContext()
+	{
+		CONTEXT.remove();
+	}
+
+	/**
+	 * Wraps a started process so that its metrics are recorded when it is
+	 * finished.
+	 *
+	 * @param process
+	 *            The process, its channel is open
+	 * @param cmd
+	 *            The command as given by the caller
+	 * @param startNanos
+	 *            {@code System.nanoTime()} before the channel was opened
+	 * @param outPipe
+	 *            The pipe of stdout, gives the time of the first byte
+	 * @param errPipe
+	 *            The pipe of stderr
+	 * @return The process to return to the caller
+	 */
+	static RemoteProcess instrument(RemoteProcess process, String cmd, long startNanos, ChannelPipe outPipe, ChannelPipe errPipe)
+	{
+		Object[] context = CONTEXT.get();
+		String caller = context == null ? NO_CALLER : (String) context[1];
+		CommandMetrics metrics = context == null ? null : (CommandMetrics) context[0];
+		return new InstrumentedProcess(process, caller + " " + getExecutable(cmd), metrics, startNanos, outPipe, errPipe);
+	}
+
+	/**
+	 * Returns the executable of a command including a leading sudo, e.g.
+	 * 'sudo blktrace' for 'sudo blktrace -d /dev/sdb'.
+	 */
+	static String getExecutable(String cmd)
+	{
+		String[] words = cmd.trim().split("\\s+", 3);
+		String executable = words[0].substring(words[0].lastIndexOf('/') + 1);
+		if (executable.equals("sudo") && words.length > 1)
+		{
+			return "sudo " + words[1].substring(words[1].lastIndexOf('/') + 1);
+		}
+		return executable;
+	}
+
+	/**
+	 * Records a finished command in the campaign and the given metrics.
+	 */
+	static void record(String kind, CommandMetrics metrics, long openMicros, long firstByteMicros, long totalMicros, long bytes)
+	{
+		CAMPAIGN.add(kind, openMicros, firstByteMicros, totalMicros, bytes);
+		if (metrics != null && metrics != CAMPAIGN)
+		{
+			metrics.add(kind, openMicros, firstByteMicros, totalMicros, bytes);
+		}
+	}
+
+	private void add(String kind, long openMicros, long firstByteMicros, long totalMicros, long bytes)
+	{
+		Kind k = kinds.get(kind);
+		if (k == null)
+		{
+			Kind created = new Kind(kind);
+			k = kinds.putIfAbsent(kind, created);
+			if (k == null)
+			{
+				k = created;
+			}
+		}
+		k.open.add(openMicros);
+		if (firstByteMicros >= 0)
+		{
+			k.firstByte.add(firstByteMicros);
+		}
+		k.total.add(totalMicros);
+		k.bytes.add(bytes);
+	}
+
+	/**
+	 * @return The kinds of commands, the one with the highest total duration
+	 *         first
+	 */
+	public List<Kind> getKinds()
+	{
+		List<Kind> sorted = Lists.newArrayList(kinds.values());
+		Collections.sort(sorted, new Comparator<Kind>()
+		{
+			@Override
+			public int compare(Kind k1, Kind k2)
+			{
+				long t1 = k1.total.getSum();
+				long t2 = k2.total.getSum();
+				return t1 > t2 ? -1 : (t1 < t2 ? 1 : k1.name.compareTo(k2.name));
+			}
+		});
+		return sorted;
+	}
+
+	/**
+	 * Formats the kinds of commands with the highest total duration as a
+	 * table, times in ms.
+	 *
+	 * @param top
+	 *            The maximum number of kinds
+	 */
+	public String report(int top)
+	{
+		List<Kind> sorted = getKinds();
+		StringBuilder sb = new StringBuilder(String.format(ROW_FORMAT, "command", "count", "total", "mean", "p95", "max", "open p95",
+				"first byte p95", "KiB"));
+		for (Kind k : sorted.subList(0, Math.min(top, sorted.size())))
+		{
+			sb.append(String.format(ROW_FORMAT, k.name, k.total.getCount(), millis(k.total.getSum()), millis(k.total.getMean()),
+					millis(k.total.quantile(0.95)), millis(k.total.getMax()), millis(k.open.quantile(0.95)), millis(k.firstByte.quantile(0.95)),
+					k.bytes.getSum() / 1024));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the report of all kinds of commands to a file.
+	 */
+	public void writeReport(File file) throws IOException
+	{
+		Files.write(report(Integer.MAX_VALUE), file, Charset.defaultCharset());
+	}
+
+	private static String millis(double micros)
+	{
+		return String.format("%.1f", micros / 1e3);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CommandMetrics [kinds=" + kinds.size() + "]";
+	}
+
+	/**
+	 * The metrics of a kind of command.
+	 */
+	public static final class Kind
+	{
+		private final String name;
+		private final ConcurrentHistogram open = new ConcurrentHistogram();
+		private final ConcurrentHistogram firstByte = new ConcurrentHistogram();
+		private final ConcurrentHistogram total = new ConcurrentHistogram();
+		private final ConcurrentHistogram bytes = new ConcurrentHistogram();
+
+		private Kind(String name)
+		{
+			this.name = name;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * @return The latencies of opening the channel in microseconds
+		 */
+		public ConcurrentHistogram getOpen()
+		{
+			return open;
+		}
+
+		/**
+		 * @return The times to the first byte of output in microseconds, only
+		 *         of commands with output
+		 */
+		public ConcurrentHistogram getFirstByte()
+		{
+			return firstByte;
+		}
+
+		/**
+		 * @return The durations from opening the channel to the termination in
+		 *         microseconds
+		 */
+		public ConcurrentHistogram getTotal()
+		{
+			return total;
+		}
+
+		/**
+		 * @return The bytes written to and read from the commands
+		 */
+		public ConcurrentHistogram getBytes()
+		{
+			return bytes;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Kind [name=" + name + ", total=" + total + "]";
+		}
+	}
+}
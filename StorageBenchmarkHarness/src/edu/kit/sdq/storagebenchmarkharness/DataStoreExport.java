@@ -0,0 +1,197 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.ParameterException;
+import com.beust.jcommander.validators.PositiveInteger;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.datastore.ColumnarExportWriter;
+import edu.kit.sdq.storagebenchmarkharness.datastore.ColumnarExportWriter.ColumnType;
+import edu.kit.sdq.storagebenchmarkharness.datastore.DataStoreReader;
+import edu.kit.sdq.storagebenchmarkharness.datastore.StoredRun;
+import edu.kit.sdq.storagebenchmarkharness.datastore.ValueCursor;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteDataStoreReader;
+
+/**
+ * Exports the dependent values of a set of runs into the binary columnar
+ * format of the {@code ColumnarExportWriter}, which is read by
+ * {@code readColumnarExport} in {@code DataStoreInterface.r}. This is much
+ * faster than reading the values as CSV using the sqlite3 command line.
+ */
+public class DataStoreExport
+{
+	private static final Logger LOGGER = Logger.getLogger(DataStoreExport.class);
+
+	private static final String[] COLUMN_NAMES =
+	{ "runId", "expNo", "repeatNo", "hostId", "operation", "opMetric", "opType", "opValue", "opTimestamp", "source" };
+
+	private static final ColumnType[] COLUMN_TYPES =
+	{ ColumnType.INT, ColumnType.INT, ColumnType.INT, ColumnType.FACTOR, ColumnType.FACTOR, ColumnType.FACTOR, ColumnType.FACTOR,
+			ColumnType.DOUBLE, ColumnType.DOUBLE, ColumnType.FACTOR };
+
+	/**
+	 * The parameters of the export. Used by {@code JCommander} for the
+	 * parameter parsing.
+	 */
+	private static final class DataStoreExportParameters
+	{
+		@Parameter(names =
+		{ "--database", "-d" }, description = "Database path", required = true)
+		private String dbpath;
+
+		@Parameter(names =
+		{ "--benchmark", "-b" }, description = "Benchmark prefix of the values, e.g. 'ffsb'", required = true)
+		private String prefix;
+
+		@Parameter(names =
+		{ "--identifier", "-i" }, description = "Export the runs of all configuration runs with this identifier")
+		private String identifier;
+
+		@Parameter(names =
+		{ "--configurationRun", "-c" }, description = "Export the runs of this configuration run, can be given more than once")
+		private List<Long> crIds = Lists.newArrayList();
+
+		@Parameter(names =
+		{ "--run", "-r" }, description = "Only export this run of the configuration runs, can be given more than once")
+		private List<Long> runIds = Lists.newArrayList();
+
+		@Parameter(names =
+		{ "--metric", "-m" }, description = "Only export the values of this metric, e.g. RESPONSE_TIME")
+		private Metric metric;
+
+		@Parameter(names =
+		{ "--operation", "-op" }, description = "Only export the values of this operation, e.g. 'read'")
+		private String operation;
+
+		@Parameter(names =
+		{ "--output", "-o" }, description = "Path of the export file", required = true)
+		private String output;
+
+		@Parameter(names =
+		{ "--blockSize" }, description = "Number of rows per block in the export file", validateWith = PositiveInteger.class)
+		private int blockSize = ColumnarExportWriter.DEFAULT_BLOCK_SIZE;
+	}
+
+	public static void main(String[] args)
+	{
+		DataStoreExportParameters params = new DataStoreExportParameters();
+		JCommander jcomm = new JCommander(params);
+		try
+		{
+			jcomm.parse(args);
+		} catch (ParameterException e)
+		{
+			jcomm.usage();
+			System.exit(1);
+		}
+
+		if (params.identifier == null && params.crIds.isEmpty())
+		{
+			jcomm.usage();
+			System.err.println("You must provide an identifier or a configuration run.");
+			System.exit(1);
+		}
+
+		DataStoreReader reader = new SQLiteDataStoreReader(new File(params.dbpath));
+		try
+		{
+			List<Long> crIds = Lists.newArrayList(params.crIds);
+			if (params.identifier != null)
+			{
+				crIds.addAll(reader.getConfigurationRunIds(params.identifier));
+			}
+
+			List<StoredRun> runs = Lists.newArrayList();
+			Set<Long> selected = Sets.newHashSet(params.runIds);
+			for (long crId : crIds)
+			{
+				for (StoredRun run : reader.getRuns(crId))
+				{
+					if (selected.isEmpty() || selected.contains(run.getRunId()))
+					{
+						runs.add(run);
+					}
+				}
+			}
+
+			long rows = export(reader, params.prefix, runs, params.metric, params.operation, new File(params.output), params.blockSize);
+			LOGGER.info("Exported %d values of %d runs to %s", rows, runs.size(), params.output);
+		} catch (IOException e)
+		{
+			LOGGER.error("Could not write the export to " + params.output, e);
+			System.exit(1);
+		} finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Exports the dependent values of the runs.
+	 *
+	 * @param reader
+	 *            The reader of the data store
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param runs
+	 *            The runs to export
+	 * @param metric
+	 *            Only values of this metric, null for all metrics
+	 * @param operation
+	 *            Only values of this operation, null for all operations
+	 * @param output
+	 *            The export file
+	 * @param blockSize
+	 *            The number of rows per block
+	 * @return The number of exported values
+	 * @throws IOException
+	 */
+	public static long export(DataStoreReader reader, String prefix, List<StoredRun> runs, Metric metric, String operation, File output,
+			int blockSize) throws IOException
+	{
+		ColumnarExportWriter writer = new ColumnarExportWriter(new FileOutputStream(output), COLUMN_NAMES, COLUMN_TYPES, blockSize);
+		try
+		{
+			for (StoredRun run : runs)
+			{
+				ValueCursor values = reader.getDependentValues(prefix, run.getRunId(), metric, operation);
+				try
+				{
+					while (values.next())
+					{
+						writer.setInt(0, (int) run.getRunId());
+						writer.setInt(1, run.getExpNo());
+						writer.setInt(2, run.getRepeatNo());
+						writer.setFactor(3, run.getHostId());
+						writer.setFactor(4, values.getOperation());
+						Metric valueMetric = Metric.get(values.getMetric());
+						writer.setFactor(5, valueMetric == null ? null : valueMetric.getLiteral());
+						Type valueType = Type.get(values.getType());
+						writer.setFactor(6, valueType == null ? null : valueType.getLiteral());
+						writer.setDouble(7, values.getValue());
+						writer.setDouble(8, values.getTimestamp());
+						writer.setFactor(9, values.getSource());
+						writer.endRow();
+					}
+				} finally
+				{
+					values.close();
+				}
+			}
+		} finally
+		{
+			writer.close();
+		}
+		return writer.getRowCount();
+	}
+}
@@ -6,6 +6,8 @@ import java.nio.charset.Charset;
 
 import com.google.common.io.Files;
 
+import edu.kit.sdq.storagebenchmarkharness.datastore.ResultSink;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 
 /**
@@ -16,8 +18,15 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
  */
 public abstract class Driver
 {
+	/**
+	 * The number of samples which are handed to the {@code ResultSink} at once
+	 * by sample buffers created with {@link #createSampleBuffer(int)}.
+	 */
+	public static final int STREAMING_BATCH_SIZE = 65536;
+
 	private final String fileSaveDir;
 	private String expUid;
+	private ResultSink resultSink;
 
 	public Driver(String fileSaveDir)
 	{
@@ -100,6 +109,43 @@ public abstract class Driver
 		}
 	}
 
+	/**
+	 * Sets the sink of the current run. If a sink is set, large results are
+	 * streamed into the sink while they are parsed instead of being returned
+	 * at once.
+	 * 
+	 * @param resultSink
+	 *            The sink, null if the results should not be streamed
+	 */
+	public void setResultSink(ResultSink resultSink)
+	{
+		this.resultSink = resultSink;
+	}
+
+	protected ResultSink getResultSink()
+	{
+		return resultSink;
+	}
+
+	/**
+	 * Creates a sample buffer for the single values of the current run. If a
+	 * result sink is set, the buffer streams its samples into the sink in
+	 * batches of {@code STREAMING_BATCH_SIZE}. The remaining samples and the
+	 * counts and means of all samples stay in the buffer.
+	 * 
+	 * @param timestampScale
+	 *            See {@code SampleBuffer}
+	 */
+	protected SampleBuffer createSampleBuffer(int timestampScale)
+	{
+		SampleBuffer samples = new SampleBuffer(timestampScale);
+		if (resultSink != null)
+		{
+			samples.streamTo(resultSink, STREAMING_BATCH_SIZE);
+		}
+		return samples;
+	}
+
 	protected String getFileSaveDir()
 	{
 		return fileSaveDir;
@@ -0,0 +1,137 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.nio.charset.Charset;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.eclipse.emf.common.util.Enumerator;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfBenchmark;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfMonitor;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
+
+/**
+ * Computes the identifier of an experiment from its independent variables.
+ * The same variables always result in the same identifier, thus the results
+ * of a configuration can be matched to the experiments when the
+ * configuration is run again (e.g. to resume an interrupted configuration
+ * run).
+ *
+ * The variables are written into a canonical text (class and feature names
+ * with their values, in the order of the model) from which a name-based UUID
+ * is derived.
+ */
+public final class ExperimentFingerprint
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ExperimentFingerprint()
+	{
+		// Utility class
+	}
+
+	/**
+	 * @param sutVars
+	 *            The independent variables of the SUT
+	 * @param benchVars
+	 *            The independent variables of the benchmark
+	 * @param monitorVars
+	 *            The independent variables of the monitors, may be empty
+	 * @param occurrence
+	 *            Distinguishes experiments with identical variables, 0 for
+	 *            the first one
+	 * @return The identifier in the format of a UUID
+	 */
+	public static String of(IndependentVariablesOfSut sutVars, IndependentVariablesOfBenchmark benchVars,
+			List<IndependentVariablesOfMonitor> monitorVars, int occurrence)
+	{
+		return UUID.nameUUIDFromBytes(canonical(sutVars, benchVars, monitorVars, occurrence).getBytes(UTF8)).toString();
+	}
+
+	/**
+	 * @return The canonical text the identifier is computed from
+	 */
+	static String canonical(IndependentVariablesOfSut sutVars, IndependentVariablesOfBenchmark benchVars,
+			List<IndependentVariablesOfMonitor> monitorVars, int occurrence)
+	{
+		Map<EObject, Integer> visited = new IdentityHashMap<EObject, Integer>();
+		StringBuilder sb = new StringBuilder();
+		append(sb, sutVars, visited);
+		sb.append(';');
+		append(sb, benchVars, visited);
+		for (IndependentVariablesOfMonitor vars : monitorVars)
+		{
+			sb.append(';');
+			append(sb, vars, visited);
+		}
+		if (occurrence > 0)
+		{
+			sb.append('#').append(occurrence);
+		}
+		return sb.toString();
+	}
+
+	private static void append(StringBuilder sb, EObject object, Map<EObject, Integer> visited)
+	{
+		if (object == null)
+		{
+			sb.append("null");
+			return;
+		}
+
+		// Objects referenced more than once are written only once
+		Integer index = visited.get(object);
+		if (index != null)
+		{
+			sb.append('@').append(index);
+			return;
+		}
+		visited.put(object, visited.size());
+
+		sb.append(object.eClass().getName()).append('{');
+		for (EStructuralFeature feature : object.eClass().getEAllStructuralFeatures())
+		{
+			if (feature.isTransient() || feature.isDerived())
+			{
+				continue;
+			}
+
+			sb.append(feature.getName()).append('=');
+			Object value = object.eGet(feature);
+			if (value instanceof List<?>)
+			{
+				sb.append('[');
+				for (Object element : (List<?>) value)
+				{
+					appendValue(sb, feature, element, visited);
+					sb.append(',');
+				}
+				sb.append(']');
+			} else
+			{
+				appendValue(sb, feature, value, visited);
+			}
+			sb.append(',');
+		}
+		sb.append('}');
+	}
+
+	private static void appendValue(StringBuilder sb, EStructuralFeature feature, Object value, Map<EObject, Integer> visited)
+	{
+		if (feature instanceof EReference)
+		{
+			append(sb, (EObject) value, visited);
+		} else if (value instanceof Enumerator)
+		{
+			sb.append(((Enumerator) value).getLiteral());
+		} else
+		{
+			sb.append(value);
+		}
+	}
+}
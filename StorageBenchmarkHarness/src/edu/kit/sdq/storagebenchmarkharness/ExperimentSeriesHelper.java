@@ -2,7 +2,7 @@ package edu.kit.sdq.storagebenchmarkharness;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
@@ -12,6 +12,7 @@ import org.eclipse.emf.ecore.impl.EObjectImpl;
 import org.eclipse.emf.ecore.impl.EReferenceImpl;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfBenchmark;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfMonitor;
@@ -92,6 +93,22 @@ public final class ExperimentSeriesHelper
 	public static List<DriverAndIndependentVars> getExperiments(ExperimentSeries series, RemoteConnection benchmarkCon,
 			List<RemoteConnection> monitorConns, String rawFileSaveDir)
 	{
+		return getExperiments(series, benchmarkCon, monitorConns, rawFileSaveDir, Maps.<String, Integer> newHashMap());
+	}
+
+	/**
+	 * Like {@link #getExperiments(ExperimentSeries, RemoteConnection, List, String)}
+	 * but counts the experiments with identical independent variables over
+	 * several calls, so every experiment of these calls gets a distinct
+	 * identifier (see {@link ExperimentFingerprint}).
+	 * 
+	 * @param occurrences
+	 *            The number of experiments found so far for every
+	 *            fingerprint, updated by this method
+	 */
+	public static List<DriverAndIndependentVars> getExperiments(ExperimentSeries series, RemoteConnection benchmarkCon,
+			List<RemoteConnection> monitorConns, String rawFileSaveDir, Map<String, Integer> occurrences)
+	{
 
 		List<MonitorDriver<?, ?>> monitorDrivers = new ArrayList<MonitorDriver<?, ?>>();
 		List<EClass> monitorVarsClass = new ArrayList<EClass>();
@@ -101,7 +118,7 @@ public final class ExperimentSeriesHelper
 			FFSBenchmarkDriver bd = new FFSBenchmarkDriver(benchmarkCon, rawFileSaveDir);
 			initialMonitorDrivers(monitorConns, series, rawFileSaveDir, monitorDrivers, monitorVarsClass, bd.getTargetDir());
 			List<DriverAndIndependentVars> daivs = expandExperimentSeries(series, SBHModelPackage.eINSTANCE.getIndependentVariablesOfFFSB(),
-					monitorVarsClass, bd, monitorDrivers);
+					monitorVarsClass, bd, monitorDrivers, occurrences);
 
 			return daivs;
 		} else if (series.getIndependentVariableSpaceOfBenchmark() instanceof IndependentVariableSpaceOfPostmark)
@@ -109,7 +126,7 @@ public final class ExperimentSeriesHelper
 			PostmarkBenchmarkDriver bd = new PostmarkBenchmarkDriver(benchmarkCon, rawFileSaveDir);
 			initialMonitorDrivers(monitorConns, series, rawFileSaveDir, monitorDrivers, monitorVarsClass, bd.getTargetDir());
 			List<DriverAndIndependentVars> daivs = expandExperimentSeries(series, SBHModelPackage.eINSTANCE.getIndependentVariablesOfPostmark(),
-					monitorVarsClass, bd, monitorDrivers);
+					monitorVarsClass, bd, monitorDrivers, occurrences);
 
 			return daivs;
 		} else if (series.getIndependentVariableSpaceOfBenchmark() instanceof IndependentVariableSpaceOfFilebench)
@@ -117,7 +134,7 @@ public final class ExperimentSeriesHelper
 			FilebenchBenchmarkDriver bd = new FilebenchBenchmarkDriver(benchmarkCon, rawFileSaveDir);
 			initialMonitorDrivers(monitorConns, series, rawFileSaveDir, monitorDrivers, monitorVarsClass, bd.getTargetDir());
 			List<DriverAndIndependentVars> daivs = expandExperimentSeries(series, SBHModelPackage.eINSTANCE.getIndependentVariablesOfFilebench(),
-					monitorVarsClass, bd, monitorDrivers);
+					monitorVarsClass, bd, monitorDrivers, occurrences);
 
 			return daivs;
 		} else
@@ -203,9 +220,12 @@ public final class ExperimentSeriesHelper
 	 * @param monitorVarsClass
 	 *            List of classes of concrete monitor drivers. This list will be
 	 *            filled by this method.
+	 * @param occurrences
+	 *            The number of experiments found so far for every fingerprint.
 	 */
 	private static List<DriverAndIndependentVars> expandExperimentSeries(ExperimentSeries expSeries, EClass benchVarsClass,
-			List<EClass> monitorVarsClass, BenchmarkDriver<?, ?> benchmarkDriver, List<MonitorDriver<?, ?>> monitorDriver)
+			List<EClass> monitorVarsClass, BenchmarkDriver<?, ?> benchmarkDriver, List<MonitorDriver<?, ?>> monitorDriver,
+			Map<String, Integer> occurrences)
 	{
 		LOGGER.debug("Expanding series %s", expSeries);
 
@@ -246,9 +266,15 @@ public final class ExperimentSeriesHelper
 		{
 			for (int j = 0; j < benchAmount; ++j)
 			{
-				String uuid = UUID.randomUUID().toString();
+				// Identical variables (e.g. the same value listed twice) would
+				// result in the same fingerprint, these are numbered
+				String fingerprint = ExperimentFingerprint.of(sutVariables.get(i), benchVariables.get(j), monitorVariables, 0);
+				Integer occurrence = occurrences.get(fingerprint);
+				occurrences.put(fingerprint, occurrence == null ? 1 : occurrence + 1);
+				String uuid = occurrence == null ? fingerprint : ExperimentFingerprint.of(sutVariables.get(i), benchVariables.get(j),
+						monitorVariables, occurrence);
 				result.add(new DriverAndIndependentVars(benchmarkDriver, monitorDriver, uuid, benchVariables.get(j), sutVariables.get(i),
-						monitorVariables));
+						monitorVariables, expSeries.isLockstep()));
 			}
 		}
 		return result;
@@ -390,6 +416,8 @@ public final class ExperimentSeriesHelper
 	 * <li>The IndependentVar for the Benchmark
 	 * <li>A runNo which can be used to track how often this particular
 	 * experiment has been executed.
+	 * <li>If the experiment must run in lockstep with the other SUTs, even
+	 * if they are executed independently otherwise.
 	 * </ul>
 	 * 
 	 * @author Dominik Bruhn 
@@ -404,11 +432,14 @@ public final class ExperimentSeriesHelper
 		private final List<IndependentVariablesOfMonitor> monitorVars;
 		private final IndependentVariablesOfSut sutVars;
 		private final String expUid;
+		private final boolean lockstep;
 
 		public DriverAndIndependentVars(BenchmarkDriver<?, ?> benchmarkDriver, List<MonitorDriver<?, ?>> monitorDriver, String expUid,
-				IndependentVariablesOfBenchmark benchVars, IndependentVariablesOfSut sutVars, List<IndependentVariablesOfMonitor> monitorVars)
+				IndependentVariablesOfBenchmark benchVars, IndependentVariablesOfSut sutVars, List<IndependentVariablesOfMonitor> monitorVars,
+				boolean lockstep)
 		{
 			this.expUid = expUid;
+			this.lockstep = lockstep;
 			this.benchmarkDriver = benchmarkDriver;
 			this.benchVars = benchVars;
 			this.sutVars = sutVars;
@@ -445,6 +476,11 @@ public final class ExperimentSeriesHelper
 		{
 			return expUid;
 		}
+
+		public boolean isLockstep()
+		{
+			return lockstep;
+		}
 	}
 
 	private static int usedAmount = 0;
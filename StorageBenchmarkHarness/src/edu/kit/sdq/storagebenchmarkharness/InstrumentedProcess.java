@@ -0,0 +1,218 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * A process which measures its streams and records its metrics in the
+ * {@link CommandMetrics} when it is finished. The time to the first byte is
+ * taken when the first data of stdout or stderr arrived in its pipe, even if
+ * the caller reads it later. The bytes are those written to stdin and read
+ * from stdout and stderr before it is finished.
+ */
+final class InstrumentedProcess implements RemoteProcess
+{
+	private final RemoteProcess process;
+	private final String kind;
+	private final CommandMetrics metrics;
+	private final ChannelPipe outPipe;
+	private final ChannelPipe errPipe;
+
+	private final long startNanos;
+	private final long openMicros;
+	private final AtomicLong endNanos = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicBoolean recorded = new AtomicBoolean();
+
+	// Created once, thus all reads of the caller are counted once
+	private InputStream in;
+	private InputStream err;
+	private OutputStream out;
+
+	InstrumentedProcess(RemoteProcess process, String kind, CommandMetrics metrics, long startNanos, ChannelPipe outPipe, ChannelPipe errPipe)
+	{
+		this.process = process;
+		this.kind = kind;
+		this.metrics = metrics;
+		this.outPipe = outPipe;
+		this.errPipe = errPipe;
+		this.startNanos = startNanos;
+		this.openMicros = (System.nanoTime() - startNanos) / 1000;
+
+		process.getCompletion().addListener(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				endNanos.compareAndSet(0, System.nanoTime());
+			}
+		}, MoreExecutors.sameThreadExecutor());
+	}
+
+	@Override
+	public int getExitStatus()
+	{
+		return process.getExitStatus();
+	}
+
+	@Override
+	public void waitFor()
+	{
+		process.waitFor();
+	}
+
+	@Override
+	public boolean waitFor(long timeout, TimeUnit unit)
+	{
+		return process.waitFor(timeout, unit);
+	}
+
+	@Override
+	public ListenableFuture<Integer> getCompletion()
+	{
+		return process.getCompletion();
+	}
+
+	@Override
+	public boolean isClosed()
+	{
+		return process.isClosed();
+	}
+
+	@Override
+	public boolean stopProcess()
+	{
+		return process.stopProcess();
+	}
+
+	@Override
+	public int getPid()
+	{
+		return process.getPid();
+	}
+
+	@Override
+	public synchronized InputStream getErrorStream() throws IOException
+	{
+		if (err == null)
+		{
+			err = new CountingInputStream(process.getErrorStream());
+		}
+		return err;
+	}
+
+	@Override
+	public synchronized OutputStream getOutputStream() throws IOException
+	{
+		if (out == null)
+		{
+			out = new FilterOutputStream(process.getOutputStream())
+			{
+				@Override
+				public void write(int b) throws IOException
+				{
+					super.out.write(b);
+					bytes.incrementAndGet();
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException
+				{
+					super.out.write(b, off, len);
+					bytes.addAndGet(len);
+				}
+			};
+		}
+		return out;
+	}
+
+	@Override
+	public synchronized InputStream getInputStream() throws IOException
+	{
+		if (in == null)
+		{
+			in = new CountingInputStream(process.getInputStream());
+		}
+		return in;
+	}
+
+	@Override
+	public void finish()
+	{
+		try
+		{
+			process.finish();
+		} finally
+		{
+			if (recorded.compareAndSet(false, true))
+			{
+				long end = endNanos.get() != 0 ? endNanos.get() : System.nanoTime();
+				long firstByte = getFirstByteNanos();
+				CommandMetrics.record(kind, metrics, openMicros, firstByte != 0 ? (firstByte - startNanos) / 1000 : -1,
+						(end - startNanos) / 1000, bytes.get());
+			}
+		}
+	}
+
+	// The earlier first write of stdout and stderr, 0 if none
+	private long getFirstByteNanos()
+	{
+		long out = outPipe.getFirstWriteNanos();
+		long err = errPipe.getFirstWriteNanos();
+		if (out == 0 || err == 0)
+		{
+			return Math.max(out, err);
+		}
+		return Math.min(out, err);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "InstrumentedProcess [kind=" + kind + ", process=" + process + "]";
+	}
+
+	private final class CountingInputStream extends FilterInputStream
+	{
+		CountingInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = super.read();
+			if (b >= 0)
+			{
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			int n = super.read(b, off, len);
+			if (n > 0)
+			{
+				count(n);
+			}
+			return n;
+		}
+
+		private void count(int n)
+		{
+			bytes.addAndGet(n);
+		}
+	}
+}
@@ -0,0 +1,452 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+
+/**
+ * Provides a connection to the local machine, for a system under test which
+ * is marked as local. The commands are executed as local processes, files are
+ * accessed directly. Thus there is no encryption overhead and neither a key
+ * nor a SSH server is needed.
+ *
+ * The commands are executed by a login shell, like the commands of a
+ * {@link SSHRemoteConnection}. The output of a process is buffered by pipes
+ * which grow instead of blocking the process, thus a process does not stall
+ * if its output is not read (e.g. the error output). If the PID is saved, it
+ * is the native PID of the command.
+ */
+public class LocalRemoteConnection implements RemoteConnection
+{
+	private static final Logger LOGGER = Logger.getLogger(LocalRemoteConnection.class);
+
+	// The pipes are not closed by a channel, the completion is detected by
+	// waiting for the process
+	private static final Runnable NOTHING = new Runnable()
+	{
+		@Override
+		public void run()
+		{
+		}
+	};
+
+	private final SystemUnderTest host;
+
+	/**
+	 * Creates a new connection to the local machine.
+	 *
+	 * @param host
+	 *            The system under test which is the local machine
+	 */
+	public LocalRemoteConnection(SystemUnderTest host)
+	{
+		this.host = host;
+
+		LOGGER.debug("Creating local connection for %s", host);
+	}
+
+	@Override
+	public void open()
+	{
+		// Nothing to connect
+	}
+
+	@Override
+	public void close()
+	{
+		// Nothing to disconnect
+	}
+
+	@Override
+	public void saveStringToFile(String content, String filename, boolean useSudo) throws RemoteConnectionException
+	{
+		try
+		{
+			if (!useSudo)
+			{
+				Files.write(content, new File(filename), Charset.defaultCharset());
+				return;
+			}
+
+			// Only a privileged process can write the file
+			RemoteProcess teeProcess = execCmd("sudo tee " + filename + " > /dev/null", false);
+			try
+			{
+				Writer out = new OutputStreamWriter(teeProcess.getOutputStream(), Charset.defaultCharset());
+				out.write(content);
+				out.close();
+				teeProcess.waitFor();
+
+				if (teeProcess.getExitStatus() != 0)
+				{
+					String errStr = CharStreams.toString(new InputStreamReader(teeProcess.getErrorStream()));
+					LOGGER.error("Could not write to file %s: %s", filename, errStr);
+					throw new RemoteConnectionException("Could not write to file " + filename);
+				}
+			} finally
+			{
+				teeProcess.finish();
+			}
+		} catch (IOException e)
+		{
+			LOGGER.error("saveStringToFile failed", e);
+			throw new RemoteConnectionException(e);
+		}
+	}
+
+	@Override
+	public void deleteFile(String filename)
+	{
+		if (!new File(filename).delete())
+		{
+			LOGGER.error("Could not delete file %s", filename);
+			throw new RemoteConnectionException("Could not delete file " + filename);
+		}
+	}
+
+	@Override
+	public void fetchFile(String remoteFile, File localFile, boolean compress) throws RemoteConnectionException
+	{
+		// There is no network, compressing would only cost time
+		LOGGER.debug("Copying %s to %s", remoteFile, localFile);
+		try
+		{
+			Files.copy(new File(remoteFile), localFile);
+		} catch (IOException e)
+		{
+			localFile.delete();
+			throw new RemoteConnectionException("Could not fetch file " + remoteFile, e);
+		}
+	}
+
+	@Override
+	public RemoteProcess execCmd(String cmd, boolean savePid) throws RemoteConnectionException
+	{
+		return execCmd(cmd, savePid, true);
+	}
+
+	@Override
+	public RemoteProcess execCmd(String cmd, boolean savePid, boolean log) throws RemoteConnectionException
+	{
+		// The shell is replaced by the command, thus $$ is the PID of the
+		// command (or of the shell running a compound command)
+		String shellCmd = savePid ? "echo PID $$; exec bash -c '" + cmd.replace("'", "'\\''") + "'" : cmd;
+		if (log)
+			LOGGER.debug("Command is %s", shellCmd);
+
+		final long startNanos = System.nanoTime();
+		final Process process;
+		try
+		{
+			process = new ProcessBuilder("bash", "-l", "-c", shellCmd).start();
+		} catch (IOException e)
+		{
+			LOGGER.error("execCmd failed", e);
+			throw new RemoteConnectionException(e);
+		}
+
+		final ChannelPipe outPipe = new ChannelPipe(NOTHING);
+		final ChannelPipe errPipe = new ChannelPipe(NOTHING);
+		final Thread outPump = pump(process.getInputStream(), outPipe, "out");
+		final Thread errPump = pump(process.getErrorStream(), errPipe, "err");
+
+		// The process is completed when it has terminated and its output
+		// was read completely, like a closed channel
+		final SettableFuture<Integer> completion = SettableFuture.create();
+		Thread waiter = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int status = waitForUninterruptibly(process);
+				Uninterruptibles.joinUninterruptibly(outPump);
+				Uninterruptibles.joinUninterruptibly(errPump);
+				completion.set(status);
+			}
+		}, "LocalProcess-wait");
+		waiter.setDaemon(true);
+		waiter.start();
+
+		final InputStream in = outPipe.getInputStream();
+		final int processPid = savePid ? readPid(in, process) : -1;
+		if (savePid)
+		{
+			// The PID is not output of the command
+			outPipe.resetFirstWrite();
+		}
+
+		RemoteProcess remoteProcess = new RemoteProcess()
+		{
+			@Override
+			public void waitFor()
+			{
+				try
+				{
+					Uninterruptibles.getUninterruptibly(completion);
+				} catch (ExecutionException e)
+				{
+					// Never set
+					throw new RemoteConnectionException(e);
+				}
+			}
+
+			@Override
+			public boolean waitFor(long timeout, TimeUnit unit)
+			{
+				try
+				{
+					Uninterruptibles.getUninterruptibly(completion, timeout, unit);
+					return true;
+				} catch (TimeoutException e)
+				{
+					return false;
+				} catch (ExecutionException e)
+				{
+					throw new RemoteConnectionException(e);
+				}
+			}
+
+			@Override
+			public ListenableFuture<Integer> getCompletion()
+			{
+				return completion;
+			}
+
+			@Override
+			public boolean isClosed()
+			{
+				return completion.isDone();
+			}
+
+			@Override
+			public OutputStream getOutputStream() throws IOException
+			{
+				return process.getOutputStream();
+			}
+
+			@Override
+			public InputStream getInputStream() throws IOException
+			{
+				return in;
+			}
+
+			@Override
+			public int getExitStatus()
+			{
+				if (!completion.isDone())
+				{
+					return -1;
+				}
+				try
+				{
+					return Uninterruptibles.getUninterruptibly(completion);
+				} catch (ExecutionException e)
+				{
+					throw new RemoteConnectionException(e);
+				}
+			}
+
+			@Override
+			public InputStream getErrorStream() throws IOException
+			{
+				return errPipe.getInputStream();
+			}
+
+			@Override
+			public void finish()
+			{
+				// Like closing a channel: the process gets no more input and
+				// is terminated if it is still running
+				try
+				{
+					process.getOutputStream().close();
+				} catch (IOException e)
+				{
+					LOGGER.debug("Closing stdin failed: %s", e.getMessage());
+				}
+				if (!completion.isDone())
+				{
+					process.destroy();
+				}
+			}
+
+			@Override
+			public boolean stopProcess()
+			{
+				if (processPid < 0)
+				{
+					LOGGER.debug("Cannot stop process, PID was not saved");
+					return false;
+				}
+				// The process may have been started by sudo
+				if (kill("kill " + processPid) != 0)
+				{
+					kill("sudo kill " + processPid);
+				}
+				return true;
+			}
+
+			@Override
+			public int getPid()
+			{
+				return processPid;
+			}
+		};
+		return CommandMetrics.instrument(remoteProcess, cmd, startNanos, outPipe, errPipe);
+	}
+
+	@Override
+	public RemoteBatchResult execBatch(RemoteBatch batch) throws RemoteConnectionException
+	{
+		LOGGER.debug("Executing %s", batch);
+		RemoteProcess process = execCmd("bash -s", false, false);
+		try
+		{
+			RemoteBatchResult result = batch.execute(process);
+			LOGGER.debug("Executed %s", result);
+			return result;
+		} catch (IOException e)
+		{
+			throw new RemoteConnectionException("Batch failed", e);
+		} finally
+		{
+			process.finish();
+		}
+	}
+
+	@Override
+	public SystemUnderTest getHost()
+	{
+		return host;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LocalRemoteConnection [host=" + host + "]";
+	}
+
+	private int kill(String cmd)
+	{
+		RemoteProcess kill = execCmd(cmd, false);
+		try
+		{
+			kill.waitFor();
+			return kill.getExitStatus();
+		} finally
+		{
+			kill.finish();
+		}
+	}
+
+	private static int waitForUninterruptibly(Process process)
+	{
+		boolean interrupted = false;
+		try
+		{
+			while (true)
+			{
+				try
+				{
+					return process.waitFor();
+				} catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		} finally
+		{
+			if (interrupted)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Reads the line with the PID written before the command is executed. The
+	 * line is read byte by byte, thus the following output stays in the pipe.
+	 */
+	private static int readPid(InputStream in, Process process)
+	{
+		try
+		{
+			StringBuilder line = new StringBuilder();
+			int c;
+			while ((c = in.read()) >= 0 && c != '\n')
+			{
+				line.append((char) c);
+			}
+			if (line.toString().startsWith("PID "))
+			{
+				return Integer.parseInt(line.substring(4).trim());
+			}
+		} catch (IOException e)
+		{
+			process.destroy();
+			throw new RemoteConnectionException(e);
+		}
+		process.destroy();
+		throw new RemoteConnectionException("Could not obtain PID");
+	}
+
+	/**
+	 * Copies the output of the process into a pipe in a background thread and
+	 * closes the pipe at the end of the output.
+	 */
+	private static Thread pump(final InputStream from, final ChannelPipe to, String name)
+	{
+		Thread pump = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				OutputStream out = to.getOutputStream();
+				try
+				{
+					ByteStreams.copy(from, out);
+				} catch (IOException e)
+				{
+					LOGGER.debug("Reading output of local process failed: %s", e.getMessage());
+				} finally
+				{
+					try
+					{
+						from.close();
+					} catch (IOException e)
+					{
+						// Nothing to do
+					}
+					try
+					{
+						out.close();
+					} catch (IOException e)
+					{
+						// Never thrown by the pipe
+					}
+				}
+			}
+		}, "LocalProcess-" + name);
+		pump.setDaemon(true);
+		pump.start();
+		return pump;
+	}
+}
@@ -1,5 +1,8 @@
 package edu.kit.sdq.storagebenchmarkharness;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfMonitor;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
@@ -24,7 +27,9 @@ import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
  * The {@code startMonitoring}, {@code prepareMonitoring} and
  * {@code stopMonitoring} methods needs to be implemented. The
  * {@code endMonitoring} method can be left unimplemented if not functionality
- * is needed.
+ * is needed. The {@code collectMonitoring} method can be implemented to split
+ * the stopping into the work on the SUT and the analysis of the collected
+ * results, which then runs while the next repetition is measured.
  * 
  * @author Axel Busch
  * 
@@ -104,6 +109,22 @@ public abstract class MonitorDriver<IV extends IndependentVariablesOfMonitor, DV
 	 */
 	public abstract DV stopMonitoring(IV monitorVars, int repeatNr, String benchmarkPrefix);
 
+	/**
+	 * Stops recording and collects the raw results of the repetition from the
+	 * SUT. The returned analysis computes the results from local copies of
+	 * the raw results. It does not use the SUT or the state of the driver,
+	 * thus it can run in another thread while the next repetition is
+	 * measured. The default collects and analyzes the results at once by
+	 * {@code stopMonitoring}.
+	 * 
+	 * @return The analysis of the results of the repetition, it may be
+	 *         called once
+	 */
+	public Supplier<DV> collectMonitoring(IV monitorVars, int repeatNr, String benchmarkPrefix)
+	{
+		return Suppliers.ofInstance(stopMonitoring(monitorVars, repeatNr, benchmarkPrefix));
+	}
+
 	/**
 	 * Called after the monitoring process has been completed. Can be used to
 	 * clean up resources and files.
@@ -118,4 +139,10 @@ public abstract class MonitorDriver<IV extends IndependentVariablesOfMonitor, DV
 	{
 		return stopMonitoring((IV) monitorVars, repeatNr, benchmarkPrefix);
 	}
+
+	@SuppressWarnings("unchecked")
+	public Supplier<DV> collectMonitoring(String expUID, IndependentVariablesOfMonitor monitorVars, int repeatNr, String benchmarkPrefix)
+	{
+		return collectMonitoring((IV) monitorVars, repeatNr, benchmarkPrefix);
+	}
 }
@@ -0,0 +1,196 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+
+/**
+ * Opens and closes many remote connections concurrently, thus the time to
+ * connect to all SUTs is that of the slowest one instead of the sum.
+ *
+ * At most {@code parallelism} connections are opened or closed at the same
+ * time. Every connection has a timeout which starts when it is opened. A
+ * connection which is not open in time is reported as failed, it is closed
+ * as soon as its opening returns. The failures of all connections are
+ * reported together.
+ */
+public final class ParallelConnector
+{
+	private static final Logger LOGGER = Logger.getLogger(ParallelConnector.class);
+
+	/** The default number of connections which are opened at the same time */
+	public static final int DEFAULT_PARALLELISM = 8;
+
+	/** The default timeout in ms for opening a connection */
+	public static final long DEFAULT_TIMEOUT = 120000;
+
+	private final int parallelism;
+	private final long timeout;
+
+	/**
+	 * @param parallelism
+	 *            The maximum number of connections opened or closed at the
+	 *            same time
+	 * @param timeout
+	 *            The timeout in ms per connection
+	 */
+	public ParallelConnector(int parallelism, long timeout)
+	{
+		if (parallelism < 1 || timeout < 1)
+		{
+			throw new IllegalArgumentException("parallelism and timeout must be positive");
+		}
+		this.parallelism = parallelism;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Opens the connections. The connections which could be opened stay open
+	 * even if others fail, they have to be closed by the caller.
+	 *
+	 * @throws RemoteConnectionException
+	 *             If any connection could not be opened in time, the message
+	 *             names all hosts which failed
+	 */
+	public void openAll(Collection<? extends RemoteConnection> connections) throws RemoteConnectionException
+	{
+		LOGGER.debug("Opening %d connections, %d at a time", connections.size(), parallelism);
+		Map<RemoteConnection, Throwable> failures = runAll(connections, true);
+		if (failures.isEmpty())
+		{
+			return;
+		}
+
+		List<String> hosts = Lists.newArrayList();
+		for (Map.Entry<RemoteConnection, Throwable> failure : failures.entrySet())
+		{
+			String host = getName(failure.getKey());
+			LOGGER.error("Could not connect to %s: %s", host, failure.getValue());
+			hosts.add(host);
+		}
+		throw new RemoteConnectionException("Could not connect to " + hosts.size() + " of " + connections.size() + " hosts: " + hosts,
+				failures.values().iterator().next());
+	}
+
+	/**
+	 * Closes the connections. Failures are logged, they do not stop closing
+	 * the other connections.
+	 */
+	public void closeAll(Collection<? extends RemoteConnection> connections)
+	{
+		LOGGER.debug("Closing %d connections, %d at a time", connections.size(), parallelism);
+		Map<RemoteConnection, Throwable> failures = runAll(connections, false);
+		for (Map.Entry<RemoteConnection, Throwable> failure : failures.entrySet())
+		{
+			LOGGER.warn("Could not close the connection to %s: %s", getName(failure.getKey()), failure.getValue());
+		}
+	}
+
+	/**
+	 * Opens or closes the connections and waits until every connection is
+	 * done or timed out.
+	 *
+	 * @return The failed connections and the cause of their failure
+	 */
+	private Map<RemoteConnection, Throwable> runAll(Collection<? extends RemoteConnection> connections, final boolean open)
+	{
+		Map<RemoteConnection, Throwable> failures = Maps.newLinkedHashMap();
+		if (connections.isEmpty())
+		{
+			return failures;
+		}
+
+		// The threads of hanging connections must not keep the harness alive
+		ThreadFactory workerFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat(open ? "Connect-%d" : "Disconnect-%d").build();
+		ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, connections.size()), workerFactory);
+		final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true)
+				.setNameFormat("Connect-timer").build());
+
+		Map<RemoteConnection, SettableFuture<Void>> results = Maps.newLinkedHashMap();
+		try
+		{
+			for (final RemoteConnection connection : connections)
+			{
+				final SettableFuture<Void> result = SettableFuture.create();
+				results.put(connection, result);
+				workers.execute(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						timer.schedule(new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								result.setException(new TimeoutException("Timed out after " + timeout + " ms"));
+							}
+						}, timeout, TimeUnit.MILLISECONDS);
+
+						try
+						{
+							if (open)
+							{
+								connection.open();
+							} else
+							{
+								connection.close();
+							}
+							if (!result.set(null) && open)
+							{
+								// Reported as failed, thus it must not stay open
+								connection.close();
+							}
+						} catch (Throwable t)
+						{
+							result.setException(t);
+						}
+					}
+				});
+			}
+
+			for (Map.Entry<RemoteConnection, SettableFuture<Void>> entry : results.entrySet())
+			{
+				try
+				{
+					Uninterruptibles.getUninterruptibly(entry.getValue());
+				} catch (ExecutionException e)
+				{
+					failures.put(entry.getKey(), e.getCause());
+				}
+			}
+		} finally
+		{
+			// Connections which are still hanging are left to their threads
+			workers.shutdown();
+			timer.shutdownNow();
+		}
+		return failures;
+	}
+
+	private static String getName(RemoteConnection connection)
+	{
+		return connection.getHost() == null ? connection.toString() : connection.getHost().getIdentifier();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ParallelConnector [parallelism=" + parallelism + ", timeout=" + timeout + "]";
+	}
+}
@@ -0,0 +1,143 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.CharStreams;
+
+/**
+ * A sequence of commands which is executed on the remote host by a single
+ * shell, see {@link RemoteConnection#execBatch(RemoteBatch)}. This saves the
+ * channel setup and the login shell of every command, thus it should be used
+ * for multi-step post-processing.
+ *
+ * The steps are executed in the order they were added. The batch stops at the
+ * first step which fails. The exit status and the duration of every executed
+ * step and the files in the listed directories are reported in a
+ * {@link RemoteBatchResult}.
+ *
+ * Only the manifest is written to stdout. The output of a step is discarded
+ * unless the step fails, then the end of its output is reported as the errors
+ * of the result. The steps can not read stdin.
+ */
+public final class RemoteBatch
+{
+	static final String STEP_PREFIX = "STEP ";
+	static final String FILE_PREFIX = "FILE ";
+
+	// The maximum number of bytes of the output of a failed step reported
+	private static final int MAX_ERROR_OUTPUT = 4096;
+
+	private final List<String> names = Lists.newArrayList();
+	private final List<String> commands = Lists.newArrayList();
+	private final List<String> listedDirs = Lists.newArrayList();
+
+	/**
+	 * Adds a step.
+	 *
+	 * @param name
+	 *            The name of the step in the result, e.g. for error messages
+	 * @param command
+	 *            The command, it is evaluated by bash
+	 * @return This batch
+	 */
+	public RemoteBatch add(String name, String command)
+	{
+		names.add(name);
+		commands.add(command);
+		return this;
+	}
+
+	/**
+	 * Lists the regular files of a directory after the steps in the result,
+	 * even if a step failed.
+	 *
+	 * @param dir
+	 *            The absolute path of the directory
+	 * @return This batch
+	 */
+	public RemoteBatch listFiles(String dir)
+	{
+		listedDirs.add(dir);
+		return this;
+	}
+
+	public List<String> getNames()
+	{
+		return ImmutableList.copyOf(names);
+	}
+
+	/**
+	 * @return The script for bash which executes the batch
+	 */
+	public String toScript()
+	{
+		StringBuilder sb = new StringBuilder();
+		// The output of a step is kept in a file, only the end of the output
+		// of a failed step is written to stderr. Thus stderr stays small
+		// enough to be read after the manifest.
+		sb.append("sbh_log=$(mktemp)\n");
+		sb.append("sbh_run() {\n");
+		sb.append("  local start=$(date +%s%N)\n");
+		// The script is read from stdin, the steps must not consume it. The
+		// subshell keeps an 'exit' of a step from ending the batch.
+		sb.append("  (eval \"$2\") </dev/null >\"$sbh_log\" 2>&1\n");
+		sb.append("  local rc=$?\n");
+		sb.append("  echo \"" + STEP_PREFIX + "$1 $rc $(( ($(date +%s%N) - start) / 1000000 ))\"\n");
+		sb.append("  [ $rc -eq 0 ] || tail -c " + MAX_ERROR_OUTPUT + " \"$sbh_log\" >&2\n");
+		sb.append("  return $rc\n");
+		sb.append("}\n");
+		sb.append("sbh_batch() {\n");
+		for (int i = 0; i < commands.size(); ++i)
+		{
+			sb.append("  sbh_run ").append(i).append(' ').append(quote(commands.get(i))).append(" || return\n");
+		}
+		sb.append("  :\n");
+		sb.append("}\n");
+		sb.append("sbh_batch\n");
+		for (String dir : listedDirs)
+		{
+			sb.append("find ").append(quote(dir)).append(" -maxdepth 1 -type f -printf '" + FILE_PREFIX + "%s %p\\n' 2>/dev/null\n");
+		}
+		sb.append("rm -f \"$sbh_log\"\n");
+		sb.append("exit 0\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Executes the batch by a started 'bash -s' and waits for it.
+	 * 
+	 * @param shell
+	 *            The shell, it is not finished
+	 */
+	RemoteBatchResult execute(RemoteProcess shell) throws IOException
+	{
+		Writer script = new OutputStreamWriter(shell.getOutputStream(), Charset.forName("UTF-8"));
+		script.write(toScript());
+		script.close();
+
+		String manifest = CharStreams.toString(new InputStreamReader(shell.getInputStream()));
+		String errors = CharStreams.toString(new InputStreamReader(shell.getErrorStream()));
+		shell.waitFor();
+		return RemoteBatchResult.parse(this, new BufferedReader(new StringReader(manifest)), errors);
+	}
+
+	private static String quote(String s)
+	{
+		return "'" + s.replace("'", "'\\''") + "'";
+	}
+
+	@Override
+	public String toString()
+	{
+		return "RemoteBatch [steps=" + names + ", listedDirs=" + listedDirs + "]";
+	}
+}
@@ -0,0 +1,175 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * The manifest of an executed {@link RemoteBatch}: the exit status and the
+ * duration of every executed step and the files of the listed directories.
+ */
+public final class RemoteBatchResult
+{
+	private final List<String> names;
+	private final Map<String, Integer> exitStatus = Maps.newHashMap();
+	private final Map<String, Long> durations = Maps.newHashMap();
+	private final Map<String, Long> fileSizes = Maps.newHashMap();
+	private final List<File> files = Lists.newArrayList();
+	private final String errors;
+
+	private RemoteBatchResult(List<String> names, String errors)
+	{
+		this.names = names;
+		this.errors = errors;
+	}
+
+	/**
+	 * Parses the manifest written by the script of a batch.
+	 *
+	 * @param batch
+	 *            The batch which was executed
+	 * @param manifest
+	 *            The output of the script
+	 * @param errors
+	 *            The error output of the script
+	 */
+	public static RemoteBatchResult parse(RemoteBatch batch, BufferedReader manifest, String errors) throws IOException
+	{
+		RemoteBatchResult result = new RemoteBatchResult(batch.getNames(), errors);
+		String line;
+		while ((line = manifest.readLine()) != null)
+		{
+			if (line.startsWith(RemoteBatch.STEP_PREFIX))
+			{
+				String[] split = line.substring(RemoteBatch.STEP_PREFIX.length()).split(" ");
+				String name = result.names.get(Integer.parseInt(split[0]));
+				result.exitStatus.put(name, Integer.valueOf(split[1]));
+				result.durations.put(name, Long.valueOf(split[2]));
+			} else if (line.startsWith(RemoteBatch.FILE_PREFIX))
+			{
+				String rest = line.substring(RemoteBatch.FILE_PREFIX.length());
+				int space = rest.indexOf(' ');
+				File file = new File(rest.substring(space + 1));
+				result.files.add(file);
+				result.fileSizes.put(file.getPath(), Long.valueOf(rest.substring(0, space)));
+			}
+		}
+
+		// Sorted like the output of 'ls'
+		Collections.sort(result.files, new Comparator<File>()
+		{
+			@Override
+			public int compare(File f1, File f2)
+			{
+				return f1.getPath().compareTo(f2.getPath());
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * @return True if all steps were executed successfully
+	 */
+	public boolean isSuccessful()
+	{
+		return getFailedStep() == null;
+	}
+
+	/**
+	 * @return The name of the first step which failed or was not executed,
+	 *         null if all steps were successful
+	 */
+	public String getFailedStep()
+	{
+		for (String name : names)
+		{
+			Integer status = exitStatus.get(name);
+			if (status == null || status.intValue() != 0)
+			{
+				return name;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The exit status of the step, -1 if it was not executed
+	 */
+	public int getExitStatus(String step)
+	{
+		Integer status = exitStatus.get(step);
+		return status == null ? -1 : status.intValue();
+	}
+
+	/**
+	 * @return The duration of the step in ms, -1 if it was not executed
+	 */
+	public long getDuration(String step)
+	{
+		Long duration = durations.get(step);
+		return duration == null ? -1 : duration.longValue();
+	}
+
+	/**
+	 * @return The files of the listed directories sorted by their path
+	 */
+	public List<File> getFiles()
+	{
+		return ImmutableList.copyOf(files);
+	}
+
+	/**
+	 * @return The size of a listed file in bytes, -1 if it is not listed
+	 */
+	public long getFileSize(File file)
+	{
+		Long size = fileSizes.get(file.getPath());
+		return size == null ? -1 : size.longValue();
+	}
+
+	/**
+	 * Returns the first listed file of a directory whose name contains a
+	 * string (like 'ls dir | grep part').
+	 *
+	 * @return The file, null if there is no such file
+	 */
+	public File findFile(File dir, String part)
+	{
+		for (File file : files)
+		{
+			if (dir.equals(file.getParentFile()) && file.getName().contains(part))
+			{
+				return file;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return The end of the output of the failed step, empty if all steps
+	 *         were successful
+	 */
+	public String getErrors()
+	{
+		return errors;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("RemoteBatchResult [");
+		for (String name : names)
+		{
+			sb.append(name).append('=').append(getExitStatus(name)).append('/').append(getDuration(name)).append("ms, ");
+		}
+		return sb.append("files=").append(files.size()).append(']').toString();
+	}
+}
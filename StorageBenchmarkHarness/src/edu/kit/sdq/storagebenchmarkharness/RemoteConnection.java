@@ -1,5 +1,7 @@
 package edu.kit.sdq.storagebenchmarkharness;
 
+import java.io.File;
+
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
 
 /**
@@ -46,6 +48,22 @@ public interface RemoteConnection
 	 */
 	public abstract void deleteFile(String filename);
 
+	/**
+	 * Copies a file from the remote host to a local file. Large files (e.g.
+	 * traces of monitors) should be fetched once and then be read locally
+	 * instead of reading them by executing 'cat'.
+	 * 
+	 * @param remoteFile
+	 *            The absolute path to the file on the remote host
+	 * @param localFile
+	 *            The local file, overwritten if it exists
+	 * @param compress
+	 *            Defines whether the file is compressed for the transfer. This
+	 *            pays off for large text files if the network is slower than
+	 *            compressing them on the remote host.
+	 */
+	public abstract void fetchFile(String remoteFile, File localFile, boolean compress);
+
 	/**
 	 * Executes a remote program.
 	 * 
@@ -78,6 +96,18 @@ public interface RemoteConnection
 	 */
 	public abstract RemoteProcess execCmd(String cmd, boolean savePid, boolean log);
 
+	/**
+	 * Executes the steps of a batch by a single shell on the remote host and
+	 * waits for them to complete.
+	 * 
+	 * @param batch
+	 *            The batch
+	 * @return The exit status and duration of the executed steps and the
+	 *         files of the listed directories. A failed step does not raise
+	 *         an exception, the caller has to check the result.
+	 */
+	public abstract RemoteBatchResult execBatch(RemoteBatch batch);
+
 	/**
 	 * @return Return the host to which one is connected to.
 	 */
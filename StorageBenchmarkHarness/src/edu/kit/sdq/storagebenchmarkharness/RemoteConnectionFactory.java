@@ -0,0 +1,31 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
+
+/**
+ * Creates the connections to the systems under test. A system under test
+ * which is marked as local is connected by a {@link LocalRemoteConnection},
+ * any other by a {@link SSHRemoteConnection}.
+ */
+public final class RemoteConnectionFactory
+{
+	private RemoteConnectionFactory()
+	{
+	}
+
+	/**
+	 * Creates a new connection to a system under test but does not open it.
+	 * 
+	 * @param sut
+	 *            The system under test
+	 * @return The connection
+	 */
+	public static RemoteConnection createConnection(SystemUnderTest sut)
+	{
+		if (sut.isLocal())
+		{
+			return new LocalRemoteConnection(sut);
+		}
+		return new SSHRemoteConnection(sut);
+	}
+}
@@ -3,6 +3,9 @@ package edu.kit.sdq.storagebenchmarkharness;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
  * Defines a remotely controllable process.
@@ -14,8 +17,29 @@ public interface RemoteProcess
 {
 	public abstract int getExitStatus();
 
+	/**
+	 * Waits until the process has terminated and its channel is closed.
+	 */
 	public abstract void waitFor();
 
+	/**
+	 * Waits until the process has terminated and its channel is closed, but
+	 * at most for the timeout.
+	 * 
+	 * @return True if the process has terminated, false on timeout
+	 */
+	public abstract boolean waitFor(long timeout, TimeUnit unit);
+
+	/**
+	 * Returns a future which is completed as soon as the process has
+	 * terminated and its channel is closed. The value is the exit status, -1
+	 * if the remote side did not send one (e.g. because the connection broke).
+	 * Listeners can be registered to be notified of the termination.
+	 * 
+	 * @return The completion of the process
+	 */
+	public abstract ListenableFuture<Integer> getCompletion();
+
 	public boolean isClosed();
 
 	public abstract boolean stopProcess();
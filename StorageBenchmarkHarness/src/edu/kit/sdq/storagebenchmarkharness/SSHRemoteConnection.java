@@ -1,6 +1,9 @@
 package edu.kit.sdq.storagebenchmarkharness;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -10,13 +13,22 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.GZIPInputStream;
 
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
 import com.google.common.io.OutputSupplier;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jcraft.jsch.Channel;
 import com.jcraft.jsch.ChannelExec;
-import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.ChannelSftp;
 import com.jcraft.jsch.JSchException;
-import com.jcraft.jsch.Session;
+import com.jcraft.jsch.SftpException;
 
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
@@ -30,6 +42,10 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
  * Before the execution of any commands, the RemoteConnection first has to be
  * connected using the {@code open} function.
  * 
+ * All connections to a host share the authenticated sessions of a
+ * {@code SSHSessionPool}, every command is executed in its own channel of one
+ * of these sessions. Thus opening further connections to a host is cheap.
+ * 
  * @author Dominik Bruhn 
  * @author Axel Busch 
  * @author Qais Noorshams
@@ -41,14 +57,10 @@ public class SSHRemoteConnection implements RemoteConnection
 	// How often should it retried to open a execChannel.
 	private final static int OPEN_NUMBER_OF_RETRIES = 4;
 
-	// The timeout for opening a session in ms.
-	private final static int SESSION_CONNECT_TIMEOUT = 100000;
-
 	private static final Logger LOGGER = Logger.getLogger(SSHRemoteConnection.class);
 	private final SystemUnderTest host;
 
-	private JSch jsch;
-	private Session session;
+	private SSHSessionPool pool;
 	private int pid = -1;
 	
 	/** 
@@ -72,6 +84,7 @@ public class SSHRemoteConnection implements RemoteConnection
 			SSHRemoteConnection conn = iterator.next();
 			conn.close();
 		}
+		SSHSessionPool.closeAll();
 	}
 	
 	/**
@@ -90,87 +103,80 @@ public class SSHRemoteConnection implements RemoteConnection
 	@Override
 	public void open() throws RemoteConnectionException
 	{
-		try
+		if (pool != null)
 		{
-			jsch = new JSch();
-			LOGGER.debug("Adding publickey %s", host.getKeyFile());
-			jsch.addIdentity(host.getKeyFile());
+			return;
+		}
 
-			openSession();
-			
-			connectionRegistry.add(this);
+		pool = SSHSessionPool.acquire(host);
+		try
+		{
+			// Establish a session now, thus a unreachable host is noticed
+			// when the connection is opened
+			pool.connect();
 		} catch (JSchException e)
 		{
+			pool.release();
+			pool = null;
 			throw new RemoteConnectionException(e);
 		}
-	}
-
-	/**
-	 * This method actually opens the SSH session. It is executed from the
-	 * {@code open} method. Additionally it is tried to reestablish a new
-	 * connection every time the connection fails (due to network outages).
-	 * 
-	 * @throws JSchException
-	 */
-	private void openSession() throws JSchException
-	{
-		if (session != null)
-		{
-			try
-			{
-				session.disconnect();
-			} catch (Exception e)
-			{
-				LOGGER.error("Closing previous connection which failed", e);
-			}
-		}
 
-		LOGGER.debug("Connecting to %s:%d", host.getIp(), host.getPort());
-		session = jsch.getSession(host.getUser(), host.getIp(), host.getPort());
-		session.setConfig("StrictHostKeyChecking", "no");
-		session.setTimeout(SESSION_CONNECT_TIMEOUT);
-
-		session.connect();
+		connectionRegistry.add(this);
 	}
 
 	@Override
 	public void close()
 	{
-		if (session != null)
+		if (pool != null)
 		{
-			session.disconnect();
+			pool.release();
+			pool = null;
 			
 			connectionRegistry.remove(this);
 		}
 	}
 
 	/**
-	 * Opens a new Exec-Channel in the ssh-session. If the session is broken, a
-	 * new session is established. This can happen due to network failures or
-	 * due to bugs in the jsch library.
-	 * 
 	 * @return A SSH-Channel which can be used to execute commands remotely.
 	 * @throws JSchException
 	 */
 	private ChannelExec openExecChannel() throws JSchException
 	{
+		return (ChannelExec) openChannel("exec");
+	}
+
+	/**
+	 * Opens a new channel in a session of the pool. If the session is broken,
+	 * another session is used or a new one is established. This can happen
+	 * due to network failures or due to bugs in the jsch library.
+	 * 
+	 * @param type
+	 *            The type of the channel, 'exec' or 'sftp'
+	 * @throws JSchException
+	 */
+	private Channel openChannel(String type) throws JSchException
+	{
+		if (pool == null)
+		{
+			throw new RemoteConnectionException("Connection to " + host.getIp() + " is not open");
+		}
+
 		int retries = OPEN_NUMBER_OF_RETRIES;
 
 		while (retries > 0)
 		{
 			try
 			{
-				ChannelExec r = (ChannelExec) session.openChannel("exec");
-				return r;
+				return pool.openChannel(type);
 			} catch (JSchException ex)
 			{
 				String message = ex.getMessage();
 				if ("channel is not opened.".equals(message) || "session is down".equals(message))
 				{
-					LOGGER.info("JSch exception opening channel. Waiting, reconnecting and retrying", ex);
+					LOGGER.info("JSch exception opening channel. Waiting and retrying", ex);
 					// Looks like in this case an attempt to
-					// just re-open a channel will fail - so wait and create a
-					// new session
+					// just re-open a channel will fail - so wait, the pool
+					// has discarded the session and uses a new one
 
 					try
 					{
@@ -179,8 +185,6 @@ public class SSHRemoteConnection implements RemoteConnection
 					{
 						throw new RemoteConnectionException(e);
 					}
-
-					openSession();
 				} else
 				{
 					throw ex;
@@ -277,6 +281,97 @@ public class SSHRemoteConnection implements RemoteConnection
 		}
 	}
 
+	@Override
+	public void fetchFile(String remoteFile, File localFile, boolean compress) throws RemoteConnectionException
+	{
+		LOGGER.debug("Fetching %s to %s%s", remoteFile, localFile, compress ? " (compressed)" : "");
+		boolean fetched = false;
+		try
+		{
+			if (compress)
+			{
+				fetchCompressed(remoteFile, localFile);
+			} else
+			{
+				fetchSftp(remoteFile, localFile);
+			}
+			fetched = true;
+		} catch (IOException e)
+		{
+			throw new RemoteConnectionException("Could not fetch file " + remoteFile, e);
+		} finally
+		{
+			if (!fetched)
+			{
+				localFile.delete();
+			}
+		}
+	}
+
+	private void fetchSftp(String remoteFile, File localFile) throws IOException
+	{
+		ChannelSftp channel;
+		try
+		{
+			channel = (ChannelSftp) openChannel("sftp");
+		} catch (JSchException e)
+		{
+			throw new RemoteConnectionException(e);
+		}
+		try
+		{
+			channel.connect();
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(localFile));
+			try
+			{
+				channel.get(remoteFile, out);
+			} finally
+			{
+				out.close();
+			}
+		} catch (JSchException e)
+		{
+			throw new RemoteConnectionException(e);
+		} catch (SftpException e)
+		{
+			throw new IOException(e.toString());
+		} finally
+		{
+			pool.releaseChannel(channel);
+		}
+	}
+
+	/**
+	 * Fetches the file through gzip on the remote host. SFTP does not
+	 * compress and enabling the compression of SSH would affect all channels
+	 * of the pooled sessions.
+	 */
+	private void fetchCompressed(String remoteFile, File localFile) throws IOException
+	{
+		RemoteProcess gzip = execCmd("gzip -1 -c " + remoteFile, false);
+		try
+		{
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(localFile));
+			try
+			{
+				ByteStreams.copy(new GZIPInputStream(gzip.getInputStream()), out);
+			} finally
+			{
+				out.close();
+			}
+			gzip.waitFor();
+			if (gzip.getExitStatus() != 0)
+			{
+				String errStr = CharStreams.toString(new InputStreamReader(gzip.getErrorStream()));
+				LOGGER.error("Could not fetch file %s: %s", remoteFile, errStr);
+				throw new IOException("gzip exited with " + gzip.getExitStatus());
+			}
+		} finally
+		{
+			gzip.finish();
+		}
+	}
+
 	@Override
 	public RemoteProcess execCmd(String cmd, boolean savePid) throws RemoteConnectionException
 	{
@@ -293,112 +388,177 @@ public class SSHRemoteConnection implements RemoteConnection
 	
 	public RemoteProcess execCmd(String cmd, boolean savePid, boolean log) throws RemoteConnectionException
 	{
+		final String command = cmd;
+		final long startNanos = System.nanoTime();
 		try
 		{
 			final ChannelExec channel = openExecChannel();
-
-			// Do not execute directly but instead use bash. This evaluates the
-			// users .profile file before executing and thus expands the PATH
-			// variable.
-			if (savePid)
-				cmd += " &  sudo echo PID $!";
-			cmd = "bash -l -c '" + cmd.replace("'", "'\\''") + "'";
-
-			if (log)
-				LOGGER.debug("Command is %s", cmd);
-
-			channel.setCommand(cmd);
-			final InputStream in = channel.getInputStream();
-			final OutputStream out = channel.getOutputStream();
-			final InputStream err = channel.getErrStream();
-			channel.connect();
-			if (savePid)
+			final SSHSessionPool channelPool = pool;
+			boolean started = false;
+			try
 			{
-				BufferedReader br = new BufferedReader(new InputStreamReader(in));
-				String s;
-				while ((s = br.readLine()) != null && !s.contains("PID")){
-					// Empty body to skip lines
-				}
-				if (s != null) {
-					this.pid = Integer.parseInt(s.split(" ")[1]);
-				} else{
-					throw new RemoteConnectionException("Could not obtain PID. Did you forget to setup sudoers file?");
+				// Do not execute directly but instead use bash. This evaluates the
+				// users .profile file before executing and thus expands the PATH
+				// variable.
+				if (savePid)
+					cmd += " &  sudo echo PID $!";
+				cmd = "bash -l -c '" + cmd.replace("'", "'\\''") + "'";
+
+				if (log)
+					LOGGER.debug("Command is %s", cmd);
+
+				channel.setCommand(cmd);
+				// Stdout and stderr are buffered without limit, the session
+				// thread must never block on a channel whose output is not
+				// read yet, this would stall all channels of the session.
+				ChannelPipe outPipe = new ChannelPipe();
+				channel.setOutputStream(outPipe.getOutputStream(), false);
+				final InputStream in = outPipe.getInputStream();
+				final OutputStream out = channel.getOutputStream();
+
+				// JSch closes the stream of stderr when the channel is closed,
+				// after the exit status was received. This completes the
+				// process without polling the channel.
+				final SettableFuture<Integer> completion = SettableFuture.create();
+				ChannelPipe errPipe = new ChannelPipe(new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						completion.set(channel.getExitStatus());
+					}
+				});
+				channel.setExtOutputStream(errPipe.getOutputStream(), false);
+				final InputStream err = errPipe.getInputStream();
+				channel.connect();
+				if (savePid)
+				{
+					BufferedReader br = new BufferedReader(new InputStreamReader(in));
+					String s;
+					while ((s = br.readLine()) != null && !s.contains("PID")){
+						// Empty body to skip lines
+					}
+					if (s != null) {
+						this.pid = Integer.parseInt(s.split(" ")[1]);
+					} else{
+						throw new RemoteConnectionException("Could not obtain PID. Did you forget to setup sudoers file?");
+					}
+					// The PID is not output of the command
+					outPipe.resetFirstWrite();
 				}
-			}
-			return new RemoteProcess()
-			{
-				@Override
-				public void waitFor()
+				final int processPid = savePid ? this.pid : -1;
+				RemoteProcess process = new RemoteProcess()
 				{
-					while (!channel.isClosed())
+					@Override
+					public void waitFor()
 					{
 						try
 						{
-							Thread.sleep(200);
-						} catch (InterruptedException e)
+							Uninterruptibles.getUninterruptibly(completion);
+						} catch (ExecutionException e)
 						{
-							LOGGER.error("Channel closed", e);
+							// Never set
+							throw new RemoteConnectionException(e);
 						}
 					}
-				}
 
-				public boolean isClosed()
-				{
-					return channel.isClosed();
-				}
+					@Override
+					public boolean waitFor(long timeout, TimeUnit unit)
+					{
+						try
+						{
+							Uninterruptibles.getUninterruptibly(completion, timeout, unit);
+							return true;
+						} catch (TimeoutException e)
+						{
+							return false;
+						} catch (ExecutionException e)
+						{
+							throw new RemoteConnectionException(e);
+						}
+					}
 
-				@Override
-				public OutputStream getOutputStream() throws IOException
-				{
-					return out;
-				}
+					@Override
+					public ListenableFuture<Integer> getCompletion()
+					{
+						return completion;
+					}
 
-				@Override
-				public InputStream getInputStream() throws IOException
-				{
-					return in;
-				}
+					public boolean isClosed()
+					{
+						return completion.isDone();
+					}
 
-				@Override
-				public int getExitStatus()
-				{
-					return channel.getExitStatus();
-				}
+					@Override
+					public OutputStream getOutputStream() throws IOException
+					{
+						return out;
+					}
 
-				@Override
-				public InputStream getErrorStream() throws IOException
-				{
-					return err;
-				}
+					@Override
+					public InputStream getInputStream() throws IOException
+					{
+						return in;
+					}
 
-				@Override
-				public void finish()
-				{
-					channel.disconnect();
-				}
+					@Override
+					public int getExitStatus()
+					{
+						return channel.getExitStatus();
+					}
 
-				@Override
-				public boolean stopProcess()
-				{
-					if (pid < 0) { 
-						LOGGER.debug("Cannot stop process, PID was not saved");
-						return false;
-					} else { 
-						RemoteConnection localConn = new SSHRemoteConnection(host);
-						localConn.open();
-						String cmd = "sudo kill " + pid; 
-						localConn.execCmd(cmd, false);
-						localConn.close();
-						return true;
+					@Override
+					public InputStream getErrorStream() throws IOException
+					{
+						return err;
 					}
-				}
 
-				@Override
-				public int getPid()
+					@Override
+					public void finish()
+					{
+						// Returns the channel to the pool
+						channelPool.releaseChannel(channel);
+					}
+
+					@Override
+					public boolean stopProcess()
+					{
+						if (processPid < 0) { 
+							LOGGER.debug("Cannot stop process, PID was not saved");
+							return false;
+						} else { 
+							// The kill runs in another channel of the pooled
+							// sessions, no new session is needed
+							RemoteConnection localConn = new SSHRemoteConnection(host);
+							localConn.open();
+							try
+							{
+								RemoteProcess kill = localConn.execCmd("sudo kill " + processPid, false);
+								kill.waitFor();
+								kill.finish();
+							} finally
+							{
+								localConn.close();
+							}
+							return true;
+						}
+					}
+
+					@Override
+					public int getPid()
+					{
+						return processPid;
+					}
+				};
+				started = true;
+				return CommandMetrics.instrument(process, command, startNanos, outPipe, errPipe);
+			} finally
+			{
+				if (!started)
 				{
-					return pid;
+					channelPool.releaseChannel(channel);
 				}
-			};
+			}
 
 		} catch (JSchException e)
 		{
@@ -417,6 +577,27 @@ public class SSHRemoteConnection implements RemoteConnection
 		return "RemoteConnection [host=" + host + "]";
 	}
 
+	@Override
+	public RemoteBatchResult execBatch(RemoteBatch batch) throws RemoteConnectionException
+	{
+		LOGGER.debug("Executing %s", batch);
+		// The script is passed on stdin, thus it is shipped with the command
+		// and its length is not limited by the command line
+		RemoteProcess process = execCmd("bash -s", false, false);
+		try
+		{
+			RemoteBatchResult result = batch.execute(process);
+			LOGGER.debug("Executed %s", result);
+			return result;
+		} catch (IOException e)
+		{
+			throw new RemoteConnectionException("Batch failed", e);
+		} finally
+		{
+			process.finish();
+		}
+	}
+
 	@Override
 	public SystemUnderTest getHost()
 	{
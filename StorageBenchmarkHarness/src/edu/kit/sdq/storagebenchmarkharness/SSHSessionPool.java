@@ -0,0 +1,380 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jcraft.jsch.Channel;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+
+/**
+ * A pool of authenticated SSH sessions to one host. The channels of all
+ * {@code SSHRemoteConnection}s to the host are multiplexed over the sessions
+ * of the pool, thus the handshake and the key exchange are only done when a
+ * new session is needed and not for every connection.
+ *
+ * A session carries at most {@link #MAX_CHANNELS_PER_SESSION} open channels
+ * (sshd limits the channels per session, 'MaxSessions' defaults to 10), if
+ * all sessions are busy a new one is connected. Broken sessions are detected
+ * by keepalive messages and replaced transparently.
+ *
+ * The pool of a host is shared by reference counting: it is obtained by
+ * {@link #acquire(SystemUnderTest)} and all sessions are disconnected when
+ * the last user calls {@link #release()}.
+ */
+public final class SSHSessionPool
+{
+	private static final Logger LOGGER = Logger.getLogger(SSHSessionPool.class);
+
+	/** The maximum number of open channels per session */
+	public static final int MAX_CHANNELS_PER_SESSION = 8;
+
+	// The timeout for opening a session in ms.
+	private static final int SESSION_CONNECT_TIMEOUT = 100000;
+
+	// Interval of the keepalive messages of an established session in ms.
+	private static final int SERVER_ALIVE_INTERVAL = 15000;
+
+	// Number of unanswered keepalive messages after which a session is
+	// considered broken.
+	private static final int SERVER_ALIVE_COUNT_MAX = 4;
+
+	// A session which was not used for this time in ms is checked before it is
+	// used again.
+	private static final long HEALTH_CHECK_AFTER_IDLE = 5000;
+
+	// Sessions without open channels which are kept connected.
+	private static final int MAX_IDLE_SESSIONS = 2;
+
+	// The pools by host, guarded by the class
+	private static final Map<String, SSHSessionPool> POOLS = Maps.newHashMap();
+
+	/**
+	 * An authenticated session and its open channels.
+	 */
+	private static final class PooledSession
+	{
+		private final Session session;
+		private final List<Channel> channels = Lists.newArrayList();
+		private long lastUsed = System.currentTimeMillis();
+
+		private PooledSession(Session session)
+		{
+			this.session = session;
+		}
+
+		/**
+		 * @return The number of channels which are not closed by the remote
+		 *         side or disconnected
+		 */
+		private int countOpenChannels()
+		{
+			for (Iterator<Channel> it = channels.iterator(); it.hasNext();)
+			{
+				if (it.next().isClosed())
+				{
+					it.remove();
+				}
+			}
+			return channels.size();
+		}
+	}
+
+	private final SystemUnderTest host;
+	private final String key;
+	private final JSch jsch;
+
+	// Guarded by this
+	private final List<PooledSession> sessions = Lists.newArrayList();
+	private int references = 0;
+
+	private SSHSessionPool(SystemUnderTest host, String key) throws JSchException
+	{
+		this.host = host;
+		this.key = key;
+
+		jsch = new JSch();
+		LOGGER.debug("Adding publickey %s", host.getKeyFile());
+		jsch.addIdentity(host.getKeyFile());
+	}
+
+	/**
+	 * Returns the pool of the host and increments its reference count. Does
+	 * not connect a session yet.
+	 *
+	 * @param host
+	 *            The host
+	 * @return The pool of the host
+	 * @throws RemoteConnectionException
+	 *             If the key file can not be read
+	 */
+	public static SSHSessionPool acquire(SystemUnderTest host) throws RemoteConnectionException
+	{
+		String key = host.getUser() + "@" + host.getIp() + ":" + host.getPort() + "/" + host.getKeyFile();
+		synchronized (SSHSessionPool.class)
+		{
+			SSHSessionPool pool = POOLS.get(key);
+			if (pool == null)
+			{
+				try
+				{
+					pool = new SSHSessionPool(host, key);
+				} catch (JSchException e)
+				{
+					throw new RemoteConnectionException(e);
+				}
+				POOLS.put(key, pool);
+			}
+			synchronized (pool)
+			{
+				++pool.references;
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Decrements the reference count of the pool. The sessions are
+	 * disconnected if the pool is no longer referenced.
+	 */
+	public void release()
+	{
+		synchronized (SSHSessionPool.class)
+		{
+			synchronized (this)
+			{
+				if (references == 0)
+				{
+					return;
+				}
+				if (--references > 0)
+				{
+					return;
+				}
+			}
+			POOLS.remove(key);
+		}
+
+		// The pool can no longer be acquired. Disconnecting outside of the
+		// class lock lets the pools of other hosts be released meanwhile.
+		synchronized (this)
+		{
+			disconnectAll();
+		}
+	}
+
+	/**
+	 * Disconnects the sessions of all pools regardless of their references.
+	 * Only to be used for cleaning up in case of an exception.
+	 */
+	public static void closeAll()
+	{
+		synchronized (SSHSessionPool.class)
+		{
+			for (SSHSessionPool pool : POOLS.values())
+			{
+				synchronized (pool)
+				{
+					pool.references = 0;
+					pool.disconnectAll();
+				}
+			}
+			POOLS.clear();
+		}
+	}
+
+	/**
+	 * Connects a session if the pool has no healthy session.
+	 *
+	 * @throws JSchException
+	 *             If the session could not be connected
+	 */
+	public synchronized void connect() throws JSchException
+	{
+		selectSession();
+	}
+
+	/**
+	 * Opens a new exec channel on a session with free capacity, see
+	 * {@link #openChannel(String)}.
+	 */
+	public synchronized ChannelExec openExecChannel() throws JSchException
+	{
+		return (ChannelExec) openChannel("exec");
+	}
+
+	/**
+	 * Opens a new channel on a session with free capacity. Connects a new
+	 * session if all sessions are busy or broken. The channel is released by
+	 * {@link #releaseChannel(Channel)}.
+	 *
+	 * @param type
+	 *            The type of the channel, e.g. 'exec' or 'sftp'
+	 * @return A channel which is not yet connected
+	 * @throws JSchException
+	 *             If no session could be connected or the session broke. In
+	 *             the second case the session is removed from the pool, the
+	 *             next call uses another session.
+	 */
+	public synchronized Channel openChannel(String type) throws JSchException
+	{
+		PooledSession pooled = selectSession();
+		Channel channel;
+		try
+		{
+			channel = pooled.session.openChannel(type);
+		} catch (JSchException e)
+		{
+			LOGGER.info("Opening a channel to %s failed (%s), discarding the session", host.getIp(), e.getMessage());
+			disconnect(pooled);
+			sessions.remove(pooled);
+			throw e;
+		}
+		pooled.channels.add(channel);
+		pooled.lastUsed = System.currentTimeMillis();
+		return channel;
+	}
+
+	/**
+	 * Disconnects a channel opened by {@link #openChannel(String)}. Surplus idle
+	 * sessions are disconnected.
+	 *
+	 * @param channel
+	 *            The channel
+	 */
+	public synchronized void releaseChannel(Channel channel)
+	{
+		channel.disconnect();
+
+		int idle = 0;
+		for (Iterator<PooledSession> it = sessions.iterator(); it.hasNext();)
+		{
+			PooledSession pooled = it.next();
+			if (pooled.channels.remove(channel))
+			{
+				pooled.lastUsed = System.currentTimeMillis();
+			}
+			if (pooled.countOpenChannels() == 0 && ++idle > MAX_IDLE_SESSIONS)
+			{
+				LOGGER.debug("Disconnecting idle session to %s, %d sessions left", host.getIp(), sessions.size() - 1);
+				pooled.session.disconnect();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return The number of connected sessions
+	 */
+	public synchronized int getSessionCount()
+	{
+		return sessions.size();
+	}
+
+	/**
+	 * Returns the healthy session with the fewest open channels, connects a
+	 * new session if there is no session with free capacity.
+	 */
+	private PooledSession selectSession() throws JSchException
+	{
+		PooledSession best = null;
+		int bestChannels = MAX_CHANNELS_PER_SESSION;
+		for (Iterator<PooledSession> it = sessions.iterator(); it.hasNext();)
+		{
+			PooledSession pooled = it.next();
+			if (!isHealthy(pooled))
+			{
+				LOGGER.info("Session to %s is broken, discarding it", host.getIp());
+				disconnect(pooled);
+				it.remove();
+				continue;
+			}
+			int open = pooled.countOpenChannels();
+			if (open < bestChannels)
+			{
+				best = pooled;
+				bestChannels = open;
+			}
+		}
+		return best != null ? best : connectSession();
+	}
+
+	/**
+	 * Checks a session. A session which was idle for a while is probed by a
+	 * keepalive message, since a broken connection is not noticed before
+	 * something is sent.
+	 */
+	private boolean isHealthy(PooledSession pooled)
+	{
+		if (!pooled.session.isConnected())
+		{
+			return false;
+		}
+		if (System.currentTimeMillis() - pooled.lastUsed > HEALTH_CHECK_AFTER_IDLE)
+		{
+			try
+			{
+				pooled.session.sendKeepAliveMsg();
+			} catch (Exception e)
+			{
+				return false;
+			}
+			pooled.lastUsed = System.currentTimeMillis();
+		}
+		return true;
+	}
+
+	/**
+	 * Connects and authenticates a new session and adds it to the pool.
+	 */
+	private PooledSession connectSession() throws JSchException
+	{
+		LOGGER.debug("Connecting to %s:%d (session %d)", host.getIp(), host.getPort(), sessions.size() + 1);
+		Session session = jsch.getSession(host.getUser(), host.getIp(), host.getPort());
+		session.setConfig("StrictHostKeyChecking", "no");
+		session.setTimeout(SESSION_CONNECT_TIMEOUT);
+		session.connect();
+
+		// Detect broken connections while the session is idle
+		session.setServerAliveInterval(SERVER_ALIVE_INTERVAL);
+		session.setServerAliveCountMax(SERVER_ALIVE_COUNT_MAX);
+
+		PooledSession pooled = new PooledSession(session);
+		sessions.add(pooled);
+		return pooled;
+	}
+
+	private void disconnect(PooledSession pooled)
+	{
+		try
+		{
+			pooled.session.disconnect();
+		} catch (Exception e)
+		{
+			LOGGER.error("Closing previous connection which failed", e);
+		}
+	}
+
+	private void disconnectAll()
+	{
+		for (PooledSession pooled : sessions)
+		{
+			disconnect(pooled);
+		}
+		sessions.clear();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SSHSessionPool [host=" + host + ", sessions=" + sessions.size() + "]";
+	}
+}
@@ -0,0 +1,179 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SteadyStateDetection;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentSample;
+import edu.kit.sdq.storagebenchmarkharness.monitors.IostatMonitorDriver;
+import edu.kit.sdq.storagebenchmarkharness.util.SteadyStateDetector;
+
+/**
+ * Watches the throughput of the device under test while a repeat of a
+ * benchmark runs and detects when it has reached a steady state (see
+ * {@code SteadyStateDetector}). The throughput is computed from the live
+ * samples of the iostat monitor of the experiment, thus the detection needs
+ * this monitor.
+ *
+ * If configured, the benchmark is ended early once the throughput is steady
+ * for the window. Benchmarks which only report their results at the end of a
+ * complete run (e.g. FFSB) can not be ended early, for them only the
+ * convergence time is detected.
+ *
+ * The convergence time, the seconds from the start of the repeat until the
+ * steady state began, is returned as a composite value with the metric
+ * {@code CONVERGENCE_TIME}.
+ */
+final class SteadyStateWatch implements Runnable
+{
+	private static final Logger LOGGER = Logger.getLogger(SteadyStateWatch.class);
+	private static final String SOURCE = "steadyState";
+	private static final long POLL_MILLIS = 1000;
+
+	private final SteadyStateDetection config;
+	private final IostatMonitorDriver iostat;
+	private final BenchmarkDriver<?, ?> benchmark;
+	private final String description;
+	private final SteadyStateDetector detector;
+
+	// Guarded by this
+	private long startMicros;
+	private int consumed;
+	private boolean stopRequested;
+	private ScheduledFuture<?> poll;
+
+	private SteadyStateWatch(SteadyStateDetection config, IostatMonitorDriver iostat, BenchmarkDriver<?, ?> benchmark, String description)
+	{
+		this.config = config;
+		this.iostat = iostat;
+		this.benchmark = benchmark;
+		this.description = description;
+		detector = new SteadyStateDetector(config.getBatchSize(), config.getWindow() * 1000000L);
+	}
+
+	/**
+	 * Creates the watch of a repeat.
+	 *
+	 * @param config
+	 *            The configuration of the detection, null if disabled
+	 * @param monitors
+	 *            The monitors of the experiment, may be null
+	 * @param description
+	 *            Describes the repeat in the log
+	 * @return The watch, null if the detection is disabled or the experiment
+	 *         has no iostat monitor
+	 */
+	static SteadyStateWatch create(SteadyStateDetection config, List<? extends MonitorDriver<?, ?>> monitors, BenchmarkDriver<?, ?> benchmark,
+			String description)
+	{
+		if (config == null)
+		{
+			return null;
+		}
+		if (monitors != null)
+		{
+			for (MonitorDriver<?, ?> monitor : monitors)
+			{
+				if (monitor instanceof IostatMonitorDriver)
+				{
+					return new SteadyStateWatch(config, (IostatMonitorDriver) monitor, benchmark, description);
+				}
+			}
+		}
+		LOGGER.warn("No steady state detection for %s, it needs an iostat monitor", description);
+		return null;
+	}
+
+	/**
+	 * Starts watching, call right before the benchmark is started.
+	 */
+	synchronized void start(ScheduledExecutorService timer)
+	{
+		startMicros = ClockSync.nowMicros();
+		poll = timer.scheduleWithFixedDelay(this, POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public synchronized void run()
+	{
+		// An exception would cancel the polling silently
+		try
+		{
+			consumeSamples();
+			if (config.isStopEarly() && !stopRequested && detector.isSteady())
+			{
+				stopRequested = true;
+				if (benchmark.stopEarly())
+				{
+					LOGGER.info("Throughput of %s is steady, ending the benchmark early", description);
+				} else
+				{
+					LOGGER.info("Throughput of %s is steady, but %s can not be ended early", description, benchmark.getClass().getSimpleName());
+				}
+			}
+		} catch (RuntimeException e)
+		{
+			LOGGER.error(String.format("Steady state detection for %s failed", description), e);
+		}
+	}
+
+	/**
+	 * Stops watching, call after the benchmark has ended.
+	 *
+	 * @return The convergence time, null if the throughput did not reach a
+	 *         steady state
+	 */
+	synchronized DependentVariablesValueComposite finish()
+	{
+		if (poll != null)
+		{
+			poll.cancel(false);
+		}
+		consumeSamples();
+
+		long convergenceMicros = detector.getConvergenceMicros();
+		if (convergenceMicros < 0)
+		{
+			LOGGER.info("Throughput of %s did not reach a steady state", description);
+			return null;
+		}
+		double seconds = Math.max(0, convergenceMicros - startMicros) / 1e6;
+		LOGGER.debug("Throughput of %s was steady after %.1f s", description, seconds);
+
+		DependentVariablesValueComposite convergence = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+		convergence.setOperation("read+write");
+		convergence.setSource(SOURCE);
+		convergence.setOperationMetric(Metric.CONVERGENCE_TIME);
+		convergence.setType(Type.ABSOLUTE);
+		convergence.setValue(seconds);
+		return convergence;
+	}
+
+	// Adds the throughput of the new intervals since the start to the
+	// detector
+	private void consumeSamples()
+	{
+		List<AgentSample> samples = iostat.getLiveDiskSamples();
+		for (int i = Math.max(1, consumed); i < samples.size(); ++i)
+		{
+			AgentSample prev = samples.get(i - 1);
+			AgentSample cur = samples.get(i);
+			if (prev.getMicros() < startMicros)
+			{
+				continue;
+			}
+			double throughput = IostatMonitorDriver.getThroughput(prev, cur);
+			if (!Double.isNaN(throughput))
+			{
+				detector.add(cur.getMicros(), throughput);
+			}
+		}
+		consumed = Math.max(consumed, samples.size());
+	}
+}
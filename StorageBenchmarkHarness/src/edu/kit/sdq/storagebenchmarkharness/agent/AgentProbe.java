@@ -0,0 +1,79 @@
+package edu.kit.sdq.storagebenchmarkharness.agent;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * A probe registered at a {@code MonitorAgentSession}. Collects the samples
+ * the agent sends for the probe until it is removed.
+ *
+ * The probe is thread-safe, the samples are added by the reading thread of
+ * the session.
+ */
+public final class AgentProbe
+{
+	private final int id;
+	private final String kind;
+	private final String argument;
+
+	// Guarded by this
+	private final List<AgentSample> samples = Lists.newArrayList();
+	private String error;
+
+	AgentProbe(int id, String kind, String argument)
+	{
+		this.id = id;
+		this.kind = kind;
+		this.argument = argument;
+	}
+
+	public int getId()
+	{
+		return id;
+	}
+
+	public String getKind()
+	{
+		return kind;
+	}
+
+	public String getArgument()
+	{
+		return argument;
+	}
+
+	synchronized void add(AgentSample sample)
+	{
+		samples.add(sample);
+	}
+
+	synchronized void fail(String message)
+	{
+		error = message;
+	}
+
+	/**
+	 * @return The samples received so far in the order they were taken
+	 */
+	public synchronized List<AgentSample> getSamples()
+	{
+		return ImmutableList.copyOf(samples);
+	}
+
+	/**
+	 * @return The error reported by the agent or the session, null if the
+	 *         probe did not fail
+	 */
+	public synchronized String getError()
+	{
+		return error;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "AgentProbe [id=" + id + ", kind=" + kind + ", argument=" + argument + "]";
+	}
+}
@@ -0,0 +1,59 @@
+package edu.kit.sdq.storagebenchmarkharness.agent;
+
+import java.util.Arrays;
+
+/**
+ * A sample of a probe of the {@code MonitorAgent}.
+ */
+public final class AgentSample
+{
+	private final long micros;
+	private final double[] values;
+
+	/**
+	 * @param micros
+	 *            The time of the sample in microseconds since the start of the
+	 *            agent (or on another clock, see {@link #atTime(long)})
+	 * @param values
+	 *            The values, not copied
+	 */
+	public AgentSample(long micros, double[] values)
+	{
+		this.micros = micros;
+		this.values = values;
+	}
+
+	/**
+	 * @return The time of the sample in microseconds since the start of the
+	 *         agent, or on the clock it was converted to
+	 */
+	public long getMicros()
+	{
+		return micros;
+	}
+
+	/**
+	 * @return The same sample at a time of another clock, e.g. the controller
+	 *         timeline
+	 */
+	public AgentSample atTime(long otherMicros)
+	{
+		return new AgentSample(otherMicros, values);
+	}
+
+	public int getValueCount()
+	{
+		return values.length;
+	}
+
+	public double getValue(int i)
+	{
+		return values[i];
+	}
+
+	@Override
+	public String toString()
+	{
+		return "AgentSample [micros=" + micros + ", values=" + Arrays.toString(values) + "]";
+	}
+}
@@ -0,0 +1,443 @@
+package edu.kit.sdq.storagebenchmarkharness.agent;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The monitoring agent which runs on the SUT. It samples /proc and the file
+ * system in-process, thus taking a sample does not fork any process, and
+ * streams the samples as binary frames to stdout. The agent is controlled by
+ * text commands on stdin:
+ *
+ * <pre>
+ * probe &lt;id&gt; &lt;periodMs&gt; &lt;kind&gt; [&lt;argument&gt;]
+ * remove &lt;id&gt;
+ * time &lt;sequence&gt;
+ * </pre>
+ *
+ * The kinds of probes are:
+ * <ul>
+ * <li>{@code cpu}: The jiffies of /proc/stat (user, nice, system, idle,
+ * iowait, irq, softirq, steal)</li>
+ * <li>{@code disk <device>}: The counters of the device in /proc/diskstats
+ * (11 values, see the kernel documentation iostats.txt)</li>
+ * <li>{@code dir <path>}: The total size in bytes and the number of the
+ * regular files below the directory</li>
+ * <li>{@code threads <words>}: The number of threads of the processes whose
+ * command line contains all words</li>
+ * </ul>
+ *
+ * The output starts with {@link #MAGIC} and {@link #VERSION}, followed by
+ * frames which start with their type: a sample frame ({@link #FRAME_SAMPLE})
+ * contains the probe id (short), the microseconds since the start of the agent
+ * (long), the number of values (byte) and the values (double), an error frame
+ * ({@link #FRAME_ERROR}) the probe id and a message (UTF). A probe is removed
+ * after an error. A time frame ({@link #FRAME_TIME}) answers a time command
+ * immediately with its sequence number (short) and the microseconds since the
+ * start of the agent (long), thus the harness can relate the clock of the
+ * agent to its own. The agent exits when stdin is closed.
+ *
+ * The agent only depends on the JRE and consists of this single class, so it
+ * can be deployed by copying the class file. Thus it does not use any nested
+ * classes and must stay compatible to Java 6.
+ */
+public final class MonitorAgent implements Runnable
+{
+	/** The first bytes of the output, 'SBHA' */
+	public static final int MAGIC = 0x53424841;
+
+	/** The version of the protocol */
+	public static final short VERSION = 2;
+
+	/** Type of a frame containing a sample */
+	public static final byte FRAME_SAMPLE = 1;
+
+	/** Type of a frame containing an error of a probe */
+	public static final byte FRAME_ERROR = 2;
+
+	/** Type of a frame containing the clock of the agent */
+	public static final byte FRAME_TIME = 3;
+
+	// The time the agent waits if there are no probes in ns
+	private static final long IDLE_WAIT = 1000000000L;
+
+	private final InputStream commands;
+	// Guarded by itself, the frames of the sampling loop and the answers to
+	// time commands are written by different threads
+	private final DataOutputStream out;
+	private final long start = System.nanoTime();
+
+	// The probes by id, guarded by this. Kept in maps instead of probe objects
+	// so that the agent consists of a single class.
+	private final Map<Integer, String> kinds = new TreeMap<Integer, String>();
+	private final Map<Integer, String> arguments = new TreeMap<Integer, String>();
+	private final Map<Integer, long[]> schedules = new TreeMap<Integer, long[]>();
+	private boolean running = true;
+	// Set when a command changed the probes, guarded by this
+	private boolean changed = false;
+
+	/**
+	 * @param commands
+	 *            The stream the commands are read from
+	 * @param out
+	 *            The stream the frames are written to
+	 */
+	public MonitorAgent(InputStream commands, OutputStream out)
+	{
+		this.commands = commands;
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+	}
+
+	public static void main(String[] args) throws IOException
+	{
+		new MonitorAgent(System.in, System.out).sample();
+		System.exit(0);
+	}
+
+	/**
+	 * Starts reading the commands in a background thread and samples the
+	 * probes until the stream of commands ends.
+	 */
+	public void sample() throws IOException
+	{
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.flush();
+
+		Thread reader = new Thread(this, "MonitorAgent-commands");
+		reader.setDaemon(true);
+		reader.start();
+
+		// The probes are sampled without holding the lock of the agent, thus
+		// the commands (especially the time probes) are not delayed by a
+		// sampling pass, e.g. the walk of a large directory
+		List<Integer> dueIds = new ArrayList<Integer>();
+		List<String> dueKinds = new ArrayList<String>();
+		List<String> dueArguments = new ArrayList<String>();
+		while (true)
+		{
+			long now = System.nanoTime();
+			long next = now + IDLE_WAIT;
+			dueIds.clear();
+			dueKinds.clear();
+			dueArguments.clear();
+			synchronized (this)
+			{
+				if (!running)
+				{
+					break;
+				}
+				changed = false;
+				for (Map.Entry<Integer, long[]> entry : schedules.entrySet())
+				{
+					long[] schedule = entry.getValue();
+					if (schedule[1] <= now)
+					{
+						dueIds.add(entry.getKey());
+						dueKinds.add(kinds.get(entry.getKey()));
+						dueArguments.add(arguments.get(entry.getKey()));
+						// Keep the phase, but skip samples which were missed
+						schedule[1] += schedule[0];
+						if (schedule[1] <= now)
+						{
+							schedule[1] = now + schedule[0];
+						}
+					}
+					next = Math.min(next, schedule[1]);
+				}
+			}
+
+			for (int i = 0; i < dueIds.size(); ++i)
+			{
+				if (!sample(dueIds.get(i), dueKinds.get(i), dueArguments.get(i), now))
+				{
+					synchronized (this)
+					{
+						kinds.remove(dueIds.get(i));
+						arguments.remove(dueIds.get(i));
+						schedules.remove(dueIds.get(i));
+					}
+				}
+			}
+			synchronized (out)
+			{
+				out.flush();
+			}
+
+			synchronized (this)
+			{
+				// A probe added while sampling is sampled right away
+				long wait = next - System.nanoTime();
+				if (running && !changed && wait > 0)
+				{
+					try
+					{
+						wait(wait / 1000000, (int) (wait % 1000000));
+					} catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+		}
+		synchronized (out)
+		{
+			out.flush();
+		}
+	}
+
+	/**
+	 * Reads the commands.
+	 */
+	@Override
+	public void run()
+	{
+		try
+		{
+			BufferedReader reader = new BufferedReader(new InputStreamReader(commands, "US-ASCII"));
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				String[] split = line.trim().split(" ", 5);
+				if (split[0].equals("time") && split.length >= 2)
+				{
+					// Answered while the command is read, the clock is taken
+					// as late as possible. Only the output is locked, a
+					// running sampling pass does not delay the answer.
+					synchronized (out)
+					{
+						out.writeByte(FRAME_TIME);
+						out.writeShort(Integer.parseInt(split[1]));
+						out.writeLong((System.nanoTime() - start) / 1000);
+						out.flush();
+					}
+					continue;
+				}
+				synchronized (this)
+				{
+					if (split[0].equals("probe") && split.length >= 4)
+					{
+						Integer id = Integer.valueOf(split[1]);
+						long period = Long.parseLong(split[2]) * 1000000L;
+						kinds.put(id, split[3]);
+						arguments.put(id, split.length > 4 ? split[4] : "");
+						schedules.put(id, new long[] { Math.max(period, 1000000L), System.nanoTime() });
+					} else if (split[0].equals("remove") && split.length >= 2)
+					{
+						Integer id = Integer.valueOf(split[1]);
+						kinds.remove(id);
+						arguments.remove(id);
+						schedules.remove(id);
+					}
+					changed = true;
+					notifyAll();
+				}
+			}
+		} catch (Exception e)
+		{
+			// The harness is gone, there is no one to report to
+		} finally
+		{
+			synchronized (this)
+			{
+				running = false;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Takes a sample of a probe and writes it.
+	 *
+	 * @return False if the probe failed
+	 */
+	private boolean sample(Integer id, String kind, String argument, long now) throws IOException
+	{
+		double[] values;
+		try
+		{
+			if (kind.equals("cpu"))
+			{
+				values = sampleCpu();
+			} else if (kind.equals("disk"))
+			{
+				values = sampleDisk(argument);
+			} else if (kind.equals("dir"))
+			{
+				values = sampleDirectory(argument);
+			} else if (kind.equals("threads"))
+			{
+				values = sampleThreads(argument);
+			} else
+			{
+				throw new IOException("Unknown probe " + kind);
+			}
+		} catch (Exception e)
+		{
+			synchronized (out)
+			{
+				out.writeByte(FRAME_ERROR);
+				out.writeShort(id.intValue());
+				out.writeUTF(e.getMessage() == null ? e.toString() : e.getMessage());
+			}
+			return false;
+		}
+
+		synchronized (out)
+		{
+			out.writeByte(FRAME_SAMPLE);
+			out.writeShort(id.intValue());
+			out.writeLong((now - start) / 1000);
+			out.writeByte(values.length);
+			for (double value : values)
+			{
+				out.writeDouble(value);
+			}
+		}
+		return true;
+	}
+
+	private static double[] sampleCpu() throws IOException
+	{
+		String stat = read(new File("/proc/stat"));
+		int end = stat.indexOf('\n');
+		String[] fields = (end < 0 ? stat : stat.substring(0, end)).trim().split("\\s+");
+		double[] values = new double[8];
+		for (int i = 0; i < values.length && i + 1 < fields.length; ++i)
+		{
+			values[i] = Double.parseDouble(fields[i + 1]);
+		}
+		return values;
+	}
+
+	private static double[] sampleDisk(String device) throws IOException
+	{
+		String name = device.startsWith("/dev/") ? device.substring(5) : device;
+		for (String line : read(new File("/proc/diskstats")).split("\n"))
+		{
+			String[] fields = line.trim().split("\\s+");
+			if (fields.length >= 14 && fields[2].equals(name))
+			{
+				double[] values = new double[11];
+				for (int i = 0; i < values.length; ++i)
+				{
+					values[i] = Double.parseDouble(fields[i + 3]);
+				}
+				return values;
+			}
+		}
+		throw new IOException("Device " + device + " not found in /proc/diskstats");
+	}
+
+	private static double[] sampleDirectory(String path) throws IOException
+	{
+		File dir = new File(path);
+		if (!dir.isDirectory())
+		{
+			throw new IOException("Directory " + path + " not found");
+		}
+		double[] values = new double[2];
+		addDirectory(dir, values);
+		return values;
+	}
+
+	private static void addDirectory(File dir, double[] values)
+	{
+		File[] files = dir.listFiles();
+		if (files == null)
+		{
+			// Deleted while walking the tree
+			return;
+		}
+		for (File file : files)
+		{
+			if (file.isDirectory())
+			{
+				addDirectory(file, values);
+			} else if (file.isFile())
+			{
+				values[0] += file.length();
+				values[1] += 1;
+			}
+		}
+	}
+
+	private static double[] sampleThreads(String words) throws IOException
+	{
+		String[] patterns = words.trim().split("\\s+");
+		File[] processes = new File("/proc").listFiles();
+		if (processes == null)
+		{
+			throw new IOException("/proc can not be read");
+		}
+
+		int threads = 0;
+		for (File process : processes)
+		{
+			if (!Character.isDigit(process.getName().charAt(0)))
+			{
+				continue;
+			}
+			String cmdline;
+			try
+			{
+				cmdline = read(new File(process, "cmdline")).replace('\0', ' ');
+			} catch (IOException e)
+			{
+				// The process terminated
+				continue;
+			}
+			boolean matches = true;
+			for (String pattern : patterns)
+			{
+				matches &= cmdline.contains(pattern);
+			}
+			if (matches)
+			{
+				String[] tasks = new File(process, "task").list();
+				threads += tasks == null ? 0 : tasks.length;
+			}
+		}
+		return new double[] { threads };
+	}
+
+	/**
+	 * Reads a file completely. The size of the files in /proc is unknown in
+	 * advance.
+	 */
+	private static String read(File file) throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			byte[] buffer = new byte[4096];
+			int size = 0;
+			int n;
+			while ((n = in.read(buffer, size, buffer.length - size)) >= 0)
+			{
+				size += n;
+				if (size == buffer.length)
+				{
+					byte[] larger = new byte[buffer.length * 2];
+					System.arraycopy(buffer, 0, larger, 0, size);
+					buffer = larger;
+				}
+			}
+			return new String(buffer, 0, size, "ISO-8859-1");
+		} finally
+		{
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package edu.kit.sdq.storagebenchmarkharness.agent;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.kit.sdq.storagebenchmarkharness.ClockSync;
+import edu.kit.sdq.storagebenchmarkharness.Logger;
+import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
+import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+
+/**
+ * The connection to the {@link MonitorAgent} running on a host. All monitors
+ * of a host share one agent and one channel: they register their probes at
+ * the session and the samples sent by the agent are dispatched to the probes
+ * by a reading thread.
+ *
+ * The session of a host is obtained by {@link #get(RemoteConnection)}, which
+ * starts the agent the first time. The agent keeps running when the monitors
+ * remove their probes after a repeat, thus no JVM is started on the host
+ * right before the next benchmark. All agents are stopped by
+ * {@link #stopAll()} before the connections are closed. The agent is copied
+ * to the host the first time a session to the host is started.
+ *
+ * The session estimates the clock of the agent relative to the controller
+ * timeline (see {@link ClockSync}): a burst of time probes is sent when the
+ * agent is started and one probe every {@link #SYNC_INTERVAL} while it runs.
+ *
+ * The environment variables 'monitoragentjava' and 'monitoragentdir' set the
+ * Java executable on the host and the directory the agent is copied to.
+ */
+public final class MonitorAgentSession
+{
+	private static final Logger LOGGER = Logger.getLogger(MonitorAgentSession.class);
+
+	private static final String AGENT_CLASS_FILE = MonitorAgent.class.getSimpleName() + ".class";
+
+	// The time to wait for the agent to exit after stdin is closed in ms.
+	private static final long STOP_TIMEOUT = 10000;
+
+	// The time probes sent when the agent is started and their interval in
+	// ms.
+	private static final int SYNC_PROBES_AT_START = 8;
+	private static final long SYNC_START_INTERVAL = 20;
+
+	/** The interval of the time probes in ms while the agent runs */
+	public static final long SYNC_INTERVAL = 5000;
+
+	// Sends the time probes of all sessions
+	private static final ScheduledExecutorService SYNC_TIMER = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+			.setDaemon(true).setNameFormat("MonitorAgentSession-sync").build());
+
+	// The sessions by host and the hosts the agent was copied to, guarded by
+	// the class
+	private static final Map<String, MonitorAgentSession> SESSIONS = Maps.newHashMap();
+	private static final Set<String> DEPLOYED = Sets.newHashSet();
+
+	private final String key;
+	private final RemoteProcess process;
+	private final Writer commands;
+	private final Thread reader;
+	private final ConcurrentMap<Integer, AgentProbe> probes = Maps.newConcurrentMap();
+	private final ClockSync clock = new ClockSync();
+
+	// Guarded by this
+	private int nextProbeId = 0;
+
+	private volatile boolean stopping = false;
+
+	private MonitorAgentSession(String key, RemoteConnection con) throws IOException
+	{
+		this.key = key;
+
+		String dir = getAgentDir();
+		String cmd = getEnv("monitoragentjava", "java") + " -cp " + dir + " " + MonitorAgent.class.getName();
+		process = con.execCmd(cmd, false);
+		commands = new OutputStreamWriter(process.getOutputStream(), Charset.forName("US-ASCII"));
+
+		final InputStream in = process.getInputStream();
+		reader = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				String error = "Agent terminated";
+				try
+				{
+					readFrames(in, probes, clock);
+				} catch (IOException e)
+				{
+					error = "Agent failed: " + e.getMessage();
+				}
+				if (!stopping)
+				{
+					LOGGER.error("Monitor agent on %s stopped unexpectedly (%s)", MonitorAgentSession.this.key, error);
+					for (AgentProbe probe : probes.values())
+					{
+						probe.fail(error);
+					}
+					// The next monitor starts a new agent
+					synchronized (MonitorAgentSession.class)
+					{
+						if (SESSIONS.get(MonitorAgentSession.this.key) == MonitorAgentSession.this)
+						{
+							SESSIONS.remove(MonitorAgentSession.this.key);
+						}
+					}
+				}
+			}
+		}, "MonitorAgentSession-" + key);
+		reader.setDaemon(true);
+		reader.start();
+
+		scheduleTimeProbe(0);
+	}
+
+	/**
+	 * Returns the session of the host of the connection. Copies and starts the
+	 * agent if there is no session yet.
+	 *
+	 * @param con
+	 *            An open connection to the host, used to start the agent. It
+	 *            must stay open until {@link #stopAll()} is called.
+	 * @return The session
+	 * @throws RemoteConnectionException
+	 *             If the agent could not be copied or started
+	 */
+	public static MonitorAgentSession get(RemoteConnection con) throws RemoteConnectionException
+	{
+		SystemUnderTest host = con.getHost();
+		String key = host != null ? host.getUser() + "@" + host.getIp() + ":" + host.getPort() : "connection@"
+				+ System.identityHashCode(con);
+		synchronized (MonitorAgentSession.class)
+		{
+			MonitorAgentSession session = SESSIONS.get(key);
+			if (session == null)
+			{
+				try
+				{
+					if (!DEPLOYED.contains(key))
+					{
+						deploy(con);
+						DEPLOYED.add(key);
+					}
+					LOGGER.debug("Starting monitor agent on %s", key);
+					session = new MonitorAgentSession(key, con);
+				} catch (IOException e)
+				{
+					throw new RemoteConnectionException(e);
+				}
+				SESSIONS.put(key, session);
+			}
+			return session;
+		}
+	}
+
+	/**
+	 * Stops the agents of all sessions, call before the connections are
+	 * closed. The next call of {@link #get(RemoteConnection)} starts a new
+	 * agent.
+	 */
+	public static void stopAll()
+	{
+		List<MonitorAgentSession> sessions;
+		synchronized (MonitorAgentSession.class)
+		{
+			sessions = Lists.newArrayList(SESSIONS.values());
+			SESSIONS.clear();
+		}
+		for (MonitorAgentSession session : sessions)
+		{
+			session.stop();
+		}
+	}
+
+	private void stop()
+	{
+		LOGGER.debug("Stopping monitor agent on %s", key);
+		stopping = true;
+		try
+		{
+			// The agent exits when stdin is closed
+			commands.close();
+			if (!process.waitFor(STOP_TIMEOUT, TimeUnit.MILLISECONDS))
+			{
+				LOGGER.warn("Monitor agent on %s did not exit", key);
+			}
+			reader.join(STOP_TIMEOUT);
+		} catch (IOException e)
+		{
+			LOGGER.warn("Could not stop monitor agent on %s: %s", key, e.getMessage());
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} finally
+		{
+			process.finish();
+		}
+	}
+
+	/**
+	 * @return The clock of the agent relative to the controller timeline. The
+	 *         times of the samples are times of this clock.
+	 */
+	public ClockSync getClock()
+	{
+		return clock;
+	}
+
+	/**
+	 * Sends a time probe after a delay and schedules the next one, until the
+	 * agent is stopped.
+	 */
+	private void scheduleTimeProbe(final int sent)
+	{
+		long delay = sent == 0 ? 0 : (sent < SYNC_PROBES_AT_START ? SYNC_START_INTERVAL : SYNC_INTERVAL);
+		SYNC_TIMER.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (stopping)
+				{
+					return;
+				}
+				try
+				{
+					send("time " + clock.startExchange());
+				} catch (RemoteConnectionException e)
+				{
+					// The reader reports the failure of the agent
+					LOGGER.debug("Could not send time probe: %s", e.getMessage());
+					return;
+				}
+				scheduleTimeProbe(sent + 1);
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Registers a probe. The agent takes the first sample immediately.
+	 *
+	 * @param kind
+	 *            The kind of the probe, see {@link MonitorAgent}
+	 * @param argument
+	 *            The argument of the probe, may be empty
+	 * @param periodMillis
+	 *            The sampling period
+	 * @return The probe collecting the samples
+	 */
+	public AgentProbe addProbe(String kind, String argument, long periodMillis)
+	{
+		AgentProbe probe;
+		synchronized (this)
+		{
+			probe = new AgentProbe(nextProbeId++, kind, argument);
+			probes.put(probe.getId(), probe);
+		}
+		send("probe " + probe.getId() + " " + periodMillis + " " + kind + " " + argument);
+		return probe;
+	}
+
+	/**
+	 * Unregisters a probe. The probe keeps the samples received so far.
+	 */
+	public void removeProbe(AgentProbe probe)
+	{
+		if (probes.remove(probe.getId()) != null)
+		{
+			send("remove " + probe.getId());
+		}
+	}
+
+	private synchronized void send(String command)
+	{
+		try
+		{
+			commands.write(command);
+			commands.write('\n');
+			commands.flush();
+		} catch (IOException e)
+		{
+			throw new RemoteConnectionException("Could not send command to monitor agent on " + key, e);
+		}
+	}
+
+	/**
+	 * Reads the output of an agent and dispatches the samples to the probes
+	 * until the output ends. Frames of unknown probes and time frames are
+	 * skipped.
+	 *
+	 * @throws IOException
+	 *             If the output does not start with the header of a supported
+	 *             version or ends within a frame
+	 */
+	public static void readFrames(InputStream in, Map<Integer, AgentProbe> probes) throws IOException
+	{
+		readFrames(in, probes, null);
+	}
+
+	/**
+	 * Reads the output of an agent like {@link #readFrames(InputStream, Map)}
+	 * and passes the replies to time probes to the clock.
+	 *
+	 * @param clock
+	 *            The clock of the agent, may be null
+	 */
+	public static void readFrames(InputStream in, Map<Integer, AgentProbe> probes, ClockSync clock) throws IOException
+	{
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		int magic;
+		short version;
+		try
+		{
+			magic = data.readInt();
+			version = data.readShort();
+		} catch (EOFException e)
+		{
+			throw new IOException("Agent did not start, is Java installed on the SUT?");
+		}
+		if (magic != MonitorAgent.MAGIC || version != MonitorAgent.VERSION)
+		{
+			throw new IOException("Unexpected output of agent: " + Integer.toHexString(magic) + " version " + version);
+		}
+
+		int type;
+		while ((type = data.read()) >= 0)
+		{
+			int id = data.readUnsignedShort();
+			AgentProbe probe = probes.get(id);
+			if (type == MonitorAgent.FRAME_SAMPLE)
+			{
+				long micros = data.readLong();
+				double[] values = new double[data.readUnsignedByte()];
+				for (int i = 0; i < values.length; ++i)
+				{
+					values[i] = data.readDouble();
+				}
+				if (probe != null)
+				{
+					probe.add(new AgentSample(micros, values));
+				}
+			} else if (type == MonitorAgent.FRAME_TIME)
+			{
+				long micros = data.readLong();
+				if (clock != null)
+				{
+					clock.finishExchange(id, micros, System.nanoTime());
+				}
+			} else if (type == MonitorAgent.FRAME_ERROR)
+			{
+				String message = data.readUTF();
+				LOGGER.error("Probe %d of monitor agent failed: %s", id, message);
+				if (probe != null)
+				{
+					probe.fail(message);
+				}
+			} else
+			{
+				throw new IOException("Unknown frame type " + type);
+			}
+		}
+	}
+
+	/**
+	 * Copies the class file of the agent to the host.
+	 */
+	private static void deploy(RemoteConnection con) throws IOException
+	{
+		InputStream in = MonitorAgent.class.getResourceAsStream(AGENT_CLASS_FILE);
+		if (in == null)
+		{
+			throw new IOException("Class file of the monitor agent not found");
+		}
+		byte[] code;
+		try
+		{
+			code = ByteStreams.toByteArray(in);
+		} finally
+		{
+			in.close();
+		}
+
+		String dir = getAgentDir() + "/" + MonitorAgent.class.getPackage().getName().replace('.', '/');
+		LOGGER.debug("Copying monitor agent to %s", dir);
+		RemoteProcess upload = con.execCmd("mkdir -p " + dir + " && cat > " + dir + "/" + AGENT_CLASS_FILE, false);
+		try
+		{
+			OutputStream out = upload.getOutputStream();
+			out.write(code);
+			out.close();
+			upload.waitFor();
+			if (upload.getExitStatus() != 0)
+			{
+				throw new IOException("Could not copy monitor agent to " + dir);
+			}
+		} finally
+		{
+			upload.finish();
+		}
+	}
+
+	private static String getAgentDir()
+	{
+		return getEnv("monitoragentdir", "/tmp/sbhagent");
+	}
+
+	private static String getEnv(String envName, String defaultValue)
+	{
+		String v = System.getenv(envName);
+		return v == null ? defaultValue : v;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "MonitorAgentSession [key=" + key + ", probes=" + probes.size() + "]";
+	}
+}
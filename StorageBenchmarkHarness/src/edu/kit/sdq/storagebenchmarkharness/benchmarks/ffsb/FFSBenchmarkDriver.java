@@ -5,6 +5,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
@@ -15,20 +16,22 @@ import com.google.common.collect.Lists;
 import com.google.common.io.CharStreams;
 
 import edu.kit.sdq.storagebenchmarkharness.BenchmarkDriver;
+import edu.kit.sdq.storagebenchmarkharness.ClockSync;
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
 import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValue;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
-import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfFFSB;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+import edu.kit.sdq.storagebenchmarkharness.util.RawCapture;
 
 /**
  * Provides a interface to the FFSB Benchmark. The original FFSB-Binary does not
@@ -101,11 +104,14 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 	 * Generates the two configfiles for warmup and benchmarking. These
 	 * config-files are saved on the SUT and a copies is saved in the {@code
 	 * filesavedir} if it is not {@code null}. In this prepare stage, the
-	 * fileset is created and a initial warmup benchmark is executed.
+	 * fileset is created and a initial warmup benchmark is executed. If the
+	 * experiment was staged, the staged configfiles are used.
 	 */
 	@Override
 	public void prepareExperiment(IndependentVariablesOfSut sutVars, IndependentVariablesOfFFSB benchVars)
 	{
+		Configurations staged = takeStaged(Configurations.class);
+
 		// Create tmpFolder for benchmarking
 		String command = "mkdir " + targetDir; 
 		RemoteProcess setup = connection.execCmd(command, false);
@@ -113,13 +119,16 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 		setup.finish();
 		
 		// Generated and save the configurations
-		prepareFFSBConfigurations(sutVars, benchVars);
+		useConfigurations(staged != null ? staged : writeFFSBConfigurations(sutVars, benchVars));
 
 		// Set Scheduler
 		setScheduler(sutVars.getScheduler(), targetDir);
 
-		// Check the Filesystem
-		checkFileSystem(sutVars.getFileSystem(), targetDir);
+		// Check the Filesystem, unless checked while staging
+		if (staged == null)
+		{
+			checkFileSystem(sutVars.getFileSystem(), targetDir);
+		}
 
 		// Warmup-Execution
 		LOGGER.debug("FFSB Warmup");
@@ -151,6 +160,38 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 		saveFile("warmup.log", stdOut);
 	}
 
+	/*
+	 * Generates and saves the two configfiles on the SUT and checks the
+	 * filesystem of the directory containing the target directory, since the
+	 * target directory is created by the preparation. The scheduler is set by
+	 * the preparation, it would affect the running experiment.
+	 */
+	@Override
+	protected Object stageExperiment(IndependentVariablesOfSut sutVars, IndependentVariablesOfFFSB benchVars)
+	{
+		Configurations configurations = writeFFSBConfigurations(sutVars, benchVars);
+		try
+		{
+			checkFileSystem(sutVars.getFileSystem(), targetDir.substring(0, Math.max(1, targetDir.lastIndexOf('/'))));
+		} catch (RuntimeException e)
+		{
+			discardStaged(configurations);
+			throw e;
+		}
+		return configurations;
+	}
+
+	/*
+	 * Deletes the staged configfiles from the SUT.
+	 */
+	@Override
+	protected void discardStaged(Object state)
+	{
+		Configurations configurations = (Configurations) state;
+		connection.deleteFile(configurations.benchmarkFile);
+		connection.deleteFile(configurations.warmupFile);
+	}
+
 	/**
 	 * Generates the FFSB Configurations for the warmup and the actual
 	 * benchmarking. It saves the configs remotely and also locally if the
@@ -161,10 +202,32 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 	 * @param benchVars
 	 */
 	protected void prepareFFSBConfigurations(IndependentVariablesOfSut sutVars, IndependentVariablesOfFFSB benchVars)
+	{
+		useConfigurations(writeFFSBConfigurations(sutVars, benchVars));
+	}
+
+	/**
+	 * Uses the configurations for the current experiment and saves a copy
+	 * locally on the Measurement Machine for later debugging.
+	 */
+	private void useConfigurations(Configurations configurations)
+	{
+		confFileWarmup = configurations.warmupFile;
+		confFileBenchmark = configurations.benchmarkFile;
+
+		saveFile("warmup.ffsb", configurations.warmup);
+		saveFile("bench.ffsb", configurations.benchmark);
+	}
+
+	/**
+	 * Generates the FFSB Configurations and saves them remotely. Does not
+	 * change the state of the driver, thus it can be used for staging.
+	 */
+	private Configurations writeFFSBConfigurations(IndependentVariablesOfSut sutVars, IndependentVariablesOfFFSB benchVars)
 	{
 		String confId = UUID.randomUUID().toString();
-		confFileWarmup = "/tmp/" + confId + ".warmup.ffsb";
-		confFileBenchmark = "/tmp/" + confId + ".bench.ffsb";
+		String confFileWarmup = "/tmp/" + confId + ".warmup.ffsb";
+		String confFileBenchmark = "/tmp/" + confId + ".bench.ffsb";
 		LOGGER.debug("FFSB Configfile is %s and %s", confFileWarmup, confFileBenchmark);
 
 		String conf = template;
@@ -271,9 +334,7 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 		confBench = confBench.replace("{{ENABLESTATS}}", "1");
 		connection.saveStringToFile(confBench, confFileBenchmark, false);
 
-		// Save a copy locally on the Measurement Machine for later debugging.
-		saveFile("warmup.ffsb", confWarmup);
-		saveFile("bench.ffsb", confBench);
+		return new Configurations(confFileWarmup, confFileBenchmark, confWarmup, confBench);
 	}
 
 	/*
@@ -309,8 +370,17 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 
 		try
 		{
-			List<DependentVariablesValue> values = parseFFSBLogAndSave(new BufferedReader(new InputStreamReader(ffsbBench.getInputStream())),
-					true, logFile, this.saveSingleResults);
+			SampleBuffer samples = createSampleBuffer(ClockSync.TIMELINE_SCALE);
+			// The raw log is captured from the bytes read by the parser
+			InputStream output = RawCapture.capture(ffsbBench.getInputStream(), logFile);
+			List<DependentVariablesValue> values;
+			try
+			{
+				values = parseFFSBLogAndSave(new BufferedReader(new InputStreamReader(output)), true, null, this.saveSingleResults, samples);
+			} finally
+			{
+				output.close();
+			}
 			String stdErr = CharStreams.toString(new InputStreamReader(ffsbBench.getErrorStream()));
 			ffsbBench.waitFor();
 
@@ -326,6 +396,7 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 			result.setBenchmarkPrefix("ffsb");
 			result.getValues().clear();
 			result.getValues().addAll(values);
+			SampleBuffer.attach(result, samples);
 			return result;
 		} catch (IOException e)
 		{
@@ -353,11 +424,38 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 	 *         returned.
 	 */
 	public static List<DependentVariablesValue> parseFFSBLogAndSave(BufferedReader reader, boolean onlyReadWrite, File outputFile, boolean saveSingleResults)
+	{
+		SampleBuffer samples = new SampleBuffer(ClockSync.TIMELINE_SCALE);
+		List<DependentVariablesValue> results = parseFFSBLogAndSave(reader, onlyReadWrite, outputFile, saveSingleResults, samples);
+		if (results != null)
+		{
+			results.addAll(samples.toValues());
+		}
+		return results;
+	}
+
+	/**
+	 * Parses the FFSB Output like
+	 * {@link #parseFFSBLogAndSave(BufferedReader, boolean, File, boolean)} but
+	 * stores the single response times in a sample buffer instead of creating
+	 * one EMF object per call.
+	 * 
+	 * @param samples
+	 *            Receives the single response times, timestamps are the
+	 *            times they were parsed on the controller timeline, the
+	 *            buffer must have the scale {@code ClockSync.TIMELINE_SCALE}.
+	 * @return A list of the aggregated results (throughput, mean response time
+	 *         and number of operations). If the logfile is invalid, null is
+	 *         returned.
+	 */
+	public static List<DependentVariablesValue> parseFFSBLogAndSave(BufferedReader reader, boolean onlyReadWrite, File outputFile,
+			boolean saveSingleResults, SampleBuffer samples)
 	{
 		boolean foundHeading = false;
 		boolean foundLastLine = false;// For security purposes check if the last
 										// line occured
 		String currentOp = null;
+		int currentChannel = -1;
 
 		String line;
 
@@ -457,6 +555,7 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 				if (line.length() > 30 && line.contains("Total calls: ") && line.contains("[") && line.contains("]"))
 				{
 					currentOp = line.substring(1, 8).trim();
+					currentChannel = samples.channel(currentOp, Metric.RESPONSE_TIME, "ffsb");
 					LOGGER.debug("Found Heading %s", currentOp);
 					
 					continue;
@@ -475,7 +574,7 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 						continue;
 					}
 					if (saveSingleResults) {
-						results.add(createResult(currentOp, time));
+						samples.add(currentChannel, ClockSync.nowMicros(), time);
 					}
 				}
 			}
@@ -500,21 +599,21 @@ public final class FFSBenchmarkDriver extends BenchmarkDriver<IndependentVariabl
 	}
 
 	/**
-	 * Shortcut method for simpler creation of {@code DependentVariablesValue}
-	 * instances.
-	 * 
-	 * @param operation
-	 * @param responseTime
-	 * @return
+	 * The configfiles of an experiment saved on the SUT and their contents.
 	 */
-	private static DependentVariablesValueSingle createResult(String operation, double responseTime)
+	private static final class Configurations
 	{
-		DependentVariablesValueSingle r = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-		r.setOperation(operation);
-		r.setValue(responseTime);
-		r.setTimestamp("" + System.currentTimeMillis());
-		r.setOperationMetric(Metric.RESPONSE_TIME);
-		r.setSource("ffsb");
-		return r;
+		private final String warmupFile;
+		private final String benchmarkFile;
+		private final String warmup;
+		private final String benchmark;
+
+		private Configurations(String warmupFile, String benchmarkFile, String warmup, String benchmark)
+		{
+			this.warmupFile = warmupFile;
+			this.benchmarkFile = benchmarkFile;
+			this.warmup = warmup;
+			this.benchmark = benchmark;
+		}
 	}
 }
@@ -5,12 +5,14 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.emf.ecore.EAttribute;
 import org.eclipse.emf.ecore.EClass;
@@ -22,8 +24,8 @@ import com.google.common.io.CharStreams;
 import edu.kit.sdq.storagebenchmarkharness.BenchmarkDriver;
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
+import edu.kit.sdq.storagebenchmarkharness.RemoteConnectionFactory;
 import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
-import edu.kit.sdq.storagebenchmarkharness.SSHRemoteConnection;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Fileset;
@@ -39,6 +41,7 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.CheckedBenchmarkException;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.ParsingException;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+import edu.kit.sdq.storagebenchmarkharness.util.RawCapture;
 
 /**
  * Provides an interface to the Filebench Benchmark.
@@ -74,6 +77,11 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 	private String confFileWarmup;
 	private String confFileBenchmark;
 
+	// The running benchmark process and whether it was ended by stopEarly,
+	// set by startExperiment and read by stopEarly from other threads
+	private volatile RemoteProcess runningBench;
+	private volatile boolean stoppedEarly;
+
 	public FilebenchBenchmarkDriver(RemoteConnection con, String rawFileSaveDir, String targetDir)
 	{
 		super(con, rawFileSaveDir);
@@ -93,9 +101,9 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 		long startTime = System.currentTimeMillis(); 
 		boolean timeErrorOccurred = false;
 		
-		while (!benchProcess.isClosed())
+		// Check the benchmark every second, returns as soon as it terminates
+		while (!benchProcess.waitFor(1, TimeUnit.SECONDS))
 		{
-			java.lang.Thread.sleep(1000);
 			List<Integer> watchDogPids;
 			if ((watchDogPids = filebenchWatchdog(conn)) != null)
 			{
@@ -108,6 +116,12 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 						benchProcess.finish();
 						benchProcess = connection.execCmd(command, true);
 						watchDogCount = 0;
+						if (runningBench != null)
+						{
+							// The restarted run is not ended early again
+							runningBench = benchProcess;
+							stoppedEarly = false;
+						}
 						
 						// Filebench restarted, reset start time
 						startTime = System.currentTimeMillis(); 
@@ -125,7 +139,7 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 			}
 		}
 		
-		if((System.currentTimeMillis() - startTime) / 1000 < expectedTime) {
+		if(!stoppedEarly && (System.currentTimeMillis() - startTime) / 1000 < expectedTime) {
 			benchProcess.stopProcess();
 			benchProcess.finish(); // The connection is expected to close
 			LOGGER.error("Benchmark too short.");
@@ -165,7 +179,7 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 
 		try
 		{
-			RemoteConnection conn = new SSHRemoteConnection(sut);
+			RemoteConnection conn = RemoteConnectionFactory.createConnection(sut);
 			conn.open(); // remember to close before returning / proceeding
 			// Filebench workaround
 			boolean timeErrorOccured = observeBenchmark(filebenchWarmup, conn, command, benchVars.getWarmupTime()*2 + timeoutPrepare, benchVars.getWarmupTime());
@@ -368,16 +382,24 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 		SystemUnderTest sut = connection.getHost();
 		// Benchmark-Execution
 		String command = "filebench" + " -f " + confFileBenchmark;
+		stoppedEarly = false;
 		RemoteProcess filebenchBench = connection.execCmd(command, true);
 
 		File logFile = getFile("filebenchBench." + repeatNo + ".log");
 
-		RemoteConnection conn = new SSHRemoteConnection(sut);
+		RemoteConnection conn = RemoteConnectionFactory.createConnection(sut);
 		try
 		{
 			conn.open(); // remember to close before returning / proceeding
+			runningBench = filebenchBench;
 			boolean timeErrorOccured = observeBenchmark(filebenchBench, conn, command, runTime * 2, runTime);
+			filebenchBench = runningBench;
+			runningBench = null;
 			conn.close();
+			if (stoppedEarly)
+			{
+				LOGGER.info("Filebench for #%d was ended early", repeatNo);
+			}
 			
 			if (timeErrorOccured)
 			{
@@ -386,8 +408,18 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 				throw new CheckedBenchmarkException("Benchmark duration unexpected...");
 			}
 			
-			List<DependentVariablesValueComposite> values = parseFilebenchLogAndSave(
-					new BufferedReader(new InputStreamReader(filebenchBench.getInputStream())), logFile);
+			// The raw log is captured from the bytes read by the parser,
+			// including the output following the summary
+			InputStream output = RawCapture.capture(filebenchBench.getInputStream(), logFile);
+			List<DependentVariablesValueComposite> values;
+			try
+			{
+				values = parseFilebenchLogAndSave(new BufferedReader(new InputStreamReader(output)), null);
+				RawCapture.drain(output);
+			} finally
+			{
+				output.close();
+			}
 			if (values == null) {
 				LOGGER.error("No results obtained from filebench log");
 				filebenchBench.finish();
@@ -395,7 +427,9 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 			}
 			String stdErr = CharStreams.toString(new InputStreamReader(filebenchBench.getErrorStream()));
 
-			if (filebenchBench.getExitStatus() != 0)
+			// The summary was parsed, thus an interrupted run which exits
+			// with the status of the signal has succeeded
+			if (filebenchBench.getExitStatus() != 0 && !stoppedEarly)
 			{
 				LOGGER.error("Benchmarking failed: %s", stdErr);
 				throw new BenchmarkException("Filebench Benchmarking failed");
@@ -422,10 +456,46 @@ public final class FilebenchBenchmarkDriver extends BenchmarkDriver<IndependentV
 			throw new BenchmarkException("Benchmark parsing failed due to invalid log file", e);
 		} finally {
 			// Always disconnect
+			runningBench = null;
 			filebenchBench.finish();
 		}
 	}
 
+	/*
+	 * Filebench ends the run on SIGINT and prints the statistics of the run so
+	 * far, thus the summary is parsed like after a complete run.
+	 */
+	@Override
+	public boolean stopEarly()
+	{
+		RemoteProcess bench = runningBench;
+		if (bench == null || bench.getPid() < 0)
+		{
+			return false;
+		}
+		stoppedEarly = true;
+		LOGGER.debug("Ending filebench (PID %d) early", bench.getPid());
+
+		RemoteConnection conn = RemoteConnectionFactory.createConnection(connection.getHost());
+		conn.open();
+		try
+		{
+			RemoteProcess kill = conn.execCmd("sudo kill -INT " + bench.getPid(), false);
+			kill.waitFor();
+			boolean killed = kill.getExitStatus() == 0;
+			kill.finish();
+			if (!killed)
+			{
+				// The process has ended on its own in the meantime
+				stoppedEarly = false;
+			}
+			return killed;
+		} finally
+		{
+			conn.close();
+		}
+	}
+
 	/*
 	 * Deletes temporary files and the two configfiles from the SUT.
 	 */
@@ -0,0 +1,256 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Writes a table in a compact binary columnar format which can be read by R
+ * using {@code readBin} (see {@code readColumnarExport} in
+ * {@code DataStoreInterface.r}) without parsing any text.
+ *
+ * The rows are buffered and written in blocks, inside a block the values are
+ * stored column by column. All numbers are big-endian:
+ *
+ * <pre>
+ * header: "SBHC", int32 version, int32 columnCount,
+ *         per column: int32 type, string name
+ * block:  int32 rowCount (> 0), per column:
+ *         INT:    rowCount * int32, NA is Integer.MIN_VALUE (NA_integer_ in R)
+ *         DOUBLE: rowCount * float64, NA is NaN
+ *         FACTOR: int32 newLevelCount, newLevelCount * string,
+ *                 rowCount * int32 level (starting with 1), NA for null
+ * end:    int32 0
+ * string: int32 byteCount, UTF-8 bytes
+ * </pre>
+ *
+ * The levels of a factor column are numbered in the order they first occur,
+ * every block only contains the levels which are new in the block.
+ */
+public final class ColumnarExportWriter
+{
+	/** The version of the format */
+	public static final int VERSION = 1;
+
+	/** The default number of rows per block */
+	public static final int DEFAULT_BLOCK_SIZE = 65536;
+
+	private static final byte[] MAGIC =
+	{ 'S', 'B', 'H', 'C' };
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The types of the columns, the ordinal is written to the file.
+	 */
+	public enum ColumnType
+	{
+		INT, DOUBLE, FACTOR
+	}
+
+	private final DataOutputStream out;
+	private final ColumnType[] types;
+	private final int blockSize;
+
+	private final int[][] ints;
+	private final double[][] doubles;
+	private final List<Map<String, Integer>> levels;
+	private final List<List<String>> newLevels;
+
+	private int rows = 0;
+	private long totalRows = 0;
+	private boolean closed = false;
+
+	/**
+	 * Creates the writer and writes the header.
+	 *
+	 * @param out
+	 *            The stream, closed by {@link #close()}
+	 * @param names
+	 *            The names of the columns
+	 * @param types
+	 *            The types of the columns
+	 * @param blockSize
+	 *            The number of rows per block
+	 * @throws IOException
+	 */
+	public ColumnarExportWriter(OutputStream out, String[] names, ColumnType[] types, int blockSize) throws IOException
+	{
+		Preconditions.checkArgument(names.length == types.length, "Need a type for every column");
+		Preconditions.checkArgument(blockSize > 0, "The block size must be positive");
+
+		this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+		this.types = types.clone();
+		this.blockSize = blockSize;
+
+		ints = new int[types.length][];
+		doubles = new double[types.length][];
+		levels = Lists.newArrayListWithCapacity(types.length);
+		newLevels = Lists.newArrayListWithCapacity(types.length);
+		for (int c = 0; c < types.length; ++c)
+		{
+			if (types[c] == ColumnType.DOUBLE)
+			{
+				doubles[c] = new double[blockSize];
+			} else
+			{
+				ints[c] = new int[blockSize];
+			}
+			levels.add(types[c] == ColumnType.FACTOR ? Maps.<String, Integer> newHashMap() : null);
+			newLevels.add(types[c] == ColumnType.FACTOR ? Lists.<String> newArrayList() : null);
+		}
+
+		this.out.write(MAGIC);
+		this.out.writeInt(VERSION);
+		this.out.writeInt(types.length);
+		for (int c = 0; c < types.length; ++c)
+		{
+			this.out.writeInt(types[c].ordinal());
+			writeString(names[c]);
+		}
+	}
+
+	/**
+	 * Sets the value of an INT column in the current row.
+	 */
+	public void setInt(int column, int value)
+	{
+		Preconditions.checkArgument(types[column] == ColumnType.INT, "Column %s is not an INT column", column);
+		ints[column][rows] = value;
+	}
+
+	/**
+	 * Sets the value of a DOUBLE column in the current row.
+	 */
+	public void setDouble(int column, double value)
+	{
+		Preconditions.checkArgument(types[column] == ColumnType.DOUBLE, "Column %s is not a DOUBLE column", column);
+		doubles[column][rows] = value;
+	}
+
+	/**
+	 * Sets the value of a FACTOR column in the current row.
+	 *
+	 * @param value
+	 *            The value, null for NA
+	 */
+	public void setFactor(int column, String value)
+	{
+		Preconditions.checkArgument(types[column] == ColumnType.FACTOR, "Column %s is not a FACTOR column", column);
+		if (value == null)
+		{
+			ints[column][rows] = Integer.MIN_VALUE;
+			return;
+		}
+
+		Map<String, Integer> columnLevels = levels.get(column);
+		Integer level = columnLevels.get(value);
+		if (level == null)
+		{
+			level = columnLevels.size() + 1;
+			columnLevels.put(value, level);
+			newLevels.get(column).add(value);
+		}
+		ints[column][rows] = level;
+	}
+
+	/**
+	 * Finishes the current row. Values which were not set keep the value of
+	 * the row at the same position in the previous block.
+	 *
+	 * @throws IOException
+	 */
+	public void endRow() throws IOException
+	{
+		Preconditions.checkState(!closed, "The writer is closed");
+		++rows;
+		++totalRows;
+		if (rows == blockSize)
+		{
+			writeBlock();
+		}
+	}
+
+	/**
+	 * @return The number of rows written so far
+	 */
+	public long getRowCount()
+	{
+		return totalRows;
+	}
+
+	/**
+	 * Writes the remaining rows and the end marker and closes the stream.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		try
+		{
+			writeBlock();
+			out.writeInt(0);
+		} finally
+		{
+			out.close();
+		}
+	}
+
+	private void writeBlock() throws IOException
+	{
+		if (rows == 0)
+		{
+			return;
+		}
+
+		out.writeInt(rows);
+		for (int c = 0; c < types.length; ++c)
+		{
+			switch (types[c])
+			{
+			case DOUBLE:
+				for (int i = 0; i < rows; ++i)
+				{
+					out.writeDouble(doubles[c][i]);
+				}
+				break;
+			case FACTOR:
+				List<String> added = newLevels.get(c);
+				out.writeInt(added.size());
+				for (String level : added)
+				{
+					writeString(level);
+				}
+				added.clear();
+				// Fall through, the levels are written like INT
+			case INT:
+				for (int i = 0; i < rows; ++i)
+				{
+					out.writeInt(ints[c][i]);
+				}
+				break;
+			}
+		}
+		rows = 0;
+	}
+
+	private void writeString(String s) throws IOException
+	{
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
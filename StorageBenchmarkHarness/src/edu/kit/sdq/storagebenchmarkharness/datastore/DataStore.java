@@ -22,7 +22,40 @@ public interface DataStore
 	public void storeExperimentResults(int expNo, String hostIdentifier, String benchmarkId, int repeatNo, String expUid,
 			IndependentVariablesOfSut sutVars, IndependentVariablesOfBenchmark benchVars, List<DependentVariables> dependentVars);
 
+	/**
+	 * Opens a run whose results are appended while the run is executed, see
+	 * {@code ResultSink}. Takes the same identifiers as
+	 * {@link #storeExperimentResults}.
+	 * 
+	 * @return The sink receiving the results of the run
+	 */
+	public ResultSink openRun(int expNo, String hostIdentifier, String benchmarkId, int repeatNo, String expUid,
+			IndependentVariablesOfSut sutVars, IndependentVariablesOfBenchmark benchVars);
+
+	/**
+	 * Stores how many repeats of an experiment were measured on a host and
+	 * the precision of their key metrics. Stored again if the experiment is
+	 * executed again by this configuration run.
+	 * 
+	 * @param finished
+	 *            True if no more repeats are needed, then the experiment is
+	 *            skipped when the configuration is resumed
+	 */
+	public void storeRepetitions(int expNo, String hostIdentifier, String expUid, RepeatPrecision precision, boolean finished);
+
 	public void finishConfigurationRun();
 
+	/**
+	 * Reads the runs which were completely stored by all configuration runs
+	 * with the identifier. A run is completed when its results were stored by
+	 * {@link #storeExperimentResults} or committed to its {@code ResultSink}.
+	 * 
+	 * @param identifier
+	 *            The identifier of the configuration
+	 * @return The completed runs
+	 * @throws DataStoreException
+	 */
+	public RunJournal loadRunJournal(String identifier);
+
 	public void closeDataStore();
 }
\ No newline at end of file
@@ -0,0 +1,80 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.List;
+import java.util.Map;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * Defines the typed read access to the results persisted by a
+ * {@code DataStore}. Large results are returned as cursors which are read row
+ * by row and have to be closed by the caller.
+ */
+public interface DataStoreReader
+{
+	/**
+	 * @param identifier
+	 *            The identifier of the configuration runs
+	 * @return The ids of all configuration runs with the identifier, oldest
+	 *         first
+	 */
+	public List<Long> getConfigurationRunIds(String identifier) throws DataStoreException;
+
+	/**
+	 * @param crId
+	 *            The id of the configuration run
+	 * @return The runs of the configuration run ordered by experiment, repeat
+	 *         and host
+	 */
+	public List<StoredRun> getRuns(long crId) throws DataStoreException;
+
+	/**
+	 * Finds the runs of a benchmark whose independent variables have the
+	 * given values, e.g. all runs with {@code readBlockSize=32}.
+	 *
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param independentVars
+	 *            Maps the column names of the independent variables to their
+	 *            values, may be empty
+	 * @return The matching runs ordered by configuration run, experiment,
+	 *         repeat and host
+	 */
+	public List<StoredRun> findRuns(String prefix, Map<String, ?> independentVars) throws DataStoreException;
+
+	/**
+	 * Reads the runs of a configuration run joined with their (not nested)
+	 * independent variables.
+	 *
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param crId
+	 *            The id of the configuration run
+	 * @return A cursor over the rows, one per run
+	 */
+	public RowCursor getRunsWithIndependentVars(String prefix, long crId) throws DataStoreException;
+
+	/**
+	 * Reads the dependent values of a run. The values stored as rows are
+	 * returned ordered by metric, operation and the order in which they were
+	 * stored, followed by the values stored as columnar series.
+	 *
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param runId
+	 *            The id of the run
+	 * @param metric
+	 *            Only values of this metric, null for all metrics
+	 * @param operation
+	 *            Only values of this operation, null for all operations
+	 * @return A cursor over the values
+	 */
+	public ValueCursor getDependentValues(String prefix, long runId, Metric metric, String operation) throws DataStoreException;
+
+	/**
+	 * Releases the resources of the reader. Open cursors can not be used
+	 * afterwards.
+	 */
+	public void close();
+}
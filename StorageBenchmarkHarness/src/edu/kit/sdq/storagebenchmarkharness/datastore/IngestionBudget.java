@@ -0,0 +1,279 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounds the amount of result data which is handed to a {@code DataStore} but
+ * not yet persisted. Producers (the BenchmarkRunners) acquire a share of the
+ * budget before they enqueue a batch of results and the persisting thread
+ * releases it as soon as the batch is written. If the budget is exhausted, the
+ * producer blocks until enough capacity is freed and is woken up immediately
+ * when this happens.
+ *
+ * A single batch which is larger than the whole budget is admitted as soon as
+ * nothing else is in flight, otherwise such a batch could never be stored.
+ *
+ * Besides the throttling, this class records some metrics about the
+ * ingestion: the number of batches, rows and bytes in flight and how long the
+ * producers had to wait.
+ */
+public final class IngestionBudget
+{
+	private final long maxRows;
+	private final long maxBytes;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition capacityFreed = lock.newCondition();
+
+	// All following fields are guarded by lock
+	private int batchesInFlight = 0;
+	private long rowsInFlight = 0;
+	private long bytesInFlight = 0;
+
+	private long maxBatchesInFlightSeen = 0;
+	private long maxBytesInFlightSeen = 0;
+
+	private long batchesAdmitted = 0;
+	private long producerWaits = 0;
+	private long producerWaitNanos = 0;
+	private long maxProducerWaitNanos = 0;
+
+	/**
+	 * Creates a new budget.
+	 *
+	 * @param maxRows
+	 *            The maximum number of rows (dependent variable values) which
+	 *            may be in flight at the same time.
+	 * @param maxBytes
+	 *            The maximum estimated amount of heap memory in bytes which may
+	 *            be occupied by results in flight.
+	 */
+	public IngestionBudget(long maxRows, long maxBytes)
+	{
+		Preconditions.checkArgument(maxRows > 0, "maxRows must be positive");
+		Preconditions.checkArgument(maxBytes > 0, "maxBytes must be positive");
+
+		this.maxRows = maxRows;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Reserves capacity for a batch. Blocks until the batch fits into the
+	 * budget.
+	 *
+	 * @param rows
+	 *            Number of rows in the batch
+	 * @param bytes
+	 *            Estimated size of the batch in bytes
+	 * @throws InterruptedException
+	 *             If the producer was interrupted while waiting.
+	 */
+	public void acquire(long rows, long bytes) throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			if (!fits(rows, bytes))
+			{
+				long start = System.nanoTime();
+				while (!fits(rows, bytes))
+				{
+					capacityFreed.await();
+				}
+				long waited = System.nanoTime() - start;
+				producerWaits++;
+				producerWaitNanos += waited;
+				maxProducerWaitNanos = Math.max(maxProducerWaitNanos, waited);
+			}
+
+			batchesInFlight++;
+			rowsInFlight += rows;
+			bytesInFlight += bytes;
+			batchesAdmitted++;
+
+			maxBatchesInFlightSeen = Math.max(maxBatchesInFlightSeen, batchesInFlight);
+			maxBytesInFlightSeen = Math.max(maxBytesInFlightSeen, bytesInFlight);
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Releases the capacity reserved by {@code acquire}. Must be called exactly
+	 * once for every successful {@code acquire}, regardless whether the batch
+	 * was persisted successfully or not.
+	 *
+	 * @param rows
+	 *            Number of rows in the batch
+	 * @param bytes
+	 *            Estimated size of the batch in bytes
+	 */
+	public void release(long rows, long bytes)
+	{
+		lock.lock();
+		try
+		{
+			batchesInFlight--;
+			rowsInFlight -= rows;
+			bytesInFlight -= bytes;
+			capacityFreed.signalAll();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Blocks until all batches in flight have been released.
+	 *
+	 * @throws InterruptedException
+	 */
+	public void awaitEmpty() throws InterruptedException
+	{
+		lock.lockInterruptibly();
+		try
+		{
+			while (batchesInFlight > 0)
+			{
+				capacityFreed.await();
+			}
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	// Guarded by lock. An empty pipeline always accepts a batch.
+	private boolean fits(long rows, long bytes)
+	{
+		return batchesInFlight == 0 || (rowsInFlight + rows <= maxRows && bytesInFlight + bytes <= maxBytes);
+	}
+
+	public long getMaxRows()
+	{
+		return maxRows;
+	}
+
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+
+	/**
+	 * @return The number of batches which were handed over but are not
+	 *         persisted yet (queue depth).
+	 */
+	public int getBatchesInFlight()
+	{
+		lock.lock();
+		try
+		{
+			return batchesInFlight;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	public long getRowsInFlight()
+	{
+		lock.lock();
+		try
+		{
+			return rowsInFlight;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	public long getBytesInFlight()
+	{
+		lock.lock();
+		try
+		{
+			return bytesInFlight;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	public long getBatchesAdmitted()
+	{
+		lock.lock();
+		try
+		{
+			return batchesAdmitted;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return How often a producer had to wait for free capacity.
+	 */
+	public long getProducerWaits()
+	{
+		lock.lock();
+		try
+		{
+			return producerWaits;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The accumulated time all producers spent waiting for capacity.
+	 */
+	public long getProducerWaitTime(TimeUnit unit)
+	{
+		lock.lock();
+		try
+		{
+			return unit.convert(producerWaitNanos, TimeUnit.NANOSECONDS);
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return The longest time a single producer spent waiting for capacity.
+	 */
+	public long getMaxProducerWaitTime(TimeUnit unit)
+	{
+		lock.lock();
+		try
+		{
+			return unit.convert(maxProducerWaitNanos, TimeUnit.NANOSECONDS);
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		lock.lock();
+		try
+		{
+			return String.format("IngestionBudget [batchesInFlight=%d (max %d), rowsInFlight=%d/%d, bytesInFlight=%d/%d (max %d), "
+					+ "batchesAdmitted=%d, producerWaits=%d, producerWaitTime=%dms (max %dms)]", batchesInFlight, maxBatchesInFlightSeen,
+					rowsInFlight, maxRows, bytesInFlight, maxBytes, maxBytesInFlightSeen, batchesAdmitted, producerWaits,
+					TimeUnit.NANOSECONDS.toMillis(producerWaitNanos), TimeUnit.NANOSECONDS.toMillis(maxProducerWaitNanos));
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,456 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A mergeable sketch of the distribution of a series of values which answers
+ * quantile queries with a bounded relative error.
+ *
+ * The values are counted in logarithmically sized buckets (like a HDR
+ * histogram): bucket {@code i} holds the values in
+ * {@code (gamma^(i-1), gamma^i]} with {@code gamma = (1 + a) / (1 - a)} for the
+ * relative accuracy {@code a}. Every quantile is thus estimated with a relative
+ * error of at most {@code a}. Negative values are counted in a second set of
+ * buckets, values whose magnitude is below {@code MIN_MAGNITUDE} are counted as
+ * zero. Count, sum, minimum and maximum are exact.
+ *
+ * Sketches with the same accuracy can be merged without any loss, e.g. the
+ * sketches of all repeats and hosts of an experiment. The size of a sketch only
+ * depends on the range of the values, not on their number: values between one
+ * microsecond and one hour need less than 2000 buckets at 1% accuracy.
+ */
+public final class QuantileSketch
+{
+	/** The default relative accuracy of the quantiles. */
+	public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+	/** Values with a smaller magnitude are counted as zero. */
+	public static final double MIN_MAGNITUDE = 1e-9;
+
+	// Version of the binary encoding
+	private static final int ENCODING_VERSION = 1;
+
+	private final double relativeAccuracy;
+	private final double gamma;
+	private final double logGamma;
+
+	private final Buckets positive = new Buckets();
+	private final Buckets negative = new Buckets();
+	private long zeroCount = 0;
+
+	private long count = 0;
+	private double sum = 0;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+
+	/**
+	 * Creates an empty sketch with {@code DEFAULT_RELATIVE_ACCURACY}.
+	 */
+	public QuantileSketch()
+	{
+		this(DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * Creates an empty sketch.
+	 *
+	 * @param relativeAccuracy
+	 *            The maximum relative error of the quantiles, e.g. 0.01 for 1%
+	 */
+	public QuantileSketch(double relativeAccuracy)
+	{
+		Preconditions.checkArgument(relativeAccuracy > 0 && relativeAccuracy < 1, "Invalid relative accuracy %s", relativeAccuracy);
+
+		this.relativeAccuracy = relativeAccuracy;
+		this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+		this.logGamma = Math.log(gamma);
+	}
+
+	/**
+	 * Adds a value. NaN is ignored.
+	 */
+	public void add(double value)
+	{
+		if (Double.isNaN(value))
+		{
+			return;
+		}
+
+		if (value >= MIN_MAGNITUDE)
+		{
+			positive.add(index(value), 1);
+		} else if (value <= -MIN_MAGNITUDE)
+		{
+			negative.add(index(-value), 1);
+		} else
+		{
+			++zeroCount;
+		}
+
+		++count;
+		sum += value;
+		if (value < min)
+		{
+			min = value;
+		}
+		if (value > max)
+		{
+			max = value;
+		}
+	}
+
+	/**
+	 * Adds all values of another sketch to this sketch.
+	 *
+	 * @throws IllegalArgumentException
+	 *             If the sketches have different accuracies
+	 */
+	public void merge(QuantileSketch other)
+	{
+		Preconditions.checkArgument(other.relativeAccuracy == relativeAccuracy, "Can not merge sketches with accuracy %s and %s",
+				relativeAccuracy, other.relativeAccuracy);
+
+		positive.addAll(other.positive);
+		negative.addAll(other.negative);
+		zeroCount += other.zeroCount;
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Estimates a quantile.
+	 *
+	 * @param q
+	 *            The quantile between 0 and 1, e.g. 0.95
+	 * @return The estimated value, NaN if the sketch is empty
+	 */
+	public double quantile(double q)
+	{
+		Preconditions.checkArgument(q >= 0 && q <= 1, "Invalid quantile %s", q);
+
+		if (count == 0)
+		{
+			return Double.NaN;
+		}
+		if (q == 0)
+		{
+			return min;
+		}
+		if (q == 1)
+		{
+			return max;
+		}
+
+		long rank = (long) (q * (count - 1));
+		double result;
+
+		// The negative values from the largest magnitude to the smallest, then
+		// zero and the positive values
+		if (rank < negative.total)
+		{
+			int index = negative.indexOfRank(negative.total - 1 - rank);
+			result = -value(index);
+		} else if (rank < negative.total + zeroCount)
+		{
+			result = 0;
+		} else
+		{
+			int index = positive.indexOfRank(rank - negative.total - zeroCount);
+			result = value(index);
+		}
+
+		// The estimate of a bucket may lie outside of the observed values
+		return Math.max(min, Math.min(max, result));
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public double getSum()
+	{
+		return sum;
+	}
+
+	/**
+	 * @return The arithmetic mean, NaN if the sketch is empty
+	 */
+	public double getMean()
+	{
+		return count == 0 ? Double.NaN : sum / count;
+	}
+
+	/**
+	 * @return The smallest value, NaN if the sketch is empty
+	 */
+	public double getMin()
+	{
+		return count == 0 ? Double.NaN : min;
+	}
+
+	/**
+	 * @return The largest value, NaN if the sketch is empty
+	 */
+	public double getMax()
+	{
+		return count == 0 ? Double.NaN : max;
+	}
+
+	public double getRelativeAccuracy()
+	{
+		return relativeAccuracy;
+	}
+
+	/**
+	 * Encodes the sketch into a compact binary block. The bucket counts are
+	 * stored sparse as varints.
+	 */
+	public byte[] encode()
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(ENCODING_VERSION);
+			out.writeDouble(relativeAccuracy);
+			out.writeLong(count);
+			out.writeDouble(sum);
+			out.writeDouble(min);
+			out.writeDouble(max);
+			writeVarLong(out, zeroCount);
+			positive.write(out);
+			negative.write(out);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e)
+		{
+			// Can not happen for in-memory streams
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Decodes a sketch encoded by {@link #encode()}.
+	 *
+	 * @throws IOException
+	 *             If the block is corrupt
+	 */
+	public static QuantileSketch decode(byte[] block) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(block));
+		int version = in.readUnsignedByte();
+		if (version != ENCODING_VERSION)
+		{
+			throw new IOException("Unknown sketch encoding " + version);
+		}
+
+		double relativeAccuracy = in.readDouble();
+		if (!(relativeAccuracy > 0 && relativeAccuracy < 1))
+		{
+			throw new IOException("Invalid relative accuracy " + relativeAccuracy);
+		}
+
+		QuantileSketch sketch = new QuantileSketch(relativeAccuracy);
+		sketch.count = in.readLong();
+		sketch.sum = in.readDouble();
+		sketch.min = in.readDouble();
+		sketch.max = in.readDouble();
+		sketch.zeroCount = readVarLong(in);
+		sketch.positive.read(in);
+		sketch.negative.read(in);
+		return sketch;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "QuantileSketch [count=" + count + ", mean=" + getMean() + ", p50=" + quantile(0.5) + ", p95=" + quantile(0.95) + ", p99="
+				+ quantile(0.99) + ", max=" + getMax() + "]";
+	}
+
+	private int index(double magnitude)
+	{
+		return (int) Math.ceil(Math.log(magnitude) / logGamma);
+	}
+
+	/**
+	 * @return The estimate for the values of bucket {@code index}, which has a
+	 *         relative error of at most the accuracy for all of them
+	 */
+	private double value(int index)
+	{
+		return 2 * Math.pow(gamma, index) / (gamma + 1);
+	}
+
+	/**
+	 * The counts of a contiguous range of buckets.
+	 */
+	private static final class Buckets
+	{
+		private long[] counts = new long[0];
+		// The index of the bucket counts[0]
+		private int offset = 0;
+		private long total = 0;
+
+		private void add(int index, long n)
+		{
+			if (counts.length == 0)
+			{
+				counts = new long[16];
+				offset = index - 8;
+			} else if (index < offset || index >= offset + counts.length)
+			{
+				grow(index);
+			}
+			counts[index - offset] += n;
+			total += n;
+		}
+
+		private void grow(int index)
+		{
+			int newOffset = Math.min(offset, index);
+			int newEnd = Math.max(offset + counts.length, index + 1);
+			// Leave some room for further growth in the same direction
+			int room = (newEnd - newOffset) / 2;
+			if (index < offset)
+			{
+				newOffset -= room;
+			} else
+			{
+				newEnd += room;
+			}
+
+			long[] grown = new long[newEnd - newOffset];
+			System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+			counts = grown;
+			offset = newOffset;
+		}
+
+		private void addAll(Buckets other)
+		{
+			for (int i = 0; i < other.counts.length; ++i)
+			{
+				if (other.counts[i] != 0)
+				{
+					add(other.offset + i, other.counts[i]);
+				}
+			}
+		}
+
+		/**
+		 * @return The index of the bucket containing the value with the rank
+		 *         (0 is the smallest value)
+		 */
+		private int indexOfRank(long rank)
+		{
+			long seen = 0;
+			for (int i = 0; i < counts.length; ++i)
+			{
+				seen += counts[i];
+				if (seen > rank)
+				{
+					return offset + i;
+				}
+			}
+			throw new IllegalStateException("Rank " + rank + " exceeds " + total);
+		}
+
+		private void write(OutputStream out) throws IOException
+		{
+			int first = 0;
+			int end = counts.length;
+			while (first < end && counts[first] == 0)
+			{
+				++first;
+			}
+			while (end > first && counts[end - 1] == 0)
+			{
+				--end;
+			}
+
+			writeVarLong(out, end - first);
+			if (end > first)
+			{
+				long start = offset + first;
+				// Zigzag encoding for negative indices
+				writeVarLong(out, (start << 1) ^ (start >> 63));
+				for (int i = first; i < end; ++i)
+				{
+					writeVarLong(out, counts[i]);
+				}
+			}
+		}
+
+		private void read(InputStream in) throws IOException
+		{
+			int length = (int) readVarLong(in);
+			if (length < 0 || length > 1 << 20)
+			{
+				throw new IOException("Invalid number of buckets " + length);
+			}
+			if (length == 0)
+			{
+				return;
+			}
+
+			long zigzag = readVarLong(in);
+			offset = (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+			counts = new long[length];
+			for (int i = 0; i < length; ++i)
+			{
+				counts[i] = readVarLong(in);
+				total += counts[i];
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Buckets [offset=" + offset + ", counts=" + Arrays.toString(counts) + "]";
+		}
+	}
+
+	private static void writeVarLong(OutputStream out, long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(InputStream in) throws IOException
+	{
+		long result = 0;
+		int shift = 0;
+		while (shift < 64)
+		{
+			int b = in.read();
+			if (b < 0)
+			{
+				throw new EOFException("Sketch is truncated");
+			}
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return result;
+			}
+			shift += 7;
+		}
+		throw new IOException("Malformed varint in sketch");
+	}
+}
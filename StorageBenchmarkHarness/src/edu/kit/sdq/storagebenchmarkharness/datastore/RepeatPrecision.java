@@ -0,0 +1,287 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValue;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.util.StudentT;
+
+/**
+ * Collects the key metrics of the repeats of an experiment on a host and
+ * estimates how precise their means are. The key metrics are the mean values
+ * of the benchmark per operation (e.g. the read throughput of FFSB), every
+ * repeat contributes one value per operation, metric and source. The
+ * precision is the half-width of the confidence interval of the mean over the
+ * repeats relative to the mean, thus 0.05 means that the true mean is within
+ * +-5% of the measured one with the confidence level.
+ *
+ * This class is thread-safe.
+ */
+public final class RepeatPrecision
+{
+	/** The confidence level if none is configured */
+	public static final double DEFAULT_CONFIDENCE_LEVEL = 0.95;
+
+	/** The key metrics if none are configured */
+	public static final Set<Metric> DEFAULT_METRICS = EnumSet.of(Metric.THROUGHPUT, Metric.RESPONSE_TIME);
+
+	private final Set<Metric> metrics;
+	private final double confidenceLevel;
+
+	// Guarded by this
+	private int repeats = 0;
+	private final Map<String, Interval> intervals = Maps.newLinkedHashMap();
+
+	public RepeatPrecision()
+	{
+		this(DEFAULT_METRICS, DEFAULT_CONFIDENCE_LEVEL);
+	}
+
+	/**
+	 * @param metrics
+	 *            The key metrics, the default ones if empty
+	 * @param confidenceLevel
+	 *            The confidence level of the intervals, between 0 and 1
+	 */
+	public RepeatPrecision(Collection<Metric> metrics, double confidenceLevel)
+	{
+		if (confidenceLevel <= 0 || confidenceLevel >= 1)
+		{
+			throw new IllegalArgumentException("confidenceLevel must be between 0 and 1");
+		}
+		this.metrics = metrics.isEmpty() ? DEFAULT_METRICS : EnumSet.copyOf(metrics);
+		this.confidenceLevel = confidenceLevel;
+	}
+
+	/**
+	 * Adds the results of the benchmark of a repeat. Only the mean values of
+	 * the key metrics are used.
+	 */
+	public synchronized void add(DependentVariables benchmarkResults)
+	{
+		addRepeat(getKeyValues(benchmarkResults));
+	}
+
+	/**
+	 * Adds a repeat by the values of its key metrics, e.g. the ones stored
+	 * for a repeat of a previous configuration run.
+	 * 
+	 * @param keyValues
+	 *            The values as returned by {@link #getKeyValues}
+	 */
+	public synchronized void addRepeat(List<DependentVariablesValueComposite> keyValues)
+	{
+		++repeats;
+		for (DependentVariablesValueComposite value : keyValues)
+		{
+			add(value.getOperation(), value.getOperationMetric().getValue(), value.getSource(), value.getValue());
+		}
+	}
+
+	/**
+	 * @return The mean values of the key metrics in the results of the
+	 *         benchmark of a repeat
+	 */
+	public List<DependentVariablesValueComposite> getKeyValues(DependentVariables benchmarkResults)
+	{
+		List<DependentVariablesValueComposite> keyValues = Lists.newArrayList();
+		List<DependentVariablesValue> values = benchmarkResults.getValues();
+		for (int i = 0; i < values.size(); ++i)
+		{
+			DependentVariablesValue value = values.get(i);
+			if (value instanceof DependentVariablesValueComposite && ((DependentVariablesValueComposite) value).getType() == Type.MEAN
+					&& metrics.contains(value.getOperationMetric()))
+			{
+				keyValues.add((DependentVariablesValueComposite) value);
+			}
+		}
+		return keyValues;
+	}
+
+	/**
+	 * Adds a single value of a key metric.
+	 */
+	synchronized void add(String operation, int metric, String source, double value)
+	{
+		String key = operation + '\0' + metric + '\0' + source;
+		Interval interval = intervals.get(key);
+		if (interval == null)
+		{
+			interval = new Interval(operation, metric, source);
+			intervals.put(key, interval);
+		}
+		interval.add(value);
+	}
+
+	/**
+	 * @return The number of repeats added
+	 */
+	public synchronized int getRepeats()
+	{
+		return repeats;
+	}
+
+	public double getConfidenceLevel()
+	{
+		return confidenceLevel;
+	}
+
+	/**
+	 * @return The precision of the least precise key metric, infinite if
+	 *         there is no key metric or one has less than two values
+	 */
+	public synchronized double getRelativeHalfWidth()
+	{
+		if (intervals.isEmpty())
+		{
+			return Double.POSITIVE_INFINITY;
+		}
+		double worst = 0;
+		for (Interval interval : intervals.values())
+		{
+			worst = Math.max(worst, interval.getRelativeHalfWidth());
+		}
+		return worst;
+	}
+
+	/**
+	 * @return A snapshot of the intervals of the key metrics in the order they
+	 *         were found
+	 */
+	public synchronized List<Interval> getIntervals()
+	{
+		ImmutableList.Builder<Interval> snapshot = ImmutableList.builder();
+		for (Interval interval : intervals.values())
+		{
+			snapshot.add(interval.copy());
+		}
+		return snapshot.build();
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "RepeatPrecision [repeats=" + repeats + ", confidenceLevel=" + confidenceLevel + ", relativeHalfWidth=" + getRelativeHalfWidth()
+				+ "]";
+	}
+
+	/**
+	 * The confidence interval of the mean of one operation, metric and
+	 * source.
+	 */
+	public final class Interval
+	{
+		private final String operation;
+		private final int metric;
+		private final String source;
+
+		// Welford's running mean and sum of squared deviations
+		private int count;
+		private double mean;
+		private double squares;
+
+		private Interval(String operation, int metric, String source)
+		{
+			this.operation = operation;
+			this.metric = metric;
+			this.source = source;
+		}
+
+		private void add(double value)
+		{
+			++count;
+			double delta = value - mean;
+			mean += delta / count;
+			squares += delta * (value - mean);
+		}
+
+		private Interval copy()
+		{
+			Interval copy = new Interval(operation, metric, source);
+			copy.count = count;
+			copy.mean = mean;
+			copy.squares = squares;
+			return copy;
+		}
+
+		public String getOperation()
+		{
+			return operation;
+		}
+
+		/**
+		 * @return The value of the {@code Metric}
+		 */
+		public int getMetric()
+		{
+			return metric;
+		}
+
+		/**
+		 * @return The source, may be null
+		 */
+		public String getSource()
+		{
+			return source;
+		}
+
+		/**
+		 * @return The number of repeats which had a value
+		 */
+		public int getCount()
+		{
+			return count;
+		}
+
+		public double getMean()
+		{
+			return mean;
+		}
+
+		/**
+		 * @return The half-width of the confidence interval, infinite if
+		 *         there are less than two values
+		 */
+		public double getHalfWidth()
+		{
+			if (count < 2)
+			{
+				return Double.POSITIVE_INFINITY;
+			}
+			double stdDev = Math.sqrt(squares / (count - 1));
+			return StudentT.criticalValue(confidenceLevel, count - 1) * stdDev / Math.sqrt(count);
+		}
+
+		/**
+		 * @return The half-width relative to the absolute mean, 0 if all
+		 *         values are equal
+		 */
+		public double getRelativeHalfWidth()
+		{
+			double halfWidth = getHalfWidth();
+			if (halfWidth == 0)
+			{
+				return 0;
+			}
+			return mean == 0 ? Double.POSITIVE_INFINITY : halfWidth / Math.abs(mean);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Interval [operation=" + operation + ", metric=" + metric + ", source=" + source + ", count=" + count + ", mean=" + mean
+					+ ", halfWidth=" + getHalfWidth() + "]";
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.List;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * Receives the results of a single run while the benchmark and the monitors
+ * are still producing them. A sink is obtained from
+ * {@link DataStore#openRun}. The results are appended in batches and persisted
+ * in the background; the run is completed by {@link #commit()} or discarded by
+ * {@link #abort()}.
+ * 
+ * A sink is used by the thread which executes the run, it is not thread-safe.
+ */
+public interface ResultSink
+{
+	/**
+	 * Appends a batch of results to the run. The values of the batch and the
+	 * samples of an attached {@code SampleBuffer} are persisted
+	 * asynchronously, the batch must not be modified afterwards. The benchmark
+	 * prefix of the batch is ignored, all results of a run are stored for the
+	 * benchmark of the run.
+	 * 
+	 * Blocks if too many results wait for being persisted.
+	 * 
+	 * @param batch
+	 * @throws DataStoreException
+	 *             If the sink was already committed or aborted or a previous
+	 *             batch could not be persisted.
+	 */
+	public void append(DependentVariables batch);
+
+	/**
+	 * Sets the values of the key metrics of the repeat (see
+	 * {@code RepeatPrecision}). They are stored when the run is committed and
+	 * restore the precision of the repeats when the configuration is resumed.
+	 * 
+	 * @param keyValues
+	 *            The values, must not be modified afterwards
+	 */
+	public void setKeyValues(List<DependentVariablesValueComposite> keyValues);
+
+	/**
+	 * Completes the run and waits until all batches are persisted.
+	 * 
+	 * @throws DataStoreException
+	 */
+	public void commit();
+
+	/**
+	 * Discards the run and all batches appended so far. Does nothing if the
+	 * sink was already committed or aborted.
+	 * 
+	 * @throws DataStoreException
+	 */
+	public void abort();
+}
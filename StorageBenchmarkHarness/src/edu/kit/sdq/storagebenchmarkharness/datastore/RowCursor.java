@@ -0,0 +1,34 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * A cursor over the rows of a query whose columns are only known at runtime,
+ * e.g. the independent variables which are derived from the model.
+ */
+public interface RowCursor
+{
+	/**
+	 * Moves to the next row. Must be called before the first row is read.
+	 *
+	 * @return false if there are no more rows
+	 */
+	public boolean next() throws DataStoreException;
+
+	public int getColumnCount() throws DataStoreException;
+
+	public String getColumnName(int column) throws DataStoreException;
+
+	public boolean isNull(int column) throws DataStoreException;
+
+	public long getLong(int column) throws DataStoreException;
+
+	public double getDouble(int column) throws DataStoreException;
+
+	public String getString(int column) throws DataStoreException;
+
+	/**
+	 * Releases the resources of the cursor. Can be called more than once.
+	 */
+	public void close();
+}
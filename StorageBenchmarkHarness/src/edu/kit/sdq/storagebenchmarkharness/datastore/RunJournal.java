@@ -0,0 +1,124 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+
+/**
+ * The runs of a configuration which are completely stored, identified by the
+ * experiment (see {@code ExperimentFingerprint}), the SUT and the repeat. Used
+ * to skip these runs when an interrupted configuration is run again. With an
+ * adaptive repetition count, the journal also contains the experiments whose
+ * repeats were finished on a host before the maximum was reached, and the
+ * values of the key metrics of the stored repeats (see
+ * {@code RepeatPrecision}).
+ *
+ * The journal is thread-safe.
+ */
+public final class RunJournal
+{
+	private final Set<String> completed = Sets.newHashSet();
+	private final Set<String> finished = Sets.newHashSet();
+	// The key values of the stored repeats per experiment and host, by repeat
+	private final Map<String, SortedMap<Integer, List<DependentVariablesValueComposite>>> keyValues = Maps.newHashMap();
+
+	/**
+	 * Marks a run as completed.
+	 */
+	public synchronized void add(String expUid, String hostId, int repeatNo)
+	{
+		completed.add(key(expUid, hostId, repeatNo));
+	}
+
+	/**
+	 * @return True if the run is completed
+	 */
+	public synchronized boolean isCompleted(String expUid, String hostId, int repeatNo)
+	{
+		return completed.contains(key(expUid, hostId, repeatNo));
+	}
+
+	/**
+	 * Marks a run as completed and stored with the values of its key metrics.
+	 * 
+	 * @param values
+	 *            The values, may be empty if none were stored
+	 */
+	public synchronized void addStored(String expUid, String hostId, int repeatNo, List<DependentVariablesValueComposite> values)
+	{
+		add(expUid, hostId, repeatNo);
+		SortedMap<Integer, List<DependentVariablesValueComposite>> repeats = keyValues.get(expUid + '\0' + hostId);
+		if (repeats == null)
+		{
+			repeats = Maps.newTreeMap();
+			keyValues.put(expUid + '\0' + hostId, repeats);
+		}
+		List<DependentVariablesValueComposite> stored = repeats.get(repeatNo);
+		if (stored == null)
+		{
+			stored = Lists.newArrayList();
+			repeats.put(repeatNo, stored);
+		}
+		stored.addAll(values);
+	}
+
+	/**
+	 * @return The values of the key metrics of the stored repeats of the
+	 *         experiment on the host, one list per repeat in the order of the
+	 *         repeats. Runs completed by this configuration run are not
+	 *         included.
+	 */
+	public synchronized List<List<DependentVariablesValueComposite>> getStoredKeyValues(String expUid, String hostId)
+	{
+		SortedMap<Integer, List<DependentVariablesValueComposite>> repeats = keyValues.get(expUid + '\0' + hostId);
+		if (repeats == null)
+		{
+			return ImmutableList.of();
+		}
+		ImmutableList.Builder<List<DependentVariablesValueComposite>> snapshot = ImmutableList.builder();
+		for (List<DependentVariablesValueComposite> values : repeats.values())
+		{
+			snapshot.add(ImmutableList.copyOf(values));
+		}
+		return snapshot.build();
+	}
+
+	/**
+	 * Marks the repeats of an experiment on a host as finished, no more
+	 * repeats are needed.
+	 */
+	public synchronized void finishExperiment(String expUid, String hostId)
+	{
+		finished.add(expUid + '\0' + hostId);
+	}
+
+	/**
+	 * @return True if no more repeats of the experiment are needed on the
+	 *         host
+	 */
+	public synchronized boolean isFinished(String expUid, String hostId)
+	{
+		return finished.contains(expUid + '\0' + hostId);
+	}
+
+	/**
+	 * @return The number of completed runs
+	 */
+	public synchronized int size()
+	{
+		return completed.size();
+	}
+
+	private static String key(String expUid, String hostId, int repeatNo)
+	{
+		return expUid + '\0' + hostId + '\0' + repeatNo;
+	}
+}
@@ -0,0 +1,157 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Maps;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValue;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
+
+/**
+ * Collects a {@code QuantileSketch} per operation, metric and source of the
+ * single values of a run while they are ingested. Composite values (means,
+ * percentages, ...) are already aggregates and are not included.
+ */
+public final class RunSummary
+{
+	private final double relativeAccuracy;
+	private final Map<String, Entry> entries = Maps.newLinkedHashMap();
+
+	public RunSummary()
+	{
+		this(QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+	}
+
+	/**
+	 * @param relativeAccuracy
+	 *            The relative accuracy of the sketches
+	 */
+	public RunSummary(double relativeAccuracy)
+	{
+		this.relativeAccuracy = relativeAccuracy;
+	}
+
+	/**
+	 * Returns the sketch for the combination of operation, metric and source.
+	 * The sketch is created if it does not exist yet.
+	 */
+	public QuantileSketch sketch(String operation, int metric, String source)
+	{
+		String key = operation + '\0' + metric + '\0' + source;
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			entry = new Entry(operation, metric, source, new QuantileSketch(relativeAccuracy));
+			entries.put(key, entry);
+		}
+		return entry.sketch;
+	}
+
+	/**
+	 * Adds the single values of the dependent variables and the samples of an
+	 * attached sample buffer.
+	 */
+	public void addAll(DependentVariables dependentVars)
+	{
+		List<DependentVariablesValue> values = dependentVars.getValues();
+		for (int i = 0; i < values.size(); ++i)
+		{
+			DependentVariablesValue value = values.get(i);
+			if (value instanceof DependentVariablesValueSingle)
+			{
+				sketch(value.getOperation(), value.getOperationMetric().getValue(), value.getSource()).add(value.getValue());
+			}
+		}
+
+		SampleBuffer samples = SampleBuffer.get(dependentVars);
+		if (samples != null)
+		{
+			addAll(samples);
+		}
+	}
+
+	/**
+	 * Adds the samples held by the buffer.
+	 */
+	public void addAll(SampleBuffer samples)
+	{
+		// Resolve the sketch of every channel once
+		QuantileSketch[] sketches = new QuantileSketch[samples.getChannelCount()];
+		for (int c = 0; c < sketches.length; ++c)
+		{
+			sketches[c] = sketch(samples.getOperation(c), samples.getMetric(c).getValue(), samples.getSource(c));
+		}
+
+		for (int i = 0; i < samples.size(); ++i)
+		{
+			sketches[samples.getChannel(i)].add(samples.getValue(i));
+		}
+	}
+
+	public boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @return The sketches in the order they were created
+	 */
+	public Collection<Entry> getEntries()
+	{
+		return entries.values();
+	}
+
+	/**
+	 * The sketch of one operation, metric and source.
+	 */
+	public static final class Entry
+	{
+		private final String operation;
+		private final int metric;
+		private final String source;
+		private final QuantileSketch sketch;
+
+		public Entry(String operation, int metric, String source, QuantileSketch sketch)
+		{
+			this.operation = operation;
+			this.metric = metric;
+			this.source = source;
+			this.sketch = sketch;
+		}
+
+		public String getOperation()
+		{
+			return operation;
+		}
+
+		/**
+		 * @return The value of the {@code Metric}
+		 */
+		public int getMetric()
+		{
+			return metric;
+		}
+
+		/**
+		 * @return The source, may be null
+		 */
+		public String getSource()
+		{
+			return source;
+		}
+
+		public QuantileSketch getSketch()
+		{
+			return sketch;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Entry [operation=" + operation + ", metric=" + metric + ", source=" + source + ", sketch=" + sketch + "]";
+		}
+	}
+}
@@ -0,0 +1,502 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+
+/**
+ * Holds the single values (samples) of a monitor or benchmark run in growable
+ * primitive arrays instead of one {@code DependentVariablesValueSingle} per
+ * sample. Operation, metric and source of a sample are interned into a
+ * dictionary of channels, so every sample only needs a channel index, a
+ * timestamp and a value (20 bytes instead of an EMF object with three string
+ * references and a timestamp string).
+ *
+ * Timestamps are stored as fixed point numbers with the scale of the buffer
+ * (see {@code SampleSeries}).
+ *
+ * A buffer is attached to the {@code DependentVariables} it belongs to as an
+ * EMF adapter. The data store reads the samples directly from the buffer,
+ * consumers which need the EMF objects have to call
+ * {@link #materialize(DependentVariables)}.
+ *
+ * If the buffer streams into a {@code ResultSink} (see
+ * {@link #streamTo(ResultSink, int)}), the samples are handed to the sink in
+ * batches while they are added, thus the buffer only holds the samples which
+ * were not yet passed on. The counts and means of the channels still cover
+ * all samples ever added.
+ */
+public final class SampleBuffer extends AdapterImpl
+{
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final int timestampScale;
+
+	// The dictionary of channels
+	private final Map<String, Integer> channelIds = Maps.newHashMap();
+	private final List<String> channelOperations = Lists.newArrayList();
+	private final List<Metric> channelMetrics = Lists.newArrayList();
+	private final List<String> channelSources = Lists.newArrayList();
+
+	// Count and sum of all samples ever added per channel
+	private int[] channelCounts = new int[8];
+	private double[] channelSums = new double[8];
+
+	// The sink the samples are streamed to, if any
+	private ResultSink sink;
+	private int batchSize;
+
+	// The samples
+	private int[] channels;
+	private long[] timestamps;
+	private double[] values;
+	private int size = 0;
+
+	/**
+	 * @param timestampScale
+	 *            The number of decimal places of the timestamps, e.g. 0 for
+	 *            seconds or milliseconds, 9 for the fractional seconds of
+	 *            blktrace.
+	 */
+	public SampleBuffer(int timestampScale)
+	{
+		Preconditions.checkArgument(timestampScale >= 0 && timestampScale <= 18, "Invalid timestamp scale %s", timestampScale);
+
+		this.timestampScale = timestampScale;
+		this.channels = new int[INITIAL_CAPACITY];
+		this.timestamps = new long[INITIAL_CAPACITY];
+		this.values = new double[INITIAL_CAPACITY];
+	}
+
+	private SampleBuffer(int timestampScale, Map<String, Integer> channelIds, List<String> channelOperations, List<Metric> channelMetrics,
+			List<String> channelSources, int[] channels, long[] timestamps, double[] values, int size)
+	{
+		this.timestampScale = timestampScale;
+		this.channelIds.putAll(channelIds);
+		this.channelOperations.addAll(channelOperations);
+		this.channelMetrics.addAll(channelMetrics);
+		this.channelSources.addAll(channelSources);
+		this.channels = channels;
+		this.timestamps = timestamps;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * Returns the id of the channel for the combination of operation, metric
+	 * and source. The channel is created if it does not exist yet.
+	 */
+	public int channel(String operation, Metric metric, String source)
+	{
+		Preconditions.checkNotNull(operation);
+		Preconditions.checkNotNull(metric);
+
+		String key = operation + '\0' + metric.getValue() + '\0' + source;
+		Integer id = channelIds.get(key);
+		if (id == null)
+		{
+			id = channelOperations.size();
+			channelIds.put(key, id);
+			channelOperations.add(operation);
+			channelMetrics.add(metric);
+			channelSources.add(source);
+			if (id == channelCounts.length)
+			{
+				channelCounts = Arrays.copyOf(channelCounts, id * 2);
+				channelSums = Arrays.copyOf(channelSums, id * 2);
+			}
+		}
+		return id;
+	}
+
+	/**
+	 * Appends a sample.
+	 *
+	 * @param channel
+	 *            A channel id returned by {@link #channel}
+	 * @param timestamp
+	 *            The timestamp, scaled by the scale of this buffer
+	 * @param value
+	 *            The value
+	 */
+	public void add(int channel, long timestamp, double value)
+	{
+		Preconditions.checkElementIndex(channel, getChannelCount(), "channel");
+
+		if (size == values.length)
+		{
+			// Grows by at least one, e.g. after batches of a single sample
+			int capacity = Math.max(size + 1, size + (size >> 1));
+			channels = Arrays.copyOf(channels, capacity);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		channels[size] = channel;
+		timestamps[size] = timestamp;
+		values[size] = value;
+		++size;
+		++channelCounts[channel];
+		channelSums[channel] += value;
+
+		if (sink != null && size >= batchSize)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Streams the samples into the sink: Whenever the buffer holds
+	 * {@code batchSize} samples, they are appended to the sink as a batch and
+	 * removed from the buffer.
+	 * 
+	 * @param sink
+	 *            The sink, null to stop streaming
+	 * @param batchSize
+	 *            The number of samples per batch
+	 */
+	public void streamTo(ResultSink sink, int batchSize)
+	{
+		Preconditions.checkArgument(batchSize > 0, "The batch size must be positive");
+
+		this.sink = sink;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Appends the samples held by the buffer to the sink as one batch and
+	 * removes them from the buffer. Does nothing if the buffer does not stream
+	 * or is empty.
+	 */
+	public void flush()
+	{
+		if (sink == null || size == 0)
+		{
+			return;
+		}
+
+		// The batch gets its own copy of the dictionary, because this buffer
+		// may create new channels while the batch is persisted
+		SampleBuffer batch = new SampleBuffer(timestampScale, channelIds, channelOperations, channelMetrics, channelSources, channels,
+				timestamps, values, size);
+		DependentVariables dependentVars = SBHModelFactory.eINSTANCE.createDependentVariables();
+		attach(dependentVars, batch);
+
+		size = 0;
+		channels = new int[batchSize];
+		timestamps = new long[batchSize];
+		values = new double[batchSize];
+
+		sink.append(dependentVars);
+	}
+
+	/**
+	 * Appends a sample with a textual timestamp, see
+	 * {@link #parseTimestamp(String)}.
+	 */
+	public void add(int channel, String timestamp, double value)
+	{
+		add(channel, parseTimestamp(timestamp), value);
+	}
+
+	/**
+	 * Parses a decimal timestamp like '12.000345' into a fixed point number
+	 * with the scale of this buffer.
+	 *
+	 * @throws NumberFormatException
+	 *             If the timestamp is not a plain decimal number or has more
+	 *             decimal places than the scale of this buffer.
+	 */
+	public long parseTimestamp(String timestamp)
+	{
+		int len = timestamp.length();
+		int i = 0;
+		boolean negative = false;
+		if (len > 0 && (timestamp.charAt(0) == '-' || timestamp.charAt(0) == '+'))
+		{
+			negative = timestamp.charAt(0) == '-';
+			++i;
+		}
+		if (i == len)
+		{
+			throw new NumberFormatException("Invalid timestamp '" + timestamp + "'");
+		}
+
+		long result = 0;
+		int decimals = -1;
+		for (; i < len; ++i)
+		{
+			char c = timestamp.charAt(i);
+			if (c == '.' && decimals < 0)
+			{
+				decimals = 0;
+				continue;
+			}
+			if (c < '0' || c > '9')
+			{
+				throw new NumberFormatException("Invalid timestamp '" + timestamp + "'");
+			}
+			if (decimals >= 0 && ++decimals > timestampScale)
+			{
+				throw new NumberFormatException("Timestamp '" + timestamp + "' has more than " + timestampScale + " decimal places");
+			}
+			if (result > (Long.MAX_VALUE - 9) / 10)
+			{
+				throw new NumberFormatException("Timestamp '" + timestamp + "' is out of range");
+			}
+			result = result * 10 + (c - '0');
+		}
+
+		for (int d = Math.max(decimals, 0); d < timestampScale; ++d)
+		{
+			if (result > Long.MAX_VALUE / 10)
+			{
+				throw new NumberFormatException("Timestamp '" + timestamp + "' is out of range");
+			}
+			result *= 10;
+		}
+
+		return negative ? -result : result;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int getTimestampScale()
+	{
+		return timestampScale;
+	}
+
+	public int getChannelCount()
+	{
+		return channelOperations.size();
+	}
+
+	public String getOperation(int channel)
+	{
+		return channelOperations.get(channel);
+	}
+
+	public Metric getMetric(int channel)
+	{
+		return channelMetrics.get(channel);
+	}
+
+	public String getSource(int channel)
+	{
+		return channelSources.get(channel);
+	}
+
+	public int getChannel(int i)
+	{
+		checkIndex(i);
+		return channels[i];
+	}
+
+	public long getTimestamp(int i)
+	{
+		checkIndex(i);
+		return timestamps[i];
+	}
+
+	public double getValue(int i)
+	{
+		checkIndex(i);
+		return values[i];
+	}
+
+	/**
+	 * @return The timestamp of the sample {@code i} as it would have been
+	 *         written into the model
+	 */
+	public String formatTimestamp(int i)
+	{
+		return SampleSeriesCodec.formatTimestamp(getTimestamp(i), timestampScale);
+	}
+
+	/**
+	 * @return The number of samples ever added to the channel, including the
+	 *         samples which were streamed or cleared
+	 */
+	public int count(int channel)
+	{
+		Preconditions.checkElementIndex(channel, getChannelCount(), "channel");
+		return channelCounts[channel];
+	}
+
+	/**
+	 * @return The arithmetic mean of all samples ever added to the channel, NaN
+	 *         if the channel has no samples
+	 */
+	public double mean(int channel)
+	{
+		Preconditions.checkElementIndex(channel, getChannelCount(), "channel");
+		return channelSums[channel] / channelCounts[channel];
+	}
+
+	/**
+	 * Splits the samples into one series per channel. The series are ordered by
+	 * channel id, the samples of a series keep their insertion order. Channels
+	 * without samples are omitted.
+	 */
+	public List<SampleSeries> toSeries()
+	{
+		int channelCount = getChannelCount();
+		int[] counts = new int[channelCount];
+		for (int i = 0; i < size; ++i)
+		{
+			++counts[channels[i]];
+		}
+
+		long[][] seriesTimestamps = new long[channelCount][];
+		double[][] seriesValues = new double[channelCount][];
+		for (int c = 0; c < channelCount; ++c)
+		{
+			seriesTimestamps[c] = new long[counts[c]];
+			seriesValues[c] = new double[counts[c]];
+		}
+
+		int[] pos = new int[channelCount];
+		for (int i = 0; i < size; ++i)
+		{
+			int c = channels[i];
+			seriesTimestamps[c][pos[c]] = timestamps[i];
+			seriesValues[c][pos[c]] = values[i];
+			++pos[c];
+		}
+
+		List<SampleSeries> result = Lists.newArrayListWithCapacity(channelCount);
+		for (int c = 0; c < channelCount; ++c)
+		{
+			if (counts[c] > 0)
+			{
+				result.add(new SampleSeries(getOperation(c), getMetric(c).getValue(), getSource(c), timestampScale, seriesTimestamps[c],
+						seriesValues[c]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Creates one EMF object per sample. Only needed for consumers which can
+	 * not handle the buffer directly.
+	 */
+	public List<DependentVariablesValueSingle> toValues()
+	{
+		List<DependentVariablesValueSingle> result = Lists.newArrayListWithCapacity(size);
+		for (int i = 0; i < size; ++i)
+		{
+			DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+			value.setOperation(getOperation(channels[i]));
+			value.setOperationMetric(getMetric(channels[i]));
+			value.setSource(getSource(channels[i]));
+			value.setTimestamp(formatTimestamp(i));
+			value.setValue(values[i]);
+			result.add(value);
+		}
+		return result;
+	}
+
+	/**
+	 * Releases the memory held by the samples, the channels and their counts
+	 * and means are kept.
+	 */
+	public void clear()
+	{
+		size = 0;
+		channels = new int[INITIAL_CAPACITY];
+		timestamps = new long[INITIAL_CAPACITY];
+		values = new double[INITIAL_CAPACITY];
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type)
+	{
+		return type == SampleBuffer.class;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SampleBuffer [channels=" + getChannelCount() + ", size=" + size + ", scale=" + timestampScale + ", streaming=" + (sink != null)
+				+ "]";
+	}
+
+	private void checkIndex(int i)
+	{
+		if (i < 0 || i >= size)
+		{
+			throw new IndexOutOfBoundsException("Index " + i + ", size " + size);
+		}
+	}
+
+	/**
+	 * Attaches the buffer to the dependent variables. A previously attached
+	 * buffer is replaced.
+	 */
+	public static void attach(DependentVariables dependentVars, SampleBuffer buffer)
+	{
+		detach(dependentVars);
+		dependentVars.eAdapters().add(buffer);
+	}
+
+	/**
+	 * @return The buffer attached to the dependent variables or null
+	 */
+	public static SampleBuffer get(DependentVariables dependentVars)
+	{
+		return (SampleBuffer) EcoreUtil.getExistingAdapter(dependentVars, SampleBuffer.class);
+	}
+
+	/**
+	 * @return The number of values of the dependent variables, including the
+	 *         samples of an attached buffer.
+	 */
+	public static int countValues(DependentVariables dependentVars)
+	{
+		SampleBuffer buffer = get(dependentVars);
+		return dependentVars.getValues().size() + (buffer == null ? 0 : buffer.size());
+	}
+
+	/**
+	 * Converts the samples of an attached buffer into EMF objects and adds them
+	 * to the values of the dependent variables. The buffer is detached
+	 * afterwards. Does nothing if no buffer is attached.
+	 */
+	public static void materialize(DependentVariables dependentVars)
+	{
+		SampleBuffer buffer = detach(dependentVars);
+		if (buffer != null)
+		{
+			dependentVars.getValues().addAll(buffer.toValues());
+		}
+	}
+
+	private static SampleBuffer detach(DependentVariables dependentVars)
+	{
+		SampleBuffer buffer = get(dependentVars);
+		if (buffer != null)
+		{
+			dependentVars.eAdapters().remove(buffer);
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,106 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A time series of single samples (e.g. the latency of every request recorded
+ * by blktrace) of one operation, metric and source. The samples are held in
+ * primitive arrays instead of one EMF object per sample.
+ *
+ * The timestamps are stored as fixed point numbers: the actual timestamp of
+ * sample {@code i} is {@code timestamps[i] / 10^timestampScale}. This keeps
+ * the original precision of the timestamps (seconds with fractional digits as
+ * recorded by blktrace or milliseconds since the epoch) without rounding.
+ */
+public final class SampleSeries
+{
+	private final String operation;
+	private final int metric;
+	private final String source;
+	private final int timestampScale;
+	private final long[] timestamps;
+	private final double[] values;
+
+	/**
+	 * @param operation
+	 *            The operation, e.g. 'read'
+	 * @param metric
+	 *            The value of the {@code Metric} enum
+	 * @param source
+	 *            The source of the samples, e.g. 'blktrace', may be null
+	 * @param timestampScale
+	 *            The number of decimal places of the timestamps
+	 * @param timestamps
+	 *            The scaled timestamps
+	 * @param values
+	 *            The values, must be of the same length as the timestamps
+	 */
+	public SampleSeries(String operation, int metric, String source, int timestampScale, long[] timestamps, double[] values)
+	{
+		Preconditions.checkNotNull(operation);
+		Preconditions.checkArgument(timestamps.length == values.length, "Timestamps and values must be of the same length");
+		Preconditions.checkArgument(timestampScale >= 0 && timestampScale <= 18, "Invalid timestamp scale %s", timestampScale);
+
+		this.operation = operation;
+		this.metric = metric;
+		this.source = source;
+		this.timestampScale = timestampScale;
+		this.timestamps = timestamps;
+		this.values = values;
+	}
+
+	public String getOperation()
+	{
+		return operation;
+	}
+
+	public int getMetric()
+	{
+		return metric;
+	}
+
+	public String getSource()
+	{
+		return source;
+	}
+
+	public int getTimestampScale()
+	{
+		return timestampScale;
+	}
+
+	/**
+	 * @return The scaled timestamps. The array is not copied, do not modify.
+	 */
+	public long[] getTimestamps()
+	{
+		return timestamps;
+	}
+
+	/**
+	 * @return The values. The array is not copied, do not modify.
+	 */
+	public double[] getValues()
+	{
+		return values;
+	}
+
+	public int size()
+	{
+		return values.length;
+	}
+
+	/**
+	 * @return The timestamp of the sample {@code i} in its original unit.
+	 */
+	public double getTimestamp(int i)
+	{
+		return timestamps[i] / Math.pow(10, timestampScale);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SampleSeries [operation=" + operation + ", metric=" + metric + ", source=" + source + ", size=" + values.length + "]";
+	}
+}
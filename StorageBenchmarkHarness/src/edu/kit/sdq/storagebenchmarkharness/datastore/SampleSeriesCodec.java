@@ -0,0 +1,263 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Encodes the columns of a {@code SampleSeries} into compact binary blocks and
+ * back. Both columns are deflate-compressed after encoding:
+ *
+ * <ul>
+ * <li>Timestamps are delta-encoded, the deltas are zigzag- and
+ * varint-encoded. Monotonic timestamps with a fixed interval thus only need one
+ * or two bytes per sample.</li>
+ * <li>Values are either delta/varint-encoded like the timestamps if all of
+ * them are integral (e.g. block counts, queue depths) or the bits of each
+ * double are XORed with the bits of its predecessor and varint-encoded.
+ * Similar consecutive values share sign, exponent and upper mantissa bits
+ * which results in small XOR values.</li>
+ * </ul>
+ */
+public final class SampleSeriesCodec
+{
+	/** Values are integral and delta/varint encoded. */
+	public static final int VALUES_INTEGRAL_DELTA = 0;
+	/** Values are doubles, XORed with their predecessor and varint encoded. */
+	public static final int VALUES_XOR = 1;
+
+	// Integral doubles up to this magnitude can be converted to long losslessly
+	private static final double MAX_EXACT_INTEGRAL = 9007199254740992.0; // 2^53
+
+	// The maximum number of decimal places of a timestamp
+	private static final int MAX_TIMESTAMP_SCALE = 18;
+
+	private SampleSeriesCodec()
+	{
+		// Utility class
+	}
+
+	/**
+	 * Parses the textual timestamps of the model into fixed point numbers with
+	 * a common scale (number of decimal places).
+	 *
+	 * @param timestamps
+	 *            The timestamps as strings, none of them may be null or empty.
+	 * @param scaled
+	 *            Receives the scaled timestamps, must be at least as long as
+	 *            the timestamps.
+	 * @return The scale of the timestamps
+	 * @throws NumberFormatException
+	 *             If one of the timestamps is not a decimal number or the
+	 *             timestamps can not be represented with a common scale.
+	 */
+	public static int parseTimestamps(String[] timestamps, long[] scaled)
+	{
+		BigDecimal[] parsed = new BigDecimal[timestamps.length];
+		int scale = 0;
+		for (int i = 0; i < timestamps.length; i++)
+		{
+			if (timestamps[i] == null)
+			{
+				throw new NumberFormatException("Timestamp is null");
+			}
+			parsed[i] = new BigDecimal(timestamps[i].trim());
+			scale = Math.max(scale, parsed[i].scale());
+		}
+
+		if (scale > MAX_TIMESTAMP_SCALE)
+		{
+			throw new NumberFormatException("Timestamps have too many decimal places: " + scale);
+		}
+
+		try
+		{
+			for (int i = 0; i < parsed.length; i++)
+			{
+				scaled[i] = parsed[i].movePointRight(scale).longValueExact();
+			}
+		} catch (ArithmeticException e)
+		{
+			throw new NumberFormatException("Timestamps exceed the representable range with scale " + scale);
+		}
+
+		return scale;
+	}
+
+	/**
+	 * Formats a scaled timestamp as it would have been written in the model.
+	 */
+	public static String formatTimestamp(long scaled, int scale)
+	{
+		return BigDecimal.valueOf(scaled, scale).toPlainString();
+	}
+
+	public static byte[] encodeTimestamps(long[] timestamps, int count)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(count + 16);
+			OutputStream out = new BufferedOutputStream(new DeflaterOutputStream(bytes));
+			writeDeltas(out, timestamps, count);
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e)
+		{
+			// Can not happen for in-memory streams
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static long[] decodeTimestamps(byte[] block, int count) throws IOException
+	{
+		InputStream in = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(block)));
+		long[] result = new long[count];
+		readDeltas(in, result);
+		return result;
+	}
+
+	/**
+	 * Determines the encoding which is used for the values.
+	 *
+	 * @return {@code VALUES_INTEGRAL_DELTA} or {@code VALUES_XOR}
+	 */
+	public static int chooseValueEncoding(double[] values, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			double v = values[i];
+			if (v != Math.rint(v) || Math.abs(v) > MAX_EXACT_INTEGRAL)
+			{
+				return VALUES_XOR;
+			}
+		}
+		return VALUES_INTEGRAL_DELTA;
+	}
+
+	public static byte[] encodeValues(double[] values, int count, int encoding)
+	{
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 2 + 16);
+			OutputStream out = new BufferedOutputStream(new DeflaterOutputStream(bytes));
+			if (encoding == VALUES_INTEGRAL_DELTA)
+			{
+				long[] integral = new long[count];
+				for (int i = 0; i < count; i++)
+				{
+					integral[i] = (long) values[i];
+				}
+				writeDeltas(out, integral, count);
+			} else if (encoding == VALUES_XOR)
+			{
+				long previous = 0;
+				for (int i = 0; i < count; i++)
+				{
+					long bits = Double.doubleToRawLongBits(values[i]);
+					writeVarLong(out, bits ^ previous);
+					previous = bits;
+				}
+			} else
+			{
+				throw new IllegalArgumentException("Unknown value encoding " + encoding);
+			}
+			out.close();
+			return bytes.toByteArray();
+		} catch (IOException e)
+		{
+			// Can not happen for in-memory streams
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static double[] decodeValues(byte[] block, int count, int encoding) throws IOException
+	{
+		InputStream in = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(block)));
+		double[] result = new double[count];
+		if (encoding == VALUES_INTEGRAL_DELTA)
+		{
+			long[] integral = new long[count];
+			readDeltas(in, integral);
+			for (int i = 0; i < count; i++)
+			{
+				result[i] = integral[i];
+			}
+		} else if (encoding == VALUES_XOR)
+		{
+			long previous = 0;
+			for (int i = 0; i < count; i++)
+			{
+				long bits = readVarLong(in) ^ previous;
+				result[i] = Double.longBitsToDouble(bits);
+				previous = bits;
+			}
+		} else
+		{
+			throw new IOException("Unknown value encoding " + encoding);
+		}
+		return result;
+	}
+
+	private static void writeDeltas(OutputStream out, long[] values, int count) throws IOException
+	{
+		long previous = 0;
+		for (int i = 0; i < count; i++)
+		{
+			long delta = values[i] - previous;
+			// Zigzag encoding maps small negative deltas to small numbers
+			writeVarLong(out, (delta << 1) ^ (delta >> 63));
+			previous = values[i];
+		}
+	}
+
+	private static void readDeltas(InputStream in, long[] result) throws IOException
+	{
+		long previous = 0;
+		for (int i = 0; i < result.length; i++)
+		{
+			long zigzag = readVarLong(in);
+			long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+			previous += delta;
+			result[i] = previous;
+		}
+	}
+
+	private static void writeVarLong(OutputStream out, long value) throws IOException
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(InputStream in) throws IOException
+	{
+		long result = 0;
+		int shift = 0;
+		while (shift < 64)
+		{
+			int b = in.read();
+			if (b < 0)
+			{
+				throw new EOFException("Sample block is truncated");
+			}
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return result;
+			}
+			shift += 7;
+		}
+		throw new IOException("Malformed varint in sample block");
+	}
+}
@@ -0,0 +1,72 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+/**
+ * A run as stored in the {@code runs} table: the execution of a benchmark of
+ * an experiment on one host in one repeat.
+ */
+public final class StoredRun
+{
+	private final long runId;
+	private final long crId;
+	private final int expNo;
+	private final int repeatNo;
+	private final String hostId;
+	private final String benchmarkId;
+	private final String expUid;
+
+	public StoredRun(long runId, long crId, int expNo, int repeatNo, String hostId, String benchmarkId, String expUid)
+	{
+		this.runId = runId;
+		this.crId = crId;
+		this.expNo = expNo;
+		this.repeatNo = repeatNo;
+		this.hostId = hostId;
+		this.benchmarkId = benchmarkId;
+		this.expUid = expUid;
+	}
+
+	public long getRunId()
+	{
+		return runId;
+	}
+
+	/**
+	 * @return The id of the configuration run
+	 */
+	public long getCrId()
+	{
+		return crId;
+	}
+
+	public int getExpNo()
+	{
+		return expNo;
+	}
+
+	public int getRepeatNo()
+	{
+		return repeatNo;
+	}
+
+	public String getHostId()
+	{
+		return hostId;
+	}
+
+	public String getBenchmarkId()
+	{
+		return benchmarkId;
+	}
+
+	public String getExpUid()
+	{
+		return expUid;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "StoredRun [runId=" + runId + ", crId=" + crId + ", expNo=" + expNo + ", repeatNo=" + repeatNo + ", hostId=" + hostId
+				+ ", benchmarkId=" + benchmarkId + ", expUid=" + expUid + "]";
+	}
+}
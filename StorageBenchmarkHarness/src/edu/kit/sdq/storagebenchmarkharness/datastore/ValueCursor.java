@@ -0,0 +1,53 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * A cursor over dependent variable values, see
+ * {@link DataStoreReader#getDependentValues}. No object is created per value,
+ * the getters return the fields of the current value.
+ */
+public interface ValueCursor
+{
+	/**
+	 * Moves to the next value. Must be called before the first value is read.
+	 *
+	 * @return false if there are no more values
+	 */
+	public boolean next() throws DataStoreException;
+
+	/**
+	 * @return The id of the run of the current value
+	 */
+	public long getRunId();
+
+	public String getOperation();
+
+	/**
+	 * @return The value of the {@code Metric}
+	 */
+	public int getMetric();
+
+	/**
+	 * @return The value of the {@code Type}
+	 */
+	public int getType();
+
+	public double getValue();
+
+	/**
+	 * @return The timestamp in its original unit, NaN if the value has no
+	 *         numeric timestamp (e.g. for composite values)
+	 */
+	public double getTimestamp();
+
+	/**
+	 * @return The source, may be null
+	 */
+	public String getSource();
+
+	/**
+	 * Releases the resources of the cursor. Can be called more than once.
+	 */
+	public void close();
+}
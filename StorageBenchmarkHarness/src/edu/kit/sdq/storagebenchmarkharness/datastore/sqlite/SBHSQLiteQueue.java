@@ -18,6 +18,9 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
  * 
  * - Throw exceptions in all threads if the worker-thread throws a exception.
  * 
+ * The length of the queue is only informational, producers are throttled using
+ * a {@code IngestionBudget} instead of polling the queue length.
+ * 
  * @author Dominik Bruhn
  * 
  */
@@ -25,10 +28,10 @@ public class SBHSQLiteQueue extends com.almworks.sqlite4java.SQLiteQueue
 {
 	private static final Logger LOGGER = Logger.getLogger(SBHSQLiteQueue.class);
 
-	private boolean jobRuning = false;
+	private volatile boolean jobRuning = false;
 
-	private boolean jobFailed = false;
-	private Throwable jobsFailureReason;
+	private volatile boolean jobFailed = false;
+	private volatile Throwable jobsFailureReason;
 
 	public SBHSQLiteQueue()
 	{
@@ -4,8 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import com.almworks.sqlite4java.SQLiteConnection;
@@ -13,13 +19,25 @@ import com.almworks.sqlite4java.SQLiteException;
 import com.almworks.sqlite4java.SQLiteJob;
 import com.almworks.sqlite4java.SQLiteStatement;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.CharStreams;
 
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfBenchmark;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
 import edu.kit.sdq.storagebenchmarkharness.datastore.DataStore;
+import edu.kit.sdq.storagebenchmarkharness.datastore.IngestionBudget;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RepeatPrecision;
+import edu.kit.sdq.storagebenchmarkharness.datastore.ResultSink;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RunJournal;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RunSummary;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
 
 /**
@@ -31,6 +49,27 @@ import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
  * thread. This functionality is provided by the sqlite4java class
  * {@code SQLiteQueue}.
  * 
+ * The results of the experiments are persisted asynchronously. To prevent the
+ * queue from exhausting the memory, the amount of results which are queued but
+ * not yet persisted is bounded by an {@code IngestionBudget}. Producers only
+ * block if this budget is exceeded.
+ * 
+ * The results of all SUTs for the same experiment and repeat are committed
+ * together (group commit), see {@link #setGroupCommitSize(int)}. Commits only
+ * happen when a run is finished, never for a batch of a streamed run.
+ * Optionally, the database is run in write-ahead-log mode (see
+ * {@link #enableWriteAheadLog(long)}), which allows concurrent read-only
+ * connections (see {@link #openReadOnlyConnection(File)}) while the results
+ * are written.
+ * 
+ * Besides storing the results of a run at once, a run can be opened as
+ * {@code ResultSink} (see {@link #openRun}) which receives the results in
+ * batches while the run is executed. The batches may be committed before the
+ * run is, thus a streamed run is marked as incomplete in the {@code runs}
+ * table ({@code runCompleted=0}) until it is committed. Readers only see
+ * completed runs, and the incomplete runs which were left behind by a crashed
+ * controller are deleted when the data store is set up again.
+ * 
  * To map between the EMF-Classes and the database columns, the
  * {@code SQLiteHelper} is used.
  * 
@@ -46,10 +85,71 @@ public class SQLiteDataStore implements DataStore
 	// this time is exceeded, the query fails. In ms.
 	private static final int LOCK_WAIT_TIMEOUT = 10000;
 
+	// Default for the maximum number of dependent variable values which may be
+	// queued but not yet persisted.
+	public static final long DEFAULT_MAX_ROWS_IN_FLIGHT = 5000000;
+
+	// Rough estimate of the heap memory occupied by one EMF dependent variable
+	// value including its strings. In bytes.
+	private static final long ESTIMATED_BYTES_PER_VALUE = 256;
+
+	// Default for the time after which an incomplete group of results is
+	// committed nevertheless. In ms.
+	public static final long DEFAULT_MAX_GROUP_COMMIT_DELAY = 30000;
+
+	/**
+	 * The durability of the committed results, mapped to the SQLite setting
+	 * {@code PRAGMA synchronous}.
+	 */
+	public enum Durability
+	{
+		/**
+		 * Never call fsync. Committed results may be lost or the database may be
+		 * corrupted if the operating system crashes.
+		 */
+		OFF,
+		/**
+		 * Only call fsync on checkpoints. In write-ahead-log mode the database
+		 * stays consistent, but the last commits may be lost if the operating
+		 * system crashes.
+		 */
+		NORMAL,
+		/**
+		 * Call fsync on every commit.
+		 */
+		FULL
+	}
+
+	private final File databaseFile;
 	private final SBHSQLiteQueue queue;
 	private final SQLiteHelper helper;
+	private final IngestionBudget ingestionBudget;
+
+	// Runs the group commit timeout and the checkpoints in the background
+	private final ScheduledExecutorService maintenance;
+	// Connection used for the checkpoints, only accessed by the maintenance
+	// thread
+	private SQLiteConnection checkpointConnection;
+
+	// The number of runs which form a group, set by the producers
+	private volatile int groupCommitSize = 1;
+	private volatile long maxGroupCommitDelay = DEFAULT_MAX_GROUP_COMMIT_DELAY;
+	private boolean groupCommitTimeoutScheduled = false;
+
+	// The open transaction and the runs finished in it, only accessed by the
+	// database thread
+	private boolean inTransaction = false;
+	private int transactionRuns;
+	private long transactionSince;
+	// The number of finished runs of the groups which are not complete yet,
+	// only accessed by the database thread
+	private final Map<String, Integer> groupRuns = Maps.newHashMap();
+	// The number of streamed runs which are neither committed nor aborted, only
+	// accessed by the database thread
+	private int openStreams;
 
 	private long crId;
+	private String crIdentifier;
 	private boolean wasSetup = false;
 
 	/**
@@ -60,13 +160,29 @@ public class SQLiteDataStore implements DataStore
 	 * @param database
 	 */
 	public SQLiteDataStore(String database)
+	{
+		this(database, DEFAULT_MAX_ROWS_IN_FLIGHT, getDefaultMaxBytesInFlight());
+	}
+
+	/**
+	 * Same as {@code SQLiteDataStore(String)} but with a custom budget for the
+	 * results which are queued but not yet persisted.
+	 * 
+	 * @param database
+	 * @param maxRowsInFlight
+	 *            Maximum number of dependent variable values in flight
+	 * @param maxBytesInFlight
+	 *            Maximum estimated size of the results in flight in bytes
+	 */
+	public SQLiteDataStore(String database, long maxRowsInFlight, long maxBytesInFlight)
 	{
 		java.util.logging.Logger.getLogger("com.almworks.sqlite4java").setLevel(Level.WARNING);
 
 		LOGGER.debug("Opening Database '%s'", database);
 
 		// Create Queue
-		queue = new SBHSQLiteQueue(new File(database));
+		databaseFile = new File(database);
+		queue = new SBHSQLiteQueue(databaseFile);
 		queue.start();
 
 		try
@@ -94,6 +210,205 @@ public class SQLiteDataStore implements DataStore
 
 		// Create Helpers
 		helper = new SQLiteHelper();
+		ingestionBudget = new IngestionBudget(maxRowsInFlight, maxBytesInFlight);
+		maintenance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread thread = new Thread(r, "SQLiteMaintenance");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * By default a quarter of the maximum heap may be occupied by results which
+	 * wait for being persisted.
+	 */
+	public static long getDefaultMaxBytesInFlight()
+	{
+		return Runtime.getRuntime().maxMemory() / 4;
+	}
+
+	/**
+	 * Enables the columnar storage of single values (per-sample time series).
+	 * Instead of one row per sample in the {@code DependentVarsValues} table,
+	 * the samples of one operation, metric and source are stored as compressed
+	 * blocks in the {@code DependentVarsSeries} table. They can be read using
+	 * the {@code SQLiteSampleSeriesReader}. Must be called before results are
+	 * stored.
+	 * 
+	 * @param columnarSamples
+	 */
+	public void setColumnarSamples(boolean columnarSamples)
+	{
+		helper.setColumnarSamples(columnarSamples);
+	}
+
+	/**
+	 * Sets the durability of the committed results. Defaults to
+	 * {@code Durability.OFF}.
+	 * 
+	 * @param durability
+	 */
+	public void setDurability(final Durability durability)
+	{
+		Preconditions.checkNotNull(durability);
+
+		executeAndWait(new SQLiteJob<Void>()
+		{
+			protected Void job(SQLiteConnection db) throws SQLiteException
+			{
+				db.exec("PRAGMA synchronous = " + durability.name() + ";");
+				return null;
+			}
+		});
+		LOGGER.debug("Durability is %s", durability);
+	}
+
+	/**
+	 * Switches the database into write-ahead-log mode. Readers do not block the
+	 * writer in this mode and see the last committed state of the database.
+	 * The write-ahead-log is not checkpointed into the database on commit but
+	 * periodically by a background thread which uses its own connection, thus
+	 * the writer does not have to wait for the checkpoints. When the last
+	 * connection is closed, SQLite checkpoints and removes the log.
+	 * 
+	 * The mode is persistent, once switched all later connections to the
+	 * database use the write-ahead-log.
+	 * 
+	 * @param checkpointInterval
+	 *            The interval of the background checkpoints in ms
+	 */
+	public void enableWriteAheadLog(long checkpointInterval)
+	{
+		Preconditions.checkArgument(checkpointInterval > 0, "The checkpoint interval must be positive");
+
+		String mode = executeAndWait(new SQLiteJob<String>()
+		{
+			protected String job(SQLiteConnection db) throws SQLiteException
+			{
+				SQLiteStatement stmnt = db.prepare("PRAGMA journal_mode = WAL;");
+				try
+				{
+					stmnt.step();
+					String mode = stmnt.columnString(0);
+					if ("wal".equalsIgnoreCase(mode))
+					{
+						// The checkpoints are done by the maintenance thread
+						db.exec("PRAGMA wal_autocheckpoint = 0;");
+					}
+					return mode;
+				} finally
+				{
+					stmnt.dispose();
+				}
+			}
+		});
+		if (!"wal".equalsIgnoreCase(mode))
+		{
+			throw new DataStoreException("Could not switch database to write-ahead-log mode, journal mode is " + mode);
+		}
+
+		maintenance.scheduleWithFixedDelay(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				checkpoint();
+			}
+		}, checkpointInterval, checkpointInterval, TimeUnit.MILLISECONDS);
+		LOGGER.debug("Using write-ahead-log, checkpoint interval %d ms", checkpointInterval);
+	}
+
+	/**
+	 * Sets the number of runs (usually the number of SUTs) which are stored for
+	 * the same experiment and repeat. The results of these runs are committed
+	 * together in one transaction, once the last run of the group is finished.
+	 * Runs of other groups which are in flight at the same time (e.g. the next
+	 * repeat which is streamed while the previous one is stored) are written
+	 * into the same transaction, the batches of their streamed runs stay
+	 * invisible until these runs are committed. A group is committed early if
+	 * the configuration run is finished or if finished runs wait longer than
+	 * the maximum delay. Defaults to 1, thus every run is committed on its
+	 * own.
+	 * 
+	 * @param groupCommitSize
+	 */
+	public void setGroupCommitSize(int groupCommitSize)
+	{
+		Preconditions.checkArgument(groupCommitSize > 0, "The group commit size must be positive");
+		this.groupCommitSize = groupCommitSize;
+
+		if (groupCommitSize > 1 && !groupCommitTimeoutScheduled)
+		{
+			maintenance.scheduleWithFixedDelay(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					commitStaleGroup();
+				}
+			}, 1, 1, TimeUnit.SECONDS);
+			groupCommitTimeoutScheduled = true;
+		}
+	}
+
+	/**
+	 * @param maxGroupCommitDelay
+	 *            The time in ms after which an incomplete group is committed
+	 */
+	public void setMaxGroupCommitDelay(long maxGroupCommitDelay)
+	{
+		Preconditions.checkArgument(maxGroupCommitDelay > 0, "The group commit delay must be positive");
+		this.maxGroupCommitDelay = maxGroupCommitDelay;
+	}
+
+	/**
+	 * Opens a read-only connection to the database, e.g. for a live analysis
+	 * during the benchmarking. The connection is confined to the calling
+	 * thread and must be disposed by the caller. In write-ahead-log mode, the
+	 * reader does not block the writer.
+	 * 
+	 * @return The open connection
+	 */
+	public SQLiteConnection openReadOnlyConnection()
+	{
+		try
+		{
+			return openReadOnlyConnection(databaseFile);
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not open read-only connection", e);
+		}
+	}
+
+	/**
+	 * Opens a read-only connection to a database written by a
+	 * {@code SQLiteDataStore}, see {@link #openReadOnlyConnection()}.
+	 * 
+	 * @param database
+	 * @return The open connection
+	 * @throws SQLiteException
+	 */
+	public static SQLiteConnection openReadOnlyConnection(File database) throws SQLiteException
+	{
+		SQLiteConnection db = new SQLiteConnection(database);
+		db.openReadonly();
+		db.setBusyTimeout(LOCK_WAIT_TIMEOUT);
+		return db;
+	}
+
+	/**
+	 * @return The budget bounding the queued results, it also provides the
+	 *         metrics of the ingestion (queue depth, bytes in flight, producer
+	 *         wait time).
+	 */
+	public IngestionBudget getIngestionBudget()
+	{
+		return ingestionBudget;
 	}
 
 	@Override
@@ -111,11 +426,13 @@ public class SQLiteDataStore implements DataStore
 				{
 					// Create the base-schema with the basic tables
 					db.exec(getSchema("base"));
+					SQLiteHelper.upgradeBaseTables(db);
 
 					// Initialize all benchmark-related tables and their
 					// appropriate columns
 					helper.setupTables(db);
 
+					purgeIncompleteRuns(db);
 					return null;
 				}
 			}).get();
@@ -135,6 +452,42 @@ public class SQLiteDataStore implements DataStore
 	{
 		Preconditions.checkArgument(wasSetup, "Need to call 'setupDataStore' first");
 
+		// Stop the background maintenance, the last checkpoint is done by
+		// SQLite when the database thread closes its connection. The checkpoint
+		// connection is confined to the maintenance thread.
+		maintenance.execute(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				closeCheckpointConnection();
+			}
+		});
+		maintenance.shutdown();
+		try
+		{
+			maintenance.awaitTermination(LOCK_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e)
+		{
+			LOGGER.error("Waiting for the maintenance thread was interrupted", e);
+		}
+
+		// Commit the open transaction and release the prepared statements after all
+		// pending jobs
+		queue.execute(new SQLiteJob<Void>()
+		{
+			protected Void job(SQLiteConnection db) throws SQLiteException
+			{
+				if (openStreams > 0)
+				{
+					LOGGER.warn("Closing the data store with %d streamed runs which were not committed", openStreams);
+				}
+				commitTransaction(db);
+				helper.dispose();
+				return null;
+			}
+		});
+
 		// Stop the queue (does not wait for the queue to finish)
 		queue.stop(true);
 		try
@@ -145,6 +498,7 @@ public class SQLiteDataStore implements DataStore
 		{
 			LOGGER.error("Queue.join was interrupted", e);
 		}
+		LOGGER.debug("Ingestion statistics: %s", ingestionBudget);
 	}
 
 	@Override
@@ -170,6 +524,7 @@ public class SQLiteDataStore implements DataStore
 					return db.getLastInsertId();
 				}
 			}).get();
+			crIdentifier = identifier;
 		} catch (InterruptedException e)
 		{
 			throw new DataStoreException(e);
@@ -189,70 +544,192 @@ public class SQLiteDataStore implements DataStore
 		// single experiment. Because of the huge amount of data involved, this
 		// is done asynchronously. This means that this method returns
 		// immediately and the work is done in background by the database
-		// thread. Because of the huge amount of data involved, it is not
-		// possible to move more than one job to the background.
+		// thread.
 
-		// To prevent a out of memory exception, if there is there are currently
-		// jobs in the queue, wait until all of them finish before continuing.
-		// if (queue.getQueueLength() > 0 || queue.isJobRunning()) {
-		if (queue.getQueueLength() > 1)
+		// To prevent a out of memory exception, the results in flight are
+		// bounded. If the budget is exhausted, block until the database thread
+		// has persisted enough of the previous jobs.
+		int rowCount = 0;
+		for (int i = 0; i < dependentVars.size(); ++i)
+		{
+			rowCount += SampleBuffer.countValues(dependentVars.get(i));
+		}
+		final long rows = rowCount;
+		final long bytes = rowCount * ESTIMATED_BYTES_PER_VALUE;
+
+		long waitStart = System.nanoTime();
+		try
+		{
+			ingestionBudget.acquire(rows, bytes);
+		} catch (InterruptedException e)
+		{
+			throw new DataStoreException("Waiting for free ingestion capacity was interrupted", e);
+		}
+		long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - waitStart);
+		if (waited > 0)
 		{
-			LOGGER.debug("Queue contains %d job and a job is Running %b waiting until they finish", queue.getQueueLength(), queue.isJobRunning());
-			// while (queue.getQueueLength() > 0 || queue.isJobRunning()) {
-			while (queue.getQueueLength() > 1)
+			LOGGER.debug("Waited %d ms for free ingestion capacity, %s", waited, ingestionBudget);
+		}
+
+		// Actually append the new job. The reserved capacity is released when
+		// the job leaves the queue, regardless of its outcome.
+		try
+		{
+			queue.execute(new SQLiteJob<Void>()
 			{
-				try
+				protected Void job(SQLiteConnection db) throws SQLiteException
 				{
-					Thread.sleep(1000);
-				} catch (InterruptedException e)
+					for (int i = 0; i < dependentVars.size(); ++i)
+						LOGGER.debug("Starting saving %d results for host %s, expNo %d, repeatNo %d", SampleBuffer.countValues(dependentVars.get(i)), hostId,
+								expNo, repeatNo);
+					beginTransaction(db);
+
+					long runId = insertRun(db, expNo, hostId, benchmarkId, repeatNo, expUid, true);
+
+					LOGGER.trace("Saving independent vars");
+					helper.saveIndependentVars(runId, sutVars, benchVars, db);
+					LOGGER.trace("Saving dependent vars");
+					helper.saveDependentVars(runId, dependentVars, db);
+
+					journalRun(db, runId, expUid, hostId, repeatNo);
+					finishRun(db, expNo + "/" + repeatNo);
+
+					for (int i = 0; i < dependentVars.size(); ++i)
+						LOGGER.debug("Finished saving %d results for host %s, expNo %d, repeatNo %d", SampleBuffer.countValues(dependentVars.get(i)), hostId,
+								expNo, repeatNo);
+
+					return null;
+				}
+
+				@Override
+				protected void jobFinished(Void result)
 				{
-					LOGGER.error("Waiting for job finish failed", e);
+					// Called always, even if the job failed or was cancelled
+					ingestionBudget.release(rows, bytes);
 				}
-			}
-			LOGGER.debug("Queue is now empty and job finished, continuing execution");
+			});
+		} catch (RuntimeException e)
+		{
+			// The job was not accepted by the queue
+			ingestionBudget.release(rows, bytes);
+			throw e;
 		}
+	}
 
-		// Actually append the new job
+	@Override
+	public ResultSink openRun(final int expNo, final String hostId, final String benchmarkId, final int repeatNo, final String expUid,
+			final IndependentVariablesOfSut sutVars, final IndependentVariablesOfBenchmark benchVars)
+	{
+		Preconditions.checkArgument(wasSetup, "Need to call 'setupDataStore' first");
+
+		final StreamingRun run = new StreamingRun(expNo + "/" + repeatNo, SQLiteHelper.getBenchmarkPrefix(benchVars), hostId, repeatNo,
+				expUid);
+
+		// The run is inserted asynchronously, the batches are queued after
+		// this job and thus see the ids of the run.
 		queue.execute(new SQLiteJob<Void>()
 		{
 			protected Void job(SQLiteConnection db) throws SQLiteException
 			{
-				for (int i = 0; i < dependentVars.size(); ++i)
-					LOGGER.debug("Starting saving %d results for host %s, expNo %d, repeatNo %d", dependentVars.get(i).getValues().size(), hostId,
-							expNo, repeatNo);
-				db.exec("BEGIN;");
-
-				LOGGER.trace("Saving in runs-table");
-				SQLiteStatement stmnt = db.prepare("INSERT INTO runs (crId, expNo, repeatNo, hostId, benchmarkId, expUid) "
-						+ "VALUES (?, ?, ?, ?, ?, ?);");
-				stmnt.bind(1, crId);
-				stmnt.bind(2, expNo);
-				stmnt.bind(3, repeatNo);
-				stmnt.bind(4, hostId);
-				stmnt.bind(5, benchmarkId);
-				stmnt.bind(6, expUid);
-				stmnt.step();
-				stmnt.dispose();
+				LOGGER.debug("Opening streamed run for host %s, expNo %d, repeatNo %d", hostId, expNo, repeatNo);
+				beginTransaction(db);
+				++openStreams;
 
-				long runId = db.getLastInsertId();
+				// Invisible for the readers until the run is committed
+				run.runId = insertRun(db, expNo, hostId, benchmarkId, repeatNo, expUid, false);
+				helper.saveIndependentVars(run.runId, sutVars, benchVars, db);
+				run.dvId = helper.insertDependentVars(run.runId, run.prefix, db);
+				return null;
+			}
+		});
+
+		return run;
+	}
 
-				LOGGER.trace("Saving independent vars");
-				helper.saveIndependentVars(runId, sutVars, benchVars, db);
-				LOGGER.trace("Saving dependent vars");
-				helper.saveDependentVars(runId, dependentVars, db);
+	@Override
+	public void storeRepetitions(final int expNo, final String hostId, final String expUid, RepeatPrecision precision,
+			final boolean finished)
+	{
+		Preconditions.checkArgument(wasSetup, "Need to call 'setupDataStore' first");
 
-				LOGGER.trace("Commiting");
-				db.exec("COMMIT;");
+		// Snapshot of the precision, it is written asynchronously. The rows
+		// are written in the open transaction, thus they are committed with
+		// or after the runs of the experiment.
+		final int repeatCount = precision.getRepeats();
+		final double confidenceLevel = precision.getConfidenceLevel();
+		final double relativeHalfWidth = precision.getRelativeHalfWidth();
+		final List<RepeatPrecision.Interval> intervals = precision.getIntervals();
+		queue.execute(new SQLiteJob<Void>()
+		{
+			protected Void job(SQLiteConnection db) throws SQLiteException
+			{
+				LOGGER.debug("Saving %d repeats of expNo %d on host %s", repeatCount, expNo, hostId);
+				SQLiteStatement stmnt = db.prepare("INSERT OR REPLACE INTO repetitions (crId, expNo, expUid, hostId, repeatCount, "
+						+ "confidenceLevel, relativeHalfWidth, finished) VALUES (?, ?, ?, ?, ?, ?, ?, ?);");
+				try
+				{
+					stmnt.bind(1, crId);
+					stmnt.bind(2, expNo);
+					stmnt.bind(3, expUid);
+					stmnt.bind(4, hostId);
+					stmnt.bind(5, repeatCount);
+					stmnt.bind(6, confidenceLevel);
+					SQLiteHelper.bind(stmnt, 7, finite(relativeHalfWidth));
+					stmnt.bind(8, finished ? 1 : 0);
+					stmnt.step();
+				} finally
+				{
+					stmnt.dispose();
+				}
 
-				for (int i = 0; i < dependentVars.size(); ++i)
-					LOGGER.debug("Finished saving %d results for host %s, expNo %d, repeatNo %d", dependentVars.get(i).getValues().size(), hostId,
-							expNo, repeatNo);
+				stmnt = db.prepare("DELETE FROM repetitionIntervals WHERE crId=? AND expUid=? AND hostId=?;");
+				try
+				{
+					stmnt.bind(1, crId);
+					stmnt.bind(2, expUid);
+					stmnt.bind(3, hostId);
+					stmnt.step();
+				} finally
+				{
+					stmnt.dispose();
+				}
 
+				stmnt = db.prepare("INSERT INTO repetitionIntervals (crId, expUid, hostId, operation, opMetric, source, sampleCount, "
+						+ "meanValue, halfWidth) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);");
+				try
+				{
+					for (RepeatPrecision.Interval interval : intervals)
+					{
+						stmnt.bind(1, crId);
+						stmnt.bind(2, expUid);
+						stmnt.bind(3, hostId);
+						SQLiteHelper.bind(stmnt, 4, interval.getOperation());
+						stmnt.bind(5, interval.getMetric());
+						SQLiteHelper.bind(stmnt, 6, interval.getSource());
+						stmnt.bind(7, interval.getCount());
+						stmnt.bind(8, interval.getMean());
+						SQLiteHelper.bind(stmnt, 9, finite(interval.getHalfWidth()));
+						stmnt.step();
+						stmnt.reset();
+					}
+				} finally
+				{
+					stmnt.dispose();
+				}
 				return null;
 			}
 		});
 	}
 
+	/**
+	 * @return The value, null if it is infinite (e.g. a half-width of less
+	 *         than two values)
+	 */
+	private static Double finite(double value)
+	{
+		return Double.isInfinite(value) || Double.isNaN(value) ? null : value;
+	}
+
 	@Override
 	// Marks the configuration run finished in a synchronous way.
 	public void finishConfigurationRun()
@@ -265,6 +742,8 @@ public class SQLiteDataStore implements DataStore
 			{
 				protected Void job(SQLiteConnection db) throws SQLiteException
 				{
+					commitTransaction(db);
+
 					SQLiteStatement stmnt = db.prepare("UPDATE configurationRuns SET crFinished=1 WHERE crId=?;");
 					stmnt.bind(1, crId);
 					stmnt.step();
@@ -281,6 +760,348 @@ public class SQLiteDataStore implements DataStore
 		}
 	}
 
+	@Override
+	public RunJournal loadRunJournal(final String identifier)
+	{
+		Preconditions.checkArgument(wasSetup, "Need to call 'setupDataStore' first");
+
+		return executeAndWait(new SQLiteJob<RunJournal>()
+		{
+			protected RunJournal job(SQLiteConnection db) throws SQLiteException
+			{
+				RunJournal journal = new RunJournal();
+				SQLiteStatement stmnt = db.prepare("SELECT expUid, hostId, repeatNo FROM runJournal WHERE crIdentifier=?;");
+				try
+				{
+					stmnt.bind(1, identifier);
+					while (stmnt.step())
+					{
+						journal.addStored(stmnt.columnString(0), stmnt.columnString(1), stmnt.columnInt(2),
+								Collections.<DependentVariablesValueComposite> emptyList());
+					}
+				} finally
+				{
+					stmnt.dispose();
+				}
+
+				// The values of the key metrics of the journaled repeats
+				stmnt = db.prepare("SELECT expUid, hostId, repeatNo, operation, opMetric, source, opValue FROM repetitionValues "
+						+ "JOIN runJournal USING (crIdentifier, expUid, hostId, repeatNo) WHERE crIdentifier=?;");
+				try
+				{
+					stmnt.bind(1, identifier);
+					while (stmnt.step())
+					{
+						DependentVariablesValueComposite value = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+						value.setOperation(stmnt.columnString(3));
+						value.setOperationMetric(Metric.get(stmnt.columnInt(4)));
+						value.setSource(stmnt.columnString(5));
+						value.setType(Type.MEAN);
+						value.setValue(stmnt.columnDouble(6));
+						journal.addStored(stmnt.columnString(0), stmnt.columnString(1), stmnt.columnInt(2), Collections.singletonList(value));
+					}
+				} finally
+				{
+					stmnt.dispose();
+				}
+
+				stmnt = db.prepare("SELECT expUid, hostId FROM repetitions JOIN configurationRuns USING (crId) "
+						+ "WHERE crIdentifier=? AND finished=1;");
+				try
+				{
+					stmnt.bind(1, identifier);
+					while (stmnt.step())
+					{
+						journal.finishExperiment(stmnt.columnString(0), stmnt.columnString(1));
+					}
+				} finally
+				{
+					stmnt.dispose();
+				}
+				return journal;
+			}
+		});
+	}
+
+	/**
+	 * Inserts a row into the runs-table. Must be called by the database thread.
+	 * 
+	 * @param completed
+	 *            False if the results of the run are still to be stored
+	 * @return The id of the run
+	 */
+	private long insertRun(SQLiteConnection db, int expNo, String hostId, String benchmarkId, int repeatNo, String expUid,
+			boolean completed) throws SQLiteException
+	{
+		LOGGER.trace("Saving in runs-table");
+		SQLiteStatement stmnt = db.prepare("INSERT INTO runs (crId, expNo, repeatNo, hostId, benchmarkId, expUid, runCompleted) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?);");
+		stmnt.bind(1, crId);
+		stmnt.bind(2, expNo);
+		stmnt.bind(3, repeatNo);
+		stmnt.bind(4, hostId);
+		stmnt.bind(5, benchmarkId);
+		stmnt.bind(6, expUid);
+		stmnt.bind(7, completed ? 1 : 0);
+		stmnt.step();
+		stmnt.dispose();
+
+		return db.getLastInsertId();
+	}
+
+	/**
+	 * Makes a streamed run visible for the readers. Must be called by the
+	 * database thread.
+	 */
+	private void completeRun(SQLiteConnection db, long runId) throws SQLiteException
+	{
+		SQLiteStatement stmnt = db.prepare("UPDATE runs SET runCompleted=1 WHERE runId=?;");
+		stmnt.bind(1, runId);
+		stmnt.step();
+		stmnt.dispose();
+	}
+
+	/**
+	 * Deletes the streamed runs which were never committed, e.g. because the
+	 * controller crashed. Their repeats are not in the journal and are
+	 * executed again on resume. Must be called by the database thread before
+	 * any run is opened.
+	 */
+	private void purgeIncompleteRuns(SQLiteConnection db) throws SQLiteException
+	{
+		List<Long> runIds = Lists.newArrayList();
+		SQLiteStatement stmnt = db.prepare("SELECT runId FROM runs WHERE runCompleted=0;");
+		try
+		{
+			while (stmnt.step())
+			{
+				runIds.add(stmnt.columnLong(0));
+			}
+		} finally
+		{
+			stmnt.dispose();
+		}
+		if (runIds.isEmpty())
+		{
+			return;
+		}
+
+		LOGGER.warn("Deleting %d incomplete runs of an earlier session", runIds.size());
+		List<String> prefixes = SQLiteHelper.getStoredPrefixes(db);
+		db.exec("BEGIN;");
+		for (long runId : runIds)
+		{
+			// The benchmark of the run is not known, its rows are searched in
+			// the tables of every benchmark
+			for (String prefix : prefixes)
+			{
+				helper.deleteRun(runId, prefix, db);
+			}
+		}
+		db.exec("DELETE FROM runs WHERE runCompleted=0;");
+		db.exec("COMMIT;");
+	}
+
+	/**
+	 * Records the run as completed. This is done in the transaction which
+	 * commits the run, thus the journal only contains runs whose results were
+	 * committed. Must be called by the database thread.
+	 */
+	private void journalRun(SQLiteConnection db, long runId, String expUid, String hostId, int repeatNo) throws SQLiteException
+	{
+		SQLiteStatement stmnt = db.prepare("INSERT OR REPLACE INTO runJournal (crIdentifier, expUid, hostId, repeatNo, runId, crId, "
+				+ "completedTime) VALUES (?, ?, ?, ?, ?, ?, DATETIME());");
+		stmnt.bind(1, crIdentifier);
+		stmnt.bind(2, expUid);
+		stmnt.bind(3, hostId);
+		stmnt.bind(4, repeatNo);
+		stmnt.bind(5, runId);
+		stmnt.bind(6, crId);
+		stmnt.step();
+		stmnt.dispose();
+	}
+
+	/**
+	 * Stores the values of the key metrics of a repeat in the transaction
+	 * which commits the run, replacing the values of a previous run of the
+	 * repeat. Must be called by the database thread.
+	 */
+	private void storeKeyValues(SQLiteConnection db, String expUid, String hostId, int repeatNo, List<DependentVariablesValueComposite> values)
+			throws SQLiteException
+	{
+		SQLiteStatement stmnt = db.prepare("DELETE FROM repetitionValues WHERE crIdentifier=? AND expUid=? AND hostId=? AND repeatNo=?;");
+		try
+		{
+			stmnt.bind(1, crIdentifier);
+			stmnt.bind(2, expUid);
+			stmnt.bind(3, hostId);
+			stmnt.bind(4, repeatNo);
+			stmnt.step();
+		} finally
+		{
+			stmnt.dispose();
+		}
+
+		stmnt = db.prepare("INSERT INTO repetitionValues (crIdentifier, expUid, hostId, repeatNo, operation, opMetric, source, opValue) "
+				+ "VALUES (?, ?, ?, ?, ?, ?, ?, ?);");
+		try
+		{
+			for (DependentVariablesValueComposite value : values)
+			{
+				stmnt.reset();
+				stmnt.bind(1, crIdentifier);
+				stmnt.bind(2, expUid);
+				stmnt.bind(3, hostId);
+				stmnt.bind(4, repeatNo);
+				stmnt.bind(5, value.getOperation());
+				stmnt.bind(6, value.getOperationMetric().getValue());
+				stmnt.bind(7, value.getSource());
+				stmnt.bind(8, value.getValue());
+				stmnt.step();
+			}
+		} finally
+		{
+			stmnt.dispose();
+		}
+	}
+
+	/**
+	 * Counts a finished run towards its group and commits the open transaction
+	 * if the group is complete. Must be called by the database thread.
+	 */
+	private void finishRun(SQLiteConnection db, String group) throws SQLiteException
+	{
+		++transactionRuns;
+		Integer finished = groupRuns.remove(group);
+		int runs = finished == null ? 1 : finished + 1;
+		if (runs >= groupCommitSize)
+		{
+			LOGGER.trace("Group %s is complete", group);
+			commitTransaction(db);
+		} else
+		{
+			groupRuns.put(group, runs);
+		}
+	}
+
+	/**
+	 * Opens a transaction if none is open. Must be called by the database
+	 * thread.
+	 */
+	private void beginTransaction(SQLiteConnection db) throws SQLiteException
+	{
+		if (!inTransaction)
+		{
+			db.exec("BEGIN;");
+			inTransaction = true;
+			transactionRuns = 0;
+			transactionSince = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Commits the open transaction if there is one. Must be called by the
+	 * database thread.
+	 */
+	private void commitTransaction(SQLiteConnection db) throws SQLiteException
+	{
+		if (!inTransaction)
+		{
+			return;
+		}
+
+		LOGGER.trace("Commiting");
+		db.exec("COMMIT;");
+		LOGGER.debug("Committed %d runs after %d ms", transactionRuns, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - transactionSince));
+		inTransaction = false;
+		transactionRuns = 0;
+	}
+
+	/**
+	 * Queues a job which commits the open transaction if it contains finished
+	 * runs and exceeded the maximum delay. Called by the maintenance thread.
+	 */
+	private void commitStaleGroup()
+	{
+		try
+		{
+			queue.execute(new SQLiteJob<Void>()
+			{
+				protected Void job(SQLiteConnection db) throws SQLiteException
+				{
+					// Only finished runs are waiting for a commit, the batches of
+					// the streamed runs are invisible anyway
+					if (inTransaction && transactionRuns > 0
+							&& System.nanoTime() - transactionSince > TimeUnit.MILLISECONDS.toNanos(maxGroupCommitDelay))
+					{
+						LOGGER.warn("Groups %s are incomplete after %d ms, committing %d runs", groupRuns.keySet(), maxGroupCommitDelay,
+								transactionRuns);
+						commitTransaction(db);
+					}
+					return null;
+				}
+			});
+		} catch (RuntimeException e)
+		{
+			// Do not stop the maintenance, the failure is reported to the
+			// producers by the queue
+			LOGGER.debug("Could not queue group commit: %s", e);
+		}
+	}
+
+	/**
+	 * Copies the committed pages of the write-ahead-log into the database
+	 * without blocking the writer or the readers. Called by the maintenance
+	 * thread.
+	 */
+	private void checkpoint()
+	{
+		try
+		{
+			if (checkpointConnection == null)
+			{
+				checkpointConnection = new SQLiteConnection(databaseFile);
+				checkpointConnection.open(false);
+				checkpointConnection.setBusyTimeout(LOCK_WAIT_TIMEOUT);
+			}
+
+			// The SQLite version bundled with sqlite4java only supports the
+			// passive checkpoint without a mode argument
+			long start = System.nanoTime();
+			checkpointConnection.exec("PRAGMA wal_checkpoint;");
+			LOGGER.trace("Checkpoint took %d ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		} catch (SQLiteException e)
+		{
+			LOGGER.warn("Checkpoint failed: %s", e);
+		}
+	}
+
+	private void closeCheckpointConnection()
+	{
+		if (checkpointConnection != null)
+		{
+			checkpointConnection.dispose();
+			checkpointConnection = null;
+		}
+	}
+
+	/**
+	 * Executes a job in the database thread and waits for its result.
+	 */
+	private <T> T executeAndWait(SQLiteJob<T> job)
+	{
+		try
+		{
+			return queue.execute(job).get();
+		} catch (InterruptedException e)
+		{
+			throw new DataStoreException(e);
+		} catch (ExecutionException e)
+		{
+			throw new DataStoreException(e);
+		}
+	}
+
 	/**
 	 * Reads the SQL-Statements used to construct a table from a resource. The
 	 * default platform encoding is used.
@@ -300,4 +1121,139 @@ public class SQLiteDataStore implements DataStore
 			throw new IllegalArgumentException("Schema read failed", e);
 		}
 	}
+
+	/**
+	 * A run whose results are streamed into the database. All jobs of a run
+	 * are executed in the order they were queued, thus the ids of the run are
+	 * known to the jobs of the batches.
+	 */
+	private final class StreamingRun implements ResultSink
+	{
+		private final String group;
+		private final String prefix;
+		private final String hostId;
+		private final int repeatNo;
+		private final String expUid;
+
+		// Only accessed by the database thread
+		private long runId;
+		private long dvId;
+		private final RunSummary summary = new RunSummary();
+
+		// Only accessed by the thread using the sink
+		private List<DependentVariablesValueComposite> keyValues = Collections.emptyList();
+		private boolean finished = false;
+		private long batches = 0;
+		private long values = 0;
+
+		private StreamingRun(String group, String prefix, String hostId, int repeatNo, String expUid)
+		{
+			this.group = group;
+			this.prefix = prefix;
+			this.hostId = hostId;
+			this.repeatNo = repeatNo;
+			this.expUid = expUid;
+		}
+
+		@Override
+		public void append(final DependentVariables batch)
+		{
+			if (finished)
+			{
+				throw new DataStoreException("The run of host " + hostId + " is already finished");
+			}
+
+			final long rows = SampleBuffer.countValues(batch);
+			final long bytes = rows * ESTIMATED_BYTES_PER_VALUE;
+			try
+			{
+				ingestionBudget.acquire(rows, bytes);
+			} catch (InterruptedException e)
+			{
+				throw new DataStoreException("Waiting for free ingestion capacity was interrupted", e);
+			}
+
+			try
+			{
+				queue.execute(new SQLiteJob<Void>()
+				{
+					protected Void job(SQLiteConnection db) throws SQLiteException
+					{
+						beginTransaction(db);
+						helper.saveDependentValues(prefix, dvId, Collections.singletonList(batch), summary);
+						return null;
+					}
+
+					@Override
+					protected void jobFinished(Void result)
+					{
+						ingestionBudget.release(rows, bytes);
+					}
+				});
+			} catch (RuntimeException e)
+			{
+				ingestionBudget.release(rows, bytes);
+				throw e;
+			}
+
+			++batches;
+			values += rows;
+		}
+
+		@Override
+		public void setKeyValues(List<DependentVariablesValueComposite> keyValues)
+		{
+			this.keyValues = keyValues;
+		}
+
+		@Override
+		public void commit()
+		{
+			if (finished)
+			{
+				throw new DataStoreException("The run of host " + hostId + " is already finished");
+			}
+			finished = true;
+
+			final List<DependentVariablesValueComposite> storedKeyValues = keyValues;
+			executeAndWait(new SQLiteJob<Void>()
+			{
+				protected Void job(SQLiteConnection db) throws SQLiteException
+				{
+					beginTransaction(db);
+					helper.saveSummary(prefix, dvId, summary);
+					completeRun(db, runId);
+					journalRun(db, runId, expUid, hostId, repeatNo);
+					storeKeyValues(db, expUid, hostId, repeatNo, storedKeyValues);
+					--openStreams;
+					finishRun(db, group);
+					return null;
+				}
+			});
+			LOGGER.debug("Streamed run of host %s, group %s finished: %d values in %d batches", hostId, group, values, batches);
+		}
+
+		@Override
+		public void abort()
+		{
+			if (finished)
+			{
+				return;
+			}
+			finished = true;
+
+			executeAndWait(new SQLiteJob<Void>()
+			{
+				protected Void job(SQLiteConnection db) throws SQLiteException
+				{
+					beginTransaction(db);
+					helper.deleteRun(runId, prefix, db);
+					--openStreams;
+					finishRun(db, group);
+					return null;
+				}
+			});
+			LOGGER.debug("Streamed run of host %s, group %s aborted", hostId, group);
+		}
+	}
 }
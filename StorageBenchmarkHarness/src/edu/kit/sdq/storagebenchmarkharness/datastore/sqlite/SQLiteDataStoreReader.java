@@ -0,0 +1,657 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore.sqlite;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteConstants;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteStatement;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.kit.sdq.storagebenchmarkharness.Logger;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.datastore.DataStoreReader;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RowCursor;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleSeries;
+import edu.kit.sdq.storagebenchmarkharness.datastore.StoredRun;
+import edu.kit.sdq.storagebenchmarkharness.datastore.ValueCursor;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * Reads the results of a database written by the {@code SQLiteDataStore}.
+ * Only completed runs are returned, a streamed run is not visible before it
+ * is committed.
+ *
+ * The queries use the indexes created by
+ * {@link SQLiteDataStore#setupDataStore()}: the dependent values are looked up
+ * by the index on {@code (dvId, opMetric, operation)} and returned in its
+ * order, thus no value is sorted. Its entries end with the rowid (the
+ * valueId), the values of a metric and operation are in the order they were
+ * stored.
+ *
+ * Like all sqlite4java connections, the reader and its cursors are confined to
+ * the thread which created the reader.
+ */
+public class SQLiteDataStoreReader implements DataStoreReader
+{
+	private static final Logger LOGGER = Logger.getLogger(SQLiteDataStoreReader.class);
+
+	private static final String RUN_COLUMNS = "runs.runId, runs.crId, runs.expNo, runs.repeatNo, runs.hostId, runs.benchmarkId, runs.expUid";
+
+	private final SQLiteConnection db;
+	private final boolean ownsConnection;
+
+	// Restricts the runs to the completed ones, the streamed runs are
+	// incomplete until they are committed. Null until the schema was checked.
+	private String completedRuns;
+
+	/**
+	 * Opens a read-only connection to the database. In write-ahead-log mode,
+	 * the database can be read while it is written.
+	 *
+	 * @param database
+	 *            The database file
+	 */
+	public SQLiteDataStoreReader(File database)
+	{
+		this(open(database), true);
+	}
+
+	/**
+	 * Uses an open connection which is not disposed by {@link #close()}.
+	 *
+	 * @param db
+	 *            The SQLite database connection
+	 */
+	public SQLiteDataStoreReader(SQLiteConnection db)
+	{
+		this(db, false);
+	}
+
+	private SQLiteDataStoreReader(SQLiteConnection db, boolean ownsConnection)
+	{
+		this.db = db;
+		this.ownsConnection = ownsConnection;
+	}
+
+	private static SQLiteConnection open(File database)
+	{
+		try
+		{
+			return SQLiteDataStore.openReadOnlyConnection(database);
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not open database " + database, e);
+		}
+	}
+
+	/**
+	 * @return The connection of the reader, e.g. for the
+	 *         {@code SQLiteSampleSeriesReader}
+	 */
+	public SQLiteConnection getConnection()
+	{
+		return db;
+	}
+
+	@Override
+	public List<Long> getConfigurationRunIds(String identifier)
+	{
+		List<Long> result = Lists.newArrayList();
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT crId FROM configurationRuns WHERE crIdentifier=? ORDER BY crId;");
+			try
+			{
+				stmt.bind(1, identifier);
+				while (stmt.step())
+				{
+					result.add(stmt.columnLong(0));
+				}
+			} finally
+			{
+				stmt.dispose();
+			}
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not read the configuration runs " + identifier, e);
+		}
+		return result;
+	}
+
+	@Override
+	public List<StoredRun> getRuns(long crId)
+	{
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT " + RUN_COLUMNS + " FROM runs WHERE crId=? AND " + getCompletedRuns()
+					+ " ORDER BY expNo, repeatNo, hostId;");
+			stmt.bind(1, crId);
+			return readRuns(stmt);
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not read the runs of configuration run " + crId, e);
+		}
+	}
+
+	@Override
+	public List<StoredRun> findRuns(String prefix, Map<String, ?> independentVars)
+	{
+		checkPrefix(prefix);
+		try
+		{
+			// The column names can not be bound, thus only known columns are
+			// accepted
+			Set<String> columns = getColumns(prefix + "IndependentVars");
+			StringBuilder sql = new StringBuilder("SELECT " + RUN_COLUMNS + " FROM runs JOIN " + prefix + "IndependentVars USING (runId)");
+			sql.append(" WHERE ").append(getCompletedRuns());
+			String separator = " AND ";
+			for (String column : independentVars.keySet())
+			{
+				if (!columns.contains(column))
+				{
+					throw new IllegalArgumentException("Unknown independent variable " + column + " of " + prefix);
+				}
+				sql.append(separator).append('"').append(column).append("\"=?");
+				separator = " AND ";
+			}
+			sql.append(" ORDER BY runs.crId, runs.expNo, runs.repeatNo, runs.hostId;");
+
+			SQLiteStatement stmt = db.prepare(sql.toString(), false);
+			int paramNo = 0;
+			for (Object value : independentVars.values())
+			{
+				SQLiteHelper.bind(stmt, ++paramNo, value);
+			}
+			return readRuns(stmt);
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not find the runs of " + prefix + " with " + independentVars, e);
+		}
+	}
+
+	@Override
+	public RowCursor getRunsWithIndependentVars(String prefix, long crId)
+	{
+		checkPrefix(prefix);
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT * FROM runs JOIN " + prefix
+					+ "IndependentVars USING (runId) WHERE crId=? AND " + getCompletedRuns() + " ORDER BY expNo, repeatNo, hostId;");
+			stmt.bind(1, crId);
+			return new SQLiteRowCursor(stmt);
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not read the independent variables of configuration run " + crId, e);
+		}
+	}
+
+	@Override
+	public ValueCursor getDependentValues(String prefix, long runId, Metric metric, String operation)
+	{
+		checkPrefix(prefix);
+		try
+		{
+			List<Long> dvIds = Lists.newArrayList();
+			SQLiteStatement stmt = db.prepare("SELECT dvId FROM " + prefix + "DependentVars WHERE runId=? ORDER BY dvId;");
+			try
+			{
+				stmt.bind(1, runId);
+				while (stmt.step())
+				{
+					dvIds.add(stmt.columnLong(0));
+				}
+			} finally
+			{
+				stmt.dispose();
+			}
+
+			// Databases written before the columnar storage have no series
+			boolean hasSeries = !getColumns(prefix + "DependentVarsSeries").isEmpty();
+			return new SQLiteValueCursor(prefix, runId, dvIds, metric == null ? null : metric.getValue(), operation, hasSeries);
+		} catch (SQLiteException e)
+		{
+			throw new DataStoreException("Could not read the dependent values of run " + runId, e);
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if (ownsConnection)
+		{
+			db.dispose();
+		}
+	}
+
+	/**
+	 * @return The condition on the runs table which selects the completed
+	 *         runs, databases written before streamed runs only contain
+	 *         completed runs
+	 */
+	private String getCompletedRuns() throws SQLiteException
+	{
+		if (completedRuns == null)
+		{
+			completedRuns = getColumns("runs").contains("runCompleted") ? "runs.runCompleted=1" : "1";
+		}
+		return completedRuns;
+	}
+
+	private static void checkPrefix(String prefix)
+	{
+		// The prefix is part of the table names and thus of the SQL
+		Preconditions.checkArgument(prefix.matches("[A-Za-z]+"), "Invalid benchmark prefix %s", prefix);
+	}
+
+	private static List<StoredRun> readRuns(SQLiteStatement stmt) throws SQLiteException
+	{
+		List<StoredRun> result = Lists.newArrayList();
+		try
+		{
+			while (stmt.step())
+			{
+				result.add(new StoredRun(stmt.columnLong(0), stmt.columnLong(1), stmt.columnInt(2), stmt.columnInt(3), stmt.columnString(4),
+						stmt.columnString(5), stmt.columnString(6)));
+			}
+		} finally
+		{
+			stmt.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * @return The columns of the table, empty if the table does not exist
+	 */
+	private Set<String> getColumns(String table) throws SQLiteException
+	{
+		Set<String> columns = Sets.newHashSet();
+		SQLiteStatement stmt = db.prepare("PRAGMA table_info(" + table + ");", false);
+		try
+		{
+			while (stmt.step())
+			{
+				columns.add(stmt.columnString(1));
+			}
+		} finally
+		{
+			stmt.dispose();
+		}
+		return columns;
+	}
+
+	/**
+	 * Iterates over the values of the dependent variables of a run. For every
+	 * set of dependent variables, the rows are read first and then the
+	 * decoded series.
+	 */
+	private final class SQLiteValueCursor implements ValueCursor
+	{
+		private final String prefix;
+		private final long runId;
+		private final List<Long> dvIds;
+		private final Integer metric;
+		private final String operation;
+		private final boolean hasSeries;
+
+		private int dvPos = 0;
+		private long dvId;
+		private SQLiteStatement rows;
+		private List<SampleSeries> series;
+		private int seriesPos;
+		private int sample;
+		private boolean closed = false;
+
+		// The current value
+		private String currentOperation;
+		private int currentMetric;
+		private int currentType;
+		private double currentValue;
+		private double currentTimestamp;
+		private String currentSource;
+
+		private SQLiteValueCursor(String prefix, long runId, List<Long> dvIds, Integer metric, String operation, boolean hasSeries)
+		{
+			this.prefix = prefix;
+			this.runId = runId;
+			this.dvIds = dvIds;
+			this.metric = metric;
+			this.operation = operation;
+			this.hasSeries = hasSeries;
+		}
+
+		@Override
+		public boolean next()
+		{
+			if (closed)
+			{
+				return false;
+			}
+
+			try
+			{
+				while (true)
+				{
+					if (rows != null)
+					{
+						if (rows.step())
+						{
+							readRow();
+							return true;
+						}
+						rows.dispose();
+						rows = null;
+						series = hasSeries ? readSeries() : null;
+						seriesPos = 0;
+						sample = 0;
+					}
+
+					if (series != null)
+					{
+						while (seriesPos < series.size())
+						{
+							SampleSeries s = series.get(seriesPos);
+							if (sample < s.size())
+							{
+								readSample(s, sample++);
+								return true;
+							}
+							++seriesPos;
+							sample = 0;
+						}
+						series = null;
+					}
+
+					if (dvPos >= dvIds.size())
+					{
+						close();
+						return false;
+					}
+					dvId = dvIds.get(dvPos++);
+					rows = prepareRows();
+				}
+			} catch (SQLiteException e)
+			{
+				close();
+				throw new DataStoreException("Could not read the dependent values of run " + runId, e);
+			}
+		}
+
+		private SQLiteStatement prepareRows() throws SQLiteException
+		{
+			// With the equality on dvId, the order is the one of the index
+			StringBuilder sql = new StringBuilder("SELECT operation, opMetric, opType, opValue, opTimestamp, source FROM ");
+			sql.append(prefix).append("DependentVarsValues WHERE dvId=?");
+			if (metric != null)
+			{
+				sql.append(" AND opMetric=?");
+			}
+			if (operation != null)
+			{
+				sql.append(" AND operation=?");
+			}
+			sql.append(" ORDER BY opMetric, operation, valueId;");
+
+			SQLiteStatement stmt = db.prepare(sql.toString());
+			int paramNo = 0;
+			stmt.bind(++paramNo, dvId);
+			if (metric != null)
+			{
+				stmt.bind(++paramNo, metric);
+			}
+			if (operation != null)
+			{
+				stmt.bind(++paramNo, operation);
+			}
+			return stmt;
+		}
+
+		private void readRow() throws SQLiteException
+		{
+			currentOperation = rows.columnString(0);
+			currentMetric = rows.columnInt(1);
+			currentType = rows.columnNull(2) ? -1 : rows.columnInt(2);
+			currentValue = rows.columnDouble(3);
+			currentSource = rows.columnNull(5) ? null : rows.columnString(5);
+
+			// Numeric timestamps are converted by the column affinity, others
+			// (e.g. the empty timestamp of composite values) are kept as text
+			switch (rows.columnType(4))
+			{
+			case SQLiteConstants.SQLITE_INTEGER:
+			case SQLiteConstants.SQLITE_FLOAT:
+				currentTimestamp = rows.columnDouble(4);
+				break;
+			case SQLiteConstants.SQLITE_TEXT:
+				currentTimestamp = parseTimestamp(rows.columnString(4));
+				break;
+			default:
+				currentTimestamp = Double.NaN;
+			}
+		}
+
+		private List<SampleSeries> readSeries() throws SQLiteException
+		{
+			List<SampleSeries> result = SQLiteSampleSeriesReader.readSeries(db, prefix, dvId);
+			List<SampleSeries> matching = Lists.newArrayListWithCapacity(result.size());
+			for (SampleSeries s : result)
+			{
+				if ((metric == null || metric == s.getMetric()) && (operation == null || operation.equals(s.getOperation())))
+				{
+					matching.add(s);
+				}
+			}
+			return matching;
+		}
+
+		private void readSample(SampleSeries s, int i)
+		{
+			currentOperation = s.getOperation();
+			currentMetric = s.getMetric();
+			currentType = Type.SINGLE_VALUE_VALUE;
+			currentValue = s.getValues()[i];
+			currentTimestamp = s.getTimestamp(i);
+			currentSource = s.getSource();
+		}
+
+		@Override
+		public long getRunId()
+		{
+			return runId;
+		}
+
+		@Override
+		public String getOperation()
+		{
+			return currentOperation;
+		}
+
+		@Override
+		public int getMetric()
+		{
+			return currentMetric;
+		}
+
+		@Override
+		public int getType()
+		{
+			return currentType;
+		}
+
+		@Override
+		public double getValue()
+		{
+			return currentValue;
+		}
+
+		@Override
+		public double getTimestamp()
+		{
+			return currentTimestamp;
+		}
+
+		@Override
+		public String getSource()
+		{
+			return currentSource;
+		}
+
+		@Override
+		public void close()
+		{
+			if (rows != null)
+			{
+				rows.dispose();
+				rows = null;
+			}
+			series = null;
+			closed = true;
+		}
+	}
+
+	private static double parseTimestamp(String timestamp)
+	{
+		if (timestamp.isEmpty())
+		{
+			return Double.NaN;
+		}
+		try
+		{
+			return Double.parseDouble(timestamp);
+		} catch (NumberFormatException e)
+		{
+			LOGGER.trace("Timestamp %s is not numeric", timestamp);
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * A cursor directly backed by a statement.
+	 */
+	private static final class SQLiteRowCursor implements RowCursor
+	{
+		private SQLiteStatement stmt;
+
+		private SQLiteRowCursor(SQLiteStatement stmt)
+		{
+			this.stmt = stmt;
+		}
+
+		@Override
+		public boolean next()
+		{
+			if (stmt == null)
+			{
+				return false;
+			}
+			try
+			{
+				if (stmt.step())
+				{
+					return true;
+				}
+				close();
+				return false;
+			} catch (SQLiteException e)
+			{
+				close();
+				throw new DataStoreException("Could not read the next row", e);
+			}
+		}
+
+		@Override
+		public int getColumnCount()
+		{
+			try
+			{
+				return checkOpen().columnCount();
+			} catch (SQLiteException e)
+			{
+				throw new DataStoreException(e);
+			}
+		}
+
+		@Override
+		public String getColumnName(int column)
+		{
+			try
+			{
+				return checkOpen().getColumnName(column);
+			} catch (SQLiteException e)
+			{
+				throw new DataStoreException(e);
+			}
+		}
+
+		@Override
+		public boolean isNull(int column)
+		{
+			try
+			{
+				return checkOpen().columnNull(column);
+			} catch (SQLiteException e)
+			{
+				throw new DataStoreException(e);
+			}
+		}
+
+		@Override
+		public long getLong(int column)
+		{
+			try
+			{
+				return checkOpen().columnLong(column);
+			} catch (SQLiteException e)
+			{
+				throw new DataStoreException(e);
+			}
+		}
+
+		@Override
+		public double getDouble(int column)
+		{
+			try
+			{
+				return checkOpen().columnDouble(column);
+			} catch (SQLiteException e)
+			{
+				throw new DataStoreException(e);
+			}
+		}
+
+		@Override
+		public String getString(int column)
+		{
+			try
+			{
+				return checkOpen().columnString(column);
+			} catch (SQLiteException e)
+			{
+				throw new DataStoreException(e);
+			}
+		}
+
+		private SQLiteStatement checkOpen()
+		{
+			Preconditions.checkState(stmt != null, "The cursor is closed");
+			return stmt;
+		}
+
+		@Override
+		public void close()
+		{
+			if (stmt != null)
+			{
+				stmt.dispose();
+				stmt = null;
+			}
+		}
+	}
+}
@@ -3,6 +3,7 @@ package edu.kit.sdq.storagebenchmarkharness.datastore.sqlite;
 import java.io.File;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +23,7 @@ import com.google.common.collect.Maps;
 
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValue;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfBenchmark;
@@ -30,6 +32,11 @@ import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelPackage;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Operations.OperationsPackage;
+import edu.kit.sdq.storagebenchmarkharness.datastore.QuantileSketch;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RunSummary;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleSeries;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleSeriesCodec;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.InconsistentTableException;
 
 /**
@@ -54,16 +61,77 @@ public final class SQLiteHelper
 {
 	private static final Logger LOGGER = Logger.getLogger(SQLiteHelper.class);
 
+	// The maximum number of host parameters ('?') SQLite accepts in a single
+	// statement (SQLITE_MAX_VARIABLE_NUMBER of the bundled SQLite).
+	private static final int SQLITE_MAX_VARIABLES = 999;
+
+	// Number of columns which are bound for every dependent variable value.
+	private static final int DV_VALUE_COLUMNS = 7;
+
+	/**
+	 * The number of dependent variable values which are inserted by one
+	 * multi-row INSERT statement by default. This is the largest number which
+	 * does not exceed SQLite's parameter limit.
+	 */
+	public static final int DEFAULT_VALUES_PER_INSERT = SQLITE_MAX_VARIABLES / DV_VALUE_COLUMNS;
+
+	// The maximum number of rows of a nested independent variable table
+	// (e.g. the threads and flowops of filebench) inserted by one statement.
+	private static final int MAX_REFERENCE_ROWS_PER_INSERT = 32;
+
 	private final Map<String, SQLiteStatement> ivStmnts;
 	private final Map<String, SQLiteStatement> dvStmnts;
+	private final Map<String, ReferenceInsert> refStmnts;
+
+	private final int valuesPerInsert;
+
+	private boolean columnarSamples = false;
 
 	/**
-	 * Creates a new SQLiteHelper
+	 * Creates a new SQLiteHelper which inserts the dependent variable values
+	 * in chunks of {@code DEFAULT_VALUES_PER_INSERT}.
 	 */
 	public SQLiteHelper()
 	{
+		this(DEFAULT_VALUES_PER_INSERT);
+	}
+
+	/**
+	 * Creates a new SQLiteHelper.
+	 * 
+	 * @param valuesPerInsert
+	 *            The number of dependent variable values which are written by
+	 *            one INSERT statement. A value of 1 inserts every value on its
+	 *            own.
+	 */
+	public SQLiteHelper(int valuesPerInsert)
+	{
+		if (valuesPerInsert < 1 || valuesPerInsert > DEFAULT_VALUES_PER_INSERT)
+		{
+			throw new IllegalArgumentException("valuesPerInsert must be between 1 and " + DEFAULT_VALUES_PER_INSERT);
+		}
+
 		this.ivStmnts = Maps.newHashMap();
 		this.dvStmnts = Maps.newHashMap();
+		this.refStmnts = Maps.newHashMap();
+		this.valuesPerInsert = valuesPerInsert;
+	}
+
+	/**
+	 * Enables or disables the columnar storage of single values. If enabled,
+	 * the single values are stored as compressed series in the
+	 * {@code DependentVarsSeries} table instead of one row per value.
+	 * 
+	 * @param columnarSamples
+	 */
+	public void setColumnarSamples(boolean columnarSamples)
+	{
+		this.columnarSamples = columnarSamples;
+	}
+
+	public boolean isColumnarSamples()
+	{
+		return columnarSamples;
 	}
 
 	/**
@@ -108,6 +176,114 @@ public final class SQLiteHelper
 		// Create Filebench operations
 		List<EClass> filebenchOps = getAllFilebenchOps();
 		setupFilebenchOperations(db, filebenchOps);
+
+		// Prepare the inserts for the nested independent variables (e.g. the
+		// threads, flowops and filesets of filebench). This needs to be done
+		// after all columns have been created.
+		setupReferenceInserts(db, "ffsbIndependentVars", SBHModelPackage.eINSTANCE.getIndependentVariablesOfFFSB(), filebenchOps);
+		setupReferenceInserts(db, "postmarkIndependentVars", SBHModelPackage.eINSTANCE.getIndependentVariablesOfPostmark(), filebenchOps);
+		setupReferenceInserts(db, "filebenchIndependentVars", SBHModelPackage.eINSTANCE.getIndependentVariablesOfFilebench(), filebenchOps);
+	}
+
+	/**
+	 * Disposes all prepared statements. The helper can not be used afterwards
+	 * until {@code setupTables} is called again.
+	 */
+	public void dispose()
+	{
+		for (SQLiteStatement stmt : ivStmnts.values())
+		{
+			stmt.dispose();
+		}
+		for (SQLiteStatement stmt : dvStmnts.values())
+		{
+			stmt.dispose();
+		}
+		for (ReferenceInsert insert : refStmnts.values())
+		{
+			insert.dispose();
+		}
+		ivStmnts.clear();
+		dvStmnts.clear();
+		refStmnts.clear();
+	}
+
+	/**
+	 * Prepares the INSERT statements for all tables which store the references
+	 * of the EClass, recursively. For abstract references (the filebench
+	 * operations) a statement for each concrete operation is prepared.
+	 * 
+	 * @param db
+	 *            The SQLite Database connection
+	 * @param tablename
+	 *            The table of the EClass
+	 * @param eclass
+	 *            The EClass whose references are stored in nested tables
+	 * @param filebenchOps
+	 *            The concrete filebench operations
+	 * @throws SQLiteException
+	 */
+	private void setupReferenceInserts(SQLiteConnection db, String tablename, EClass eclass, List<EClass> filebenchOps) throws SQLiteException
+	{
+		for (EReference er : eclass.getEAllReferences())
+		{
+			EClass contClass = er.getEReferenceType();
+			String contClassTableName = tablename + contClass.getName();
+			if (contClass.isAbstract() || contClass.isInterface())
+			{
+				for (EClass op : filebenchOps)
+				{
+					if (contClass.isSuperTypeOf(op))
+					{
+						getReferenceInsert(db, contClassTableName, op);
+						setupReferenceInserts(db, contClassTableName, op, filebenchOps);
+					}
+				}
+			} else
+			{
+				getReferenceInsert(db, contClassTableName, contClass);
+				setupReferenceInserts(db, contClassTableName, contClass, filebenchOps);
+			}
+		}
+	}
+
+	/**
+	 * Returns the cached INSERT statements for a nested table and the
+	 * attributes of the EClass. The statements are prepared if they are not
+	 * cached yet.
+	 * 
+	 * @throws SQLiteException
+	 */
+	private ReferenceInsert getReferenceInsert(SQLiteConnection db, String tablename, EClass eclass) throws SQLiteException
+	{
+		List<EAttribute> attributes = eclass.getEAllAttributes();
+
+		StringBuilder columns = new StringBuilder("runId");
+		for (int i = 0; i < attributes.size(); ++i)
+		{
+			columns.append(", " + attributes.get(i).getName());
+		}
+
+		String key = tablename + "(" + columns + ")";
+		ReferenceInsert insert = refStmnts.get(key);
+		if (insert == null)
+		{
+			int columnCount = attributes.size() + 1;
+			int rowsPerInsert = Math.max(1, Math.min(MAX_REFERENCE_ROWS_PER_INSERT, SQLITE_MAX_VARIABLES / columnCount));
+
+			String single = getMultiRowInsert(tablename, columns.toString(), columnCount, 1);
+			LOGGER.debug("SQL for nested table %s=%s", tablename, single);
+
+			SQLiteStatement batchStmt = null;
+			if (rowsPerInsert > 1)
+			{
+				batchStmt = db.prepare(getMultiRowInsert(tablename, columns.toString(), columnCount, rowsPerInsert));
+			}
+
+			insert = new ReferenceInsert(columnCount, db.prepare(single), batchStmt, rowsPerInsert);
+			refStmnts.put(key, insert);
+		}
+		return insert;
 	}
 
 	/**
@@ -201,16 +377,72 @@ public final class SQLiteHelper
 
 		LOGGER.debug("SQL for prefix %s=%s", prefix + "_first", dvSql.toString());
 
-		dvSql = new StringBuilder("INSERT INTO " + prefix + "DependentVarsValues (dvId, ");
-		dvSql.append("operation, opMetric, opValue, source, opTimestamp, opType");
-		dvSql.append(") VALUES (?, ?, ?, ?, ?, ?, ?");
-		//dvSql.append("operation, opMetric, opValue, opTimestamp, opType");
-		//dvSql.append(") VALUES (?, ?, ?, ?, ?, ?");
-		dvSql.append(");");
+		String valueSql = getDependentValuesInsert(prefix, 1);
+		dvStmnts.put(prefix + "_second", db.prepare(valueSql));
 
-		dvStmnts.put(prefix + "_second", db.prepare(dvSql.toString()));
+		LOGGER.debug("SQL for prefix %s=%s", prefix + "_second", valueSql);
 
-		LOGGER.debug("SQL for prefix %s=%s", prefix + "_second", dvSql.toString());
+		String seriesSql = "INSERT INTO " + prefix + "DependentVarsSeries (dvId, operation, opMetric, source, sampleCount, tsScale, "
+				+ "valueEncoding, timestamps, opValues) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?);";
+		dvStmnts.put(prefix + "_series", db.prepare(seriesSql));
+
+		LOGGER.debug("SQL for prefix %s=%s", prefix + "_series", seriesSql);
+
+		String summarySql = "INSERT INTO " + prefix + "DependentVarsSummary (dvId, operation, opMetric, source, sampleCount, meanValue, "
+				+ "minValue, p50, p95, p99, maxValue, sketch) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?);";
+		dvStmnts.put(prefix + "_summary", db.prepare(summarySql));
+
+		LOGGER.debug("SQL for prefix %s=%s", prefix + "_summary", summarySql);
+
+		// The multi-row variant is used to insert the values in chunks which
+		// saves a lot of round trips into the native library.
+		if (valuesPerInsert > 1)
+		{
+			dvStmnts.put(prefix + "_batch", db.prepare(getDependentValuesInsert(prefix, valuesPerInsert)));
+
+			LOGGER.debug("Prepared %d-row INSERT for prefix %s", valuesPerInsert, prefix + "_batch");
+		}
+	}
+
+	/**
+	 * Constructs an INSERT statement for the dependent variable values which
+	 * inserts {@code rows} rows at once.
+	 * 
+	 * @param prefix
+	 *            The benchmark prefix of the table
+	 * @param rows
+	 *            The number of rows to insert
+	 * @return The SQL statement
+	 */
+	private static String getDependentValuesInsert(String prefix, int rows)
+	{
+		return getMultiRowInsert(prefix + "DependentVarsValues", "dvId, operation, opMetric, opValue, source, opTimestamp, opType",
+				DV_VALUE_COLUMNS, rows);
+	}
+
+	/**
+	 * Constructs an INSERT statement which inserts {@code rows} rows at once.
+	 * The bundled SQLite does not support multiple rows in the VALUES clause
+	 * (added in 3.7.11), thus the rows are a compound SELECT, which are
+	 * inserted in their order.
+	 * 
+	 * @param rows
+	 *            The number of rows, at most SQLITE_MAX_COMPOUND_SELECT
+	 */
+	private static String getMultiRowInsert(String tablename, String columns, int columnCount, int rows)
+	{
+		StringBuilder sql = new StringBuilder("INSERT INTO " + tablename + " (" + columns + ") ");
+		String row = "SELECT " + Strings.repeat("?, ", columnCount - 1) + "?";
+		for (int i = 0; i < rows; ++i)
+		{
+			if (i > 0)
+			{
+				sql.append(" UNION ALL ");
+			}
+			sql.append(row);
+		}
+		sql.append(";");
+		return sql.toString();
 	}
 
 	public void setupFilebenchOperations(SQLiteConnection db, List<EClass> filebenchOps) throws SQLiteException
@@ -357,6 +589,47 @@ public final class SQLiteHelper
 		return columnsInTable;
 	}
 
+	/**
+	 * Adds the columns of the base tables which are missing in databases
+	 * written by older versions. Runs stored by these versions are regarded
+	 * as completed.
+	 * 
+	 * @param db
+	 * @throws SQLiteException
+	 */
+	public static void upgradeBaseTables(SQLiteConnection db) throws SQLiteException
+	{
+		if (!getColumnsInTable(db, "runs").containsKey("runcompleted"))
+		{
+			LOGGER.debug("Adding column runs.runCompleted");
+			db.exec("ALTER TABLE runs ADD COLUMN runCompleted BOOLEAN NOT NULL DEFAULT 1;");
+		}
+	}
+
+	/**
+	 * @return The prefixes of the benchmarks which have result tables in the
+	 *         database, e.g. 'ffsb'. The table names are matched case
+	 *         sensitive, thus 'ffsbIndependentVars' is no result table.
+	 * @throws SQLiteException
+	 */
+	public static List<String> getStoredPrefixes(SQLiteConnection db) throws SQLiteException
+	{
+		List<String> prefixes = new ArrayList<String>();
+		SQLiteStatement stmt = db.prepare("SELECT name FROM sqlite_master WHERE type='table' AND name GLOB '*DependentVars';");
+		try
+		{
+			while (stmt.step())
+			{
+				String table = stmt.columnString(0);
+				prefixes.add(table.substring(0, table.length() - "DependentVars".length()));
+			}
+		} finally
+		{
+			stmt.dispose();
+		}
+		return prefixes;
+	}
+
 	/**
 	 * Check if the column exists in the table, if yes, check the type, if no
 	 * create it with the appropriate type.
@@ -431,10 +704,17 @@ public final class SQLiteHelper
 			paramNo++;
 		}
 		
+		// The rows of the nested tables are collected first and then inserted
+		// in batches per table
+		Map<ReferenceInsert, List<EObjectImpl>> referenceRows = new LinkedHashMap<ReferenceInsert, List<EObjectImpl>>();
 		for (EReference er : benchVars.eClass().getEAllReferences())
 		{
 			List<?> l = (List<?>) benchVars.eGet(er.getFeatureID(), false, false);
-			saveIndependentReferenceVars((EObjectImpl)l.get(0), prefix + "IndependentVars" + er.getEReferenceType().getName(), runId, db);
+			collectIndependentReferenceVars((EObjectImpl)l.get(0), prefix + "IndependentVars" + er.getEReferenceType().getName(), referenceRows, db);
+		}
+		for (Map.Entry<ReferenceInsert, List<EObjectImpl>> e : referenceRows.entrySet())
+		{
+			e.getKey().insert(runId, e.getValue());
 		}
 		
 		stmt.step();
@@ -442,101 +722,533 @@ public final class SQLiteHelper
 		LOGGER.trace("Finished Saving independent Vars %s %s", sutVars, benchVars);
 	}
 	
-	private void saveIndependentReferenceVars(EObjectImpl input, String statement, long runId, SQLiteConnection db) throws SQLiteException
+	/**
+	 * Collects the object and all objects it references (recursively) into the
+	 * rows which should be inserted into the nested tables.
+	 * 
+	 * @throws SQLiteException
+	 */
+	@SuppressWarnings("unchecked")
+	private void collectIndependentReferenceVars(EObjectImpl input, String tablename, Map<ReferenceInsert, List<EObjectImpl>> rows,
+			SQLiteConnection db) throws SQLiteException
 	{
-		StringBuilder ivSql = new StringBuilder("INSERT INTO " + statement + " (runId");
-		List<EAttribute> attributes = input.eClass().getEAllAttributes();
-		for (int i = 0; i < attributes.size(); ++i)
+		ReferenceInsert insert = getReferenceInsert(db, tablename, input.eClass());
+		List<EObjectImpl> tableRows = rows.get(insert);
+		if (tableRows == null)
 		{
-			EAttribute ea = attributes.get(i);
-			LOGGER.trace("%s=%s", ea.getName(), input.eClass().getEStructuralFeature((ea.eClass().getEStructuralFeature(ea.getFeatureID())).getFeatureID()));
-			
-			ivSql.append(", " + ea.getName());
-			//System.out.println(input.eGet(ea.getFeatureID(), false, false));
-			//System.out.println(ea.eClass().getName());
-			//paramNo++;
-		}
-		ivSql.append(") VALUES (?");
-		for (int i = 0; i < attributes.size(); ++i)
-			ivSql.append(", ?");
-		ivSql.append(");");
-		
-		SQLiteStatement stmt = db.prepare(ivSql.toString());
-		bind(stmt, 1, runId);
-		
-		for (int i = 0; i < attributes.size(); ++i)
-		{
-			EAttribute ea = attributes.get(i);
-			bind(stmt, i+2, input.eGet(ea.getFeatureID(), false, false));
+			tableRows = new ArrayList<EObjectImpl>();
+			rows.put(insert, tableRows);
 		}
+		tableRows.add(input);
 		
 		for (EReference er : input.eClass().getEAllReferences())
 		{
 			EClass contClass = er.getEReferenceType();
-			String contClassTableName = statement + contClass.getName();
+			String contClassTableName = tablename + contClass.getName();
 			List<EObjectImpl> l = (List<EObjectImpl>)input.eGet(er.getFeatureID(), false, false);
 			for (int i = 0; i < l.size(); ++i)
-				saveIndependentReferenceVars(l.get(i), contClassTableName, runId, db);
+				collectIndependentReferenceVars(l.get(i), contClassTableName, rows, db);
 		}
-		stmt.step();
-		stmt.reset();
 	}
 
 	/**
 	 * Save the dependent variables of a run in the appropriate table. There can
 	 * be zero or more results which should be saved.
 	 * 
+	 * If the columnar sample storage is enabled, the single values are grouped
+	 * into series per operation, metric and source and stored as compressed
+	 * blocks in the {@code DependentVarsSeries} table. Composite values and
+	 * series whose timestamps are not numeric are stored as rows.
+	 * 
+	 * Additionally, a quantile sketch of the single values per operation,
+	 * metric and source is stored in the {@code DependentVarsSummary} table.
+	 * 
+	 * A run without any results has no benchmark prefix and stores nothing.
+	 * 
 	 * @param runId
 	 * @param depVars
 	 * @throws SQLiteException
 	 */
 	public void saveDependentVars(long runId, List<DependentVariables> depVarsList, SQLiteConnection db) throws SQLiteException
 	{
+		if (depVarsList.isEmpty())
+		{
+			return;
+		}
+
 		String prefix = depVarsList.get(0).getBenchmarkPrefix();
+		long dvId = insertDependentVars(runId, prefix, db);
+		RunSummary summary = new RunSummary();
+		saveDependentValues(prefix, dvId, depVarsList, summary);
+		saveSummary(prefix, dvId, summary);
+	}
 
+	/**
+	 * Inserts the row of the dependent variables of a run, the values are
+	 * saved using {@link #saveDependentValues(String, long, List, RunSummary)}.
+	 * 
+	 * @param runId
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @return The id of the dependent variables
+	 * @throws SQLiteException
+	 */
+	public long insertDependentVars(long runId, String prefix, SQLiteConnection db) throws SQLiteException
+	{
 		SQLiteStatement stmt = dvStmnts.get(prefix + "_first");
 		int paramNo = 0;
 		stmt.bind(++paramNo, runId);
-		stmt.bind(++paramNo, depVarsList.get(0).getBenchmarkPrefix());
+		stmt.bind(++paramNo, prefix);
 
 		stmt.step();
 		stmt.reset();
 
-		SQLiteStatement sIndex = db.prepare("SELECT last_insert_rowid() FROM " + prefix + "DependentVars");
-		sIndex.step();
-		String dvId = sIndex.columnString(0);
-		sIndex.dispose();
+		return db.getLastInsertId();
+	}
+
+	/**
+	 * Saves the values of the dependent variables (including the samples of
+	 * attached sample buffers) for the dependent variables {@code dvId}. Can be
+	 * called several times for the same {@code dvId}, e.g. for the batches of
+	 * a streamed run. In the columnar sample storage, every call stores its
+	 * own series.
+	 * 
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param dvId
+	 * @param depVarsList
+	 * @param summary
+	 *            Receives the single values, may be null
+	 * @throws SQLiteException
+	 */
+	public void saveDependentValues(String prefix, long dvId, List<DependentVariables> depVarsList, RunSummary summary) throws SQLiteException
+	{
+		if (summary != null)
+		{
+			for (int j = 0; j < depVarsList.size(); ++j)
+			{
+				summary.addAll(depVarsList.get(j));
+			}
+		}
+
+		if (columnarSamples)
+		{
+			List<DependentVariablesValue> rowValues = saveSampleSeries(prefix, dvId, depVarsList);
+			saveDependentValueRows(prefix, dvId, rowValues);
+		} else
+		{
+			for (int j = 0; j < depVarsList.size(); ++j)
+			{
+				DependentVariables depVars = depVarsList.get(j);
+				saveDependentValueRows(prefix, dvId, depVars.getValues());
+				SampleBuffer samples = SampleBuffer.get(depVars);
+				if (samples != null)
+				{
+					saveSampleBufferRows(prefix, dvId, samples);
+				}
+				LOGGER.trace("Finished Saving Dependent Vars %s", depVars);
+			}
+		}
+	}
+
+	/**
+	 * Writes the sketches of the summary into the {@code DependentVarsSummary}
+	 * table, one row per operation, metric and source. Besides the encoded
+	 * sketch, the commonly queried statistics are stored as columns.
+	 * 
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param dvId
+	 * @param summary
+	 * @throws SQLiteException
+	 */
+	public void saveSummary(String prefix, long dvId, RunSummary summary) throws SQLiteException
+	{
+		SQLiteStatement stmt = dvStmnts.get(prefix + "_summary");
+		for (RunSummary.Entry entry : summary.getEntries())
+		{
+			QuantileSketch sketch = entry.getSketch();
+			if (sketch.getCount() == 0)
+			{
+				continue;
+			}
+
+			int paramNo = 0;
+			stmt.bind(++paramNo, dvId);
+			stmt.bind(++paramNo, entry.getOperation());
+			stmt.bind(++paramNo, entry.getMetric());
+			bind(stmt, ++paramNo, entry.getSource());
+			stmt.bind(++paramNo, sketch.getCount());
+			stmt.bind(++paramNo, sketch.getMean());
+			stmt.bind(++paramNo, sketch.getMin());
+			stmt.bind(++paramNo, sketch.quantile(0.5));
+			stmt.bind(++paramNo, sketch.quantile(0.95));
+			stmt.bind(++paramNo, sketch.quantile(0.99));
+			stmt.bind(++paramNo, sketch.getMax());
+			stmt.bind(++paramNo, sketch.encode());
+			stmt.step();
+			stmt.reset();
+		}
+	}
+
+	/**
+	 * Writes the values as rows into the {@code DependentVarsValues} table.
+	 * The values are written in chunks using multi-row INSERT statements, the
+	 * remaining values which do not fill a whole chunk are inserted one by
+	 * one.
+	 * 
+	 * @throws SQLiteException
+	 */
+	private void saveDependentValueRows(String prefix, long dvId, List<? extends DependentVariablesValue> values) throws SQLiteException
+	{
+		SQLiteStatement batchStmt = dvStmnts.get(prefix + "_batch");
+		SQLiteStatement singleStmt = dvStmnts.get(prefix + "_second");
+
+		int i = 0;
+		if (batchStmt != null)
+		{
+			int fullChunks = values.size() / valuesPerInsert;
+			for (int c = 0; c < fullChunks; ++c)
+			{
+				for (int row = 0; row < valuesPerInsert; ++row)
+				{
+					bindDependentValue(batchStmt, row * DV_VALUE_COLUMNS, dvId, values.get(i++));
+				}
+				batchStmt.step();
+				batchStmt.reset(false);
+			}
+		}
+
+		for (; i < values.size(); ++i)
+		{
+			bindDependentValue(singleStmt, 0, dvId, values.get(i));
+			singleStmt.step();
+			singleStmt.reset(false);
+		}
+	}
+
+	/**
+	 * Writes the samples of a sample buffer as rows into the
+	 * {@code DependentVarsValues} table like
+	 * {@link #saveDependentValueRows(String, long, List)} without creating EMF
+	 * objects for them.
+	 * 
+	 * @throws SQLiteException
+	 */
+	private void saveSampleBufferRows(String prefix, long dvId, SampleBuffer samples) throws SQLiteException
+	{
+		SQLiteStatement batchStmt = dvStmnts.get(prefix + "_batch");
+		SQLiteStatement singleStmt = dvStmnts.get(prefix + "_second");
+
+		int i = 0;
+		if (batchStmt != null)
+		{
+			int fullChunks = samples.size() / valuesPerInsert;
+			for (int c = 0; c < fullChunks; ++c)
+			{
+				for (int row = 0; row < valuesPerInsert; ++row)
+				{
+					bindSample(batchStmt, row * DV_VALUE_COLUMNS, dvId, samples, i++);
+				}
+				batchStmt.step();
+				batchStmt.reset(false);
+			}
+		}
+
+		for (; i < samples.size(); ++i)
+		{
+			bindSample(singleStmt, 0, dvId, samples, i);
+			singleStmt.step();
+			singleStmt.reset(false);
+		}
+	}
+
+	/**
+	 * Groups the single values into series and writes every series as one row
+	 * into the {@code DependentVarsSeries} table. The samples of attached
+	 * sample buffers are written without conversion.
+	 * 
+	 * @return The values which could not be stored as series and need to be
+	 *         stored as rows.
+	 * @throws SQLiteException
+	 */
+	private List<DependentVariablesValue> saveSampleSeries(String prefix, long dvId, List<DependentVariables> depVarsList) throws SQLiteException
+	{
+		List<DependentVariablesValue> rowValues = new ArrayList<DependentVariablesValue>();
+		Map<String, List<DependentVariablesValueSingle>> series = new LinkedHashMap<String, List<DependentVariablesValueSingle>>();
 
+		SQLiteStatement stmt = dvStmnts.get(prefix + "_series");
 		for (int j = 0; j < depVarsList.size(); ++j)
 		{
-			DependentVariables depVars = depVarsList.get(j);
-			for (int i = 0; i < depVars.getValues().size(); ++i)
+			SampleBuffer buffer = SampleBuffer.get(depVarsList.get(j));
+			if (buffer != null)
 			{
-				stmt = dvStmnts.get(prefix + "_second");
-				paramNo = 0;
-
-				stmt.bind(++paramNo, dvId);
-				stmt.bind(++paramNo, depVars.getValues().get(i).getOperation());
-				stmt.bind(++paramNo, depVars.getValues().get(i).getOperationMetric().getValue());
-				stmt.bind(++paramNo, depVars.getValues().get(i).getValue());
-				stmt.bind(++paramNo, depVars.getValues().get(i).getSource());
-				if (depVars.getValues().get(i) instanceof DependentVariablesValueSingle)
+				for (SampleSeries s : buffer.toSeries())
 				{
-					//System.out.println(depVars.getValues().get(i));
-					stmt.bind(++paramNo, ((DependentVariablesValueSingle) depVars.getValues().get(i)).getTimestamp());
-					stmt.bind(++paramNo, Type.SINGLE_VALUE_VALUE);
-				} else if (depVars.getValues().get(i) instanceof DependentVariablesValueComposite)
+					saveSeries(stmt, dvId, s.getOperation(), s.getMetric(), s.getSource(), s.getTimestampScale(), s.getTimestamps(),
+							s.getValues(), s.size());
+				}
+			}
+
+			List<DependentVariablesValue> values = depVarsList.get(j).getValues();
+			for (int i = 0; i < values.size(); ++i)
+			{
+				DependentVariablesValue value = values.get(i);
+				if (value instanceof DependentVariablesValueSingle)
+				{
+					String key = value.getOperation() + '\0' + value.getOperationMetric().getValue() + '\0' + value.getSource();
+					List<DependentVariablesValueSingle> samples = series.get(key);
+					if (samples == null)
+					{
+						samples = new ArrayList<DependentVariablesValueSingle>();
+						series.put(key, samples);
+					}
+					samples.add((DependentVariablesValueSingle) value);
+				} else
 				{
-					//System.out.println(depVars.getValues().get(i));
-					stmt.bind(++paramNo, "");
-					stmt.bind(++paramNo, ((DependentVariablesValueComposite) depVars.getValues().get(i)).getType().getValue());
+					rowValues.add(value);
 				}
-				stmt.step();
-				stmt.reset();
 			}
-			LOGGER.trace("Finished Saving Dependent Vars %s", depVars);
 		}
 
+		for (List<DependentVariablesValueSingle> samples : series.values())
+		{
+			int count = samples.size();
+			String[] timestamps = new String[count];
+			long[] scaled = new long[count];
+			double[] values = new double[count];
+			for (int i = 0; i < count; ++i)
+			{
+				timestamps[i] = samples.get(i).getTimestamp();
+				values[i] = samples.get(i).getValue();
+			}
+
+			int scale;
+			try
+			{
+				scale = SampleSeriesCodec.parseTimestamps(timestamps, scaled);
+			} catch (NumberFormatException e)
+			{
+				LOGGER.debug("Storing series of %d samples as rows, timestamps are not numeric: %s", count, e.getMessage());
+				rowValues.addAll(samples);
+				continue;
+			}
+
+			DependentVariablesValueSingle first = samples.get(0);
+			saveSeries(stmt, dvId, first.getOperation(), first.getOperationMetric().getValue(), first.getSource(), scale, scaled, values, count);
+		}
+
+		return rowValues;
+	}
+
+	/**
+	 * Encodes one series and writes it into the {@code DependentVarsSeries}
+	 * table.
+	 * 
+	 * @throws SQLiteException
+	 */
+	private static void saveSeries(SQLiteStatement stmt, long dvId, String operation, int metric, String source, int scale, long[] timestamps,
+			double[] values, int count) throws SQLiteException
+	{
+		int encoding = SampleSeriesCodec.chooseValueEncoding(values, count);
+
+		int paramNo = 0;
+		stmt.bind(++paramNo, dvId);
+		stmt.bind(++paramNo, operation);
+		stmt.bind(++paramNo, metric);
+		bind(stmt, ++paramNo, source);
+		stmt.bind(++paramNo, count);
+		stmt.bind(++paramNo, scale);
+		stmt.bind(++paramNo, encoding);
+		stmt.bind(++paramNo, SampleSeriesCodec.encodeTimestamps(timestamps, count));
+		stmt.bind(++paramNo, SampleSeriesCodec.encodeValues(values, count, encoding));
+		stmt.step();
+		stmt.reset();
+	}
+
+	/**
+	 * Binds one dependent variable value to the statement. The parameters of
+	 * the value start after {@code offset}.
+	 * 
+	 * @throws SQLiteException
+	 */
+	private static void bindDependentValue(SQLiteStatement stmt, int offset, long dvId, DependentVariablesValue value) throws SQLiteException
+	{
+		int paramNo = offset;
+
+		stmt.bind(++paramNo, dvId);
+		stmt.bind(++paramNo, value.getOperation());
+		stmt.bind(++paramNo, value.getOperationMetric().getValue());
+		stmt.bind(++paramNo, value.getValue());
+		bind(stmt, ++paramNo, value.getSource());
+		if (value instanceof DependentVariablesValueSingle)
+		{
+			bind(stmt, ++paramNo, ((DependentVariablesValueSingle) value).getTimestamp());
+			stmt.bind(++paramNo, Type.SINGLE_VALUE_VALUE);
+		} else if (value instanceof DependentVariablesValueComposite)
+		{
+			stmt.bind(++paramNo, "");
+			stmt.bind(++paramNo, ((DependentVariablesValueComposite) value).getType().getValue());
+		} else
+		{
+			throw new IllegalArgumentException("Unknown dependent variable value " + value);
+		}
+	}
+
+	/**
+	 * Binds the sample {@code i} of the buffer to the statement like a
+	 * {@code DependentVariablesValueSingle}.
+	 * 
+	 * @throws SQLiteException
+	 */
+	private static void bindSample(SQLiteStatement stmt, int offset, long dvId, SampleBuffer samples, int i) throws SQLiteException
+	{
+		int channel = samples.getChannel(i);
+		int paramNo = offset;
+
+		stmt.bind(++paramNo, dvId);
+		stmt.bind(++paramNo, samples.getOperation(channel));
+		stmt.bind(++paramNo, samples.getMetric(channel).getValue());
+		stmt.bind(++paramNo, samples.getValue(i));
+		bind(stmt, ++paramNo, samples.getSource(channel));
+		stmt.bind(++paramNo, samples.formatTimestamp(i));
+		stmt.bind(++paramNo, Type.SINGLE_VALUE_VALUE);
+	}
+
+	/**
+	 * The cached INSERT statements for one nested table and one list of
+	 * columns (the attributes of a EClass).
+	 */
+	private static final class ReferenceInsert
+	{
+		private final int columnCount;
+		private final SQLiteStatement singleStmt;
+		private final SQLiteStatement batchStmt;
+		private final int rowsPerInsert;
+
+		private ReferenceInsert(int columnCount, SQLiteStatement singleStmt, SQLiteStatement batchStmt, int rowsPerInsert)
+		{
+			this.columnCount = columnCount;
+			this.singleStmt = singleStmt;
+			this.batchStmt = batchStmt;
+			this.rowsPerInsert = rowsPerInsert;
+		}
+
+		/**
+		 * Inserts the rows, full chunks are inserted by the multi-row
+		 * statement, the remaining ones row by row.
+		 * 
+		 * @throws SQLiteException
+		 */
+		private void insert(long runId, List<EObjectImpl> rows) throws SQLiteException
+		{
+			int i = 0;
+			if (batchStmt != null)
+			{
+				int fullChunks = rows.size() / rowsPerInsert;
+				for (int c = 0; c < fullChunks; ++c)
+				{
+					for (int row = 0; row < rowsPerInsert; ++row)
+					{
+						bindRow(batchStmt, row * columnCount, runId, rows.get(i++));
+					}
+					batchStmt.step();
+					batchStmt.reset(false);
+				}
+			}
+
+			for (; i < rows.size(); ++i)
+			{
+				bindRow(singleStmt, 0, runId, rows.get(i));
+				singleStmt.step();
+				singleStmt.reset(false);
+			}
+		}
+
+		private void bindRow(SQLiteStatement stmt, int offset, long runId, EObjectImpl input) throws SQLiteException
+		{
+			// The attributes of the object have the same names and order as
+			// the columns, but different EClasses may share the statement, so
+			// the feature ids have to be taken from the object itself.
+			List<EAttribute> objAttributes = input.eClass().getEAllAttributes();
+			stmt.bind(offset + 1, runId);
+			for (int i = 0; i < objAttributes.size(); ++i)
+			{
+				EAttribute ea = objAttributes.get(i);
+				LOGGER.trace("%s=%s", ea.getName(), input.eGet(ea.getFeatureID(), false, false));
+				bind(stmt, offset + i + 2, input.eGet(ea.getFeatureID(), false, false));
+			}
+		}
+
+		private void dispose()
+		{
+			singleStmt.dispose();
+			if (batchStmt != null)
+			{
+				batchStmt.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Deletes a run and all its independent and dependent variables.
+	 * 
+	 * @param runId
+	 * @param prefix
+	 *            The benchmark prefix of the run, e.g. 'ffsb'
+	 * @throws SQLiteException
+	 */
+	public void deleteRun(long runId, String prefix, SQLiteConnection db) throws SQLiteException
+	{
+		String dvIds = "(SELECT dvId FROM " + prefix + "DependentVars WHERE runId=?)";
+		deleteWhere(db, "DELETE FROM " + prefix + "DependentVarsValues WHERE dvId IN " + dvIds + ";", runId);
+		deleteWhere(db, "DELETE FROM " + prefix + "DependentVarsSeries WHERE dvId IN " + dvIds + ";", runId);
+		deleteWhere(db, "DELETE FROM " + prefix + "DependentVarsSummary WHERE dvId IN " + dvIds + ";", runId);
+		deleteWhere(db, "DELETE FROM " + prefix + "DependentVars WHERE runId=?;", runId);
+
+		// The independent variables including the nested tables (e.g.
+		// 'filebenchIndependentVarsThread')
+		List<String> tables = new ArrayList<String>();
+		SQLiteStatement stmt = db.prepare("SELECT name FROM sqlite_master WHERE type='table' AND name LIKE ?;");
+		try
+		{
+			stmt.bind(1, prefix + "IndependentVars%");
+			while (stmt.step())
+			{
+				tables.add(stmt.columnString(0));
+			}
+		} finally
+		{
+			stmt.dispose();
+		}
+		for (String table : tables)
+		{
+			deleteWhere(db, "DELETE FROM " + table + " WHERE runId=?;", runId);
+		}
+
+		deleteWhere(db, "DELETE FROM runs WHERE runId=?;", runId);
+	}
+
+	private static void deleteWhere(SQLiteConnection db, String sql, long runId) throws SQLiteException
+	{
+		SQLiteStatement stmt = db.prepare(sql, false);
+		try
+		{
+			stmt.bind(1, runId);
+			stmt.step();
+		} finally
+		{
+			stmt.dispose();
+		}
+	}
+
+	/**
+	 * @return The table prefix of the benchmark of the independent variables,
+	 *         e.g. 'ffsb'
+	 */
+	public static String getBenchmarkPrefix(IndependentVariablesOfBenchmark benchVars)
+	{
+		return getPrefixForVariables(benchVars.eClass());
 	}
 
 	/**
@@ -573,7 +1285,7 @@ public final class SQLiteHelper
 	 * @param o
 	 * @throws SQLiteException
 	 */
-	private static void bind(SQLiteStatement stmt, int idx, Object o) throws SQLiteException
+	static void bind(SQLiteStatement stmt, int idx, Object o) throws SQLiteException
 	{
 		if (o == null)
 		{
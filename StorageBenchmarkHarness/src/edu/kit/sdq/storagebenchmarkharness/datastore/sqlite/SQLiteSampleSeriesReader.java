@@ -0,0 +1,187 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore.sqlite;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteStatement;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleSeries;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleSeriesCodec;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * Reads the series of single values which were stored in the columnar sample
+ * storage (the {@code DependentVarsSeries} tables) and decodes them into
+ * primitive arrays.
+ *
+ * The samples of a streamed run are stored in several chunks per operation,
+ * metric and source. The chunks are concatenated in the order they were
+ * stored.
+ */
+public final class SQLiteSampleSeriesReader
+{
+	private static final String COLUMNS = "operation, opMetric, source, sampleCount, tsScale, valueEncoding, timestamps, opValues";
+
+	private SQLiteSampleSeriesReader()
+	{
+		// Utility class
+	}
+
+	/**
+	 * Reads all series of a set of dependent variables.
+	 *
+	 * @param db
+	 *            The SQLite database connection
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param dvId
+	 *            The id of the dependent variables
+	 * @return All series, may be empty
+	 * @throws SQLiteException
+	 */
+	public static List<SampleSeries> readSeries(SQLiteConnection db, String prefix, long dvId) throws SQLiteException
+	{
+		Map<String, List<SampleSeries>> chunks = Maps.newLinkedHashMap();
+		SQLiteStatement stmt = db.prepare("SELECT " + COLUMNS + " FROM " + prefix + "DependentVarsSeries WHERE dvId=? ORDER BY seriesId;");
+		try
+		{
+			stmt.bind(1, dvId);
+			while (stmt.step())
+			{
+				SampleSeries chunk = decode(stmt);
+				String key = chunk.getOperation() + '\0' + chunk.getMetric() + '\0' + chunk.getSource();
+				List<SampleSeries> list = chunks.get(key);
+				if (list == null)
+				{
+					list = Lists.newArrayList();
+					chunks.put(key, list);
+				}
+				list.add(chunk);
+			}
+		} finally
+		{
+			stmt.dispose();
+		}
+
+		List<SampleSeries> result = Lists.newArrayListWithCapacity(chunks.size());
+		for (List<SampleSeries> list : chunks.values())
+		{
+			result.add(concat(list));
+		}
+		return result;
+	}
+
+	/**
+	 * Reads a single series.
+	 *
+	 * @param db
+	 *            The SQLite database connection
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param dvId
+	 *            The id of the dependent variables
+	 * @param operation
+	 *            The operation, e.g. 'read'
+	 * @param metric
+	 *            The value of the {@code Metric}
+	 * @param source
+	 *            The source, may be null
+	 * @return The series or null if no such series exists
+	 * @throws SQLiteException
+	 */
+	public static SampleSeries readSeries(SQLiteConnection db, String prefix, long dvId, String operation, int metric, String source)
+			throws SQLiteException
+	{
+		SQLiteStatement stmt = db.prepare("SELECT " + COLUMNS + " FROM " + prefix
+				+ "DependentVarsSeries WHERE dvId=? AND operation=? AND opMetric=? AND source IS ? ORDER BY seriesId;");
+		try
+		{
+			stmt.bind(1, dvId);
+			stmt.bind(2, operation);
+			stmt.bind(3, metric);
+			if (source == null)
+			{
+				stmt.bindNull(4);
+			} else
+			{
+				stmt.bind(4, source);
+			}
+
+			List<SampleSeries> chunks = Lists.newArrayList();
+			while (stmt.step())
+			{
+				chunks.add(decode(stmt));
+			}
+			return chunks.isEmpty() ? null : concat(chunks);
+		} finally
+		{
+			stmt.dispose();
+		}
+	}
+
+	/**
+	 * Concatenates the chunks of a series. Chunks with fewer decimal places are
+	 * rescaled to the largest scale of the chunks.
+	 */
+	private static SampleSeries concat(List<SampleSeries> chunks)
+	{
+		if (chunks.size() == 1)
+		{
+			return chunks.get(0);
+		}
+
+		int scale = 0;
+		int count = 0;
+		for (SampleSeries chunk : chunks)
+		{
+			scale = Math.max(scale, chunk.getTimestampScale());
+			count += chunk.size();
+		}
+
+		long[] timestamps = new long[count];
+		double[] values = new double[count];
+		int pos = 0;
+		for (SampleSeries chunk : chunks)
+		{
+			long factor = 1;
+			for (int i = chunk.getTimestampScale(); i < scale; ++i)
+			{
+				factor *= 10;
+			}
+			for (int i = 0; i < chunk.size(); ++i)
+			{
+				timestamps[pos] = chunk.getTimestamps()[i] * factor;
+				values[pos] = chunk.getValues()[i];
+				++pos;
+			}
+		}
+
+		SampleSeries first = chunks.get(0);
+		return new SampleSeries(first.getOperation(), first.getMetric(), first.getSource(), scale, timestamps, values);
+	}
+
+	private static SampleSeries decode(SQLiteStatement stmt) throws SQLiteException
+	{
+		String operation = stmt.columnString(0);
+		int metric = stmt.columnInt(1);
+		String source = stmt.columnNull(2) ? null : stmt.columnString(2);
+		int count = stmt.columnInt(3);
+		int scale = stmt.columnInt(4);
+		int encoding = stmt.columnInt(5);
+
+		try
+		{
+			long[] timestamps = SampleSeriesCodec.decodeTimestamps(stmt.columnBlob(6), count);
+			double[] values = SampleSeriesCodec.decodeValues(stmt.columnBlob(7), count, encoding);
+			return new SampleSeries(operation, metric, source, scale, timestamps, values);
+		} catch (IOException e)
+		{
+			throw new DataStoreException("Corrupt sample series " + operation + "/" + metric + "/" + source, e);
+		}
+	}
+}
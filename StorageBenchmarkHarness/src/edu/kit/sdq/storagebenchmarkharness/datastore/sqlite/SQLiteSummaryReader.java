@@ -0,0 +1,134 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore.sqlite;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+import com.almworks.sqlite4java.SQLiteConnection;
+import com.almworks.sqlite4java.SQLiteException;
+import com.almworks.sqlite4java.SQLiteStatement;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.kit.sdq.storagebenchmarkharness.datastore.QuantileSketch;
+import edu.kit.sdq.storagebenchmarkharness.datastore.RunSummary;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.DataStoreException;
+
+/**
+ * Reads the quantile sketches which were computed while the results were
+ * ingested (the {@code DependentVarsSummary} tables). The sketches of several
+ * runs, e.g. of all repeats and hosts of an experiment, can be merged.
+ */
+public final class SQLiteSummaryReader
+{
+	private static final String COLUMNS = "operation, opMetric, source, sketch";
+
+	private SQLiteSummaryReader()
+	{
+		// Utility class
+	}
+
+	/**
+	 * Reads the sketches of a run.
+	 *
+	 * @param db
+	 *            The SQLite database connection
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param runId
+	 *            The id of the run
+	 * @return One entry per operation, metric and source, may be empty
+	 * @throws SQLiteException
+	 */
+	public static List<RunSummary.Entry> readSummary(SQLiteConnection db, String prefix, long runId) throws SQLiteException
+	{
+		List<RunSummary.Entry> result = Lists.newArrayList();
+		SQLiteStatement stmt = db.prepare("SELECT " + COLUMNS + " FROM " + prefix + "DependentVarsSummary JOIN " + prefix
+				+ "DependentVars USING (dvId) WHERE runId=? ORDER BY summaryId;");
+		try
+		{
+			stmt.bind(1, runId);
+			while (stmt.step())
+			{
+				result.add(new RunSummary.Entry(stmt.columnString(0), stmt.columnInt(1), stmt.columnNull(2) ? null : stmt.columnString(2),
+						decode(stmt)));
+			}
+		} finally
+		{
+			stmt.dispose();
+		}
+		return result;
+	}
+
+	/**
+	 * Merges the sketches of an operation, metric and source over several
+	 * runs.
+	 *
+	 * @param db
+	 *            The SQLite database connection
+	 * @param prefix
+	 *            The benchmark prefix, e.g. 'ffsb'
+	 * @param runIds
+	 *            The ids of the runs
+	 * @param operation
+	 *            The operation, e.g. 'read'
+	 * @param metric
+	 *            The value of the {@code Metric}
+	 * @param source
+	 *            The source, may be null
+	 * @return The merged sketch or null if none of the runs has a sketch for
+	 *         the combination
+	 * @throws SQLiteException
+	 */
+	public static QuantileSketch mergeSketches(SQLiteConnection db, String prefix, Collection<Long> runIds, String operation, int metric,
+			String source) throws SQLiteException
+	{
+		Preconditions.checkArgument(!runIds.isEmpty(), "No runs given");
+
+		// The ids are numbers, so they can be inlined safely
+		SQLiteStatement stmt = db.prepare("SELECT " + COLUMNS + " FROM " + prefix + "DependentVarsSummary JOIN " + prefix
+				+ "DependentVars USING (dvId) WHERE runId IN (" + Joiner.on(',').join(runIds)
+				+ ") AND operation=? AND opMetric=? AND source IS ?;", false);
+		try
+		{
+			stmt.bind(1, operation);
+			stmt.bind(2, metric);
+			if (source == null)
+			{
+				stmt.bindNull(3);
+			} else
+			{
+				stmt.bind(3, source);
+			}
+
+			QuantileSketch merged = null;
+			while (stmt.step())
+			{
+				QuantileSketch sketch = decode(stmt);
+				if (merged == null)
+				{
+					merged = sketch;
+				} else
+				{
+					merged.merge(sketch);
+				}
+			}
+			return merged;
+		} finally
+		{
+			stmt.dispose();
+		}
+	}
+
+	private static QuantileSketch decode(SQLiteStatement stmt) throws SQLiteException
+	{
+		try
+		{
+			return QuantileSketch.decode(stmt.columnBlob(3));
+		} catch (IOException e)
+		{
+			throw new DataStoreException("Corrupt sketch " + stmt.columnString(0) + "/" + stmt.columnInt(1), e);
+		}
+	}
+}
@@ -0,0 +1,251 @@
+package edu.kit.sdq.storagebenchmarkharness.monitors;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import edu.kit.sdq.storagebenchmarkharness.ClockSync;
+import edu.kit.sdq.storagebenchmarkharness.Logger;
+import edu.kit.sdq.storagebenchmarkharness.MonitorDriver;
+import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfMonitor;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentProbe;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentSample;
+import edu.kit.sdq.storagebenchmarkharness.agent.MonitorAgentSession;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleSeriesCodec;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
+
+/**
+ * Base class of the monitors which sample through the {@code MonitorAgent} of
+ * the host. A monitor registers its probes when it is started and converts
+ * the samples of the probes into results when it is stopped.
+ *
+ * The times of the samples are converted from the clock of the agent to the
+ * controller timeline (see {@code ClockSync}), thus the samples of all hosts
+ * can be correlated. The timestamps are the seconds since the epoch on this
+ * timeline with the scale {@code ClockSync.TIMELINE_SCALE}. The bound of the
+ * error of the conversion is added to the results as a composite value with
+ * the metric {@code CLOCK_ERROR} in ms.
+ *
+ * The sampling period is the interval of the monitor in seconds, or its
+ * interval in ms if set (e.g. to sample at sub-second intervals).
+ *
+ * @param <IV>
+ *            The independent variables for this monitor
+ */
+public abstract class AgentMonitorDriver<IV extends IndependentVariablesOfMonitor> extends MonitorDriver<IV, DependentVariables>
+{
+	private static final Logger LOGGER = Logger.getLogger(AgentMonitorDriver.class);
+
+	private MonitorAgentSession session;
+	private final List<AgentProbe> probes = Lists.newArrayList();
+
+	// The clock of the agent of the last session, kept after the probes are
+	// removed for converting the samples, read by getLiveSamples from other
+	// threads
+	private volatile ClockSync clock;
+
+	public AgentMonitorDriver(RemoteConnection con, String logFileSaveDir)
+	{
+		super(con, logFileSaveDir);
+	}
+
+	/**
+	 * Registers a probe at the agent of the host, starts the agent if it is
+	 * not running yet.
+	 *
+	 * @param kind
+	 *            The kind of the probe, see {@code MonitorAgent}
+	 * @param argument
+	 *            The argument of the probe
+	 * @param interval
+	 *            The interval of the monitor in seconds
+	 * @param intervalMillis
+	 *            The interval of the monitor in ms, overrides the interval in
+	 *            seconds if greater than 0
+	 */
+	protected AgentProbe addProbe(String kind, String argument, int interval, int intervalMillis)
+	{
+		if (session == null)
+		{
+			session = MonitorAgentSession.get(connection);
+			clock = session.getClock();
+		}
+		AgentProbe probe = session.addProbe(kind, argument, intervalMillis > 0 ? intervalMillis : interval * 1000L);
+		probes.add(probe);
+		return probe;
+	}
+
+	/**
+	 * Unregisters all probes of the monitor. The agent keeps running for the
+	 * next repeat (see {@code MonitorAgentSession}).
+	 */
+	protected void removeProbes()
+	{
+		if (session == null)
+		{
+			return;
+		}
+		try
+		{
+			for (AgentProbe probe : probes)
+			{
+				session.removeProbe(probe);
+			}
+		} finally
+		{
+			probes.clear();
+			// The session is looked up again, a new agent is started if this
+			// one failed
+			session = null;
+		}
+	}
+
+	/**
+	 * Returns the samples of a probe on the controller timeline and saves them
+	 * as text, one line with the timestamp and the values per sample.
+	 *
+	 * @param probe
+	 *            The probe
+	 * @param logFile
+	 *            The file to save the samples to, null if they should not be
+	 *            saved
+	 * @throws BenchmarkException
+	 *             If the probe failed
+	 */
+	protected List<AgentSample> getSamples(AgentProbe probe, File logFile)
+	{
+		if (probe.getError() != null)
+		{
+			throw new BenchmarkException("Probe " + probe.getKind() + " " + probe.getArgument() + " failed: " + probe.getError());
+		}
+
+		List<AgentSample> samples = toTimeline(probe.getSamples(), clock);
+		if (logFile != null)
+		{
+			try
+			{
+				Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(logFile), Charset.defaultCharset()));
+				try
+				{
+					for (AgentSample sample : samples)
+					{
+						out.write(SampleSeriesCodec.formatTimestamp(sample.getMicros(), ClockSync.TIMELINE_SCALE));
+						for (int v = 0; v < sample.getValueCount(); ++v)
+						{
+							out.write(' ');
+							out.write(Double.toString(sample.getValue(v)));
+						}
+						out.write('\n');
+					}
+				} finally
+				{
+					out.close();
+				}
+			} catch (IOException e)
+			{
+				throw new BenchmarkException(e);
+			}
+		}
+		return samples;
+	}
+
+	/**
+	 * Returns the samples a probe has collected so far on the controller
+	 * timeline, while the monitor is running. Nothing is saved.
+	 *
+	 * @return The samples, empty if the probe is not registered, failed or
+	 *         the clock of the agent is not known yet
+	 */
+	protected List<AgentSample> getLiveSamples(AgentProbe probe)
+	{
+		ClockSync liveClock = clock;
+		if (probe == null || probe.getError() != null || liveClock == null || !liveClock.isSynchronized())
+		{
+			return Collections.emptyList();
+		}
+		return toTimeline(probe.getSamples(), liveClock);
+	}
+
+	/**
+	 * Converts the times of samples from the clock of the agent to the
+	 * controller timeline.
+	 *
+	 * @throws BenchmarkException
+	 *             If the clock of the agent is unknown
+	 */
+	public static List<AgentSample> toTimeline(List<AgentSample> samples, ClockSync clock)
+	{
+		if (samples.isEmpty())
+		{
+			return samples;
+		}
+		if (clock == null || !clock.isSynchronized())
+		{
+			throw new BenchmarkException("The clock of the monitor agent is unknown, no time probe was answered");
+		}
+		List<AgentSample> converted = Lists.newArrayListWithCapacity(samples.size());
+		for (AgentSample sample : samples)
+		{
+			converted.add(sample.atTime(clock.toTimeline(sample.getMicros())));
+		}
+		return converted;
+	}
+
+	/**
+	 * Adds the bound of the error of the timestamps in ms to the results, if
+	 * the clock of the agent is known.
+	 *
+	 * @param source
+	 *            The source of the values of the monitor
+	 */
+	protected void addClockError(DependentVariables result, String source)
+	{
+		if (clock == null || !clock.isSynchronized())
+		{
+			return;
+		}
+		LOGGER.debug("Clock of %s: %s", connection.getHost(), clock);
+
+		DependentVariablesValueComposite error = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+		error.setOperation("");
+		error.setSource(source);
+		error.setOperationMetric(Metric.CLOCK_ERROR);
+		error.setType(Type.ABSOLUTE);
+		error.setValue(clock.getErrorBound() / 1000.0);
+		result.getValues().add(error);
+	}
+
+	/**
+	 * Converts a time in us into a timestamp relative to an origin.
+	 *
+	 * @param scale
+	 *            The scale of the timestamp, e.g. 3 for ms or 6 for us
+	 */
+	public static long toTimestamp(long micros, long originMicros, int scale)
+	{
+		long elapsed = micros - originMicros;
+		for (int i = scale; i < ClockSync.TIMELINE_SCALE; ++i)
+		{
+			elapsed /= 10;
+		}
+		for (int i = ClockSync.TIMELINE_SCALE; i < scale; ++i)
+		{
+			elapsed *= 10;
+		}
+		return elapsed;
+	}
+}
@@ -6,18 +6,20 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
-import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
 
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.MonitorDriver;
+import edu.kit.sdq.storagebenchmarkharness.RemoteBatch;
+import edu.kit.sdq.storagebenchmarkharness.RemoteBatchResult;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
 import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
@@ -29,10 +31,12 @@ import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 import edu.kit.sdq.storagebenchmarkharness.util.AccessVisualizer;
 import edu.kit.sdq.storagebenchmarkharness.util.Parsing;
 import edu.kit.sdq.storagebenchmarkharness.util.PatternRecognizer;
+import edu.kit.sdq.storagebenchmarkharness.util.RawCapture;
 
 /**
  * Provides an interface to the Blktrace monitoring tool.
@@ -50,13 +54,17 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 
 	private static final Logger LOGGER = Logger.getLogger(BlktraceMonitorDriver.class);
 
+	private static final String SOURCE = "blktrace";
+
+	// btt writes the timestamps in seconds with nanosecond precision
+	private static final int TIMESTAMP_SCALE = 9;
+
 	private final String targetDir;// On Remote Machine!
 	private File workDir;
+	private RemoteBatchResult manifest;
 
 	private RemoteProcess blktraceMonitor;
 
-	private InputStreamReader is;
-
 	public BlktraceMonitorDriver(RemoteConnection con, String logFileSaveDir, String targetDir)
 	{
 		super(con, logFileSaveDir);
@@ -99,16 +107,6 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				+ " -n " + bufferNum;
 		command = command.replaceAll("//", "/");
 		this.blktraceMonitor = connection.execCmd(command, true);
-
-		try
-		{
-			is = new InputStreamReader(blktraceMonitor.getInputStream());
-		} catch (IOException e)
-		{
-			blktraceMonitor.finish();
-			LOGGER.error("Exception while stopping monitor", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
 	}
 
 	/**
@@ -117,38 +115,30 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 	@Override
 	public DependentVariables stopMonitoring(IndependentVariablesOfBlktrace monitorVars, int repeatNr, String benchmarkPrefix)
 	{
-		
+		return collectMonitoring(monitorVars, repeatNr, benchmarkPrefix).get();
+	}
+
+	/**
+	 * Stops Blktrace, runs blkparse and btt on the remote host and fetches
+	 * the result files. The returned analysis parses the local copies of the
+	 * result files, which belong to this repetition only.
+	 **/
+	@Override
+	public Supplier<DependentVariables> collectMonitoring(final IndependentVariablesOfBlktrace monitorVars, int repeatNr,
+			final String benchmarkPrefix)
+	{
 		try
 		{
 			// stop monitor process
 			this.blktraceMonitor.stopProcess();
 			File logFile = getFile("blktrace." + repeatNr + ".log");
-			BufferedReader reader = new BufferedReader(is);
-			String line;
+			InputStream output = RawCapture.capture(this.blktraceMonitor.getInputStream(), logFile);
 			try
 			{
-				OutputStream out = null;
-				if (logFile != null)
-				{
-					out = new BufferedOutputStream(new FileOutputStream(logFile));
-				}
-
-				while ((line = reader.readLine()) != null)
-				{
-					if (out != null)
-					{
-						out.write(line.getBytes(Charset.defaultCharset()));
-						out.write('\n');
-					}
-				}
-				if (out != null)
-				{
-					out.flush();
-					out.close();
-				}
-			} catch (IOException e)
+				RawCapture.drain(output);
+			} finally
 			{
-				throw new BenchmarkException(e);
+				output.close();
 			}
 		} catch (Exception e)
 		{
@@ -162,33 +152,84 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 		// parsing results
 		parsingResults(monitorVars);
 
-		// block files
-		File resultFileReads = getReadBlocksFile();
-		File resultFileWrites = getWriteBlocksFile();
-		File resultFileQ2CReads = getReadQ2CFile();
-		File resultFileQ2CWrites = getWriteQ2CFile();
-		File resultFileAQDReads = getReadAQDFile();
-		File resultFileAQDWrites = getWriteAQDFile();
+		// Local copies of the result files of btt
+		final ResultFiles files = new ResultFiles();
+		try
+		{
+			files.reads = fetchResultFile(manifest.findFile(workDir, "_r"), "bench.read." + repeatNr + ".log", files);
+			files.writes = fetchResultFile(manifest.findFile(workDir, "_w"), "bench.write." + repeatNr + ".log", files);
+			if (monitorVars.isRecordQ2c())
+			{
+				files.q2cReads = fetchResultFile(manifest.findFile(workDir, "q2c_read"), "bench.q2cs.read." + repeatNr + ".log", files);
+				files.q2cWrites = fetchResultFile(manifest.findFile(workDir, "q2c_write"), "bench.q2cs.write." + repeatNr + ".log", files);
+			}
+			if (monitorVars.isActiveQueueDepth())
+			{
+				files.aqdReads = fetchResultFile(manifest.findFile(workDir, "queue_depth_read"), "bench.aqds.read." + repeatNr + ".log", files);
+				files.aqdWrites = fetchResultFile(manifest.findFile(workDir, "queue_depth_write"), "bench.aqds.write." + repeatNr + ".log",
+						files);
+			}
+		} catch (RuntimeException e)
+		{
+			files.deleteTempFiles();
+			throw e;
+		}
+		files.readsAccessPattern = getFile("bench.reads." + repeatNr + ".accessPattern.log");
+		files.writesAccessPattern = new File("bench.writes." + repeatNr + ".accessPattern.log");
+
+		// The single values are kept in a sample buffer, only the composite
+		// values are EMF objects. If the run has a result sink, the samples are
+		// streamed into it while the files are parsed.
+		final SampleBuffer samples = createSampleBuffer(TIMESTAMP_SCALE);
 
+		return new Supplier<DependentVariables>()
+		{
+			@Override
+			public DependentVariables get()
+			{
+				try
+				{
+					return analyze(monitorVars, benchmarkPrefix, samples, files);
+				} finally
+				{
+					files.deleteTempFiles();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Parses and analyzes the local copies of the result files of a
+	 * repetition.
+	 */
+	private DependentVariables analyze(IndependentVariablesOfBlktrace monitorVars, String benchmarkPrefix, SampleBuffer samples,
+			ResultFiles files)
+	{
 		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
 
 		result.setBenchmarkPrefix(benchmarkPrefix);
 		result.getValues().clear();
 
+		SampleBuffer.attach(result, samples);
+
 		int readNums = 0;
-		if (resultFileReads != null)
+		if (files.reads != null)
 		{
-			List<DependentVariablesValueSingle> blockValuesReads = getBlockValues(resultFileReads, repeatNr, "read");
+			int blockValuesReads = readResultFile(files.reads, "read", samples, Metric.REQUEST_SIZE);
 
-			readNums = blockValuesReads.size();
-			result.getValues().addAll(blockValuesReads);
+			readNums = samples.count(blockValuesReads);
 
-			if (blockValuesReads.size() > 0)
+			if (readNums > 0)
 			{
+				// The blocks are read once for all analyses
+				List<String[]> blocks = null;
+				if (monitorVars.isAccessPattern() || monitorVars.isVisualizeAccessPattern() || monitorVars.isOpsPerFile())
+					blocks = Parsing.divideLineArray(fileToArray(files.reads), " ");
+
 				// Calculate avg. request size reads
 				if (monitorVars.isAvgRequestSize())
 				{
-					double avgRequSizeRead = calcAvgReqSize(blockValuesReads);
+					double avgRequSizeRead = samples.mean(blockValuesReads);
 
 					DependentVariablesValueComposite avgReqSizeComposite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 					avgReqSizeComposite.setOperation("read");
@@ -202,16 +243,14 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				// Calculate request access pattern
 				if (monitorVars.isAccessPattern())
 				{
-					List<DependentVariablesValue> tmp = calculateAccessPattern(Parsing.divideLineArray(fileToArray(resultFileReads), " "), "read",
-							monitorVars.getPatternWindowSize());
+					List<DependentVariablesValue> tmp = calculateAccessPattern(blocks, "read", monitorVars.getPatternWindowSize());
 					if (tmp != null)
 						result.getValues().addAll(tmp);
 				}
 
 				// Visualize access pattern
 				if (monitorVars.isVisualizeAccessPattern())
-					AccessVisualizer.visualize(Parsing.divideLineArray(fileToArray(resultFileReads), " "), getFile("bench.reads." + repeatNr
-							+ ".accessPattern.log"));
+					AccessVisualizer.visualize(blocks, files.readsAccessPattern);
 
 				// Calculate avg ops per file
 				if (monitorVars.isOpsPerFile())
@@ -219,8 +258,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 					DependentVariablesValueComposite avgOpsPerFileRead = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 					avgOpsPerFileRead.setOperation("read");
 					avgOpsPerFileRead.setType(Type.MEAN);
-					avgOpsPerFileRead.setValue(calculateAvgOpsPerFile(Parsing.divideLineArray(fileToArray(resultFileReads), " "),
-							monitorVars.getOpsWindowSize()));
+					avgOpsPerFileRead.setValue(calculateAvgOpsPerFile(blocks, monitorVars.getOpsWindowSize()));
 					avgOpsPerFileRead.setSource("blktrace");
 					avgOpsPerFileRead.setOperationMetric(Metric.OPS_PER_FILE);
 					if (avgOpsPerFileRead.getValue() >= 0)
@@ -230,48 +268,49 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 
 		}
 
-		if (monitorVars.isRecordQ2c() && resultFileQ2CReads != null)
+		if (files.q2cReads != null)
 		{
-			List<DependentVariablesValueSingle> readQ2c = getQ2CTimes(resultFileQ2CReads, repeatNr, "read");
-			result.getValues().addAll(readQ2c);
+			int readQ2c = readResultFile(files.q2cReads, "read", samples, Metric.RESPONSE_TIME);
 
 			DependentVariablesValueComposite avgQ2C = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 			avgQ2C.setOperation("read");
 			avgQ2C.setType(Type.MEAN);
-			avgQ2C.setValue(calculateAvg(readQ2c));
+			avgQ2C.setValue(samples.mean(readQ2c));
 			avgQ2C.setSource("blktrace");
 			avgQ2C.setOperationMetric(Metric.RESPONSE_TIME);
 			result.getValues().add(avgQ2C);
 		}
 		
-		if (monitorVars.isActiveQueueDepth() && resultFileAQDReads != null)
+		if (files.aqdReads != null)
 		{
-			List<DependentVariablesValueSingle> readAQD = getAQDVals(resultFileAQDReads, repeatNr, "read");
-			result.getValues().addAll(readAQD);
+			int readAQD = readResultFile(files.aqdReads, "read", samples, Metric.QUEUE_DEPTH);
 			
 			DependentVariablesValueComposite avgAQD = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 			avgAQD.setOperation("read");
 			avgAQD.setType(Type.MEAN);
-			avgAQD.setValue(calculateAvg(readAQD));
+			avgAQD.setValue(samples.mean(readAQD));
 			avgAQD.setSource("blktrace");
 			avgAQD.setOperationMetric(Metric.QUEUE_DEPTH);
 			result.getValues().add(avgAQD);
 		}
 
 		int writeNums = 0;
-		if (resultFileWrites != null)
+		if (files.writes != null)
 		{
-			List<DependentVariablesValueSingle> blockValuesWrites = getBlockValues(resultFileWrites, repeatNr, "write");
+			int blockValuesWrites = readResultFile(files.writes, "write", samples, Metric.REQUEST_SIZE);
 
-			result.getValues().addAll(blockValuesWrites);
-
-			writeNums = blockValuesWrites.size();
-			if (blockValuesWrites.size() > 0)
+			writeNums = samples.count(blockValuesWrites);
+			if (writeNums > 0)
 			{
+				// The blocks are read once for all analyses
+				List<String[]> blocks = null;
+				if (monitorVars.isAccessPattern() || monitorVars.isVisualizeAccessPattern() || monitorVars.isOpsPerFile())
+					blocks = Parsing.divideLineArray(fileToArray(files.writes), " ");
+
 				// Calculate avg. request size writes
 				if (monitorVars.isAvgRequestSize())
 				{
-					double avgRequSizeWrite = calcAvgReqSize(blockValuesWrites);
+					double avgRequSizeWrite = samples.mean(blockValuesWrites);
 
 					DependentVariablesValueComposite avgReqSizeComposite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 					avgReqSizeComposite.setOperation("write");
@@ -285,15 +324,12 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				// Calculate request access pattern
 				if (monitorVars.isAccessPattern())
 				{
-					result.getValues().addAll(
-							calculateAccessPattern(Parsing.divideLineArray(fileToArray(resultFileWrites), " "), "write",
-									monitorVars.getPatternWindowSize()));
+					result.getValues().addAll(calculateAccessPattern(blocks, "write", monitorVars.getPatternWindowSize()));
 				}
 
 				// Visualize access pattern
 				if (monitorVars.isVisualizeAccessPattern())
-					AccessVisualizer.visualize(Parsing.divideLineArray(fileToArray(resultFileWrites), " "), new File("bench.writes." + repeatNr
-							+ ".accessPattern.log"));
+					AccessVisualizer.visualize(blocks, files.writesAccessPattern);
 
 				// Calculate avg ops per file
 				if (monitorVars.isOpsPerFile())
@@ -301,8 +337,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 					DependentVariablesValueComposite avgOpsPerFileWrite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 					avgOpsPerFileWrite.setOperation("write");
 					avgOpsPerFileWrite.setType(Type.MEAN);
-					avgOpsPerFileWrite.setValue(calculateAvgOpsPerFile(Parsing.divideLineArray(fileToArray(resultFileWrites), " "),
-							monitorVars.getOpsWindowSize()));
+					avgOpsPerFileWrite.setValue(calculateAvgOpsPerFile(blocks, monitorVars.getOpsWindowSize()));
 					avgOpsPerFileWrite.setSource("blktrace");
 					avgOpsPerFileWrite.setOperationMetric(Metric.OPS_PER_FILE);
 					result.getValues().add(avgOpsPerFileWrite);
@@ -310,29 +345,27 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 			}
 		}
 
-		if (monitorVars.isRecordQ2c() && resultFileQ2CWrites != null)
+		if (files.q2cWrites != null)
 		{
-			List<DependentVariablesValueSingle> writeQ2C = getQ2CTimes(resultFileQ2CWrites, repeatNr, "write");
-			result.getValues().addAll(writeQ2C);
+			int writeQ2C = readResultFile(files.q2cWrites, "write", samples, Metric.RESPONSE_TIME);
 
 			DependentVariablesValueComposite avgQ2C = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 			avgQ2C.setOperation("write");
 			avgQ2C.setType(Type.MEAN);
-			avgQ2C.setValue(calculateAvg(writeQ2C));
+			avgQ2C.setValue(samples.mean(writeQ2C));
 			avgQ2C.setSource("blktrace");
 			avgQ2C.setOperationMetric(Metric.RESPONSE_TIME);
 			result.getValues().add(avgQ2C);
 		}
 		
-		if (monitorVars.isActiveQueueDepth() && resultFileAQDWrites != null)
+		if (files.aqdWrites != null)
 		{
-			List<DependentVariablesValueSingle> writeAQD = getAQDVals(resultFileAQDWrites, repeatNr, "write");
-			result.getValues().addAll(writeAQD);
+			int writeAQD = readResultFile(files.aqdWrites, "write", samples, Metric.QUEUE_DEPTH);
 			
 			DependentVariablesValueComposite avgAQD = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
 			avgAQD.setOperation("write");
 			avgAQD.setType(Type.MEAN);
-			avgAQD.setValue(calculateAvg(writeAQD));
+			avgAQD.setValue(samples.mean(writeAQD));
 			avgAQD.setSource("blktrace");
 			avgAQD.setOperationMetric(Metric.QUEUE_DEPTH);
 			result.getValues().add(avgAQD);
@@ -357,7 +390,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 	@Override
 	public void endMonitoring()
 	{
-		// cleanup
+		// cleanup, the result files were fetched by collectMonitoring
 		String command = "rm -R " + workDir.getAbsolutePath();
 		LOGGER.debug("Command is: %s", command);
 		RemoteProcess postProcessing = connection.execCmd(command, false);
@@ -366,399 +399,115 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 		postProcessing.finish();
 	}
 
+	/**
+	 * Runs blkparse and btt on the remote host as one batch and keeps the
+	 * manifest of the produced files.
+	 */
 	private void parsingResults(IndependentVariablesOfBlktrace monitorVars)
 	{
 		LOGGER.debug("Merging results...");
-		File destination = new File(targetDir);
-
 		workDir = new File(targetDir, monitorVars.getLogFilePrefix());
 		File resultFile = new File(workDir + "/" + monitorVars.getTargetDevice().split("/")[2]);
-		// resultFile.mkdir();
 		File mergedFile = new File(workDir + "/" + monitorVars.getTargetDevice().split("/")[2] + ".merged");
-		// mergedFile.mkdir();
+		String btt = "btt -i " + mergedFile.getAbsolutePath();
+		String blkparse = "blkparse -i " + resultFile.getAbsolutePath() + " -d " + mergedFile.getAbsolutePath();
 
-		String command = "sudo changeOwner.sh " + resultFile.getParent();
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-		postProcessing.finish();
+		RemoteBatch batch = new RemoteBatch();
+		batch.add("changeOwner", "sudo changeOwner.sh " + resultFile.getParent());
+		batch.add("blkparse", blkparse + " > /dev/null");
+		batch.add("btt blocks", btt + " -B " + workDir.getAbsolutePath() + "/blocks > /dev/null");
 
-		// processing results
-		LOGGER.debug("Running blkparse...");
-		command = "blkparse -i " + resultFile.getAbsolutePath() + " -d " + mergedFile.getAbsolutePath() + " > /dev/null";
-		LOGGER.debug("Command is: %s", command);
-		postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-		postProcessing.finish();
-
-		LOGGER.debug("Creating btt read results...");
-
-		// btt blocks
-		command = "btt -i " + mergedFile.getAbsoluteFile() + " -B " + destination.getAbsolutePath() + "/" + monitorVars.getLogFilePrefix()
-				+ "/blocks > /dev/null";
-		LOGGER.debug("Command is: %s", command);
-		postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-		postProcessing.finish();
-		
-		
 		if (monitorVars.isActiveQueueDepth() || monitorVars.isRecordQ2c())
 		{
-			
-			// generate read Q2C response times
-			command = "blkparse -i " + resultFile.getAbsolutePath() + " -d " + mergedFile.getAbsolutePath() + " -a read > /dev/null";
-			LOGGER.debug("Command is: %s", command);
-			postProcessing = connection.execCmd(command, false);
-			postProcessing.waitFor();
-			postProcessing.finish();
-			
-			if (monitorVars.isActiveQueueDepth())
-			{
-				LOGGER.debug("Creating btt read active queue depth values...");
-				command = "btt -i " + mergedFile.getAbsoluteFile() + " -Q " + destination.getAbsolutePath() + "/" + monitorVars.getLogFilePrefix()
-						+ "/queue_depth_read > /dev/null";
-				LOGGER.debug("Command is: %s", command);
-				postProcessing = connection.execCmd(command, false);
-				postProcessing.waitFor();
-				postProcessing.finish();
-			}
-			
-			if (monitorVars.isRecordQ2c())
+			for (String operation : new String[] { "read", "write" })
 			{
-				LOGGER.debug("Creating btt Q2C read response times...");
-				command = "btt -i " + mergedFile.getAbsoluteFile() + " -q " + destination.getAbsolutePath() + "/" + monitorVars.getLogFilePrefix()
-						+ "/q2c_read > /dev/null";
-				LOGGER.debug("Command is: %s", command);
-				postProcessing = connection.execCmd(command, false);
-				postProcessing.waitFor();
-				postProcessing.finish();
-			}
-			
-			// generate write Q2C response times
-			command = "blkparse -i " + resultFile.getAbsolutePath() + " -d " + mergedFile.getAbsolutePath() + " -a write > /dev/null";
-			LOGGER.debug("Command is: %s", command);
-			postProcessing = connection.execCmd(command, false);
-			postProcessing.waitFor();
-			postProcessing.finish();
-			
-			if (monitorVars.isActiveQueueDepth())
-			{
-				LOGGER.debug("Creating btt write active queue depth values...");
-				command = "btt -i " + mergedFile.getAbsoluteFile() + " -Q " + destination.getAbsolutePath() + "/" + monitorVars.getLogFilePrefix()
-						+ "/queue_depth_write > /dev/null";
-				LOGGER.debug("Command is: %s", command);
-				postProcessing = connection.execCmd(command, false);
-				postProcessing.waitFor();
-				postProcessing.finish();
-			}
-			
-			if (monitorVars.isRecordQ2c())
-			{
-				LOGGER.debug("Creating btt Q2C write response times...");
-				command = "btt -i " + mergedFile.getAbsoluteFile() + " -q " + destination.getAbsolutePath() + "/" + monitorVars.getLogFilePrefix()
-						+ "/q2c_write > /dev/null";
-				LOGGER.debug("Command is: %s", command);
-				postProcessing = connection.execCmd(command, false);
-				postProcessing.waitFor();
-				postProcessing.finish();
-			}
-		}
-
-		try
-		{
-			String stdErr = CharStreams.toString(new InputStreamReader(postProcessing.getErrorStream()));
-			if (postProcessing.getExitStatus() != 0)
-			{
-				postProcessing.finish();
-				LOGGER.error("Monitor postprocessing: %s", stdErr);
-				throw new BenchmarkException("Monitor postprocessing failed");
+				batch.add("blkparse " + operation, blkparse + " -a " + operation + " > /dev/null");
+				if (monitorVars.isActiveQueueDepth())
+				{
+					batch.add("btt queue depth " + operation, btt + " -Q " + workDir.getAbsolutePath() + "/queue_depth_" + operation
+							+ " > /dev/null");
+				}
+				if (monitorVars.isRecordQ2c())
+				{
+					batch.add("btt q2c " + operation, btt + " -q " + workDir.getAbsolutePath() + "/q2c_" + operation + " > /dev/null");
+				}
 			}
-
-			postProcessing.finish();
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("IO Exception on Benchmark parsing", e);
-			throw new BenchmarkException("Benchmark parsing failed due to IO interrupt", e);
 		}
-	}
-
-	private File getReadBlocksFile()
-	{
-		// catch read blocks
-		String command = "ls " + workDir + " | grep _r";
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
+		batch.listFiles(workDir.getAbsolutePath());
 
-		InputStreamReader is;
-		File resultFileReads = null;
-		try
-		{
-			is = new InputStreamReader(postProcessing.getInputStream());
-			BufferedReader br = new BufferedReader(is);
-			String s;
-			if ((s = br.readLine()) != null)
-				resultFileReads = new File(workDir, s);
-		} catch (IOException e)
+		LOGGER.debug("Running %s", batch);
+		manifest = connection.execBatch(batch);
+		LOGGER.debug("Postprocessing finished: %s", manifest);
+		if (!manifest.isSuccessful())
 		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
+			LOGGER.error("Monitor postprocessing step '%s' failed with exit status %d: %s", manifest.getFailedStep(),
+					manifest.getExitStatus(manifest.getFailedStep()), manifest.getErrors());
+			throw new BenchmarkException("Monitor postprocessing failed");
 		}
-		postProcessing.finish();
-		return resultFileReads;
 	}
 
-	private File getReadQ2CFile()
-	{
-		// catch read Q2Cs file
-		String command = "ls " + workDir + " | grep q2c_read";
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-
-		InputStreamReader is;
-		File resultFileReads = null;
-		try
-		{
-			is = new InputStreamReader(postProcessing.getInputStream());
-			BufferedReader br = new BufferedReader(is);
-			String s;
-			if ((s = br.readLine()) != null)
-				resultFileReads = new File(workDir, s);
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
-		postProcessing.finish();
-		return resultFileReads;
-	}
-	
-	private File getReadAQDFile()
-	{
-		// catch read Q2Cs file
-		String command = "ls " + workDir + " | grep queue_depth_read";
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-
-		InputStreamReader is;
-		File resultFileReads = null;
-		try
-		{
-			is = new InputStreamReader(postProcessing.getInputStream());
-			BufferedReader br = new BufferedReader(is);
-			String s;
-			if ((s = br.readLine()) != null)
-				resultFileReads = new File(workDir, s);
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
-		postProcessing.finish();
-		return resultFileReads;
-	}
-
-	private File getWriteQ2CFile()
-	{
-		// catch write Q2Cs file
-		String command = "ls " + workDir + " | grep q2c_write";
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-
-		InputStreamReader is;
-		File resultFileReads = null;
-		try
-		{
-			is = new InputStreamReader(postProcessing.getInputStream());
-			BufferedReader br = new BufferedReader(is);
-			String s;
-			if ((s = br.readLine()) != null)
-				resultFileReads = new File(workDir, s);
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
-		postProcessing.finish();
-		return resultFileReads;
-	}
-	
-	private File getWriteAQDFile()
-	{
-		// catch read Q2Cs file
-		String command = "ls " + workDir + " | grep queue_depth_write";
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-
-		InputStreamReader is;
-		File resultFileReads = null;
-		try
-		{
-			is = new InputStreamReader(postProcessing.getInputStream());
-			BufferedReader br = new BufferedReader(is);
-			String s;
-			if ((s = br.readLine()) != null)
-				resultFileReads = new File(workDir, s);
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
-		postProcessing.finish();
-		return resultFileReads;
-	}
-
-	private File getWriteBlocksFile()
+	/**
+	 * Copies a btt result file from the remote host into the raw file
+	 * directory. If the raw files are not saved, the file is copied to a
+	 * temporary file which is deleted after the analysis.
+	 * 
+	 * @param resultFile
+	 *            The result file on the remote host, may be null
+	 * @return The local copy, null if there is no result file
+	 */
+	private File fetchResultFile(File resultFile, String fileName, ResultFiles files)
 	{
-		// catch write blocks
-		String command = "ls " + workDir + " | grep _w";
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		postProcessing.waitFor();
-
-		File resultFileWrites = null;
-		try
-		{
-			is = new InputStreamReader(postProcessing.getInputStream());
-			BufferedReader br = new BufferedReader(is);
-			String s;
-			if ((s = br.readLine()) != null)
-				resultFileWrites = new File(workDir, s);
-		} catch (IOException e)
+		if (resultFile == null)
 		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
+			return null;
 		}
-		postProcessing.finish();
-		return resultFileWrites;
-	}
-
-	private List<DependentVariablesValueSingle> getQ2CTimes(File resultFile, int repeatNr, String operation)
-	{
-		// catch Q2C vals
-		String command = "cat " + resultFile.getAbsolutePath();
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		List<DependentVariablesValueSingle> q2cValues;
-		try
+		File localFile = getFile(fileName);
+		if (localFile == null)
 		{
-			InputStream inStream = postProcessing.getInputStream();
-			InputStreamReader inStreamReader = new InputStreamReader(inStream);
-			BufferedReader br = new BufferedReader(inStreamReader);
-
-			List<String> inputFile = new ArrayList<String>();
-			String line;
-			while ((line = br.readLine()) != null)
+			try
 			{
-				inputFile.add(line);
-			}
-			q2cValues = parseBlktraceQ2CLogAndSave(inputFile, getFile("bench.q2cs." + operation + "." + repeatNr + ".log"), operation);
-			postProcessing.waitFor();
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
-
-		return q2cValues;
-	}
-	
-	private List<DependentVariablesValueSingle> getAQDVals(File resultFile, int repeatNr, String operation)
-	{
-		// catch AQD vals
-		String command = "cat " + resultFile.getAbsolutePath();
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		List<DependentVariablesValueSingle> aqdValues;
-		try
-		{
-			InputStream inStream = postProcessing.getInputStream();
-			InputStreamReader inStreamReader = new InputStreamReader(inStream);
-			BufferedReader br = new BufferedReader(inStreamReader);
-
-			List<String> inputFile = new ArrayList<String>();
-			String line;
-			while ((line = br.readLine()) != null)
+				localFile = File.createTempFile("blktrace", ".log");
+			} catch (IOException e)
 			{
-				inputFile.add(line);
+				throw new BenchmarkException(e);
 			}
-			aqdValues = parseBlktraceAQDLogAndSave(inputFile, getFile("bench.aqds." + operation + "." + repeatNr + ".log"), operation);
-			postProcessing.waitFor();
-		} catch (IOException e)
-		{
-			postProcessing.finish();
-			LOGGER.error("Exception while postprocessing", e);
-			throw new BenchmarkException("Monitor failed", e);
+			files.tempFiles.add(localFile);
 		}
-
-		return aqdValues;
+		// The btt output is text and compresses well
+		connection.fetchFile(resultFile.getAbsolutePath(), localFile, true);
+		return localFile;
 	}
 
-	private List<DependentVariablesValueSingle> getBlockValues(File resultFile, int repeatNr, String operation)
+	/**
+	 * Parses the local copy of a btt result file into the sample buffer.
+	 * 
+	 * @return The channel of the parsed samples
+	 */
+	private int readResultFile(File localFile, String operation, SampleBuffer samples, Metric metric)
 	{
-		// catch block vals
-		String command = "cat " + resultFile.getAbsolutePath();
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		List<DependentVariablesValueSingle> blockValues;
 		try
 		{
-			InputStream inStream = postProcessing.getInputStream();
-			InputStreamReader inStreamReader = new InputStreamReader(inStream);
-			BufferedReader br = new BufferedReader(inStreamReader);
-
-			List<String> inputFile = new ArrayList<String>();
-			String line;
-			while ((line = br.readLine()) != null)
+			BufferedReader br = Files.newReader(localFile, Charset.defaultCharset());
+			try
 			{
-				inputFile.add(line);
+				switch (metric)
+				{
+				case RESPONSE_TIME:
+					return parseBlktraceQ2CLogAndSave(br, null, operation, samples);
+				case QUEUE_DEPTH:
+					return parseBlktraceAQDLogAndSave(br, null, operation, samples);
+				default:
+					return parseBlktraceBlocksLogAndSave(br, null, operation, samples);
+				}
+			} finally
+			{
+				br.close();
 			}
-			blockValues = parseBlktraceBlocksLogAndSave(inputFile, getFile("bench." + operation + "." + repeatNr + ".log"), operation);
-			postProcessing.waitFor();
 		} catch (IOException e)
 		{
-			postProcessing.finish();
 			LOGGER.error("Exception while postprocessing", e);
 			throw new BenchmarkException("Monitor failed", e);
 		}
-
-		return blockValues;
-	}
-
-	private double calcAvgReqSize(List<DependentVariablesValueSingle> blockValues)
-	{
-		double avgRequSize = 0.;
-		for (int i = 0; i < blockValues.size(); ++i)
-		{
-			avgRequSize += blockValues.get(i).getValue();
-		}
-		avgRequSize /= blockValues.size();
-
-		return avgRequSize;
-	}
-
-	private double calculateAvg(List<DependentVariablesValueSingle> values)
-	{
-		double avg = 0.;
-		for (int i = 0; i < values.size(); ++i)
-		{
-			avg += values.get(i).getValue();
-		}
-		avg /= values.size();
-
-		return avg;
 	}
 
 	private List<DependentVariablesValue> calculateAccessPattern(List<String[]> values, String operation, int windowSize)
@@ -848,48 +597,39 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 		return tmpResult / iters;
 	}
 
+	/**
+	 * Reads the lines of the local copy of a btt result file.
+	 */
 	public List<String> fileToArray(File inputFile)
 	{
-		String command = "cat " + inputFile.getAbsolutePath();
-		LOGGER.debug("Command is: %s", command);
-		RemoteProcess postProcessing = connection.execCmd(command, false);
-		List<String> resultList;
 		try
 		{
-			InputStream inStream = postProcessing.getInputStream();
-			InputStreamReader inStreamReader = new InputStreamReader(inStream);
-			BufferedReader br = new BufferedReader(inStreamReader);
-
-			resultList = new ArrayList<String>();
-			String line;
-			while ((line = br.readLine()) != null)
-			{
-				resultList.add(line);
-			}
-			postProcessing.waitFor();
+			return Files.readLines(inputFile, Charset.defaultCharset());
 		} catch (IOException e)
 		{
-			postProcessing.finish();
 			LOGGER.error("Exception while postprocessing", e);
 			throw new BenchmarkException("Monitor failed", e);
 		}
-		return resultList;
 	}
 
 	/**
 	 * Parses the output for stopMonitoring(..). Results will be saved by the
 	 * BenchmarkController.
 	 * 
-	 * @param inputFile
+	 * @param reader
+	 *            The btt block numbers output
 	 * @param outputFile
 	 *            Outputs original log file
 	 * @param operation
 	 *            Operation name
+	 * @param samples
+	 *            The buffer which receives the request sizes
+	 * @return The channel of the request sizes in the buffer
 	 **/
-	public static List<DependentVariablesValueSingle> parseBlktraceBlocksLogAndSave(List<String> inputFile, File outputFile, String operation)
+	public static int parseBlktraceBlocksLogAndSave(BufferedReader reader, File outputFile, String operation, SampleBuffer samples)
 	{
 		String line = null;
-		List<DependentVariablesValueSingle> results = Lists.newArrayList();
+		int channel = samples.channel(operation, Metric.REQUEST_SIZE, SOURCE);
 		try
 		{
 			OutputStream out = null;
@@ -898,9 +638,8 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				out = new BufferedOutputStream(new FileOutputStream(outputFile));
 			}
 
-			for (int i = 0; i < inputFile.size(); ++i)
+			while ((line = reader.readLine()) != null)
 			{
-				line = inputFile.get(i);
 				if (out != null)
 				{
 					out.write(line.getBytes(Charset.defaultCharset()));
@@ -910,8 +649,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				if (vals.length >= 3)
 				{
 					try{
-						DependentVariablesValueSingle var = createBlockResult(operation, vals[0], Integer.parseInt(vals[2]) - Integer.parseInt(vals[1]));
-						results.add(var);
+						samples.add(channel, vals[0], Integer.parseInt(vals[2]) - Integer.parseInt(vals[1]));
 					}catch(NumberFormatException e)
 					{}
 				}
@@ -922,7 +660,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				out.close();
 			}
 			
-			return results;
+			return channel;
 		} catch (IOException e)
 		{
 			throw new BenchmarkException(e);
@@ -933,16 +671,20 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 	 * Parses the output for stopMonitoring(..). Results will be saved by the
 	 * BenchmarkController.
 	 * 
-	 * @param inputFile
+	 * @param reader
+	 *            The btt Q2C output
 	 * @param outputFile
 	 *            Outputs original log file
 	 * @param operation
 	 *            Operation name
+	 * @param samples
+	 *            The buffer which receives the Q2C times in milliseconds
+	 * @return The channel of the Q2C times in the buffer
 	 **/
-	public static List<DependentVariablesValueSingle> parseBlktraceQ2CLogAndSave(List<String> inputFile, File outputFile, String operation)
+	public static int parseBlktraceQ2CLogAndSave(BufferedReader reader, File outputFile, String operation, SampleBuffer samples)
 	{
 		String line = null;
-		List<DependentVariablesValueSingle> results = Lists.newArrayList();
+		int channel = samples.channel(operation, Metric.RESPONSE_TIME, SOURCE);
 		try
 		{
 			OutputStream out = null;
@@ -951,9 +693,8 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				out = new BufferedOutputStream(new FileOutputStream(outputFile));
 			}
 
-			for (int i = 0; i < inputFile.size(); ++i)
+			while ((line = reader.readLine()) != null)
 			{
-				line = inputFile.get(i);
 				if (out != null)
 				{
 					out.write(line.getBytes(Charset.defaultCharset()));
@@ -962,8 +703,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				String[] vals = line.trim().split(" ");
 				if (vals.length > 1)
 				{
-					DependentVariablesValueSingle var = createQ2CResult(operation, vals[0], Double.parseDouble(vals[1]) * 1000);
-					results.add(var);
+					samples.add(channel, vals[0], Double.parseDouble(vals[1]) * 1000);
 				}
 			}
 			if (out != null)
@@ -971,7 +711,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				out.flush();
 				out.close();
 			}
-			return results;
+			return channel;
 		} catch (IOException e)
 		{
 			throw new BenchmarkException(e);
@@ -982,16 +722,20 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 	 * Parses the output for stopMonitoring(..). Results will be saved by the
 	 * BenchmarkController.
 	 * 
-	 * @param inputFile
+	 * @param reader
+	 *            The btt active queue depth output
 	 * @param outputFile
 	 *            Outputs original log file
 	 * @param operation
 	 *            Operation name
+	 * @param samples
+	 *            The buffer which receives the queue depths
+	 * @return The channel of the queue depths in the buffer
 	 **/
-	public static List<DependentVariablesValueSingle> parseBlktraceAQDLogAndSave(List<String> inputFile, File outputFile, String operation)
+	public static int parseBlktraceAQDLogAndSave(BufferedReader reader, File outputFile, String operation, SampleBuffer samples)
 	{
 		String line = null;
-		List<DependentVariablesValueSingle> results = Lists.newArrayList();
+		int channel = samples.channel(operation, Metric.QUEUE_DEPTH, SOURCE);
 		try
 		{
 			OutputStream out = null;
@@ -1000,9 +744,8 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				out = new BufferedOutputStream(new FileOutputStream(outputFile));
 			}
 
-			for (int i = 0; i < inputFile.size(); ++i)
+			while ((line = reader.readLine()) != null)
 			{
-				line = inputFile.get(i);
 				if (out != null)
 				{
 					out.write(line.getBytes(Charset.defaultCharset()));
@@ -1011,8 +754,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				String[] vals = line.trim().split(" ");
 				if (vals.length > 1)
 				{
-					DependentVariablesValueSingle var = createAQDResult(operation, vals[0], Integer.parseInt(vals[1]));
-					results.add(var);
+					samples.add(channel, vals[0], Integer.parseInt(vals[1]));
 				}
 			}
 			if (out != null)
@@ -1020,7 +762,7 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 				out.flush();
 				out.close();
 			}
-			return results;
+			return channel;
 		} catch (IOException e)
 		{
 			throw new BenchmarkException(e);
@@ -1028,48 +770,30 @@ public class BlktraceMonitorDriver extends MonitorDriver<IndependentVariablesOfB
 	}
 
 	/**
-	 * Shortcut method for simpler creation of {@code DependentVariablesValue}
-	 * instances.
-	 * 
-	 * @param operation
-	 *            Operation name
-	 * @param blocks
-	 *            read blocks
-	 * @return
+	 * The local copies of the result files of a repetition, null if btt did
+	 * not produce the file.
 	 */
-	private static DependentVariablesValueSingle createBlockResult(String operation, String timestamp, int blocks)
+	private static final class ResultFiles
 	{
-		DependentVariablesValueSingle depVarsValueSingle = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-		depVarsValueSingle.setOperation(operation);
-		depVarsValueSingle.setTimestamp(timestamp);
-		depVarsValueSingle.setValue(blocks);
-		depVarsValueSingle.setSource("blktrace");
-		depVarsValueSingle.setOperationMetric(Metric.REQUEST_SIZE);
-
-		return depVarsValueSingle;
-	}
+		private File reads;
+		private File writes;
+		private File q2cReads;
+		private File q2cWrites;
+		private File aqdReads;
+		private File aqdWrites;
+		private File readsAccessPattern;
+		private File writesAccessPattern;
 
-	private static DependentVariablesValueSingle createQ2CResult(String operation, String timestamp, double latency)
-	{
-		DependentVariablesValueSingle depVarsValueSingle = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-		depVarsValueSingle.setOperation(operation);
-		depVarsValueSingle.setTimestamp(timestamp);
-		depVarsValueSingle.setValue(latency);
-		depVarsValueSingle.setSource("blktrace");
-		depVarsValueSingle.setOperationMetric(Metric.RESPONSE_TIME);
-
-		return depVarsValueSingle;
-	}
-	
-	private static DependentVariablesValueSingle createAQDResult(String operation, String timestamp, int aqd)
-	{
-		DependentVariablesValueSingle depVarsValueSingle = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-		depVarsValueSingle.setOperation(operation);
-		depVarsValueSingle.setTimestamp(timestamp);
-		depVarsValueSingle.setValue(aqd);
-		depVarsValueSingle.setSource("blktrace");
-		depVarsValueSingle.setOperationMetric(Metric.QUEUE_DEPTH);
-
-		return depVarsValueSingle;
+		// The copies which are not saved as raw files
+		private final List<File> tempFiles = Lists.newArrayList();
+
+		private void deleteTempFiles()
+		{
+			for (File tempFile : tempFiles)
+			{
+				tempFile.delete();
+			}
+			tempFiles.clear();
+		}
 	}
 }
@@ -1,64 +1,54 @@
 package edu.kit.sdq.storagebenchmarkharness.monitors;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.nio.charset.Charset;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Iterator;
 import java.util.List;
-import java.util.UUID;
-
-import com.google.common.collect.Lists;
 
+import edu.kit.sdq.storagebenchmarkharness.ClockSync;
 import edu.kit.sdq.storagebenchmarkharness.Logger;
-import edu.kit.sdq.storagebenchmarkharness.MonitorDriver;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
-import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
-import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValue;
-//import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
-import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
-import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfIostatMonitor;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
-//import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentProbe;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentSample;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 
 /**
- * Provides an interface to the iostat monitoring tool. 
+ * Provides the extended device and CPU statistics of iostat. The counters of
+ * /proc/diskstats and /proc/stat are sampled by the monitor agent and the
+ * statistics are computed from the differences of successive samples like
+ * iostat does.
  * 
  * @author Kiana Rostami
  * 
  */
-public class IostatMonitorDriver extends MonitorDriver<IndependentVariablesOfIostatMonitor, DependentVariables>
+public class IostatMonitorDriver extends AgentMonitorDriver<IndependentVariablesOfIostatMonitor>
 {
 	
 	private static final Logger LOGGER = Logger.getLogger(IostatMonitorDriver.class);
-	private final String targetDir;
-	private RemoteProcess monitor;
-	private InputStreamReader is;
-	private File logTemp;
-	
-	
-	public IostatMonitorDriver(RemoteConnection con, String logFileSaveDir, String targetDir)
-	{
-		super(con, logFileSaveDir);
-		this.targetDir=targetDir;
-		LOGGER.debug("TargetDir is %s", targetDir);
-		logTemp = new File("iostat.log");
-	}
-	
+	private static final String SOURCE = "iostat";
+
+	// The fields of /proc/diskstats in the samples of the disk probe
+	private static final int READS = 0;
+	private static final int READS_MERGED = 1;
+	private static final int SECTORS_READ = 2;
+	private static final int MS_READING = 3;
+	private static final int WRITES = 4;
+	private static final int WRITES_MERGED = 5;
+	private static final int SECTORS_WRITTEN = 6;
+	private static final int MS_WRITING = 7;
+	private static final int MS_IO = 9;
+	private static final int WEIGHTED_MS_IO = 10;
+
+	// Read by getLiveDiskSamples from other threads
+	private volatile AgentProbe diskProbe;
+	private AgentProbe cpuProbe;
+
 	public IostatMonitorDriver(RemoteConnection con, String logFileSaveDir)
 	{
-		this(con, logFileSaveDir,getEnvDefault("iostattargetdir", "/tmp/iostattarget/"));	
+		super(con, logFileSaveDir);
 	}
 
 
@@ -66,14 +56,8 @@ public class IostatMonitorDriver extends MonitorDriver<IndependentVariablesOfIos
 	public void startMonitoring(IndependentVariablesOfSut sutVars, IndependentVariablesOfIostatMonitor monitorVars)
 	{
 		LOGGER.debug("Executing iostat Monitoring...");
-		File destination = new File(targetDir);
-		String command = null;
-		String device = monitorVars.getTargetDevice();
-
-		command = "iostat -xtkcd " + monitorVars.getInterval() + " " + device +" > "+ destination.getAbsoluteFile() + "/"+ logTemp;
-
-		this.monitor = connection.execCmd(command, true);
-
+		diskProbe = addProbe("disk", monitorVars.getTargetDevice(), monitorVars.getInterval(), monitorVars.getIntervalMillis());
+		cpuProbe = addProbe("cpu", "", monitorVars.getInterval(), monitorVars.getIntervalMillis());
 	}
 
 	@Override
@@ -87,432 +71,188 @@ public class IostatMonitorDriver extends MonitorDriver<IndependentVariablesOfIos
 				
 		try
 		{
-			// stop monitor process
-
-			this.monitor.stopProcess();
-			String command = null;
+			removeProbes();
 			LOGGER.debug("Reading monitoring results...");
-			File destination = new File(targetDir);
-			
-			command = "cat "+ destination.getAbsoluteFile() + "/"+ logTemp;
-			LOGGER.debug("Command is: %s", command);
-			RemoteProcess postProcessing = connection.execCmd(command, false);
-			
-			try
-			{
-				is = new InputStreamReader(postProcessing.getInputStream());
-				File logFile = getFile("iostatMonitor." + repeatNr + ".log");
-				
-				List<DependentVariablesValueSingle> values = parseMonitorResultsLogAndSave(is, logFile);
-				result.getValues().addAll(values);
-				
-				postProcessing.waitFor();
-				postProcessing.finish();
-				
-				command = "rm -R " + destination.getAbsoluteFile() + "/"+ logTemp;
-				LOGGER.debug("Command is: %s", command);
-				postProcessing = connection.execCmd(command, false);
-				postProcessing.waitFor();
-				postProcessing.finish();
-				
-			} catch (IOException e)
-			{
-				postProcessing.finish();
-				LOGGER.error("Exception while postprocessing", e);
-				throw new BenchmarkException("Monitor failed", e);
-			}
-
+			SampleBuffer samples = new SampleBuffer(ClockSync.TIMELINE_SCALE);
+			addDiskSamples(getSamples(diskProbe, getFile("iostatMonitor." + repeatNr + ".log")), 0, samples);
+			addCpuSamples(getSamples(cpuProbe, getFile("iostatMonitor.cpu." + repeatNr + ".log")), 0, samples);
+			SampleBuffer.attach(result, samples);
+			addClockError(result, SOURCE);
 		} catch (Exception e)
 		{
-			this.monitor.finish();
 			LOGGER.error("Exception while stopping monitor", e);
 			throw new BenchmarkException("Monitor failed", e);
 		}
-		
 
+		return result;
+	}
 
-		this.monitor.finish();
+	/**
+	 * Returns the samples of the disk probe collected so far, while the
+	 * monitor is running, e.g. to watch the load of the benchmark.
+	 *
+	 * @return The samples on the controller timeline, empty if the monitor is
+	 *         not running
+	 */
+	public List<AgentSample> getLiveDiskSamples()
+	{
+		return getLiveSamples(diskProbe);
+	}
 
-		return result;
+	/**
+	 * Computes the throughput of the device in KB/s between two samples of
+	 * the disk probe, a sector has 512 bytes.
+	 *
+	 * @return The throughput, NaN if the samples are not successive
+	 */
+	public static double getThroughput(AgentSample prev, AgentSample cur)
+	{
+		double seconds = (cur.getMicros() - prev.getMicros()) / 1e6;
+		if (seconds <= 0)
+		{
+			return Double.NaN;
+		}
+		return (delta(prev, cur, SECTORS_READ) + delta(prev, cur, SECTORS_WRITTEN)) / 2 / seconds;
 	}
 
-	public static List<DependentVariablesValueSingle> parseMonitorResultsLogAndSave(InputStreamReader is, File outputFile)
+	/**
+	 * Computes the device statistics between successive samples of the disk
+	 * probe. The timestamps are relative to the first sample.
+	 */
+	public static void addDiskSamples(List<AgentSample> disk, SampleBuffer samples)
 	{
-		
+		addDiskSamples(disk, disk.isEmpty() ? 0 : disk.get(0).getMicros(), samples);
+	}
 
-		String line = null;
-		SimpleDateFormat ft = new SimpleDateFormat("mm/dd/yyyy hh:mm:ss");
+	/**
+	 * Computes the device statistics between successive samples of the disk
+	 * probe. The timestamps are relative to the origin in the scale of the
+	 * buffer.
+	 */
+	public static void addDiskSamples(List<AgentSample> disk, long originMicros, SampleBuffer samples)
+	{
+		int mergedRead = samples.channel("read", Metric.MERGES_PER_SEC, SOURCE);
+		int mergedWrite = samples.channel("write", Metric.MERGES_PER_SEC, SOURCE);
+		int mixRead = samples.channel("read", Metric.REQUEST_MIX, SOURCE);
+		int mixWrite = samples.channel("write", Metric.REQUEST_MIX, SOURCE);
+		int opsRead = samples.channel("read", Metric.OPERATIONS, SOURCE);
+		int opsWrite = samples.channel("write", Metric.OPERATIONS, SOURCE);
+		int sizeRead = samples.channel("read", Metric.REQUEST_SIZE, SOURCE);
+		int sizeWrite = samples.channel("write", Metric.REQUEST_SIZE, SOURCE);
+		int sizeAll = samples.channel("read+write", Metric.REQUEST_SIZE, SOURCE);
+		int queueDepth = samples.channel("read+write", Metric.QUEUE_DEPTH, SOURCE);
+		int responseTime = samples.channel("read+write", Metric.RESPONSE_TIME, SOURCE);
+		int serviceTime = samples.channel("read+write", Metric.SERVICE_TIME, SOURCE);
 
-		BufferedReader reader = new BufferedReader(is);
-		
-		
-		List<DependentVariablesValueSingle> results = Lists.newArrayList();
-		
-		// set timestamp
-		
-		String timestamp = null;
-		try
+		for (int i = 1; i < disk.size(); ++i)
 		{
-			OutputStream out = null;
-			if (outputFile != null)
+			AgentSample prev = disk.get(i - 1);
+			AgentSample cur = disk.get(i);
+			double seconds = (cur.getMicros() - prev.getMicros()) / 1e6;
+			if (seconds <= 0)
 			{
-				out = new BufferedOutputStream(new FileOutputStream(outputFile));
+				continue;
 			}
+			long timestamp = toTimestamp(cur.getMicros(), originMicros, samples.getTimestampScale());
 
-			int lineCount = 0;
-			
-			String lastTimestamp = null;
+			double reads = delta(prev, cur, READS);
+			double writes = delta(prev, cur, WRITES);
+			double requests = reads + writes;
 
-			
-			while1: while ((line = reader.readLine()) != null)
-			{
-				
-				if (out != null)
-				{
-					out.write(line.getBytes(Charset.defaultCharset()));
-					out.write('\n');
-				}
+			//  Compute the number of read and write requests merged per second
+			samples.add(mergedRead, timestamp, delta(prev, cur, READS_MERGED) / seconds);
+			samples.add(mergedWrite, timestamp, delta(prev, cur, WRITES_MERGED) / seconds);
 
-				String[] lineSplit = line.replaceAll("\\s+", " ").trim().split(" ");
-				
-				if(lineSplit.length == 2)
-				{
-					lineCount++;
-					if (lineCount < 7)
-						continue while1;
-					
-					String tmp = "";
-					tmp = lineSplit[0]+" "+lineSplit[1];
-					lineSplit[0] = tmp;
-					lineSplit[1] = null;
-					
-					if (results.size() < 1)
-					{
-						timestamp = "0";
-						lastTimestamp = lineSplit[0];
+			//  Compute the proportion of read and write requests
+			samples.add(mixRead, timestamp, requests > 0 ? reads / requests : 0.0);
+			samples.add(mixWrite, timestamp, requests > 0 ? writes / requests : 0.0);
 
-						
-					} else if (results.size() > 0)
-					{
-						String time1 = lastTimestamp;
-						String time2 = lineSplit[0];
-						Calendar c1 = Calendar.getInstance();
-						Calendar c2 = Calendar.getInstance();
-						try
-						{
-							c1.setTime(ft.parse(time1));
-							c2.setTime(ft.parse(time2));
-						} catch (ParseException e)
-						{
-							continue while1;
-						}
-						timestamp=("" + ((c2.getTimeInMillis() - c1.getTimeInMillis()) / 1000));
-					}
-					
-				}
-				else if (lineSplit.length > 11 && lineSplit[0].equals("Device:"))
-				{
-					lineCount++;
-					continue while1;
-				}
-				else if (lineSplit.length < 8 && lineSplit[0].equals("avg-cpu:"))
-				{
-					lineCount++;
-					continue while1;
-				}
-				else if (lineSplit.length > 11)
-				{
-					lineCount++;
-					if (lineCount < 10)
-					{
-						continue while1;
-					}
-					
-					//  Compute the number of read requests merged per second
-					
-					DependentVariablesValueSingle NumOfMergedReadReqs = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double NumOfMergedReadPerSec = 0;
-					NumOfMergedReadPerSec = Double.parseDouble(lineSplit[1]);
-					NumOfMergedReadReqs.setOperation("read");
-					NumOfMergedReadReqs.setTimestamp(timestamp);
-					NumOfMergedReadReqs.setValue(NumOfMergedReadPerSec);
-					NumOfMergedReadReqs.setSource("iostat");
-					NumOfMergedReadReqs.setOperationMetric(Metric.MERGES_PER_SEC);					
-					results.add(NumOfMergedReadReqs);
-					
-					//  Compute number of write requests merged per second
-					 
-					DependentVariablesValueSingle NumOfMergedWriteReqs = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double NumOfMergedWritePerSec = 0;
-					NumOfMergedWritePerSec = Double.parseDouble(lineSplit[2]);
-					NumOfMergedWriteReqs.setOperation("write");
-					NumOfMergedWriteReqs.setTimestamp(timestamp);
-					NumOfMergedWriteReqs.setValue(NumOfMergedWritePerSec);
-					NumOfMergedWriteReqs.setSource("iostat");
-					NumOfMergedWriteReqs.setOperationMetric(Metric.MERGES_PER_SEC);					
-					results.add(NumOfMergedWriteReqs);
-					
-					//  Compute the proportion of read requests per second
-					 
-					DependentVariablesValueSingle NumOfReadReqs2DevProportion = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double NumOfReadReqs2DevPerSec = 0;
-					double NumOfWriteReqs2DevPerSec = 0;			
-					NumOfReadReqs2DevPerSec = Double.parseDouble(lineSplit[3]);
-					NumOfWriteReqs2DevPerSec = Double.parseDouble(lineSplit[4]);					
-					NumOfReadReqs2DevProportion.setTimestamp(timestamp);
-					NumOfReadReqs2DevProportion.setOperation("read");
-					if(NumOfReadReqs2DevPerSec > 0 || NumOfWriteReqs2DevPerSec > 0)
-					{
-						NumOfReadReqs2DevProportion.setValue(NumOfReadReqs2DevPerSec/(NumOfReadReqs2DevPerSec+NumOfWriteReqs2DevPerSec));
-					}
-					else
-					{
-						NumOfReadReqs2DevProportion.setValue(0.0);
-					}
-					NumOfReadReqs2DevProportion.setSource("iostat");
-					NumOfReadReqs2DevProportion.setOperationMetric(Metric.REQUEST_MIX);					
-					results.add(NumOfReadReqs2DevProportion);
-					
-					
-					//  Compute the proportion of write requests per second
-					 
-					DependentVariablesValueSingle NumOfWriteReqs2DevProportion = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();					
-					NumOfWriteReqs2DevProportion.setOperation("write");
-					NumOfWriteReqs2DevProportion.setTimestamp(timestamp);
-					if(NumOfReadReqs2DevPerSec > 0 || NumOfWriteReqs2DevPerSec > 0)
-					{
-						NumOfWriteReqs2DevProportion.setValue(NumOfWriteReqs2DevPerSec/(NumOfReadReqs2DevPerSec+NumOfWriteReqs2DevPerSec));
-					}
-					else
-					{
-						NumOfWriteReqs2DevProportion.setValue(0.0);
-					}
-					NumOfWriteReqs2DevProportion.setSource("iostat");
-					NumOfWriteReqs2DevProportion.setOperationMetric(Metric.REQUEST_MIX);					
-					results.add(NumOfWriteReqs2DevProportion);
-					
-					
-					//  Compute the number of read requests per second
-					 
-					DependentVariablesValueSingle NumOfReadReqs2Dev = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					
-					NumOfReadReqs2Dev.setOperation("read");
-					NumOfReadReqs2Dev.setTimestamp(timestamp);
-					NumOfReadReqs2Dev.setValue(NumOfReadReqs2DevPerSec);
-					NumOfReadReqs2Dev.setSource("iostat");
-					NumOfReadReqs2Dev.setOperationMetric(Metric.OPERATIONS);
-					
-					results.add(NumOfReadReqs2Dev);
-					
-					
-					//  Compute the number of write requests per second
-					 
-					DependentVariablesValueSingle NumOfWriteReqs2Dev = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					
-					NumOfWriteReqs2Dev.setOperation("write");
-					NumOfWriteReqs2Dev.setTimestamp(timestamp);
-					NumOfWriteReqs2Dev.setValue(NumOfWriteReqs2DevPerSec);
-					NumOfWriteReqs2Dev.setSource("iostat");
-					NumOfWriteReqs2Dev.setOperationMetric(Metric.OPERATIONS);
-					
-					results.add(NumOfWriteReqs2Dev);
-					
-					
-					//  Compute the average read request size in kilobyteper per second over an interval of time
-					
-					DependentVariablesValueSingle AvgSizeOfReadReqsInKB2Dev = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double NumOfReadReqsInKBPerSecond = 0;				
-					NumOfReadReqsInKBPerSecond = Double.parseDouble(lineSplit[5]);
-					AvgSizeOfReadReqsInKB2Dev.setOperation("read");
-					AvgSizeOfReadReqsInKB2Dev.setTimestamp(timestamp);
-					if(NumOfReadReqs2DevPerSec > 0)
-					{
-						AvgSizeOfReadReqsInKB2Dev.setValue(NumOfReadReqsInKBPerSecond/NumOfReadReqs2DevPerSec);
-					}
-					else
-					{
-						AvgSizeOfReadReqsInKB2Dev.setValue(0.0);
-					}
-					AvgSizeOfReadReqsInKB2Dev.setSource("iostat");
-					AvgSizeOfReadReqsInKB2Dev.setOperationMetric(Metric.REQUEST_SIZE);
-					
-					if (NumOfReadReqs2DevPerSec != 0.0)
-					{
-						results.add(AvgSizeOfReadReqsInKB2Dev);
-					}
-					
-					// Compute the average write request size in kilobyteper per second over an interval of time
-					 
-					DependentVariablesValueSingle AvgSizeOfWriteReqsInKB2Dev = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double NumOfWriteReqsInKBPerSecond = 0;
-					NumOfWriteReqsInKBPerSecond  = Double.parseDouble(lineSplit[6]);
-					AvgSizeOfWriteReqsInKB2Dev.setOperation("write");
-					AvgSizeOfWriteReqsInKB2Dev.setTimestamp(timestamp);
-					if(NumOfWriteReqs2DevPerSec > 0)
-					{
-						AvgSizeOfWriteReqsInKB2Dev.setValue(NumOfWriteReqsInKBPerSecond/NumOfWriteReqs2DevPerSec);
-					}
-					else
-					{
-						AvgSizeOfWriteReqsInKB2Dev.setValue(0.0);
-					}
-					AvgSizeOfWriteReqsInKB2Dev.setSource("iostat");
-					AvgSizeOfWriteReqsInKB2Dev.setOperationMetric(Metric.REQUEST_SIZE);
-					
-					if (NumOfWriteReqs2DevPerSec != 0.0)
-					{
-						results.add(AvgSizeOfWriteReqsInKB2Dev);
-					}
-					
-					//  Compute the average request size in kilobyte per second over an interval of time
-					 
-					DependentVariablesValueSingle AvgSizeOfReqsInKB2Dev = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double AvgReqSize = 0;
-					AvgReqSize = Double.parseDouble(lineSplit[7]);
-					AvgSizeOfReqsInKB2Dev.setOperation("read+write");
-					AvgSizeOfReqsInKB2Dev.setTimestamp(timestamp);
-					if(NumOfReadReqs2DevPerSec > 0 || NumOfWriteReqs2DevPerSec > 0)
-					{
-						AvgSizeOfReqsInKB2Dev.setValue(AvgReqSize/(NumOfReadReqs2DevPerSec+NumOfWriteReqs2DevPerSec));
-					}
-					else
-					{
-						AvgSizeOfReqsInKB2Dev.setValue(0.0);
-					}
-					AvgSizeOfReqsInKB2Dev.setSource("iostat");
-					AvgSizeOfReqsInKB2Dev.setOperationMetric(Metric.REQUEST_SIZE);					
-					results.add(AvgSizeOfReqsInKB2Dev);
-										
-					//  Compute the average queue length of the requests
-					 
-					DependentVariablesValueSingle AvgQLengthOfReqs = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double AvgQueueLength = 0;
-					AvgQueueLength  = Double.parseDouble(lineSplit[8]);
-					AvgQLengthOfReqs.setOperation("read+write");
-					AvgQLengthOfReqs.setTimestamp(timestamp);
-					AvgQLengthOfReqs.setValue(AvgQueueLength);
-					AvgQLengthOfReqs.setSource("iostat");
-					AvgQLengthOfReqs.setOperationMetric(Metric.QUEUE_DEPTH);					
-					results.add(AvgQLengthOfReqs);
-					
-					
-					
-					//  Compute the  average  response  time  (in  milliseconds)
-					 
-					DependentVariablesValueSingle AvgResponseTime = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double AvgRespTime = 0;
-					AvgRespTime  = Double.parseDouble(lineSplit[9]);					
-					AvgResponseTime.setOperation("read+write");
-					AvgResponseTime.setTimestamp(timestamp);
-					AvgResponseTime.setValue(AvgRespTime);
-					AvgResponseTime.setSource("iostat");
-					AvgResponseTime.setOperationMetric(Metric.RESPONSE_TIME);
-					results.add(AvgResponseTime);
-					
-					
-					
-					//  Compute the  average  service  time  (in  milliseconds) 
-					 
-					DependentVariablesValueSingle AvgServiceTime = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double AvgServTime = 0;	
-					AvgServTime = Double.parseDouble(lineSplit[10]);					
-					AvgServiceTime.setOperation("read+write");
-					AvgServiceTime.setTimestamp(timestamp);
-					AvgServiceTime.setValue(AvgServTime);
-					AvgServiceTime.setSource("iostat");
-					AvgServiceTime.setOperationMetric(Metric.SERVICE_TIME);
-					
-					results.add(AvgServiceTime);
-					
-				}
-				else if (lineSplit.length>4 && lineSplit.length < 8)
-				{
-					lineCount++;
-					if (lineCount < 10)
-					{
-						continue while1;
-					}
-					
-					DependentVariablesValueSingle cpuUtilizationUserSpace = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double cpuUtilizationUser = 0;	
-					cpuUtilizationUser = Double.parseDouble(lineSplit[0]);					
-					cpuUtilizationUserSpace.setOperation("read+write");
-					cpuUtilizationUserSpace.setTimestamp(timestamp);
-					cpuUtilizationUserSpace.setValue(cpuUtilizationUser);
-					cpuUtilizationUserSpace.setSource("iostat");
-					cpuUtilizationUserSpace.setOperationMetric(Metric.CPU_UTIL_USER);
-					results.add(cpuUtilizationUserSpace);
-					
-					DependentVariablesValueSingle cpuUtilizationNiceUser = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double cpuUtilizationNice = 0;	
-					cpuUtilizationNice = Double.parseDouble(lineSplit[1]);					
-					cpuUtilizationNiceUser.setOperation("read+write");
-					cpuUtilizationNiceUser.setTimestamp(timestamp);
-					cpuUtilizationNiceUser.setValue(cpuUtilizationNice);
-					cpuUtilizationNiceUser.setSource("iostat");
-					cpuUtilizationNiceUser.setOperationMetric(Metric.CPU_UTIL_NICE);
-					results.add(cpuUtilizationNiceUser);
-					
-					DependentVariablesValueSingle cpuUtilizationSystemSpace = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double cpuUtilizationSystem = 0;	
-					cpuUtilizationSystem = Double.parseDouble(lineSplit[2]);					
-					cpuUtilizationSystemSpace.setOperation("read+write");
-					cpuUtilizationSystemSpace.setTimestamp(timestamp);
-					cpuUtilizationSystemSpace.setValue(cpuUtilizationSystem);
-					cpuUtilizationSystemSpace.setSource("iostat");
-					cpuUtilizationSystemSpace.setOperationMetric(Metric.CPU_UTIL_SYSTEM);
-					results.add(cpuUtilizationSystemSpace);
-					
-					DependentVariablesValueSingle cpuIowaitTime = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double cpuIowait = 0;	
-					cpuIowait = Double.parseDouble(lineSplit[3]);					
-					cpuIowaitTime.setOperation("read+write");
-					cpuIowaitTime.setTimestamp(timestamp);
-					cpuIowaitTime.setValue(cpuIowait);
-					cpuIowaitTime.setSource("iostat");
-					cpuIowaitTime.setOperationMetric(Metric.CPU_IOWAIT);
-					results.add(cpuIowaitTime);
-					
-					DependentVariablesValueSingle cpuStealTime = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double cpuSteal = 0;	
-					cpuSteal = Double.parseDouble(lineSplit[4]);					
-					cpuStealTime.setOperation("read+write");
-					cpuStealTime.setTimestamp(timestamp);
-					cpuStealTime.setValue(cpuSteal);
-					cpuStealTime.setSource("iostat");
-					cpuStealTime.setOperationMetric(Metric.CPU_STEAL);
-					results.add(cpuStealTime);
-					
-					DependentVariablesValueSingle cpuIdleTime = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-					double cpuIdle = 0;	
-					cpuIdle = Double.parseDouble(lineSplit[5]);					
-					cpuIdleTime.setOperation("read+write");
-					cpuIdleTime.setTimestamp(timestamp);
-					cpuIdleTime.setValue(cpuIdle);
-					cpuIdleTime.setSource("iostat");
-					cpuIdleTime.setOperationMetric(Metric.CPU_IDLE);
-					results.add(cpuIdleTime);
-					
-				}
-				else
-				{
-					lineCount++;
-					continue while1;
-				}
+			//  Compute the number of read and write requests per second
+			samples.add(opsRead, timestamp, reads / seconds);
+			samples.add(opsWrite, timestamp, writes / seconds);
 
+			//  Compute the average read and write request size in kilobyte,
+			//  a sector has 512 bytes
+			if (reads > 0)
+			{
+				samples.add(sizeRead, timestamp, delta(prev, cur, SECTORS_READ) / 2 / reads);
 			}
-			if (out != null)
+			if (writes > 0)
 			{
-				out.flush();
-				out.close();
+				samples.add(sizeWrite, timestamp, delta(prev, cur, SECTORS_WRITTEN) / 2 / writes);
 			}
-			
-			return results;
-		} catch (IOException e)
+
+			//  The average request size in sectors (avgrq-sz of iostat) per
+			//  request per second, as computed from the iostat reports before
+			if (requests > 0)
+			{
+				double avgReqSize = (delta(prev, cur, SECTORS_READ) + delta(prev, cur, SECTORS_WRITTEN)) / requests;
+				samples.add(sizeAll, timestamp, avgReqSize / (requests / seconds));
+			} else
+			{
+				samples.add(sizeAll, timestamp, 0.0);
+			}
+
+			//  Compute the average queue length of the requests
+			samples.add(queueDepth, timestamp, delta(prev, cur, WEIGHTED_MS_IO) / (seconds * 1000));
+
+			//  Compute the average response and service time in milliseconds
+			samples.add(responseTime, timestamp, requests > 0 ? (delta(prev, cur, MS_READING) + delta(prev, cur, MS_WRITING)) / requests : 0.0);
+			samples.add(serviceTime, timestamp, requests > 0 ? delta(prev, cur, MS_IO) / requests : 0.0);
+		}
+	}
+
+	/**
+	 * Computes the CPU utilization in percent between successive samples of
+	 * the cpu probe. The timestamps are relative to the first sample.
+	 */
+	public static void addCpuSamples(List<AgentSample> cpu, SampleBuffer samples)
+	{
+		addCpuSamples(cpu, cpu.isEmpty() ? 0 : cpu.get(0).getMicros(), samples);
+	}
+
+	/**
+	 * Computes the CPU utilization in percent between successive samples of
+	 * the cpu probe. Like iostat the system time includes the time spent for
+	 * interrupts. The timestamps are relative to the origin in the scale of
+	 * the buffer.
+	 */
+	public static void addCpuSamples(List<AgentSample> cpu, long originMicros, SampleBuffer samples)
+	{
+		int cpuUser = samples.channel("read+write", Metric.CPU_UTIL_USER, SOURCE);
+		int cpuNice = samples.channel("read+write", Metric.CPU_UTIL_NICE, SOURCE);
+		int cpuSystem = samples.channel("read+write", Metric.CPU_UTIL_SYSTEM, SOURCE);
+		int cpuIowait = samples.channel("read+write", Metric.CPU_IOWAIT, SOURCE);
+		int cpuSteal = samples.channel("read+write", Metric.CPU_STEAL, SOURCE);
+		int cpuIdle = samples.channel("read+write", Metric.CPU_IDLE, SOURCE);
+
+		for (int i = 1; i < cpu.size(); ++i)
 		{
-			throw new BenchmarkException(e);
+			AgentSample prev = cpu.get(i - 1);
+			AgentSample cur = cpu.get(i);
+			double total = 0;
+			for (int v = 0; v < cur.getValueCount(); ++v)
+			{
+				total += delta(prev, cur, v);
+			}
+			if (total <= 0)
+			{
+				continue;
+			}
+			long timestamp = toTimestamp(cur.getMicros(), originMicros, samples.getTimestampScale());
+
+			// user, nice, system, idle, iowait, irq, softirq, steal
+			samples.add(cpuUser, timestamp, 100 * delta(prev, cur, 0) / total);
+			samples.add(cpuNice, timestamp, 100 * delta(prev, cur, 1) / total);
+			samples.add(cpuSystem, timestamp, 100 * (delta(prev, cur, 2) + delta(prev, cur, 5) + delta(prev, cur, 6)) / total);
+			samples.add(cpuIowait, timestamp, 100 * delta(prev, cur, 4) / total);
+			samples.add(cpuSteal, timestamp, 100 * delta(prev, cur, 7) / total);
+			samples.add(cpuIdle, timestamp, 100 * delta(prev, cur, 3) / total);
 		}
-		
 	}
-	
+
+	private static double delta(AgentSample prev, AgentSample cur, int field)
+	{
+		return cur.getValue(field) - prev.getValue(field);
+	}
 }
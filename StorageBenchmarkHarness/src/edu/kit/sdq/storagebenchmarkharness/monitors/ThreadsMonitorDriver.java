@@ -1,49 +1,34 @@
 package edu.kit.sdq.storagebenchmarkharness.monitors;
 
-import java.io.BufferedOutputStream;
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.nio.charset.Charset;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Iterator;
 import java.util.List;
 
-import com.google.common.collect.Lists;
-
+import edu.kit.sdq.storagebenchmarkharness.ClockSync;
 import edu.kit.sdq.storagebenchmarkharness.Logger;
-import edu.kit.sdq.storagebenchmarkharness.MonitorDriver;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
-import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
-import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfThreadsMonitor;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentProbe;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentSample;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.BenchmarkException;
 
 /**
- * Monitors the number of running threads using bash commands. Results are
- * discrete values and averaged mean values
+ * Monitors the number of running threads of the benchmark processes using the
+ * monitor agent. Results are discrete values and averaged mean values
  * 
  * @author Axel Busch
  * 
  */
-public class ThreadsMonitorDriver extends MonitorDriver<IndependentVariablesOfThreadsMonitor, DependentVariables>
+public class ThreadsMonitorDriver extends AgentMonitorDriver<IndependentVariablesOfThreadsMonitor>
 {
 	private static final Logger LOGGER = Logger.getLogger(ThreadsMonitorDriver.class);
 
-	private RemoteProcess monitor;
-
-	private InputStreamReader is;
+	private AgentProbe probe;
 
 	public ThreadsMonitorDriver(RemoteConnection con, String rawFileSaveDir)
 	{
@@ -52,22 +37,11 @@ public class ThreadsMonitorDriver extends MonitorDriver<IndependentVariablesOfTh
 
 	@Override
 	public void startMonitoring(IndependentVariablesOfSut sutVars, IndependentVariablesOfThreadsMonitor monitorVars)
-	{		
+	{
 		LOGGER.debug("Executing Threads Monitoring...");
-		String command = null;
-		command = "while true; do echo \"$(date '+%Y-%m-%d-%H:%M:%S') $(ps aux -L | grep " + monitorVars.getBenchmarkPrefix()
-				+ " | grep process | grep -v grep | wc -l)\"; sleep " + monitorVars.getInterval() + "; done";
-		this.monitor = connection.execCmd(command, true);
-
-		try
-		{
-			is = new InputStreamReader(monitor.getInputStream());
-		} catch (IOException e)
-		{
-			monitor.finish();
-			LOGGER.error("Exception while stopping monitor", e);
-			throw new BenchmarkException("Monitor failed", e);
-		}
+		// Threads of the processes whose command line contains the prefix and
+		// 'process'
+		probe = addProbe("threads", monitorVars.getBenchmarkPrefix() + " process", monitorVars.getInterval(), monitorVars.getIntervalMillis());
 	}
 
 	@Override
@@ -80,106 +54,52 @@ public class ThreadsMonitorDriver extends MonitorDriver<IndependentVariablesOfTh
 		result.setBenchmarkPrefix(benchmarkPrefix);
 		try
 		{
-			// stop monitor process
-			this.monitor.stopProcess();
-			File logFile = getFile("threadsMonitor." + repeatNr + ".log");
-			List<DependentVariablesValueSingle> values = parseMonitorResultsLogAndSave(is, logFile);
-			result.getValues().addAll(values);
+			removeProbes();
+			List<AgentSample> agentSamples = getSamples(probe, getFile("threadsMonitor." + repeatNr + ".log"));
+			SampleBuffer samples = new SampleBuffer(ClockSync.TIMELINE_SCALE);
+			int channel = addSamples(agentSamples, 0, samples);
+			SampleBuffer.attach(result, samples);
 
 			// calculate avg thread num
 
-			result.getValues().add(calculateAvgThreadNum(values));
+			result.getValues().add(calculateAvgThreadNum(samples, channel));
+			addClockError(result, "threadsMonitor");
 		} catch (Exception e)
 		{
-			this.monitor.finish();
 			LOGGER.error("Exception while stopping monitor", e);
 			throw new BenchmarkException("Monitor failed", e);
 		}
 
-		this.monitor.finish();
-
 		return result;
 	}
 
-	public static List<DependentVariablesValueSingle> parseMonitorResultsLogAndSave(InputStreamReader is, File outputFile)
+	/**
+	 * Adds the samples of the threads probe to the sample buffer. The
+	 * timestamps are relative to the origin in the scale of the buffer.
+	 * 
+	 * @return The channel of the thread numbers in the buffer
+	 */
+	public static int addSamples(List<AgentSample> agentSamples, long originMicros, SampleBuffer samples)
 	{
-		String line = null;
-		SimpleDateFormat ft = new SimpleDateFormat("yyyy-mm-dd-hh:mm:ss");
-		BufferedReader reader = new BufferedReader(is);
-		List<DependentVariablesValueSingle> results = Lists.newArrayList();
-		try
-		{
-			OutputStream out = null;
-			if (outputFile != null)
-			{
-				out = new BufferedOutputStream(new FileOutputStream(outputFile));
-			}
-
-			String lastTimestamp = null;
-			while1: while ((line = reader.readLine()) != null)
-			{
-				if (out != null)
-				{
-					out.write(line.getBytes(Charset.defaultCharset()));
-					out.write('\n');
-				}
-
-				String[] lineSplit = line.trim().split(" ");
-				DependentVariablesValueSingle val = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
-				val.setOperation("");
-				val.setSource("threadsMonitor");
-				val.setOperationMetric(Metric.THREADS);
-				if (results.size() < 1)
-				{
-					val.setTimestamp("0");
-					lastTimestamp = lineSplit[0];
-				} else
-				{
-					String time1 = lastTimestamp;
-					String time2 = lineSplit[0];
-					Calendar c1 = Calendar.getInstance();
-					Calendar c2 = Calendar.getInstance();
-					try
-					{
-						c1.setTime(ft.parse(time1));
-						c2.setTime(ft.parse(time2));
-					} catch (ParseException e)
-					{
-						continue while1;
-					}
-					val.setTimestamp("" + ((c2.getTimeInMillis() - c1.getTimeInMillis()) / 1000));
-				}
-
-				if (lineSplit.length > 1)
-				{
-					double singleVal = Double.parseDouble(lineSplit[1]);
-					if (singleVal > 0)
-						--singleVal;
-					val.setValue(singleVal);
-					results.add(val);
-				}
-			}
-			if (out != null)
-			{
-				out.flush();
-				out.close();
-			}
-			
-			return results;
-		} catch (IOException e)
+		int channel = samples.channel("", Metric.THREADS, "threadsMonitor");
+		for (int i = 0; i < agentSamples.size(); ++i)
 		{
-			throw new BenchmarkException(e);
+			samples.add(channel, toTimestamp(agentSamples.get(i).getMicros(), originMicros, samples.getTimestampScale()), agentSamples.get(i)
+					.getValue(0));
 		}
+		return channel;
 	}
 
-	public static DependentVariablesValueComposite calculateAvgThreadNum(List<DependentVariablesValueSingle> values)
+	public static DependentVariablesValueComposite calculateAvgThreadNum(SampleBuffer samples, int channel)
 	{
 		double resultVal = 0;
 		int count = 0;
-		for (DependentVariablesValueSingle elem : values)
+		for (int i = 0; i < samples.size(); ++i)
 		{
-			resultVal += elem.getValue();
-			if (elem.getValue() > 0)
+			if (samples.getChannel(i) != channel)
+				continue;
+			resultVal += samples.getValue(i);
+			if (samples.getValue(i) > 0)
 				++count;
 		}
 		DependentVariablesValueComposite result = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
@@ -0,0 +1,127 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative long values which can be updated by many
+ * threads without locking. The values are counted in logarithmic buckets,
+ * four per power of two, thus quantiles are estimated with a relative error
+ * of at most 25%. Count, sum and maximum are exact.
+ *
+ * Unlike {@code QuantileSketch} the buckets are fixed, thus the histogram
+ * suits instrumentation (e.g. latencies in microseconds) rather than results.
+ */
+public final class ConcurrentHistogram
+{
+	// Sub-buckets per power of two, as bits
+	private static final int SUB_BITS = 2;
+	private static final int BUCKETS = (64 - SUB_BITS) << SUB_BITS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Adds a value, negative values are counted as zero.
+	 */
+	public void add(long value)
+	{
+		long v = Math.max(value, 0);
+		counts.incrementAndGet(index(v));
+		count.incrementAndGet();
+		sum.addAndGet(v);
+
+		long current;
+		while (v > (current = max.get()))
+		{
+			if (max.compareAndSet(current, v))
+			{
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Estimates a quantile by the upper bound of the bucket containing it.
+	 *
+	 * @param q
+	 *            The quantile between 0 and 1, e.g. 0.95
+	 * @return The estimated value, 0 if the histogram is empty
+	 */
+	public long quantile(double q)
+	{
+		long total = count.get();
+		if (total == 0)
+		{
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(q * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i)
+		{
+			seen += counts.get(i);
+			if (seen >= rank)
+			{
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	public long getSum()
+	{
+		return sum.get();
+	}
+
+	public long getMax()
+	{
+		return max.get();
+	}
+
+	/**
+	 * @return The mean of the values, 0 if the histogram is empty
+	 */
+	public double getMean()
+	{
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	static int index(long value)
+	{
+		if (value < (1 << SUB_BITS))
+		{
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+		return ((exponent - SUB_BITS + 1) << SUB_BITS) + sub;
+	}
+
+	static long upperBound(int index)
+	{
+		if (index < (1 << SUB_BITS))
+		{
+			return index;
+		}
+		int exponent = (index >>> SUB_BITS) + SUB_BITS - 1;
+		long sub = index & ((1 << SUB_BITS) - 1);
+		// The last value whose sub-bucket is sub, the last bucket ends at the
+		// largest long
+		long bound = (((1L << SUB_BITS) + sub + 1) << (exponent - SUB_BITS)) - 1;
+		return bound < 0 ? Long.MAX_VALUE : bound;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ConcurrentHistogram [count=" + getCount() + ", mean=" + getMean() + ", p95=" + quantile(0.95) + ", max=" + getMax() + "]";
+	}
+}
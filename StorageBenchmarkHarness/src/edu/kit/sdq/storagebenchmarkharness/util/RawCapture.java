@@ -0,0 +1,120 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Captures the raw output of a benchmark or monitor while it is parsed. Every
+ * chunk of bytes read by the parser (usually through an
+ * {@code InputStreamReader}) is written from the same buffer to the raw file
+ * through a file channel. Thus the output is decoded only once, by the
+ * parser, and the raw file is byte-identical to the output of the SUT.
+ *
+ * Skipped bytes are read and captured as well. The raw file is closed when
+ * the stream is closed.
+ */
+public class RawCapture extends FilterInputStream
+{
+	private static final int DRAIN_BUFFER_SIZE = 8192;
+
+	private final FileChannel raw;
+
+	/**
+	 * @param in
+	 *            The output to capture
+	 * @param rawFile
+	 *            The file the raw output is written to, it is overwritten
+	 */
+	public RawCapture(InputStream in, File rawFile) throws IOException
+	{
+		super(in);
+		this.raw = new FileOutputStream(rawFile).getChannel();
+	}
+
+	/**
+	 * Captures the output if a raw file is given.
+	 *
+	 * @param rawFile
+	 *            The file the raw output is written to, null if it is not
+	 *            saved
+	 * @return The stream to parse
+	 */
+	public static InputStream capture(InputStream in, File rawFile) throws IOException
+	{
+		return rawFile == null ? in : new RawCapture(in, rawFile);
+	}
+
+	/**
+	 * Reads the rest of a stream, e.g. the output following the part a
+	 * parser needs. The bytes are captured if the stream is captured.
+	 */
+	public static void drain(InputStream in) throws IOException
+	{
+		byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+		while (in.read(buffer) >= 0)
+		{
+			// Only captured
+		}
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int b = super.read();
+		if (b >= 0)
+		{
+			write(ByteBuffer.wrap(new byte[] { (byte) b }));
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		int n = super.read(b, off, len);
+		if (n > 0)
+		{
+			write(ByteBuffer.wrap(b, off, n));
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		byte[] buffer = new byte[(int) Math.min(n, DRAIN_BUFFER_SIZE)];
+		int read = read(buffer, 0, buffer.length);
+		return Math.max(read, 0);
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			raw.close();
+		} finally
+		{
+			super.close();
+		}
+	}
+
+	private void write(ByteBuffer bytes) throws IOException
+	{
+		while (bytes.hasRemaining())
+		{
+			raw.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Detects when a series of observations (e.g. the throughput per interval)
+ * has reached a steady state, using the MSER-5 rule: the observations are
+ * averaged in batches of five (or the configured size), and the warm-up is
+ * the number of leading batches d which minimizes the marginal standard error
+ * of the remaining batch means
+ *
+ * <pre>
+ * MSER(d) = sum((Z_j - mean(Z_d+1..Z_k))^2, j = d+1..k) / (k - d)^2
+ * </pre>
+ *
+ * The truncation is only trusted if it lies in the first half of the
+ * batches, otherwise the series has not settled yet. The series is steady if
+ * the observations after the truncation span at least the window.
+ *
+ * The observations are added as they arrive, every evaluation uses all
+ * observations so far. This class is thread-safe.
+ */
+public final class SteadyStateDetector
+{
+	/** The batch size of MSER-5 */
+	public static final int DEFAULT_BATCH_SIZE = 5;
+
+	// At least this many batches are needed for a meaningful truncation
+	private static final int MIN_BATCHES = 4;
+
+	private final int batchSize;
+	private final long windowMicros;
+
+	// Guarded by this
+	private final List<Double> batchMeans = Lists.newArrayList();
+	private final List<Long> batchStarts = Lists.newArrayList();
+	private double openSum;
+	private int openCount;
+	private long openStart;
+	private long lastMicros = Long.MIN_VALUE;
+
+	/**
+	 * @param batchSize
+	 *            The number of observations per batch
+	 * @param windowMicros
+	 *            The time in us the observations after the warm-up must span
+	 */
+	public SteadyStateDetector(int batchSize, long windowMicros)
+	{
+		if (batchSize < 1 || windowMicros < 0)
+		{
+			throw new IllegalArgumentException("batchSize must be positive and windowMicros must not be negative");
+		}
+		this.batchSize = batchSize;
+		this.windowMicros = windowMicros;
+	}
+
+	/**
+	 * Adds an observation. Observations which are not later than the last
+	 * one are ignored.
+	 *
+	 * @param micros
+	 *            The time of the observation in us
+	 */
+	public synchronized void add(long micros, double value)
+	{
+		if (micros <= lastMicros)
+		{
+			return;
+		}
+		lastMicros = micros;
+		if (openCount == 0)
+		{
+			openStart = micros;
+		}
+		openSum += value;
+		if (++openCount == batchSize)
+		{
+			batchMeans.add(openSum / batchSize);
+			batchStarts.add(openStart);
+			openSum = 0;
+			openCount = 0;
+		}
+	}
+
+	/**
+	 * @return The number of complete batches
+	 */
+	public synchronized int getBatchCount()
+	{
+		return batchMeans.size();
+	}
+
+	/**
+	 * @return The number of leading batches which are the warm-up, -1 if the
+	 *         truncation point is not in the first half of the batches or
+	 *         there are too few batches
+	 */
+	public synchronized int getTruncation()
+	{
+		int k = batchMeans.size();
+		if (k < MIN_BATCHES)
+		{
+			return -1;
+		}
+
+		// Suffix sums, thus every MSER(d) is computed in constant time
+		double sum = 0;
+		double squares = 0;
+		double best = Double.POSITIVE_INFINITY;
+		int truncation = -1;
+		for (int d = k - 1; d >= 0; --d)
+		{
+			double z = batchMeans.get(d);
+			sum += z;
+			squares += z * z;
+			int n = k - d;
+			if (n < 2)
+			{
+				continue;
+			}
+			double deviations = Math.max(0, squares - sum * sum / n);
+			double mser = deviations / ((double) n * n);
+			// On ties the earlier truncation wins, it keeps more data
+			if (mser <= best)
+			{
+				best = mser;
+				truncation = d;
+			}
+		}
+		return truncation <= k / 2 ? truncation : -1;
+	}
+
+	/**
+	 * @return True if the observations after the warm-up span the window
+	 */
+	public synchronized boolean isSteady()
+	{
+		return getConvergenceMicros() >= 0;
+	}
+
+	/**
+	 * @return The time of the first observation after the warm-up, -1 if the
+	 *         series is not steady
+	 */
+	public synchronized long getConvergenceMicros()
+	{
+		int truncation = getTruncation();
+		if (truncation < 0)
+		{
+			return -1;
+		}
+		long start = batchStarts.get(truncation);
+		return lastMicros - start >= windowMicros ? start : -1;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "SteadyStateDetector [batchSize=" + batchSize + ", windowMicros=" + windowMicros + ", batches=" + batchMeans.size() + "]";
+	}
+}
@@ -0,0 +1,167 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+/**
+ * The Student's t-distribution, used for the confidence intervals of the
+ * mean of a few repeats. The distribution function is computed from the
+ * regularized incomplete beta function, the quantiles by bisection, thus
+ * both are accurate to about 1e-10.
+ */
+public final class StudentT
+{
+	private static final int MAX_ITERATIONS = 300;
+	private static final double EPSILON = 1e-14;
+	private static final double TINY = 1e-300;
+
+	private static final double[] LANCZOS = { 0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+			-176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716e-6, 1.5056327351493116e-7 };
+
+	private StudentT()
+	{
+	}
+
+	/**
+	 * @return The quantile of the t-distribution for the two-sided
+	 *         confidence interval of the mean, e.g. 2.262 for a confidence
+	 *         level of 0.95 and 10 values
+	 * @param confidenceLevel
+	 *            The confidence level, between 0 and 1
+	 * @param degreesOfFreedom
+	 *            The number of values minus one, at least 1
+	 */
+	public static double criticalValue(double confidenceLevel, int degreesOfFreedom)
+	{
+		if (confidenceLevel <= 0 || confidenceLevel >= 1)
+		{
+			throw new IllegalArgumentException("confidenceLevel must be between 0 and 1");
+		}
+		return quantile((1 + confidenceLevel) / 2, degreesOfFreedom);
+	}
+
+	/**
+	 * @return The value t with {@code P(T <= t) = p}
+	 * @param p
+	 *            The probability, between 0 and 1
+	 * @param degreesOfFreedom
+	 *            At least 1
+	 */
+	public static double quantile(double p, int degreesOfFreedom)
+	{
+		if (p <= 0 || p >= 1)
+		{
+			throw new IllegalArgumentException("p must be between 0 and 1");
+		}
+		if (p < 0.5)
+		{
+			return -quantile(1 - p, degreesOfFreedom);
+		}
+
+		double low = 0;
+		double high = 1;
+		while (cdf(high, degreesOfFreedom) < p)
+		{
+			low = high;
+			high *= 2;
+		}
+		for (int i = 0; i < MAX_ITERATIONS && high - low > EPSILON * high; ++i)
+		{
+			double mid = (low + high) / 2;
+			if (cdf(mid, degreesOfFreedom) < p)
+			{
+				low = mid;
+			} else
+			{
+				high = mid;
+			}
+		}
+		return (low + high) / 2;
+	}
+
+	/**
+	 * @return {@code P(T <= t)}
+	 * @param degreesOfFreedom
+	 *            At least 1
+	 */
+	public static double cdf(double t, int degreesOfFreedom)
+	{
+		if (degreesOfFreedom < 1)
+		{
+			throw new IllegalArgumentException("degreesOfFreedom must be at least 1");
+		}
+		double df = degreesOfFreedom;
+		double tail = 0.5 * regularizedBeta(df / (df + t * t), df / 2, 0.5);
+		return t >= 0 ? 1 - tail : tail;
+	}
+
+	/**
+	 * The regularized incomplete beta function I_x(a, b), evaluated by its
+	 * continued fraction (Lentz's method).
+	 */
+	static double regularizedBeta(double x, double a, double b)
+	{
+		if (x <= 0)
+		{
+			return 0;
+		}
+		if (x >= 1)
+		{
+			return 1;
+		}
+		// The continued fraction converges fast only below this point
+		if (x > (a + 1) / (a + b + 2))
+		{
+			return 1 - regularizedBeta(1 - x, b, a);
+		}
+
+		double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b) + a * Math.log(x) + b * Math.log(1 - x)) / a;
+
+		double c = 1;
+		double d = 1 - (a + b) * x / (a + 1);
+		d = 1 / (Math.abs(d) < TINY ? TINY : d);
+		double f = d;
+		for (int m = 1; m <= MAX_ITERATIONS; ++m)
+		{
+			// Even step
+			double numerator = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+			d = 1 + numerator * d;
+			d = 1 / (Math.abs(d) < TINY ? TINY : d);
+			c = 1 + numerator / c;
+			c = Math.abs(c) < TINY ? TINY : c;
+			f *= c * d;
+
+			// Odd step
+			numerator = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+			d = 1 + numerator * d;
+			d = 1 / (Math.abs(d) < TINY ? TINY : d);
+			c = 1 + numerator / c;
+			c = Math.abs(c) < TINY ? TINY : c;
+			double delta = c * d;
+			f *= delta;
+			if (Math.abs(delta - 1) < EPSILON)
+			{
+				break;
+			}
+		}
+		return front * f;
+	}
+
+	/**
+	 * The logarithm of the gamma function for positive values (Lanczos
+	 * approximation).
+	 */
+	static double logGamma(double x)
+	{
+		if (x < 0.5)
+		{
+			// Reflection formula
+			return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+		}
+		x -= 1;
+		double sum = LANCZOS[0];
+		double t = x + 7.5;
+		for (int i = 1; i < LANCZOS.length; ++i)
+		{
+			sum += LANCZOS[i] / (x + i);
+		}
+		return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+	}
+}
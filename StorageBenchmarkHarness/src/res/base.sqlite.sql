@@ -1,9 +1,17 @@
 CREATE TABLE IF NOT EXISTS configurationRuns(crId INTEGER PRIMARY KEY, crIdentifier VARCHAR NOT NULL, crSynchronized BOOLEAN, crTime DATETIME NOT NULL, crFinished BOOLEAN);
-CREATE TABLE IF NOT EXISTS runs(runId INTEGER PRIMARY KEY, crId INTEGER NOT NULL, repeatNo INTEGER NOT NULL, expNo INTEGER NOT NULL, hostId VARCHAR NOT NULL, benchmarkId VARCHAR NOT NULL, expUid VARCHAR NOT NULL);
+CREATE TABLE IF NOT EXISTS runs(runId INTEGER PRIMARY KEY, crId INTEGER NOT NULL, repeatNo INTEGER NOT NULL, expNo INTEGER NOT NULL, hostId VARCHAR NOT NULL, benchmarkId VARCHAR NOT NULL, expUid VARCHAR NOT NULL, runCompleted BOOLEAN NOT NULL DEFAULT 1);
+CREATE TABLE IF NOT EXISTS runJournal(crIdentifier VARCHAR NOT NULL, expUid VARCHAR NOT NULL, hostId VARCHAR NOT NULL, repeatNo INTEGER NOT NULL, runId INTEGER NOT NULL, crId INTEGER NOT NULL, completedTime DATETIME NOT NULL, PRIMARY KEY (crIdentifier, expUid, hostId, repeatNo));
+CREATE TABLE IF NOT EXISTS repetitions(crId INTEGER NOT NULL, expNo INTEGER NOT NULL, expUid VARCHAR NOT NULL, hostId VARCHAR NOT NULL, repeatCount INTEGER NOT NULL, confidenceLevel DOUBLE NOT NULL, relativeHalfWidth DOUBLE, finished BOOLEAN NOT NULL, PRIMARY KEY (crId, expUid, hostId));
+CREATE TABLE IF NOT EXISTS repetitionIntervals(crId INTEGER NOT NULL, expUid VARCHAR NOT NULL, hostId VARCHAR NOT NULL, operation VARCHAR, opMetric INTEGER NOT NULL, source VARCHAR, sampleCount INTEGER NOT NULL, meanValue DOUBLE, halfWidth DOUBLE);
+CREATE TABLE IF NOT EXISTS repetitionValues(crIdentifier VARCHAR NOT NULL, expUid VARCHAR NOT NULL, hostId VARCHAR NOT NULL, repeatNo INTEGER NOT NULL, operation VARCHAR, opMetric INTEGER NOT NULL, source VARCHAR, opValue DOUBLE NOT NULL);
 
 CREATE INDEX IF NOT EXISTS runsCrId ON runs(crId);
 CREATE INDEX IF NOT EXISTS runRepeatNo ON runs(repeatNo);
 CREATE INDEX IF NOT EXISTS runsExpNo ON runs(expNo);
 CREATE INDEX IF NOT EXISTS runsHostId ON runs(hostId);
+CREATE INDEX IF NOT EXISTS runsCrIdExpNo ON runs(crId, expNo, repeatNo, hostId);
+CREATE INDEX IF NOT EXISTS configurationRunsIdentifier ON configurationRuns(crIdentifier);
+CREATE INDEX IF NOT EXISTS repetitionIntervalsExp ON repetitionIntervals(crId, expUid, hostId);
+CREATE INDEX IF NOT EXISTS repetitionValuesRepeat ON repetitionValues(crIdentifier, expUid, hostId, repeatNo);
 
 
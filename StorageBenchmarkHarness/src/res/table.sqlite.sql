@@ -20,4 +20,42 @@ CREATE TABLE IF NOT EXISTS {{TEMPLATE}}DependentVarsValues(
 	FOREIGN KEY(dvId) REFERENCES {{TEMPLATE}}DependentVars(dvId)
 );
 
-CREATE INDEX IF NOT EXISTS {{TEMPLATE}}DependentVarsValuesRunIdIdx ON {{TEMPLATE}}DependentVarsValues(valueId);
\ No newline at end of file
+-- The former index on the primary key only slowed down the inserts
+DROP INDEX IF EXISTS {{TEMPLATE}}DependentVarsValuesRunIdIdx;
+-- Index for the lookups by run, metric and operation, its entries end with the valueId thus they are in the order the values were stored
+CREATE INDEX IF NOT EXISTS {{TEMPLATE}}DependentVarsValuesMetricIdx ON {{TEMPLATE}}DependentVarsValues(dvId, opMetric, operation);
+
+CREATE TABLE IF NOT EXISTS {{TEMPLATE}}DependentVarsSeries(
+	seriesId INTEGER PRIMARY KEY,
+	dvId INTEGER NOT NULL,
+	operation VARCHAR NOT NULL,
+	opMetric INTEGER NOT NULL,
+	source VARCHAR,
+	sampleCount INTEGER NOT NULL,
+	tsScale INTEGER NOT NULL,
+	valueEncoding INTEGER NOT NULL,
+	timestamps BLOB NOT NULL,
+	opValues BLOB NOT NULL,
+	FOREIGN KEY(dvId) REFERENCES {{TEMPLATE}}DependentVars(dvId)
+);
+
+CREATE INDEX IF NOT EXISTS {{TEMPLATE}}DependentVarsSeriesDvIdIdx ON {{TEMPLATE}}DependentVarsSeries(dvId);
+
+CREATE TABLE IF NOT EXISTS {{TEMPLATE}}DependentVarsSummary(
+	summaryId INTEGER PRIMARY KEY,
+	dvId INTEGER NOT NULL,
+	operation VARCHAR NOT NULL,
+	opMetric INTEGER NOT NULL,
+	source VARCHAR,
+	sampleCount INTEGER NOT NULL,
+	meanValue REAL,
+	minValue REAL,
+	p50 REAL,
+	p95 REAL,
+	p99 REAL,
+	maxValue REAL,
+	sketch BLOB NOT NULL,
+	FOREIGN KEY(dvId) REFERENCES {{TEMPLATE}}DependentVars(dvId)
+);
+
+CREATE INDEX IF NOT EXISTS {{TEMPLATE}}DependentVarsSummaryDvIdIdx ON {{TEMPLATE}}DependentVarsSummary(dvId);
@@ -0,0 +1,106 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class ChannelPipeTest
+{
+	@Test
+	public void testGrowAndClose() throws IOException
+	{
+		final AtomicInteger closed = new AtomicInteger();
+		ChannelPipe pipe = new ChannelPipe(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				closed.incrementAndGet();
+			}
+		});
+
+		// More than the initial capacity, the writer must never block
+		byte[] data = new byte[100000];
+		for (int i = 0; i < data.length; i++)
+		{
+			data[i] = (byte) i;
+		}
+		OutputStream out = pipe.getOutputStream();
+		out.write(data, 0, 10);
+		assertEquals(10, pipe.getInputStream().read(new byte[10]));
+		out.write(data, 10, data.length - 10);
+		out.close();
+		out.close();
+		assertEquals(1, closed.get());
+
+		byte[] rest = ByteStreams.toByteArray(pipe.getInputStream());
+		assertEquals(data.length - 10, rest.length);
+		assertEquals(data[10], rest[0]);
+		assertEquals(data[data.length - 1], rest[rest.length - 1]);
+	}
+
+	@Test
+	public void testReaderWakesUp() throws Exception
+	{
+		ChannelPipe pipe = new ChannelPipe();
+		final OutputStream out = pipe.getOutputStream();
+
+		java.lang.Thread writer = new java.lang.Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					java.lang.Thread.sleep(100);
+					out.write(new byte[] { 1, 2, 3 });
+					out.close();
+				} catch (Exception e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		writer.start();
+
+		InputStream in = pipe.getInputStream();
+		assertArrayEquals(new byte[] { 1, 2, 3 }, ByteStreams.toByteArray(in));
+		assertEquals(-1, in.read());
+		writer.join();
+	}
+
+	@Test
+	public void testFirstWrite() throws Exception
+	{
+		ChannelPipe pipe = new ChannelPipe();
+		OutputStream out = pipe.getOutputStream();
+		InputStream in = pipe.getInputStream();
+		assertEquals(0, pipe.getFirstWriteNanos());
+
+		// The time of the arrival, not of the read
+		long before = System.nanoTime();
+		out.write(new byte[] { 1, 2 });
+		long first = pipe.getFirstWriteNanos();
+		assertTrue(first >= before);
+		java.lang.Thread.sleep(10);
+		in.read(new byte[2]);
+		out.write(3);
+		assertEquals(first, pipe.getFirstWriteNanos());
+
+		// A consumed header is forgotten, buffered data stays
+		pipe.resetFirstWrite();
+		assertTrue(pipe.getFirstWriteNanos() > first);
+		in.read();
+		pipe.resetFirstWrite();
+		assertEquals(0, pipe.getFirstWriteNanos());
+	}
+}
@@ -0,0 +1,78 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ClockSyncTest
+{
+	// The controller timeline is 1000 s ahead of the clock of the SUT
+	private static final long OFFSET = 1000000000L;
+
+	/**
+	 * Adds an exchange whose reply is taken at the remote time with the given
+	 * delays on the way there and back.
+	 */
+	private static void exchange(ClockSync clock, long remote, double drift, long there, long back)
+	{
+		long controller = remote + OFFSET + Math.round(drift * remote);
+		clock.addExchange(controller - there, remote, controller + back);
+	}
+
+	@Test
+	public void testOffset()
+	{
+		ClockSync clock = new ClockSync();
+		assertFalse(clock.isSynchronized());
+
+		exchange(clock, 1000000, 0, 500, 500);
+		// Queued on the way back, thus the middle of the round trip is late
+		exchange(clock, 1020000, 0, 100, 20000);
+		exchange(clock, 1040000, 0, 150, 150);
+
+		assertTrue(clock.isSynchronized());
+		assertEquals(OFFSET, clock.getOffset());
+		assertEquals(0.0, clock.getDrift(), 0);
+		assertEquals(150, clock.getErrorBound());
+		assertEquals(OFFSET + 5000000, clock.toTimeline(5000000));
+	}
+
+	@Test
+	public void testDrift()
+	{
+		ClockSync clock = new ClockSync();
+		double drift = 2e-5;
+		for (long remote = 0; remote <= 60000000; remote += 5000000)
+		{
+			exchange(clock, remote, drift, 200, 200);
+		}
+
+		assertEquals(drift, clock.getDrift(), 1e-9);
+		assertEquals(OFFSET + 1200, clock.getOffset(), 2);
+		assertEquals(OFFSET + 120000000 + 2400, clock.toTimeline(120000000), 2);
+		assertTrue(clock.getErrorBound() >= 200 && clock.getErrorBound() < 210);
+	}
+
+	@Test
+	public void testNoDriftOverShortSpan()
+	{
+		ClockSync clock = new ClockSync();
+		exchange(clock, 0, 0, 100, 100);
+		exchange(clock, 1000000, 0, 100, 120);
+
+		assertEquals(0.0, clock.getDrift(), 0);
+		assertEquals(OFFSET, clock.getOffset());
+	}
+
+	@Test
+	public void testTimeline()
+	{
+		long before = System.currentTimeMillis() * 1000;
+		long now = ClockSync.nowMicros();
+		long after = System.currentTimeMillis() * 1000;
+		assertTrue(now >= before - 1000 && now <= after + 1000);
+		assertTrue(ClockSync.toTimelineMicros(System.nanoTime() + 1000000) > now);
+	}
+}
@@ -3,12 +3,16 @@ package edu.kit.sdq.storagebenchmarkharness;
 import static edu.kit.sdq.storagebenchmarkharness.TestUtils.assertClassEquals;
 import static edu.kit.sdq.storagebenchmarkharness.TestUtils.assertEObjectEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
+import com.google.common.collect.Maps;
+
 import edu.kit.sdq.storagebenchmarkharness.ExperimentSeriesHelper.DriverAndIndependentVars;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.FileSystem;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfBenchmark;
@@ -375,4 +379,29 @@ public class ExperimentSeriesHelperTest
 
 	}
 
+	@Test
+	// The identifiers only depend on the variables
+	public void testExpUidDeterministic()
+	{
+		List<DriverAndIndependentVars> exps = ExperimentSeriesHelper.getExperiments(getSeries1(false, true), null, null, null);
+		List<DriverAndIndependentVars> again = ExperimentSeriesHelper.getExperiments(getSeries1(false, true), null, null, null);
+
+		assertEquals(4, exps.size());
+		for (int i = 0; i < exps.size(); ++i)
+		{
+			assertEquals(exps.get(i).getExpUid(), again.get(i).getExpUid());
+			for (int j = 0; j < i; ++j)
+			{
+				assertFalse(exps.get(i).getExpUid().equals(exps.get(j).getExpUid()));
+			}
+		}
+
+		// Identical experiments of different series get distinct identifiers
+		Map<String, Integer> occurrences = Maps.newHashMap();
+		String first = ExperimentSeriesHelper.getExperiments(getSeries1(false, false), null, null, null, occurrences).get(0).getExpUid();
+		String second = ExperimentSeriesHelper.getExperiments(getSeries1(false, false), null, null, null, occurrences).get(0).getExpUid();
+		assertEquals(exps.get(0).getExpUid(), first);
+		assertFalse(first.equals(second));
+	}
+
 }
@@ -0,0 +1,124 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.ConfigurationFactory;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
+
+public class LocalRemoteConnectionTest
+{
+	private static RemoteConnection getLocalConnection()
+	{
+		SystemUnderTest host = ConfigurationFactory.eINSTANCE.createSystemUnderTest();
+		host.setIdentifier("local");
+		host.setIp("localhost");
+		host.setLocal(true);
+
+		RemoteConnection con = RemoteConnectionFactory.createConnection(host);
+		TestUtils.assertClassEquals(LocalRemoteConnection.class, con);
+		con.open();
+		return con;
+	}
+
+	@Test
+	public void testExec() throws IOException
+	{
+		RemoteConnection con = getLocalConnection();
+
+		RemoteProcess echo = con.execCmd("echo 'it works' && exit 3", false);
+		String out = CharStreams.toString(new InputStreamReader(echo.getInputStream()));
+		echo.waitFor();
+		echo.finish();
+
+		assertEquals("it works\n", out);
+		assertEquals(3, echo.getExitStatus());
+		assertTrue(echo.isClosed());
+		con.close();
+	}
+
+	@Test
+	public void testUnreadErrorOutput() throws IOException
+	{
+		RemoteConnection con = getLocalConnection();
+
+		// More than the buffer of a pipe of the OS
+		RemoteProcess noisy = con.execCmd("head -c 1000000 /dev/zero >&2; echo done", false);
+		assertTrue(noisy.waitFor(10, TimeUnit.SECONDS));
+		assertEquals("done\n", CharStreams.toString(new InputStreamReader(noisy.getInputStream())));
+		noisy.finish();
+		con.close();
+	}
+
+	@Test
+	public void testStopProcess() throws IOException
+	{
+		RemoteConnection con = getLocalConnection();
+
+		RemoteProcess sleep = con.execCmd("echo started; sleep 60", true);
+		assertTrue(sleep.getPid() > 0);
+		assertEquals("started", new BufferedReader(new InputStreamReader(sleep.getInputStream())).readLine());
+		assertFalse(sleep.isClosed());
+
+		assertTrue(sleep.stopProcess());
+		assertTrue(sleep.waitFor(10, TimeUnit.SECONDS));
+		assertTrue(sleep.getExitStatus() != 0);
+		sleep.finish();
+		con.close();
+	}
+
+	@Test
+	public void testFiles() throws IOException
+	{
+		RemoteConnection con = getLocalConnection();
+		File file = File.createTempFile("local", ".txt");
+		File copy = File.createTempFile("local", ".copy");
+		try
+		{
+			con.saveStringToFile("content", file.getAbsolutePath(), false);
+			assertEquals("content", Files.toString(file, Charset.defaultCharset()));
+
+			con.fetchFile(file.getAbsolutePath(), copy, true);
+			assertEquals("content", Files.toString(copy, Charset.defaultCharset()));
+
+			con.deleteFile(file.getAbsolutePath());
+			assertFalse(file.exists());
+		} finally
+		{
+			file.delete();
+			copy.delete();
+			con.close();
+		}
+	}
+
+	@Test
+	public void testBatch() throws IOException
+	{
+		RemoteConnection con = getLocalConnection();
+		File dir = Files.createTempDir();
+
+		RemoteBatch batch = new RemoteBatch();
+		batch.add("touch", "touch " + dir + "/result");
+		batch.listFiles(dir.getAbsolutePath());
+		RemoteBatchResult result = con.execBatch(batch);
+
+		assertTrue(result.isSuccessful());
+		assertEquals(new File(dir, "result"), result.findFile(dir, "result"));
+		new File(dir, "result").delete();
+		dir.delete();
+		con.close();
+	}
+}
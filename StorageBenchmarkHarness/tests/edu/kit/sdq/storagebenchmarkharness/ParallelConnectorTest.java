@@ -0,0 +1,118 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import edu.kit.sdq.storagebenchmarkharness.benchmarks.ffsb.MockupRemoteConnection;
+import edu.kit.sdq.storagebenchmarkharness.exceptions.RemoteConnectionException;
+
+public class ParallelConnectorTest
+{
+	/**
+	 * A connection which takes some time to open, or fails.
+	 */
+	private static class SlowConnection extends MockupRemoteConnection
+	{
+		private final String name;
+		private final long delay;
+		private final boolean fails;
+		private volatile boolean open;
+
+		SlowConnection(String name, long delay, boolean fails)
+		{
+			this.name = name;
+			this.delay = delay;
+			this.fails = fails;
+		}
+
+		@Override
+		public void open()
+		{
+			Uninterruptibles.sleepUninterruptibly(delay, TimeUnit.MILLISECONDS);
+			if (fails)
+			{
+				throw new RemoteConnectionException("Connection refused");
+			}
+			open = true;
+		}
+
+		@Override
+		public void close()
+		{
+			Uninterruptibles.sleepUninterruptibly(delay, TimeUnit.MILLISECONDS);
+			open = false;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+
+	@Test
+	public void testConcurrent()
+	{
+		List<SlowConnection> connections = ImmutableList.of(new SlowConnection("a", 300, false), new SlowConnection("b", 300, false),
+				new SlowConnection("c", 300, false), new SlowConnection("d", 300, false));
+		ParallelConnector connector = new ParallelConnector(2, 10000);
+
+		long start = System.nanoTime();
+		connector.openAll(connections);
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("took " + millis + " ms", millis >= 600 && millis < 1200);
+		for (SlowConnection connection : connections)
+		{
+			assertTrue(connection.open);
+		}
+
+		connector.closeAll(connections);
+		for (SlowConnection connection : connections)
+		{
+			assertFalse(connection.open);
+		}
+	}
+
+	@Test
+	public void testFailuresReportedTogether()
+	{
+		SlowConnection hanging = new SlowConnection("hanging", 1000, false);
+		List<SlowConnection> connections = ImmutableList.of(new SlowConnection("refused", 100, true), hanging, new SlowConnection("ok",
+				100, false));
+		ParallelConnector connector = new ParallelConnector(8, 500);
+
+		long start = System.nanoTime();
+		try
+		{
+			connector.openAll(connections);
+			fail("Unreachable hosts not reported");
+		} catch (RemoteConnectionException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("2 of 3 hosts: [refused, hanging]"));
+		}
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		assertTrue("took " + millis + " ms", millis < 1200);
+		assertTrue(connections.get(2).open);
+
+		// The hanging connection is closed as soon as it is opened
+		Uninterruptibles.sleepUninterruptibly(2500, TimeUnit.MILLISECONDS);
+		assertFalse(hanging.open);
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		ParallelConnector connector = new ParallelConnector(1, 1);
+		connector.openAll(ImmutableList.<RemoteConnection> of());
+		connector.closeAll(ImmutableList.<RemoteConnection> of());
+	}
+}
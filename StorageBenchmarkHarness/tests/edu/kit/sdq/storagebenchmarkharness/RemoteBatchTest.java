@@ -0,0 +1,74 @@
+package edu.kit.sdq.storagebenchmarkharness;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+
+/**
+ * Runs the scripts of the batches with the local bash.
+ */
+public class RemoteBatchTest
+{
+	@Test
+	public void testManifest() throws Exception
+	{
+		File dir = Files.createTempDir();
+		RemoteBatch batch = new RemoteBatch();
+		batch.add("write", "echo 'ignored output' && printf abc > " + dir + "/b_r.dat");
+		batch.add("copy", "cp " + dir + "/b_r.dat " + dir + "/a_w.dat; cat > /dev/null");
+		batch.listFiles(dir.getAbsolutePath());
+
+		RemoteBatchResult result = run(batch);
+		assertTrue(result.isSuccessful());
+		assertEquals(0, result.getExitStatus("copy"));
+		assertTrue(result.getDuration("write") >= 0);
+		assertEquals(2, result.getFiles().size());
+		assertEquals(new File(dir, "a_w.dat"), result.getFiles().get(0));
+		assertEquals(new File(dir, "b_r.dat"), result.findFile(dir, "_r"));
+		assertEquals(3, result.getFileSize(new File(dir, "b_r.dat")));
+		assertNull(result.findFile(dir, "q2c"));
+	}
+
+	@Test
+	public void testStopsAtFailure() throws Exception
+	{
+		File dir = Files.createTempDir();
+		RemoteBatch batch = new RemoteBatch();
+		batch.add("fail", "echo 'it''s broken' >&2; exit 3");
+		batch.add("never", "touch " + dir + "/never");
+		batch.listFiles(dir.getAbsolutePath());
+
+		RemoteBatchResult result = run(batch);
+		assertFalse(result.isSuccessful());
+		assertEquals("fail", result.getFailedStep());
+		assertEquals(3, result.getExitStatus("fail"));
+		assertEquals(-1, result.getExitStatus("never"));
+		assertEquals(0, result.getFiles().size());
+		assertTrue(result.getErrors().contains("its broken"));
+	}
+
+	private static RemoteBatchResult run(RemoteBatch batch) throws IOException, InterruptedException
+	{
+		Process process = new ProcessBuilder("bash", "-s").start();
+		OutputStream script = process.getOutputStream();
+		script.write(batch.toScript().getBytes(Charset.forName("UTF-8")));
+		script.close();
+		String manifest = CharStreams.toString(new InputStreamReader(process.getInputStream()));
+		String errors = CharStreams.toString(new InputStreamReader(process.getErrorStream()));
+		assertEquals(0, process.waitFor());
+		return RemoteBatchResult.parse(batch, new BufferedReader(new java.io.StringReader(manifest)), errors);
+	}
+}
@@ -76,6 +76,43 @@ public class RemoteConnectionTest
 		assertEquals(testString, actually);
 	}
 
+	@Test
+	public void testFetchFile() throws IOException
+	{
+		RemoteConnection con = TestUtils.getLocalhostConnection();
+		con.open();
+
+		StringBuilder content = new StringBuilder();
+		for (int i = 0; i < 10000; i++)
+		{
+			content.append(i).append(' ').append(UUID.randomUUID()).append('\n');
+		}
+		con.saveStringToFile(content.toString(), tempFile, false);
+
+		File local = File.createTempFile("fetch", ".bin");
+		try
+		{
+			con.fetchFile(tempFile, local, false);
+			assertEquals(content.toString(), Files.toString(local, Charset.defaultCharset()));
+
+			con.fetchFile(tempFile, local, true);
+			assertEquals(content.toString(), Files.toString(local, Charset.defaultCharset()));
+
+			try
+			{
+				con.fetchFile(tempFile + ".missing", local, true);
+				fail();
+			} catch (RemoteConnectionException e)
+			{
+				assertFalse(local.exists());
+			}
+		} finally
+		{
+			local.delete();
+			con.close();
+		}
+	}
+
 	@Test
 	public void testTeeAndDelete() throws IOException
 	{
@@ -150,4 +187,42 @@ public class RemoteConnectionTest
 		assertTrue("Output " + out + " does not contain ffsbTest", out.contains("ffsbTest"));
 	}
 
+	@Test
+	public void testPooledSessions() throws IOException
+	{
+		RemoteConnection con = TestUtils.getLocalhostConnection();
+		RemoteConnection con2 = TestUtils.getLocalhostConnection();
+		con.open();
+		con2.open();
+
+		SSHSessionPool pool = SSHSessionPool.acquire(con.getHost());
+		try
+		{
+			// Both connections share one session
+			assertEquals(1, pool.getSessionCount());
+
+			// More concurrent commands than a session carries
+			RemoteProcess[] procs = new RemoteProcess[SSHSessionPool.MAX_CHANNELS_PER_SESSION + 1];
+			for (int i = 0; i < procs.length; i++)
+			{
+				procs[i] = (i % 2 == 0 ? con : con2).execCmd("sleep 1; echo " + i, false);
+			}
+			assertEquals(2, pool.getSessionCount());
+
+			for (int i = 0; i < procs.length; i++)
+			{
+				String out = CharStreams.toString(new InputStreamReader(procs[i].getInputStream()));
+				procs[i].waitFor();
+				assertEquals(0, procs[i].getExitStatus());
+				assertEquals(String.valueOf(i), out.trim());
+				procs[i].finish();
+			}
+		} finally
+		{
+			pool.release();
+			con.close();
+			con2.close();
+		}
+	}
+
 }
@@ -0,0 +1,159 @@
+package edu.kit.sdq.storagebenchmarkharness.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+
+import edu.kit.sdq.storagebenchmarkharness.ClockSync;
+
+/**
+ * Runs the agent in-process, thus the tests only work on Linux.
+ */
+public class MonitorAgentTest
+{
+	@Test
+	public void testProbes() throws Exception
+	{
+		File dir = Files.createTempDir();
+		Files.write(new byte[1000], new File(dir, "a"));
+		new File(dir, "sub").mkdir();
+		Files.write(new byte[24], new File(dir, "sub/b"));
+
+		PipedOutputStream commands = new PipedOutputStream();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final MonitorAgent sampling = new MonitorAgent(new PipedInputStream(commands), out);
+
+		java.lang.Thread thread = new java.lang.Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					sampling.sample();
+				} catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+
+		commands.write(("probe 0 10 cpu\n" + "probe 1 10 dir " + dir.getAbsolutePath() + "\n" + "probe 2 10 disk nosuchdevice\n")
+				.getBytes(Charset.forName("US-ASCII")));
+		commands.flush();
+		java.lang.Thread.sleep(200);
+		commands.close();
+		thread.join(5000);
+
+		Map<Integer, AgentProbe> probes = Maps.newHashMap();
+		probes.put(0, new AgentProbe(0, "cpu", ""));
+		probes.put(1, new AgentProbe(1, "dir", dir.getAbsolutePath()));
+		probes.put(2, new AgentProbe(2, "disk", "nosuchdevice"));
+		MonitorAgentSession.readFrames(new ByteArrayInputStream(out.toByteArray()), probes);
+
+		List<AgentSample> cpu = probes.get(0).getSamples();
+		assertNull(probes.get(0).getError());
+		assertTrue(cpu.size() > 2);
+		assertEquals(8, cpu.get(0).getValueCount());
+		assertTrue(cpu.get(1).getMicros() > cpu.get(0).getMicros());
+
+		AgentSample files = probes.get(1).getSamples().get(0);
+		assertEquals(1024.0, files.getValue(0), 0);
+		assertEquals(2.0, files.getValue(1), 0);
+
+		assertEquals(0, probes.get(2).getSamples().size());
+		assertNotNull(probes.get(2).getError());
+	}
+
+	@Test
+	public void testTime() throws Exception
+	{
+		PipedOutputStream commands = new PipedOutputStream();
+		final PipedInputStream frames = new PipedInputStream();
+		final PipedOutputStream agentOut = new PipedOutputStream(frames);
+		final MonitorAgent sampling = new MonitorAgent(new PipedInputStream(commands), agentOut);
+
+		java.lang.Thread thread = new java.lang.Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					sampling.sample();
+					agentOut.close();
+				} catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		thread.start();
+
+		final ClockSync clock = new ClockSync();
+		java.lang.Thread reader = new java.lang.Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					MonitorAgentSession.readFrames(frames, Maps.<Integer, AgentProbe> newHashMap(), clock);
+				} catch (IOException e)
+				{
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		reader.start();
+
+		// The first round trip includes the start of the agent, the estimate
+		// uses the shortest of the following ones
+		commands.write(("time " + clock.startExchange() + "\n").getBytes(Charset.forName("US-ASCII")));
+		commands.flush();
+		for (int i = 0; i < 100 && clock.getExchangeCount() == 0; ++i)
+		{
+			java.lang.Thread.sleep(50);
+		}
+
+		for (int i = 0; i < 3; ++i)
+		{
+			commands.write(("time " + clock.startExchange() + "\n").getBytes(Charset.forName("US-ASCII")));
+			commands.flush();
+			java.lang.Thread.sleep(50);
+		}
+		commands.close();
+		thread.join(5000);
+		reader.join(5000);
+
+		assertEquals(4, clock.getExchangeCount());
+		// The agent started just now
+		long offset = clock.getOffset();
+		assertTrue(ClockSync.nowMicros() - offset >= 0);
+		assertTrue(ClockSync.nowMicros() - offset < 5000000);
+		assertTrue(clock.getErrorBound() < 20000);
+	}
+
+	@Test(expected = IOException.class)
+	public void testNoHeader() throws IOException
+	{
+		MonitorAgentSession.readFrames(new ByteArrayInputStream(new byte[0]), Maps.<Integer, AgentProbe> newHashMap());
+	}
+}
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -16,10 +17,12 @@ import java.util.UUID;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
+import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
 import edu.kit.sdq.storagebenchmarkharness.TestUtils;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValue;
@@ -371,4 +374,65 @@ public class FFSBenchmarkDriverTest
 		ffsb.prepareFFSBConfigurations(sutVar, ffsbVar);
 	}
 
+	@Test
+	public void testStagingFailureDeletesConfigurations()
+	{
+		IndependentVariablesOfSut sutVar = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		sutVar.setFileSystem(FileSystem.EXT4);
+		sutVar.setScheduler(Scheduler.NOOP);
+
+		IndependentVariablesOfFFSB ffsbVar = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		ffsbVar.setFilesetSize(10240);
+		ffsbVar.setFileSize(4096);
+		ffsbVar.setOpsPerFile(256);
+		ffsbVar.setBlockSize(4096);
+		ffsbVar.setReadPercentage(50);
+		ffsbVar.setRunTime(30);
+		ffsbVar.setSequentialAccess(false);
+		ffsbVar.setThreadCount(15);
+		ffsbVar.setWarmUpTime(30);
+		ffsbVar.setWriteFsync(false);
+		ffsbVar.setDirectIO(true);
+
+		final List<String> saved = Lists.newArrayList();
+		final List<String> deleted = Lists.newArrayList();
+		RemoteConnection testRemoteConnection = new MockupRemoteConnection()
+		{
+			@Override
+			public void saveStringToFile(String content, String filename, boolean useSudo) throws RemoteConnectionException
+			{
+				saved.add(filename);
+			}
+
+			@Override
+			public void deleteFile(String filename)
+			{
+				deleted.add(filename);
+			}
+
+			@Override
+			public RemoteProcess execCmd(String cmdl, boolean savePid) throws RemoteConnectionException
+			{
+				// The check of the filesystem fails
+				throw new RemoteConnectionException("Host is not reachable");
+			}
+		};
+
+		FFSBenchmarkDriver ffsb = new FFSBenchmarkDriver(testRemoteConnection, null, "/tmp/target");
+		try
+		{
+			ffsb.stageExperiment("exp", sutVar, ffsbVar);
+			fail("Staging did not fail");
+		} catch (RemoteConnectionException e)
+		{
+			// Expected
+		}
+
+		assertEquals(2, saved.size());
+		assertEquals(Lists.reverse(saved), deleted);
+
+		// Nothing is left to discard
+		ffsb.discardStaged();
+		assertEquals(2, deleted.size());
+	}
 }
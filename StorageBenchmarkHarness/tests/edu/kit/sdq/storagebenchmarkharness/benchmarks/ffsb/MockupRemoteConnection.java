@@ -1,5 +1,9 @@
 package edu.kit.sdq.storagebenchmarkharness.benchmarks.ffsb;
 
+import java.io.File;
+
+import edu.kit.sdq.storagebenchmarkharness.RemoteBatch;
+import edu.kit.sdq.storagebenchmarkharness.RemoteBatchResult;
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
 import edu.kit.sdq.storagebenchmarkharness.RemoteProcess;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Configuration.SystemUnderTest;
@@ -39,6 +43,12 @@ public abstract class MockupRemoteConnection implements RemoteConnection
 		// TODO Auto-generated method stub
 	}
 
+	@Override
+	public void fetchFile(String remoteFile, File localFile, boolean compress)
+	{
+		// TODO Auto-generated method stub
+	}
+
 	@Override
 	public RemoteProcess execCmd(String cmdl, boolean savePid) throws RemoteConnectionException
 	{
@@ -53,6 +63,13 @@ public abstract class MockupRemoteConnection implements RemoteConnection
 		return null;
 	}
 
+	@Override
+	public RemoteBatchResult execBatch(RemoteBatch batch)
+	{
+		// TODO Auto-generated method stub
+		return null;
+	}
+
 	@Override
 	public SystemUnderTest getHost()
 	{
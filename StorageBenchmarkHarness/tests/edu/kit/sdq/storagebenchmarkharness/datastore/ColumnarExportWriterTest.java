@@ -0,0 +1,88 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import edu.kit.sdq.storagebenchmarkharness.datastore.ColumnarExportWriter.ColumnType;
+
+public class ColumnarExportWriterTest
+{
+	@Test
+	public void testBlocks() throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ColumnarExportWriter writer = new ColumnarExportWriter(bytes, new String[] { "runId", "operation", "opValue" }, new ColumnType[] {
+				ColumnType.INT, ColumnType.FACTOR, ColumnType.DOUBLE }, 2);
+		String[] operations = { "read", "write", "read", null, "sync" };
+		for (int i = 0; i < operations.length; i++)
+		{
+			writer.setInt(0, i);
+			writer.setFactor(1, operations[i]);
+			writer.setDouble(2, i * 0.5);
+			writer.endRow();
+		}
+		writer.close();
+		assertEquals(5, writer.getRowCount());
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals("SBHC", readChars(in, 4));
+		assertEquals(ColumnarExportWriter.VERSION, in.readInt());
+		assertEquals(3, in.readInt());
+		assertEquals(ColumnType.INT.ordinal(), in.readInt());
+		assertEquals("runId", readString(in));
+		assertEquals(ColumnType.FACTOR.ordinal(), in.readInt());
+		assertEquals("operation", readString(in));
+		assertEquals(ColumnType.DOUBLE.ordinal(), in.readInt());
+		assertEquals("opValue", readString(in));
+
+		// First block: both levels are new
+		assertEquals(2, in.readInt());
+		assertEquals(0, in.readInt());
+		assertEquals(1, in.readInt());
+		assertEquals(2, in.readInt());
+		assertEquals("read", readString(in));
+		assertEquals("write", readString(in));
+		assertEquals(1, in.readInt());
+		assertEquals(2, in.readInt());
+		assertEquals(0.0, in.readDouble(), 0.0);
+		assertEquals(0.5, in.readDouble(), 0.0);
+
+		// Second block: no new level, NA for null
+		assertEquals(2, in.readInt());
+		assertEquals(2, in.readInt());
+		assertEquals(3, in.readInt());
+		assertEquals(0, in.readInt());
+		assertEquals(1, in.readInt());
+		assertEquals(Integer.MIN_VALUE, in.readInt());
+		assertEquals(1.0, in.readDouble(), 0.0);
+		assertEquals(1.5, in.readDouble(), 0.0);
+
+		// Last block with the remaining row and the end marker
+		assertEquals(1, in.readInt());
+		assertEquals(4, in.readInt());
+		assertEquals(1, in.readInt());
+		assertEquals("sync", readString(in));
+		assertEquals(3, in.readInt());
+		assertEquals(2.0, in.readDouble(), 0.0);
+		assertEquals(0, in.readInt());
+		assertEquals(-1, in.read());
+	}
+
+	private static String readString(DataInputStream in) throws IOException
+	{
+		return readChars(in, in.readInt());
+	}
+
+	private static String readChars(DataInputStream in, int length) throws IOException
+	{
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
@@ -0,0 +1,78 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class IngestionBudgetTest
+{
+	@Test
+	public void testAcquireRelease() throws InterruptedException
+	{
+		IngestionBudget budget = new IngestionBudget(100, 1000);
+		budget.acquire(40, 400);
+		budget.acquire(60, 600);
+
+		assertEquals(2, budget.getBatchesInFlight());
+		assertEquals(100, budget.getRowsInFlight());
+		assertEquals(1000, budget.getBytesInFlight());
+
+		budget.release(40, 400);
+		budget.release(60, 600);
+
+		assertEquals(0, budget.getBatchesInFlight());
+		assertEquals(0, budget.getRowsInFlight());
+		assertEquals(0, budget.getBytesInFlight());
+		assertEquals(0, budget.getProducerWaits());
+	}
+
+	@Test
+	public void testOversizedBatchIsAdmittedIfEmpty() throws InterruptedException
+	{
+		IngestionBudget budget = new IngestionBudget(10, 10);
+		budget.acquire(1000, 1000);
+		assertEquals(1, budget.getBatchesInFlight());
+		budget.release(1000, 1000);
+	}
+
+	@Test
+	public void testProducerBlocksUntilRelease() throws InterruptedException
+	{
+		final IngestionBudget budget = new IngestionBudget(10, 1000);
+		budget.acquire(8, 100);
+
+		final CountDownLatch admitted = new CountDownLatch(1);
+		Thread producer = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					budget.acquire(8, 100);
+					admitted.countDown();
+				} catch (InterruptedException e)
+				{
+					// Test fails by timeout below
+				}
+			}
+		};
+		producer.start();
+
+		assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+
+		budget.release(8, 100);
+		assertTrue(admitted.await(5, TimeUnit.SECONDS));
+		producer.join();
+
+		assertEquals(1, budget.getProducerWaits());
+		assertTrue(budget.getProducerWaitTime(TimeUnit.MILLISECONDS) >= 100);
+		budget.release(8, 100);
+		budget.awaitEmpty();
+	}
+}
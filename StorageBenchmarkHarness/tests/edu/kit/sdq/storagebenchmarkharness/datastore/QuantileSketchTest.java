@@ -0,0 +1,120 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class QuantileSketchTest
+{
+	@Test
+	public void testQuantilesWithinAccuracy()
+	{
+		Random random = new Random(42);
+		double[] values = new double[100000];
+		QuantileSketch sketch = new QuantileSketch();
+		for (int i = 0; i < values.length; i++)
+		{
+			// Log-normal like latencies between microseconds and seconds
+			values[i] = Math.exp(random.nextGaussian() * 2 - 7);
+			sketch.add(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double q : new double[] { 0.01, 0.5, 0.95, 0.99, 0.999 })
+		{
+			double exact = values[(int) (q * (values.length - 1))];
+			assertEquals("Quantile " + q, exact, sketch.quantile(q), exact * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+		}
+		assertEquals(values[0], sketch.quantile(0), 0.0);
+		assertEquals(values[values.length - 1], sketch.getMax(), 0.0);
+		assertEquals(values.length, sketch.getCount());
+	}
+
+	@Test
+	public void testNegativeAndZero()
+	{
+		QuantileSketch sketch = new QuantileSketch();
+		for (int i = -50; i <= 50; i++)
+		{
+			sketch.add(i);
+		}
+
+		assertEquals(0.0, sketch.quantile(0.5), 0.0);
+		assertEquals(-25.0, sketch.quantile(0.25), 0.25);
+		assertEquals(25.0, sketch.quantile(0.75), 0.25);
+		assertEquals(-50.0, sketch.getMin(), 0.0);
+		assertEquals(0.0, sketch.getMean(), 0.0);
+	}
+
+	@Test
+	public void testMergeEqualsCombined()
+	{
+		Random random = new Random(7);
+		QuantileSketch combined = new QuantileSketch();
+		QuantileSketch merged = new QuantileSketch();
+		for (int part = 0; part < 4; part++)
+		{
+			QuantileSketch sketch = new QuantileSketch();
+			for (int i = 0; i < 1000; i++)
+			{
+				// Every part covers another range of values
+				double value = (part + 1) * 100 + random.nextDouble() * 1000 * part;
+				sketch.add(value);
+				combined.add(value);
+			}
+			merged.merge(sketch);
+		}
+
+		assertEquals(combined.getCount(), merged.getCount());
+		assertEquals(combined.getSum(), merged.getSum(), 1e-6);
+		for (double q : new double[] { 0, 0.1, 0.5, 0.9, 0.99, 1 })
+		{
+			assertEquals(combined.quantile(q), merged.quantile(q), 0.0);
+		}
+	}
+
+	@Test
+	public void testEncoding() throws IOException
+	{
+		QuantileSketch sketch = new QuantileSketch(0.02);
+		for (int i = 1; i <= 10000; i++)
+		{
+			sketch.add(i * 0.001);
+		}
+		sketch.add(-3);
+		sketch.add(0);
+
+		byte[] block = sketch.encode();
+		// Kilobytes instead of the values
+		assertTrue(block.length < 1024);
+
+		QuantileSketch decoded = QuantileSketch.decode(block);
+		assertEquals(sketch.getCount(), decoded.getCount());
+		assertEquals(sketch.getRelativeAccuracy(), decoded.getRelativeAccuracy(), 0.0);
+		assertEquals(sketch.getMin(), decoded.getMin(), 0.0);
+		for (double q : new double[] { 0, 0.01, 0.5, 0.95, 1 })
+		{
+			assertEquals(sketch.quantile(q), decoded.quantile(q), 0.0);
+		}
+	}
+
+	@Test
+	public void testEmpty() throws IOException
+	{
+		QuantileSketch sketch = QuantileSketch.decode(new QuantileSketch().encode());
+		assertEquals(0, sketch.getCount());
+		assertTrue(Double.isNaN(sketch.quantile(0.5)));
+		assertTrue(Double.isNaN(sketch.getMean()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMergeDifferentAccuracy()
+	{
+		new QuantileSketch(0.01).merge(new QuantileSketch(0.02));
+	}
+}
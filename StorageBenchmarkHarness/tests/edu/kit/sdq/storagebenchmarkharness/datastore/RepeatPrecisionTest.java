@@ -0,0 +1,101 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
+
+public class RepeatPrecisionTest
+{
+	@Test
+	public void testInterval()
+	{
+		RepeatPrecision precision = new RepeatPrecision();
+		assertEquals(Double.POSITIVE_INFINITY, precision.getRelativeHalfWidth(), 0.0);
+
+		// Mean 100, standard deviation 10
+		double[] throughputs = { 90, 110, 100, 90, 110 };
+		for (double throughput : throughputs)
+		{
+			precision.add(results(throughput, 5));
+		}
+		assertEquals(5, precision.getRepeats());
+
+		List<RepeatPrecision.Interval> intervals = precision.getIntervals();
+		assertEquals(2, intervals.size());
+		RepeatPrecision.Interval interval = intervals.get(0);
+		assertEquals("read", interval.getOperation());
+		assertEquals(Metric.THROUGHPUT.getValue(), interval.getMetric());
+		assertEquals(5, interval.getCount());
+		assertEquals(100, interval.getMean(), 1e-9);
+		// t(0.975, 4) * 10 / sqrt(5)
+		assertEquals(2.7764 * 10 / Math.sqrt(5), interval.getHalfWidth(), 1e-3);
+		assertEquals(0.1242, interval.getRelativeHalfWidth(), 1e-3);
+
+		// The response time is constant, thus the throughput is the least
+		// precise metric
+		assertEquals(0, intervals.get(1).getRelativeHalfWidth(), 0.0);
+		assertEquals(interval.getRelativeHalfWidth(), precision.getRelativeHalfWidth(), 0.0);
+	}
+
+	@Test
+	public void testKeyMetrics()
+	{
+		RepeatPrecision precision = new RepeatPrecision(Collections.singleton(Metric.RESPONSE_TIME), 0.9);
+		DependentVariables results = results(100, 5);
+
+		// Single values and other types are not key metrics
+		DependentVariablesValueSingle single = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+		single.setOperation("read");
+		single.setOperationMetric(Metric.RESPONSE_TIME);
+		single.setValue(1000);
+		results.getValues().add(single);
+		results.getValues().add(composite("read", Metric.RESPONSE_TIME, Type.STD_DEV, 1000));
+
+		precision.add(results);
+		precision.add(results);
+		List<RepeatPrecision.Interval> intervals = precision.getIntervals();
+		assertEquals(1, intervals.size());
+		assertEquals(Metric.RESPONSE_TIME.getValue(), intervals.get(0).getMetric());
+		assertEquals(5, intervals.get(0).getMean(), 0.0);
+		assertEquals(0, precision.getRelativeHalfWidth(), 0.0);
+	}
+
+	@Test
+	public void testSingleRepeat()
+	{
+		RepeatPrecision precision = new RepeatPrecision();
+		precision.add(results(100, 5));
+		assertTrue(Double.isInfinite(precision.getIntervals().get(0).getHalfWidth()));
+		assertTrue(Double.isInfinite(precision.getRelativeHalfWidth()));
+	}
+
+	private static DependentVariables results(double throughput, double responseTime)
+	{
+		DependentVariables results = SBHModelFactory.eINSTANCE.createDependentVariables();
+		results.setBenchmarkPrefix("ffsb");
+		results.getValues().add(composite("read", Metric.THROUGHPUT, Type.MEAN, throughput));
+		results.getValues().add(composite("read", Metric.RESPONSE_TIME, Type.MEAN, responseTime));
+		return results;
+	}
+
+	private static DependentVariablesValueComposite composite(String operation, Metric metric, Type type, double value)
+	{
+		DependentVariablesValueComposite composite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+		composite.setOperation(operation);
+		composite.setOperationMetric(metric);
+		composite.setType(type);
+		composite.setValue(value);
+		return composite;
+	}
+}
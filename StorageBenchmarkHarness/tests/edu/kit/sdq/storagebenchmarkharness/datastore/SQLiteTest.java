@@ -3,6 +3,7 @@ package edu.kit.sdq.storagebenchmarkharness.datastore;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Assert;
 import org.junit.Before;
@@ -15,10 +16,12 @@ import com.almworks.sqlite4java.SQLiteConnection;
 import com.almworks.sqlite4java.SQLiteException;
 import com.almworks.sqlite4java.SQLiteStatement;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import edu.kit.sdq.storagebenchmarkharness.Logger;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.FileSystem;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Fileset;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfFFSB;
@@ -32,6 +35,10 @@ import edu.kit.sdq.storagebenchmarkharness.SBHModel.Type;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Operations.OperationsFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Operations.Read;
 import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteDataStore;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteDataStoreReader;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteHelper;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteSampleSeriesReader;
+import edu.kit.sdq.storagebenchmarkharness.datastore.sqlite.SQLiteSummaryReader;
 
 public class SQLiteTest
 {
@@ -254,4 +261,917 @@ public class SQLiteTest
 		ds.finishConfigurationRun();
 		ds.closeDataStore();
 	}
+
+	@Test
+	public void testResultSaveFilebenchManyFlowops() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Filebench Flowops");
+
+		IndependentVariablesOfSut sutVar = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		sutVar.setFileSystem(FileSystem.EXT4);
+		sutVar.setScheduler(Scheduler.CFQ);
+
+		IndependentVariablesOfFilebench filebenchVar = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFilebench();
+		filebenchVar.setName("many_flowops");
+		filebenchVar.setRunTime(10);
+		Fileset fileset = SBHModelFactory.eINSTANCE.createFileset();
+		fileset.setFilesetName("bigfile1");
+		fileset.setDirectory(new File("/tmp"));
+		fileset.setMeanFileSize("1g");
+		fileset.setFiles(1);
+		filebenchVar.getFilesets().add(fileset);
+
+		Thread thread = SBHModelFactory.eINSTANCE.createThread();
+		thread.setInstances(1);
+		thread.setMemsize("10m");
+		thread.setThreadName("filereaderthread");
+
+		// More flowops than are inserted by one multi-row statement
+		final int flowops = 40;
+		for (int i = 0; i < flowops; i++)
+		{
+			Read readOper = OperationsFactory.eINSTANCE.createRead();
+			readOper.setOperationName("read" + i);
+			readOper.setFlowOpName("read");
+			readOper.setFilesetname(fileset.getFilesetName());
+			readOper.setIosize(i + "k");
+			readOper.setIters("1");
+			thread.getOperations().add(readOper);
+		}
+		filebenchVar.getThreads().add(thread);
+
+		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
+		result.setBenchmarkPrefix("filebench");
+		List<DependentVariables> resultList = Lists.newArrayList();
+		resultList.add(result);
+
+		ds.storeExperimentResults(0, "hostId", "FilebenchBenchmark", 0, "testId", sutVar, filebenchVar, resultList);
+		ds.storeExperimentResults(0, "hostId", "FilebenchBenchmark", 1, "testId", sutVar, filebenchVar, resultList);
+
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+
+		SQLiteStatement stmt = db.prepare("SELECT count(*) FROM filebenchIndependentVarsThread;");
+		stmt.step();
+		Assert.assertEquals(2, stmt.columnInt(0));
+		stmt.dispose();
+
+		stmt = db.prepare("SELECT count(*), count(DISTINCT runId) FROM filebenchIndependentVarsThreadOperation;");
+		stmt.step();
+		Assert.assertEquals(2 * flowops, stmt.columnInt(0));
+		Assert.assertEquals(2, stmt.columnInt(1));
+		stmt.dispose();
+
+		// The last flowop is written by the single-row statement
+		stmt = db.prepare("SELECT iosize FROM filebenchIndependentVarsThreadOperation WHERE operationName=? ORDER BY rowid;");
+		stmt.bind(1, "read" + (flowops - 1));
+		Assert.assertTrue(stmt.step());
+		Assert.assertEquals((flowops - 1) + "k", stmt.columnString(0));
+		stmt.dispose();
+
+		db.dispose();
+	}
+
+	@Test
+	public void testColumnarSamples() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setColumnarSamples(true);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Columnar");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		expBenchVars.setFilesetSize(100);
+
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+		expSutVars.setScheduler(Scheduler.NOOP);
+
+		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
+		result.setBenchmarkPrefix("ffsb");
+		for (int i = 0; i < 1000; i++)
+		{
+			DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+			value.setOperation("read");
+			value.setOperationMetric(Metric.RESPONSE_TIME);
+			value.setSource("blktrace");
+			value.setTimestamp(String.format("%d.%06d", i / 100, (i % 100) * 10000));
+			value.setValue(0.25 + i);
+			result.getValues().add(value);
+		}
+		DependentVariablesValueComposite mean = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+		mean.setOperation("read");
+		mean.setOperationMetric(Metric.RESPONSE_TIME);
+		mean.setType(Type.MEAN);
+		mean.setValue(500.25);
+		result.getValues().add(mean);
+
+		List<DependentVariables> resultList = Lists.newArrayList();
+		resultList.add(result);
+		ds.storeExperimentResults(0, "hostId", "FFSBBenchmark", 1, "testId", expSutVars, expBenchVars, resultList);
+
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+
+		// Only the composite value is stored as row
+		SQLiteStatement stmt = db.prepare("SELECT count(*) FROM ffsbDependentVarsValues;");
+		stmt.step();
+		Assert.assertEquals(1, stmt.columnInt(0));
+		stmt.dispose();
+
+		stmt = db.prepare("SELECT dvId FROM ffsbDependentVars;");
+		stmt.step();
+		long dvId = stmt.columnLong(0);
+		stmt.dispose();
+
+		List<SampleSeries> series = SQLiteSampleSeriesReader.readSeries(db, "ffsb", dvId);
+		Assert.assertEquals(1, series.size());
+
+		SampleSeries read = SQLiteSampleSeriesReader.readSeries(db, "ffsb", dvId, "read", Metric.RESPONSE_TIME_VALUE, "blktrace");
+		Assert.assertEquals(1000, read.size());
+		Assert.assertEquals(6, read.getTimestampScale());
+		for (int i = 0; i < 1000; i++)
+		{
+			Assert.assertEquals(i / 100 + (i % 100) * 0.01, read.getTimestamp(i), 0.000001);
+			Assert.assertEquals(0.25 + i, read.getValues()[i], 0.0);
+		}
+
+		db.dispose();
+	}
+
+	@Test
+	public void testWriteAheadLogGroupCommit() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setDurability(SQLiteDataStore.Durability.NORMAL);
+		ds.enableWriteAheadLog(100);
+		ds.setGroupCommitSize(2);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("WAL");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+		expSutVars.setScheduler(Scheduler.NOOP);
+
+		// Two SUTs for the first repeat and only one for the second, this group
+		// is committed by finishing the configuration run
+		String[] hosts =
+		{ "sut1", "sut2" };
+		for (int repeatNo = 1; repeatNo <= 2; repeatNo++)
+		{
+			for (int h = 0; h < 3 - repeatNo; h++)
+			{
+				DependentVariables depVars = SBHModelFactory.eINSTANCE.createDependentVariables();
+				depVars.setBenchmarkPrefix("ffsb");
+				DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+				value.setOperation("read");
+				value.setOperationMetric(Metric.RESPONSE_TIME);
+				value.setTimestamp("1");
+				value.setValue(repeatNo);
+				depVars.getValues().add(value);
+				List<DependentVariables> resultList = Lists.newArrayList();
+				resultList.add(depVars);
+
+				ds.storeExperimentResults(0, hosts[h], "FFSBBenchmark", repeatNo, "testID", expSutVars, expBenchVars, resultList);
+			}
+		}
+		ds.finishConfigurationRun();
+
+		// Read concurrently while the data store is still open
+		SQLiteConnection db = ds.openReadOnlyConnection();
+		try
+		{
+			SQLiteStatement stmt = db.prepare("PRAGMA journal_mode;");
+			stmt.step();
+			Assert.assertEquals("wal", stmt.columnString(0).toLowerCase());
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT count(*) FROM runs;");
+			stmt.step();
+			Assert.assertEquals(3, stmt.columnInt(0));
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT count(*) FROM ffsbDependentVarsValues;");
+			stmt.step();
+			Assert.assertEquals(3, stmt.columnInt(0));
+			stmt.dispose();
+		} finally
+		{
+			db.dispose();
+		}
+
+		ds.closeDataStore();
+	}
+
+	@Test
+	public void testGroupCommitOfOverlappingRuns() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.enableWriteAheadLog(100);
+		ds.setGroupCommitSize(2);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Overlapping");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+
+		// Repeat 1 of both SUTs is still stored while repeat 2 is streamed
+		ResultSink sut1 = ds.openRun(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars);
+		ResultSink sut2 = ds.openRun(0, "sut2", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars);
+		ResultSink next = ds.openRun(0, "sut1", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars);
+		SampleBuffer samples = new SampleBuffer(0);
+		samples.streamTo(next, 10);
+		int channel = samples.channel("read", Metric.RESPONSE_TIME, "ffsb");
+		for (int i = 0; i < 50; i++)
+		{
+			samples.add(channel, i, i);
+		}
+		sut1.commit();
+
+		// The batches of the next repeat did not commit the incomplete group
+		SQLiteConnection db = ds.openReadOnlyConnection();
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT count(*) FROM runs;");
+			stmt.step();
+			Assert.assertEquals(0, stmt.columnInt(0));
+			stmt.dispose();
+		} finally
+		{
+			db.dispose();
+		}
+
+		// The complete group is committed, the next repeat stays invisible
+		sut2.commit();
+		db = ds.openReadOnlyConnection();
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT count(*) FROM runs;");
+			stmt.step();
+			Assert.assertEquals(3, stmt.columnInt(0));
+			stmt.dispose();
+
+			SQLiteDataStoreReader reader = new SQLiteDataStoreReader(db);
+			Assert.assertEquals(2, reader.getRuns(reader.getConfigurationRunIds("Overlapping").get(0)).size());
+			reader.close();
+		} finally
+		{
+			db.dispose();
+		}
+
+		next.commit();
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+	}
+
+	@Test
+	public void testStreamedRun() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setColumnarSamples(true);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Streaming");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+		expSutVars.setScheduler(Scheduler.NOOP);
+
+		// A run which is streamed in batches of 100 samples
+		ResultSink sink = ds.openRun(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars);
+		SampleBuffer samples = new SampleBuffer(0);
+		samples.streamTo(sink, 100);
+		int channel = samples.channel("read", Metric.RESPONSE_TIME, "ffsb");
+		for (int i = 0; i < 250; i++)
+		{
+			samples.add(channel, i, i * 0.5);
+		}
+		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
+		result.setBenchmarkPrefix("ffsb");
+		SampleBuffer.attach(result, samples);
+		sink.append(result);
+		sink.commit();
+
+		// A run which is aborted
+		ResultSink aborted = ds.openRun(0, "sut1", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars);
+		SampleBuffer abortedSamples = new SampleBuffer(0);
+		abortedSamples.streamTo(aborted, 10);
+		int abortedChannel = abortedSamples.channel("read", Metric.RESPONSE_TIME, "ffsb");
+		for (int i = 0; i < 25; i++)
+		{
+			abortedSamples.add(abortedChannel, i, i);
+		}
+		aborted.abort();
+
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT count(*), max(runId) FROM runs;");
+			stmt.step();
+			Assert.assertEquals(1, stmt.columnInt(0));
+			long runId = stmt.columnLong(1);
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT dvId FROM ffsbDependentVars WHERE runId=?;");
+			stmt.bind(1, runId);
+			Assert.assertTrue(stmt.step());
+			long dvId = stmt.columnLong(0);
+			Assert.assertFalse(stmt.step());
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT count(*) FROM ffsbIndependentVars;");
+			stmt.step();
+			Assert.assertEquals(1, stmt.columnInt(0));
+			stmt.dispose();
+
+			// The chunks of the series are concatenated
+			SampleSeries series = SQLiteSampleSeriesReader.readSeries(db, "ffsb", dvId, "read", Metric.RESPONSE_TIME.getValue(), "ffsb");
+			Assert.assertEquals(250, series.size());
+			Assert.assertEquals(249, series.getTimestamps()[249]);
+			Assert.assertEquals(124.5, series.getValues()[249], 0.0);
+			Assert.assertEquals(1, SQLiteSampleSeriesReader.readSeries(db, "ffsb", dvId).size());
+		} finally
+		{
+			db.dispose();
+		}
+	}
+
+	@Test
+	public void testStreamedRunWithKeyValues()
+	{
+		// The commit of a streamed run is logged at debug level
+		((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("edu.kit.sdq.storagebenchmarkharness")).setLevel(Level.DEBUG);
+
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("StreamedKeyValues");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+
+		ResultSink sink = ds.openRun(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars);
+		SampleBuffer samples = new SampleBuffer(0);
+		samples.streamTo(sink, 10);
+		int channel = samples.channel("read", Metric.RESPONSE_TIME, "ffsb");
+		for (int i = 0; i < 25; i++)
+		{
+			samples.add(channel, i, i);
+		}
+		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
+		result.setBenchmarkPrefix("ffsb");
+		DependentVariablesValueComposite composite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+		composite.setOperation("read");
+		composite.setOperationMetric(Metric.THROUGHPUT);
+		composite.setSource("ffsb");
+		composite.setType(Type.MEAN);
+		composite.setValue(100);
+		result.getValues().add(composite);
+		SampleBuffer.attach(result, samples);
+		sink.append(result);
+
+		sink.setKeyValues(new RepeatPrecision().getKeyValues(result));
+		sink.commit();
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		RunJournal journal = ds.loadRunJournal("StreamedKeyValues");
+		Assert.assertTrue(journal.isCompleted("testID", "sut1", 1));
+		List<List<DependentVariablesValueComposite>> stored = journal.getStoredKeyValues("testID", "sut1");
+		Assert.assertEquals(1, stored.size());
+		Assert.assertEquals(1, stored.get(0).size());
+		Assert.assertEquals(100.0, stored.get(0).get(0).getValue(), 0.0);
+		ds.closeDataStore();
+	}
+
+	@Test
+	public void testRunJournal()
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Journal");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+
+		// A committed, an aborted and a directly stored run
+		ds.openRun(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars).commit();
+		ds.openRun(0, "sut1", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars).abort();
+		ds.storeExperimentResults(0, "sut2", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars, Lists.<DependentVariables> newArrayList());
+		ds.closeDataStore();
+
+		// The journal is read by the next run of the configuration
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		RunJournal journal = ds.loadRunJournal("Journal");
+		Assert.assertEquals(2, journal.size());
+		Assert.assertTrue(journal.isCompleted("testID", "sut1", 1));
+		Assert.assertFalse(journal.isCompleted("testID", "sut1", 2));
+		Assert.assertTrue(journal.isCompleted("testID", "sut2", 1));
+		Assert.assertFalse(journal.isCompleted("otherID", "sut1", 1));
+		Assert.assertEquals(0, ds.loadRunJournal("Other").size());
+		ds.closeDataStore();
+	}
+
+	@Test
+	public void testRunJournalOfTwoConfigurations()
+	{
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+
+		// The same experiment in two configurations
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("First");
+		ds.storeExperimentResults(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars, Lists.<DependentVariables> newArrayList());
+		ds.closeDataStore();
+
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Second");
+		ds.storeExperimentResults(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars, Lists.<DependentVariables> newArrayList());
+		ds.storeExperimentResults(0, "sut1", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars, Lists.<DependentVariables> newArrayList());
+		ds.closeDataStore();
+
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		RunJournal first = ds.loadRunJournal("First");
+		Assert.assertEquals(1, first.size());
+		Assert.assertTrue(first.isCompleted("testID", "sut1", 1));
+		Assert.assertFalse(first.isCompleted("testID", "sut1", 2));
+		Assert.assertEquals(2, ds.loadRunJournal("Second").size());
+		ds.closeDataStore();
+	}
+
+	@Test
+	public void testCrashedStreamedRun() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Crash");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+
+		// Repeat 1 is completed, repeat 2 is streamed when the controller
+		// crashes
+		ds.openRun(0, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars).commit();
+		ResultSink crashed = ds.openRun(0, "sut1", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars);
+		SampleBuffer samples = new SampleBuffer(0);
+		samples.streamTo(crashed, 10);
+		int channel = samples.channel("read", Metric.RESPONSE_TIME, "ffsb");
+		for (int i = 0; i < 25; i++)
+		{
+			samples.add(channel, i, i);
+		}
+
+		// The run of another host commits the transaction which contains the
+		// batches, then the controller dies without committing the run
+		ds.storeExperimentResults(0, "sut2", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars, Lists.<DependentVariables> newArrayList());
+		ds.closeDataStore();
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+		try
+		{
+			// The batches are on disk, but the run is invisible
+			SQLiteStatement stmt = db.prepare("SELECT count(*) FROM ffsbDependentVarsValues;");
+			stmt.step();
+			Assert.assertEquals(20, stmt.columnInt(0));
+			stmt.dispose();
+
+			SQLiteDataStoreReader reader = new SQLiteDataStoreReader(db);
+			List<Long> crIds = reader.getConfigurationRunIds("Crash");
+			Assert.assertEquals(1, crIds.size());
+			List<StoredRun> runs = reader.getRuns(crIds.get(0));
+			Assert.assertEquals(2, runs.size());
+			for (StoredRun run : runs)
+			{
+				Assert.assertFalse(run.getHostId().equals("sut1") && run.getRepeatNo() == 2);
+			}
+			Assert.assertEquals(2, reader.findRuns("ffsb", Maps.<String, Object> newHashMap()).size());
+			reader.close();
+		} finally
+		{
+			db.dispose();
+		}
+
+		// On resume the crashed repeat is not in the journal, its leftovers
+		// are deleted and it is executed again
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		RunJournal journal = ds.loadRunJournal("Crash");
+		Assert.assertTrue(journal.isCompleted("testID", "sut1", 1));
+		Assert.assertFalse(journal.isCompleted("testID", "sut1", 2));
+		Assert.assertTrue(journal.isCompleted("testID", "sut2", 2));
+		ds.storeConfigurationRun("Crash");
+		ds.openRun(0, "sut1", "FFSBBenchmark", 2, "testID", expSutVars, expBenchVars).commit();
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT count(*) FROM runs WHERE hostId='sut1' AND repeatNo=2;");
+			stmt.step();
+			Assert.assertEquals(1, stmt.columnInt(0));
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT count(*) FROM runs WHERE runCompleted=0;");
+			stmt.step();
+			Assert.assertEquals(0, stmt.columnInt(0));
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT count(*) FROM ffsbDependentVarsValues;");
+			stmt.step();
+			Assert.assertEquals(0, stmt.columnInt(0));
+			stmt.dispose();
+		} finally
+		{
+			db.dispose();
+		}
+	}
+
+	@Test
+	public void testStoredKeyValues()
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("KeyValues");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+
+		// Two committed repeats with key values, one without and an aborted
+		// one
+		RepeatPrecision precision = new RepeatPrecision();
+		double[] throughputs = { 90, 110 };
+		for (int r = 0; r < throughputs.length; ++r)
+		{
+			DependentVariables depVars = SBHModelFactory.eINSTANCE.createDependentVariables();
+			DependentVariablesValueComposite composite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+			composite.setOperation("read");
+			composite.setOperationMetric(Metric.THROUGHPUT);
+			composite.setSource("ffsb");
+			composite.setType(Type.MEAN);
+			composite.setValue(throughputs[r]);
+			depVars.getValues().add(composite);
+			precision.add(depVars);
+
+			ResultSink sink = ds.openRun(0, "sut1", "FFSBBenchmark", r + 1, "testID", expSutVars, expBenchVars);
+			sink.append(depVars);
+			sink.setKeyValues(precision.getKeyValues(depVars));
+			sink.commit();
+		}
+		ds.openRun(0, "sut1", "FFSBBenchmark", 3, "testID", expSutVars, expBenchVars).commit();
+		ResultSink aborted = ds.openRun(0, "sut1", "FFSBBenchmark", 4, "testID", expSutVars, expBenchVars);
+		aborted.setKeyValues(precision.getKeyValues(SBHModelFactory.eINSTANCE.createDependentVariables()));
+		aborted.abort();
+		ds.closeDataStore();
+
+		// The precision of the resumed configuration continues with the
+		// stored repeats
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		RunJournal journal = ds.loadRunJournal("KeyValues");
+		List<List<DependentVariablesValueComposite>> stored = journal.getStoredKeyValues("testID", "sut1");
+		Assert.assertEquals(3, stored.size());
+		Assert.assertEquals(0, stored.get(2).size());
+		Assert.assertEquals(0, journal.getStoredKeyValues("testID", "sut2").size());
+		Assert.assertEquals(0, ds.loadRunJournal("Other").getStoredKeyValues("testID", "sut1").size());
+		ds.closeDataStore();
+
+		RepeatPrecision resumed = new RepeatPrecision();
+		for (List<DependentVariablesValueComposite> values : stored)
+		{
+			resumed.addRepeat(values);
+		}
+		Assert.assertEquals(3, resumed.getRepeats());
+		Assert.assertEquals(1, resumed.getIntervals().size());
+		Assert.assertEquals(2, resumed.getIntervals().get(0).getCount());
+		Assert.assertEquals("ffsb", resumed.getIntervals().get(0).getSource());
+		Assert.assertEquals(precision.getRelativeHalfWidth(), resumed.getRelativeHalfWidth(), 1e-9);
+	}
+
+	@Test
+	public void testRepetitions() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Repetitions");
+
+		RepeatPrecision precision = new RepeatPrecision();
+		for (double throughput : new double[] { 90, 110, 100 })
+		{
+			DependentVariables depVars = SBHModelFactory.eINSTANCE.createDependentVariables();
+			DependentVariablesValueComposite composite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+			composite.setOperation("read");
+			composite.setOperationMetric(Metric.THROUGHPUT);
+			composite.setType(Type.MEAN);
+			composite.setValue(throughput);
+			depVars.getValues().add(composite);
+			precision.add(depVars);
+		}
+
+		// Stored again when the experiment is executed again
+		ds.storeRepetitions(0, "sut1", "testID", precision, false);
+		ds.storeRepetitions(0, "sut1", "testID", precision, true);
+		ds.storeRepetitions(0, "sut2", "testID", new RepeatPrecision(), false);
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		RunJournal journal = ds.loadRunJournal("Repetitions");
+		Assert.assertTrue(journal.isFinished("testID", "sut1"));
+		Assert.assertFalse(journal.isFinished("testID", "sut2"));
+		Assert.assertFalse(ds.loadRunJournal("Other").isFinished("testID", "sut1"));
+		ds.closeDataStore();
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT repeatCount, relativeHalfWidth, finished FROM repetitions ORDER BY hostId;");
+			Assert.assertTrue(stmt.step());
+			Assert.assertEquals(3, stmt.columnInt(0));
+			Assert.assertEquals(precision.getRelativeHalfWidth(), stmt.columnDouble(1), 1e-12);
+			Assert.assertEquals(1, stmt.columnInt(2));
+			Assert.assertTrue(stmt.step());
+			Assert.assertEquals(0, stmt.columnInt(0));
+			Assert.assertTrue(stmt.columnNull(1));
+			Assert.assertFalse(stmt.step());
+			stmt.dispose();
+
+			stmt = db.prepare("SELECT operation, opMetric, sampleCount, meanValue FROM repetitionIntervals;");
+			Assert.assertTrue(stmt.step());
+			Assert.assertEquals("read", stmt.columnString(0));
+			Assert.assertEquals(Metric.THROUGHPUT.getValue(), stmt.columnInt(1));
+			Assert.assertEquals(3, stmt.columnInt(2));
+			Assert.assertEquals(100.0, stmt.columnDouble(3), 1e-9);
+			Assert.assertFalse(stmt.step());
+			stmt.dispose();
+		} finally
+		{
+			db.dispose();
+		}
+	}
+
+	@Test
+	public void testSummaries() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Summaries");
+
+		IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+		expBenchVars.setReadPercentage(100);
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+		expSutVars.setScheduler(Scheduler.NOOP);
+
+		// Two repeats with the response times 1..100 and 101..200
+		for (int repeatNo = 1; repeatNo <= 2; repeatNo++)
+		{
+			DependentVariables depVars = SBHModelFactory.eINSTANCE.createDependentVariables();
+			depVars.setBenchmarkPrefix("ffsb");
+			for (int i = 1; i <= 100; i++)
+			{
+				DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+				value.setOperation("read");
+				value.setOperationMetric(Metric.RESPONSE_TIME);
+				value.setTimestamp(Integer.toString(i));
+				value.setValue((repeatNo - 1) * 100 + i);
+				depVars.getValues().add(value);
+			}
+			// Composite values are not summarized
+			DependentVariablesValueComposite composite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+			composite.setOperation("read");
+			composite.setOperationMetric(Metric.THROUGHPUT);
+			composite.setType(Type.ABSOLUTE);
+			composite.setValue(42);
+			depVars.getValues().add(composite);
+			List<DependentVariables> resultList = Lists.newArrayList();
+			resultList.add(depVars);
+
+			ds.storeExperimentResults(0, "sut1", "FFSBBenchmark", repeatNo, "testID", expSutVars, expBenchVars, resultList);
+		}
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(false);
+		try
+		{
+			SQLiteStatement stmt = db.prepare("SELECT sampleCount, minValue, p50, p99, maxValue FROM ffsbDependentVarsSummary "
+					+ "JOIN ffsbDependentVars USING (dvId) JOIN runs USING (runId) WHERE repeatNo=1;");
+			Assert.assertTrue(stmt.step());
+			Assert.assertEquals(100, stmt.columnInt(0));
+			Assert.assertEquals(1.0, stmt.columnDouble(1), 0.0);
+			Assert.assertEquals(50.0, stmt.columnDouble(2), 50.0 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+			Assert.assertEquals(99.0, stmt.columnDouble(3), 99.0 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+			Assert.assertEquals(100.0, stmt.columnDouble(4), 0.0);
+			Assert.assertFalse(stmt.step());
+			stmt.dispose();
+
+			List<Long> runIds = Lists.newArrayList();
+			stmt = db.prepare("SELECT runId FROM runs ORDER BY runId;");
+			while (stmt.step())
+			{
+				runIds.add(stmt.columnLong(0));
+			}
+			stmt.dispose();
+			Assert.assertEquals(2, runIds.size());
+
+			List<RunSummary.Entry> entries = SQLiteSummaryReader.readSummary(db, "ffsb", runIds.get(1));
+			Assert.assertEquals(1, entries.size());
+			Assert.assertEquals("read", entries.get(0).getOperation());
+			Assert.assertEquals(Metric.RESPONSE_TIME.getValue(), entries.get(0).getMetric());
+			Assert.assertEquals(101.0, entries.get(0).getSketch().getMin(), 0.0);
+
+			// The merged sketch covers both repeats
+			QuantileSketch merged = SQLiteSummaryReader.mergeSketches(db, "ffsb", runIds, "read", Metric.RESPONSE_TIME.getValue(), null);
+			Assert.assertEquals(200, merged.getCount());
+			Assert.assertEquals(100.5, merged.getMean(), 0.000001);
+			Assert.assertEquals(100.0, merged.quantile(0.5), 100.0 * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+			Assert.assertNull(SQLiteSummaryReader.mergeSketches(db, "ffsb", runIds, "write", Metric.RESPONSE_TIME.getValue(), null));
+		} finally
+		{
+			db.dispose();
+		}
+	}
+
+	@Test
+	public void testDataStoreReader() throws SQLiteException
+	{
+		SQLiteDataStore ds = new SQLiteDataStore(tempFile);
+		ds.setupDataStore();
+		ds.storeConfigurationRun("Reader");
+
+		IndependentVariablesOfSut expSutVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfSut();
+		expSutVars.setFileSystem(FileSystem.EXT4);
+		expSutVars.setScheduler(Scheduler.NOOP);
+
+		// Two experiments with different block sizes
+		for (int expNo = 0; expNo < 2; expNo++)
+		{
+			IndependentVariablesOfFFSB expBenchVars = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFFSB();
+			expBenchVars.setReadPercentage(100);
+			expBenchVars.setReadBlockSize(32 << expNo);
+
+			DependentVariables depVars = SBHModelFactory.eINSTANCE.createDependentVariables();
+			depVars.setBenchmarkPrefix("ffsb");
+			for (int i = 0; i < 10; i++)
+			{
+				DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+				value.setOperation("read");
+				value.setOperationMetric(Metric.RESPONSE_TIME);
+				value.setTimestamp(Double.toString(i * 0.5));
+				value.setValue(expNo * 100 + i);
+				depVars.getValues().add(value);
+			}
+			DependentVariablesValueComposite composite = SBHModelFactory.eINSTANCE.createDependentVariablesValueComposite();
+			composite.setOperation("read");
+			composite.setOperationMetric(Metric.THROUGHPUT);
+			composite.setType(Type.ABSOLUTE);
+			composite.setValue(42);
+			depVars.getValues().add(composite);
+			List<DependentVariables> resultList = Lists.newArrayList();
+			resultList.add(depVars);
+
+			ds.storeExperimentResults(expNo, "sut1", "FFSBBenchmark", 1, "testID", expSutVars, expBenchVars, resultList);
+		}
+		ds.finishConfigurationRun();
+		ds.closeDataStore();
+
+		DataStoreReader reader = new SQLiteDataStoreReader(new File(tempFile));
+		try
+		{
+			List<Long> crIds = reader.getConfigurationRunIds("Reader");
+			Assert.assertEquals(1, crIds.size());
+			List<StoredRun> runs = reader.getRuns(crIds.get(0));
+			Assert.assertEquals(2, runs.size());
+			Assert.assertEquals(1, runs.get(1).getExpNo());
+
+			// Runs by their independent variables
+			Map<String, Object> independentVars = Maps.newHashMap();
+			independentVars.put("readBlockSize", 64);
+			List<StoredRun> found = reader.findRuns("ffsb", independentVars);
+			Assert.assertEquals(1, found.size());
+			Assert.assertEquals(runs.get(1).getRunId(), found.get(0).getRunId());
+
+			RowCursor rows = reader.getRunsWithIndependentVars("ffsb", crIds.get(0));
+			int count = 0;
+			while (rows.next())
+			{
+				++count;
+			}
+			rows.close();
+			Assert.assertEquals(2, count);
+
+			// The single values in the order they were stored
+			ValueCursor values = reader.getDependentValues("ffsb", runs.get(1).getRunId(), Metric.RESPONSE_TIME, "read");
+			for (int i = 0; i < 10; i++)
+			{
+				Assert.assertTrue(values.next());
+				Assert.assertEquals(100.0 + i, values.getValue(), 0.0);
+				Assert.assertEquals(i * 0.5, values.getTimestamp(), 0.0);
+				Assert.assertEquals(Type.SINGLE_VALUE_VALUE, values.getType());
+			}
+			Assert.assertFalse(values.next());
+			values.close();
+
+			values = reader.getDependentValues("ffsb", runs.get(1).getRunId(), Metric.THROUGHPUT, null);
+			Assert.assertTrue(values.next());
+			Assert.assertEquals(42.0, values.getValue(), 0.0);
+			Assert.assertTrue(Double.isNaN(values.getTimestamp()));
+			Assert.assertFalse(values.next());
+			values.close();
+
+			// The lookup uses the index and does not sort
+			SQLiteStatement stmt = ((SQLiteDataStoreReader) reader).getConnection().prepare(
+					"EXPLAIN QUERY PLAN SELECT opValue FROM ffsbDependentVarsValues WHERE dvId=1 AND opMetric=0 ORDER BY opMetric, operation, valueId;");
+			Assert.assertTrue(stmt.step());
+			Assert.assertTrue(stmt.columnString(3).contains("INDEX ffsbDependentVarsValuesMetricIdx"));
+			Assert.assertFalse(stmt.step());
+			stmt.dispose();
+		} finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * The batched insertion writes full batches and a remainder, all values
+	 * are stored in their order.
+	 */
+	@Test
+	public void testBatchedDependentVarsInsert() throws SQLiteException, IOException
+	{
+		int valueCount = 10;
+		DependentVariables result = SBHModelFactory.eINSTANCE.createDependentVariables();
+		result.setBenchmarkPrefix("ffsb");
+		for (int i = 0; i < valueCount; i++)
+		{
+			DependentVariablesValueSingle value = SBHModelFactory.eINSTANCE.createDependentVariablesValueSingle();
+			value.setOperation(i % 2 == 0 ? "read" : "write");
+			value.setOperationMetric(Metric.RESPONSE_TIME);
+			value.setSource("blktrace");
+			value.setTimestamp(Integer.toString(i));
+			value.setValue(i * 0.5);
+			result.getValues().add(value);
+		}
+		List<DependentVariables> resultList = Lists.newArrayList();
+		resultList.add(result);
+
+		SQLiteConnection db = new SQLiteConnection(new File(tempFile));
+		db.open(true);
+		try
+		{
+			SQLiteHelper helper = new SQLiteHelper(4);
+			db.exec(SQLiteDataStore.getSchema("base"));
+			helper.setupTables(db);
+			db.exec("BEGIN;");
+			helper.saveDependentVars(1, resultList, db);
+			db.exec("COMMIT;");
+
+			SQLiteStatement stmt = db.prepare("SELECT operation, opTimestamp, opValue FROM ffsbDependentVarsValues ORDER BY valueId;");
+			for (int i = 0; i < valueCount; i++)
+			{
+				Assert.assertTrue(stmt.step());
+				Assert.assertEquals(i % 2 == 0 ? "read" : "write", stmt.columnString(0));
+				Assert.assertEquals(i, stmt.columnInt(1));
+				Assert.assertEquals(i * 0.5, stmt.columnDouble(2), 0.0001);
+			}
+			Assert.assertFalse(stmt.step());
+			stmt.dispose();
+		} finally
+		{
+			db.dispose();
+		}
+	}
 }
@@ -0,0 +1,226 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueComposite;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariablesValueSingle;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
+
+public class SampleBufferTest
+{
+	@Test
+	public void testChannels()
+	{
+		SampleBuffer buffer = new SampleBuffer(0);
+		int read = buffer.channel("read", Metric.RESPONSE_TIME, "blktrace");
+		int write = buffer.channel("write", Metric.RESPONSE_TIME, "blktrace");
+
+		assertEquals(read, buffer.channel("read", Metric.RESPONSE_TIME, "blktrace"));
+		assertEquals(2, buffer.getChannelCount());
+		assertEquals("write", buffer.getOperation(write));
+		assertEquals(Metric.RESPONSE_TIME, buffer.getMetric(write));
+		assertEquals("blktrace", buffer.getSource(write));
+
+		for (int i = 0; i < 5000; i++)
+		{
+			buffer.add(i % 2 == 0 ? read : write, i, i);
+		}
+
+		assertEquals(5000, buffer.size());
+		assertEquals(2500, buffer.count(read));
+		assertEquals(2499.0, buffer.mean(read), 0.0);
+		assertEquals(2500.0, buffer.mean(write), 0.0);
+		assertEquals(4999, buffer.getTimestamp(4999));
+		assertEquals(write, buffer.getChannel(4999));
+	}
+
+	@Test
+	public void testParseTimestamp()
+	{
+		SampleBuffer buffer = new SampleBuffer(9);
+		assertEquals(12000345000L, buffer.parseTimestamp("12.000345"));
+		assertEquals(1L, buffer.parseTimestamp("0.000000001"));
+		assertEquals(-1500000000L, buffer.parseTimestamp("-1.5"));
+		assertEquals(3000000000L, buffer.parseTimestamp("3"));
+		assertEquals("12.000345000", SampleSeriesCodec.formatTimestamp(12000345000L, 9));
+
+		assertEquals(1365172200123L, new SampleBuffer(0).parseTimestamp("1365172200123"));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseTimestampTooPrecise()
+	{
+		new SampleBuffer(3).parseTimestamp("1.0001");
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testParseTimestampInvalid()
+	{
+		new SampleBuffer(0).parseTimestamp("12:00:01");
+	}
+
+	@Test
+	public void testToSeries()
+	{
+		SampleBuffer buffer = new SampleBuffer(3);
+		int read = buffer.channel("read", Metric.QUEUE_DEPTH, "blktrace");
+		int unused = buffer.channel("other", Metric.QUEUE_DEPTH, "blktrace");
+		int write = buffer.channel("write", Metric.QUEUE_DEPTH, "blktrace");
+		buffer.add(read, "0.001", 1);
+		buffer.add(write, "0.002", 2);
+		buffer.add(read, "0.003", 3);
+
+		List<SampleSeries> series = buffer.toSeries();
+		assertEquals(2, series.size());
+		assertEquals("read", series.get(0).getOperation());
+		assertEquals(2, series.get(0).size());
+		assertEquals(3, series.get(0).getTimestamps()[1]);
+		assertEquals(3.0, series.get(0).getValues()[1], 0.0);
+		assertEquals("write", series.get(1).getOperation());
+		assertEquals(3, series.get(1).getTimestampScale());
+		assertEquals(0, buffer.count(unused));
+	}
+
+	@Test
+	public void testAttachAndMaterialize()
+	{
+		DependentVariables dv = SBHModelFactory.eINSTANCE.createDependentVariables();
+		dv.setBenchmarkPrefix("ffsb");
+		assertNull(SampleBuffer.get(dv));
+
+		SampleBuffer buffer = new SampleBuffer(9);
+		int channel = buffer.channel("read", Metric.RESPONSE_TIME, "blktrace");
+		buffer.add(channel, "1.5", 0.25);
+		SampleBuffer.attach(dv, buffer);
+
+		assertSame(buffer, SampleBuffer.get(dv));
+		assertEquals(0, dv.getValues().size());
+		assertEquals(1, SampleBuffer.countValues(dv));
+
+		SampleBuffer.materialize(dv);
+		assertNull(SampleBuffer.get(dv));
+		assertEquals(1, dv.getValues().size());
+
+		DependentVariablesValueSingle value = (DependentVariablesValueSingle) dv.getValues().get(0);
+		assertEquals("read", value.getOperation());
+		assertEquals(Metric.RESPONSE_TIME, value.getOperationMetric());
+		assertEquals("blktrace", value.getSource());
+		assertEquals("1.500000000", value.getTimestamp());
+		assertEquals(0.25, value.getValue(), 0.0);
+	}
+
+	@Test
+	public void testStreaming()
+	{
+		final List<DependentVariables> batches = Lists.newArrayList();
+		ResultSink sink = new ResultSink()
+		{
+			@Override
+			public void append(DependentVariables batch)
+			{
+				batches.add(batch);
+			}
+
+			@Override
+			public void setKeyValues(List<DependentVariablesValueComposite> keyValues)
+			{
+			}
+
+			@Override
+			public void commit()
+			{
+			}
+
+			@Override
+			public void abort()
+			{
+			}
+		};
+
+		SampleBuffer buffer = new SampleBuffer(0);
+		buffer.streamTo(sink, 100);
+		int read = buffer.channel("read", Metric.RESPONSE_TIME, "blktrace");
+		for (int i = 0; i < 250; i++)
+		{
+			buffer.add(read, i, i);
+		}
+
+		// Two full batches were streamed, the rest is kept
+		assertEquals(2, batches.size());
+		assertEquals(50, buffer.size());
+		assertEquals(200, buffer.getTimestamp(0));
+
+		SampleBuffer first = SampleBuffer.get(batches.get(0));
+		assertEquals(100, first.size());
+		assertEquals(99, first.getTimestamp(99));
+		assertEquals("read", first.getOperation(first.getChannel(0)));
+
+		// A channel created after streaming does not change the batches
+		int write = buffer.channel("write", Metric.RESPONSE_TIME, "blktrace");
+		buffer.add(write, 250, 1);
+		assertEquals(1, first.getChannelCount());
+
+		// Counts and means cover all samples
+		assertEquals(250, buffer.count(read));
+		assertEquals(124.5, buffer.mean(read), 0.0);
+
+		buffer.flush();
+		assertEquals(3, batches.size());
+		assertEquals(0, buffer.size());
+		assertEquals(51, SampleBuffer.countValues(batches.get(2)));
+	}
+
+	@Test
+	public void testGrowAfterSingleSampleBatches()
+	{
+		final List<DependentVariables> batches = Lists.newArrayList();
+		ResultSink sink = new ResultSink()
+		{
+			@Override
+			public void append(DependentVariables batch)
+			{
+				batches.add(batch);
+			}
+
+			@Override
+			public void setKeyValues(List<DependentVariablesValueComposite> keyValues)
+			{
+			}
+
+			@Override
+			public void commit()
+			{
+			}
+
+			@Override
+			public void abort()
+			{
+			}
+		};
+
+		SampleBuffer buffer = new SampleBuffer(0);
+		buffer.streamTo(sink, 1);
+		int read = buffer.channel("read", Metric.RESPONSE_TIME, "blktrace");
+		buffer.add(read, 0, 0);
+		assertEquals(1, batches.size());
+
+		// The buffer holds a single sample now and must grow
+		buffer.streamTo(null, 1);
+		for (int i = 1; i < 4; i++)
+		{
+			buffer.add(read, i, i);
+		}
+		assertEquals(3, buffer.size());
+		assertEquals(3, buffer.getTimestamp(2));
+	}
+}
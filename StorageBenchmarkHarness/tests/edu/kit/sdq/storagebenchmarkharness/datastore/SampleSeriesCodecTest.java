@@ -0,0 +1,65 @@
+package edu.kit.sdq.storagebenchmarkharness.datastore;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SampleSeriesCodecTest
+{
+	@Test
+	public void testTimestamps() throws IOException
+	{
+		String[] timestamps = { "0", "0.5", "1.000250", "1.5", "1342000000.123456789" };
+		long[] scaled = new long[timestamps.length];
+
+		int scale = SampleSeriesCodec.parseTimestamps(timestamps, scaled);
+		assertEquals(9, scale);
+
+		long[] decoded = SampleSeriesCodec.decodeTimestamps(SampleSeriesCodec.encodeTimestamps(scaled, scaled.length), scaled.length);
+		assertArrayEquals(scaled, decoded);
+		assertEquals("1.000250000", SampleSeriesCodec.formatTimestamp(decoded[2], scale));
+		assertEquals("1342000000.123456789", SampleSeriesCodec.formatTimestamp(decoded[4], scale));
+	}
+
+	@Test(expected = NumberFormatException.class)
+	public void testNonNumericTimestamps()
+	{
+		SampleSeriesCodec.parseTimestamps(new String[] { "0", "12:00:01" }, new long[2]);
+	}
+
+	@Test
+	public void testIntegralValues() throws IOException
+	{
+		double[] values = { 8, 16, 8, 256, 0, -8 };
+
+		int encoding = SampleSeriesCodec.chooseValueEncoding(values, values.length);
+		assertEquals(SampleSeriesCodec.VALUES_INTEGRAL_DELTA, encoding);
+
+		double[] decoded = SampleSeriesCodec.decodeValues(SampleSeriesCodec.encodeValues(values, values.length, encoding), values.length,
+				encoding);
+		assertArrayEquals(values, decoded, 0.0);
+	}
+
+	@Test
+	public void testDoubleValues() throws IOException
+	{
+		Random random = new Random(42);
+		double[] values = new double[10000];
+		for (int i = 0; i < values.length; i++)
+		{
+			values[i] = 0.001 + random.nextDouble() * 0.0001;
+		}
+		values[17] = Double.NaN;
+
+		int encoding = SampleSeriesCodec.chooseValueEncoding(values, values.length);
+		assertEquals(SampleSeriesCodec.VALUES_XOR, encoding);
+
+		double[] decoded = SampleSeriesCodec.decodeValues(SampleSeriesCodec.encodeValues(values, values.length, encoding), values.length,
+				encoding);
+		assertArrayEquals(values, decoded, 0.0);
+	}
+}
@@ -9,6 +9,8 @@ import java.util.UUID;
 
 import org.junit.Test;
 
+import com.google.common.collect.Lists;
+
 import edu.kit.sdq.storagebenchmarkharness.RemoteConnection;
 import edu.kit.sdq.storagebenchmarkharness.TestUtils;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.DependentVariables;
@@ -21,12 +23,16 @@ import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfFilese
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfFilesizeMonitor;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfSut;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.IndependentVariablesOfThreadsMonitor;
+import edu.kit.sdq.storagebenchmarkharness.SBHModel.Metric;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.SBHModelFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Scheduler;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Thread;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Operations.OperationsFactory;
 import edu.kit.sdq.storagebenchmarkharness.SBHModel.Operations.Read;
+import edu.kit.sdq.storagebenchmarkharness.agent.AgentSample;
+import edu.kit.sdq.storagebenchmarkharness.agent.MonitorAgentSession;
 import edu.kit.sdq.storagebenchmarkharness.benchmarks.filebench.FilebenchBenchmarkDriver;
+import edu.kit.sdq.storagebenchmarkharness.datastore.SampleBuffer;
 import edu.kit.sdq.storagebenchmarkharness.exceptions.CheckedBenchmarkException;
 import edu.kit.sdq.storagebenchmarkharness.monitors.FilesetMonitorDriver;
 import edu.kit.sdq.storagebenchmarkharness.monitors.FilesizeMonitorDriver;
@@ -117,6 +123,7 @@ public class MonitoringTest
 		java.util.List<DependentVariablesValue> resultList = result.getValues();
 		for (DependentVariablesValue elem : resultList)
 			System.out.println(elem);
+		MonitorAgentSession.stopAll();
 		monitorCon.close();
 	}
 
@@ -168,6 +175,7 @@ public class MonitoringTest
 		java.util.List<DependentVariablesValue> resultList = result.getValues();
 		for (DependentVariablesValue elem : resultList)
 			System.out.println(elem);
+		MonitorAgentSession.stopAll();
 		monitorCon.close();
 	}
 
@@ -186,6 +194,7 @@ public class MonitoringTest
 
 		IndependentVariablesOfThreadsMonitor ivThreads = SBHModelFactory.eINSTANCE.createIndependentVariablesOfThreadsMonitor();
 		ivThreads.setBenchmarkPrefix("filebench");
+		ivThreads.setIntervalMillis(200);
 
 		RemoteConnection monitorCon = TestUtils.getLocalhostConnection();
 		monitorCon.open();
@@ -219,9 +228,40 @@ public class MonitoringTest
 		java.util.List<DependentVariablesValue> resultList = result.getValues();
 		for (DependentVariablesValue elem : resultList)
 			System.out.println(elem);
+		MonitorAgentSession.stopAll();
 		monitorCon.close();
 	}
 
+	@Test
+	public void testIostatFromDiskstats()
+	{
+		java.util.List<AgentSample> disk = Lists.newArrayList();
+		disk.add(new AgentSample(1000000, new double[] { 1000, 100, 8000, 500, 2000, 0, 16000, 1500, 0, 2000, 3000 }));
+		disk.add(new AgentSample(1500000, new double[] { 1100, 110, 8800, 550, 2100, 0, 17600, 1650, 1, 2200, 3300 }));
+
+		SampleBuffer samples = new SampleBuffer(3);
+		IostatMonitorDriver.addDiskSamples(disk, samples);
+
+		assertEquals(500, samples.getTimestamp(0));
+		assertEquals(200.0, samples.mean(samples.channel("read", Metric.OPERATIONS, "iostat")), 1e-9);
+		assertEquals(20.0, samples.mean(samples.channel("read", Metric.MERGES_PER_SEC, "iostat")), 1e-9);
+		assertEquals(0.5, samples.mean(samples.channel("write", Metric.REQUEST_MIX, "iostat")), 1e-9);
+		assertEquals(4.0, samples.mean(samples.channel("read", Metric.REQUEST_SIZE, "iostat")), 1e-9);
+		assertEquals(8.0, samples.mean(samples.channel("write", Metric.REQUEST_SIZE, "iostat")), 1e-9);
+		assertEquals(0.6, samples.mean(samples.channel("read+write", Metric.QUEUE_DEPTH, "iostat")), 1e-9);
+		assertEquals(1.0, samples.mean(samples.channel("read+write", Metric.RESPONSE_TIME, "iostat")), 1e-9);
+		assertEquals(1.0, samples.mean(samples.channel("read+write", Metric.SERVICE_TIME, "iostat")), 1e-9);
+
+		java.util.List<AgentSample> cpu = Lists.newArrayList();
+		cpu.add(new AgentSample(0, new double[] { 0, 0, 0, 0, 0, 0, 0, 0 }));
+		cpu.add(new AgentSample(1000000, new double[] { 20, 0, 10, 50, 10, 5, 5, 0 }));
+		IostatMonitorDriver.addCpuSamples(cpu, samples);
+
+		assertEquals(20.0, samples.mean(samples.channel("read+write", Metric.CPU_UTIL_USER, "iostat")), 1e-9);
+		assertEquals(20.0, samples.mean(samples.channel("read+write", Metric.CPU_UTIL_SYSTEM, "iostat")), 1e-9);
+		assertEquals(50.0, samples.mean(samples.channel("read+write", Metric.CPU_IDLE, "iostat")), 1e-9);
+	}
+
 	public static FilebenchBenchmarkDriver getFilebenchBenchmarkDriver(IndependentVariablesOfSut sutVar)
 	{
 		IndependentVariablesOfFilebench filebenchVar = SBHModelFactory.eINSTANCE.createIndependentVariablesOfFilebench();
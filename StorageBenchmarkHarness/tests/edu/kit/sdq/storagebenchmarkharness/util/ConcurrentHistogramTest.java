@@ -0,0 +1,46 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ConcurrentHistogramTest
+{
+	@Test
+	public void testBuckets()
+	{
+		long previous = -1;
+		for (int i = 0; i < 1000; ++i)
+		{
+			int index = ConcurrentHistogram.index(i);
+			assertTrue(ConcurrentHistogram.upperBound(index) >= i);
+			assertTrue(index == 0 || ConcurrentHistogram.upperBound(index - 1) < i);
+			assertTrue(index >= previous);
+			previous = index;
+		}
+		assertEquals(Long.MAX_VALUE, ConcurrentHistogram.upperBound(ConcurrentHistogram.index(Long.MAX_VALUE)));
+	}
+
+	@Test
+	public void testQuantile()
+	{
+		ConcurrentHistogram histogram = new ConcurrentHistogram();
+		assertEquals(0, histogram.quantile(0.5));
+
+		for (int i = 1; i <= 1000; ++i)
+		{
+			histogram.add(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500500, histogram.getSum());
+		assertEquals(1000, histogram.getMax());
+		assertEquals(500.5, histogram.getMean(), 0.001);
+
+		long median = histogram.quantile(0.5);
+		assertTrue(median >= 500 && median <= 500 * 1.25);
+		long p95 = histogram.quantile(0.95);
+		assertTrue(p95 >= 950 && p95 <= 1000);
+		assertEquals(1000, histogram.quantile(1));
+	}
+}
@@ -0,0 +1,49 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import org.junit.Test;
+
+import com.google.common.io.Files;
+
+public class RawCaptureTest
+{
+	@Test
+	public void testByteIdentical() throws IOException
+	{
+		// Line endings and bytes which are not valid in the charset of the
+		// parser must survive unchanged
+		byte[] output = "first\r\nsecond \u00e4\n\u00ff\u0080 last".getBytes("ISO-8859-1");
+		File rawFile = File.createTempFile("raw", ".log");
+		try
+		{
+			InputStream in = RawCapture.capture(new ByteArrayInputStream(output), rawFile);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+			assertEquals("first", reader.readLine());
+			in.skip(3);
+			RawCapture.drain(in);
+			in.close();
+
+			assertArrayEquals(output, Files.toByteArray(rawFile));
+		} finally
+		{
+			rawFile.delete();
+		}
+	}
+
+	@Test
+	public void testNoRawFile() throws IOException
+	{
+		InputStream in = new ByteArrayInputStream(new byte[0]);
+		assertSame(in, RawCapture.capture(in, null));
+	}
+}
@@ -0,0 +1,85 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SteadyStateDetectorTest
+{
+	private static final long SECOND = 1000000;
+
+	@Test
+	public void testWarmup()
+	{
+		// Ramps up linearly for 50 s, then constant with noise
+		SteadyStateDetector detector = new SteadyStateDetector(SteadyStateDetector.DEFAULT_BATCH_SIZE, 30 * SECOND);
+		Random random = new Random(42);
+		for (int t = 0; t < 60; ++t)
+		{
+			detector.add(t * SECOND, value(t, random));
+		}
+		// Only 10 s of steady state
+		assertFalse(detector.isSteady());
+
+		for (int t = 60; t < 120; ++t)
+		{
+			detector.add(t * SECOND, value(t, random));
+		}
+		assertTrue(detector.isSteady());
+		assertEquals(10, detector.getTruncation());
+		assertEquals(50 * SECOND, detector.getConvergenceMicros());
+	}
+
+	@Test
+	public void testNotSettled()
+	{
+		// Still ramping up, the truncation would be in the second half
+		SteadyStateDetector detector = new SteadyStateDetector(5, 0);
+		for (int t = 0; t < 100; ++t)
+		{
+			detector.add(t * SECOND, t);
+		}
+		assertEquals(-1, detector.getTruncation());
+		assertFalse(detector.isSteady());
+	}
+
+	@Test
+	public void testStationary()
+	{
+		SteadyStateDetector detector = new SteadyStateDetector(5, 10 * SECOND);
+		Random random = new Random(7);
+		for (int t = 0; t < 15; ++t)
+		{
+			detector.add(t * SECOND, 100 + random.nextGaussian());
+		}
+		// Too few batches
+		assertEquals(3, detector.getBatchCount());
+		assertFalse(detector.isSteady());
+
+		for (int t = 15; t < 40; ++t)
+		{
+			detector.add(t * SECOND, 100 + random.nextGaussian());
+		}
+		assertTrue(detector.getTruncation() <= 4);
+		assertTrue(detector.isSteady());
+	}
+
+	@Test
+	public void testIgnoresOldObservations()
+	{
+		SteadyStateDetector detector = new SteadyStateDetector(1, 0);
+		detector.add(2 * SECOND, 1);
+		detector.add(1 * SECOND, 100);
+		detector.add(2 * SECOND, 100);
+		assertEquals(1, detector.getBatchCount());
+	}
+
+	private static double value(int t, Random random)
+	{
+		return (t < 50 ? 2 * t : 100) + random.nextGaussian();
+	}
+}
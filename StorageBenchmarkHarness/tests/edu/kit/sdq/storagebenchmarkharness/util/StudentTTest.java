@@ -0,0 +1,51 @@
+package edu.kit.sdq.storagebenchmarkharness.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class StudentTTest
+{
+	@Test
+	public void testCriticalValues()
+	{
+		// Values of the common t-tables
+		assertEquals(12.7062, StudentT.criticalValue(0.95, 1), 1e-4);
+		assertEquals(4.3027, StudentT.criticalValue(0.95, 2), 1e-4);
+		assertEquals(2.2622, StudentT.criticalValue(0.95, 9), 1e-4);
+		assertEquals(2.0423, StudentT.criticalValue(0.95, 30), 1e-4);
+		assertEquals(63.6567, StudentT.criticalValue(0.99, 1), 1e-3);
+		assertEquals(3.1693, StudentT.criticalValue(0.99, 10), 1e-4);
+		assertEquals(1.8331, StudentT.criticalValue(0.90, 9), 1e-4);
+
+		// Approaches the normal distribution
+		assertEquals(1.9600, StudentT.criticalValue(0.95, 100000), 1e-3);
+	}
+
+	@Test
+	public void testCdf()
+	{
+		assertEquals(0.5, StudentT.cdf(0, 5), 1e-12);
+		assertEquals(0.75, StudentT.cdf(1, 1), 1e-10);
+		assertEquals(1 - StudentT.cdf(1.5, 7), StudentT.cdf(-1.5, 7), 1e-12);
+		assertEquals(0.975, StudentT.cdf(2.2622, 9), 1e-5);
+	}
+
+	@Test
+	public void testQuantileInvertsCdf()
+	{
+		for (int df = 1; df <= 50; df += 7)
+		{
+			for (double p = 0.01; p < 1; p += 0.07)
+			{
+				assertEquals(p, StudentT.cdf(StudentT.quantile(p, df), df), 1e-9);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConfidenceLevel()
+	{
+		StudentT.criticalValue(1, 5);
+	}
+}